@@ -47,16 +47,23 @@ public class Start {
 
     public static void  main(String[] args) throws Exception {
         // generateDaoInterfaces();
-        StopWatch stopWatch = new StopWatch();
-        stopWatch.start();
+        StopWatch stopWatch = new StopWatch("启动");
+        // 静态资源加载在spring容器启动过程中，详细耗时见StaticResHandler的日志
+        stopWatch.start("启动spring容器");
         ClassPathXmlApplicationContext ctx = new ClassPathXmlApplicationContext("applicationContext.xml");
+        // 进程退出时关闭spring容器，触发停服流程GracefulShutdown
+        ctx.registerShutdownHook();
+        stopWatch.stop();
+        stopWatch.start("生成协议文件");
         PacketIdTsGenerator.getInstance().generatePacketIdTs();
         removeAbstractPacketBean(ctx);
+        stopWatch.stop();
         logger.info("开始启动WebSocket服务器...");
+        stopWatch.start("启动WebSocket服务器");
         WebSocketServer webSocketServer = WebSocketServer.getInstance();
         webSocketServer.bind(WebSocketServer.PORT);
         stopWatch.stop();
-        logger.info("一切准备就绪，总耗时{}秒", stopWatch.getTotalTimeSeconds());
+        logger.info("一切准备就绪，总耗时{}秒\n{}", stopWatch.getTotalTimeSeconds(), stopWatch.prettyPrint());
     }
 
     /**
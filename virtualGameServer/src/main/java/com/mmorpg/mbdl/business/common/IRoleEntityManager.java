@@ -3,6 +3,8 @@ package com.mmorpg.mbdl.business.common;
 import com.mmorpg.mbdl.business.role.model.Role;
 import com.mmorpg.mbdl.framework.storage.core.AbstractEntity;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * 角色相关实体的管理器
  *
@@ -11,10 +13,18 @@ import com.mmorpg.mbdl.framework.storage.core.AbstractEntity;
  **/
 public interface IRoleEntityManager<T extends AbstractEntity> {
     /**
-     * 给特定的角色绑定实体
+     * 异步加载角色的实体（不存在则创建），在存储层I/O线程池中执行，多个实体可以并行加载
+     * @param role 角色
+     * @return 实体的future
+     */
+    CompletableFuture<T> loadEntityAsync(Role role);
+
+    /**
+     * 给特定的角色绑定已加载的实体
      * @param role 角色
+     * @param entity {@link #loadEntityAsync(Role)}加载的实体
      */
-    void bindEntity(Role role);
+    void bindEntity(Role role, T entity);
 
     /**
      * 直接更新某个实体，一般在下线时使用
@@ -77,11 +77,13 @@ public class PacketIdManager {
     public static final short USE_ITEM_REQ = 10603;
     public static final short USE_ITEM_RESP = 10604;
     public static final short ITEM_ADD_RESP = 10605;
+    public static final short PACK_CHANGE_RESP = 10606;
     /**
      * skill
      */
     public static final short USE_SKILL_REQ = 10701;
     public static final short SKILL_LIST_UPDATE = 10702;
+    public static final short SKILL_HIT_RESP = 10703;
 
     private static PacketIdManager self;
     public static PacketIdManager getInstance(){
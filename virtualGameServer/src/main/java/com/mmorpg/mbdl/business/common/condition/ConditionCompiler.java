@@ -0,0 +1,159 @@
+package com.mmorpg.mbdl.business.common.condition;
+
+import com.mmorpg.mbdl.business.object.model.AbstractCreature;
+import com.mmorpg.mbdl.business.role.model.prop.PropType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * 条件编译器，在资源加载时把条件列表编译成一个谓词：
+ * <ul>
+ *     <li>同一属性的{@link IPropRangeCondition}合并成一个节点，验证时只读取一次属性</li>
+ *     <li>所有节点按{@link ICondition#cost()}从小到大排序，开销小的先验证，尽早短路</li>
+ *     <li>节点存放在数组中，验证时不分配对象</li>
+ * </ul>
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+final class ConditionCompiler {
+    private static final Logger logger = LoggerFactory.getLogger(ConditionCompiler.class);
+
+    private ConditionCompiler() {
+    }
+
+    /**
+     * 编译成全部通过才通过的谓词，同一属性的范围取交集
+     */
+    static <T> Predicate<T> compileAnd(List<ICondition<T>> conditionList) {
+        return new CompiledAnd<>(compile(conditionList, true));
+    }
+
+    /**
+     * 编译成有一个通过就通过的谓词，同一属性的范围取并集
+     */
+    static <T> Predicate<T> compileOr(List<ICondition<T>> conditionList) {
+        return new CompiledOr<>(compile(conditionList, false));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> ICondition<T>[] compile(List<ICondition<T>> conditionList, boolean and) {
+        Map<PropType, List<IPropRangeCondition>> propType2Conditions = new EnumMap<>(PropType.class);
+        List<ICondition<T>> nodes = new ArrayList<>(conditionList.size());
+        for (ICondition<T> condition : conditionList) {
+            if (condition instanceof IPropRangeCondition) {
+                IPropRangeCondition propRangeCondition = (IPropRangeCondition) condition;
+                propType2Conditions.computeIfAbsent(propRangeCondition.getPropType(), k -> new ArrayList<>(2)).add(propRangeCondition);
+            } else {
+                nodes.add(condition);
+            }
+        }
+        propType2Conditions.forEach((propType, propRangeConditions) ->
+                nodes.add(and ? intersect(propType, propRangeConditions) : union(propType, propRangeConditions)));
+        // 稳定排序，开销相同的保持配置顺序
+        nodes.sort(Comparator.comparingInt(ICondition::cost));
+        return nodes.toArray(new ICondition[0]);
+    }
+
+    private static <T> PropRangeNode<T> intersect(PropType propType, List<IPropRangeCondition> propRangeConditions) {
+        long min = Long.MIN_VALUE;
+        long max = Long.MAX_VALUE;
+        for (IPropRangeCondition propRangeCondition : propRangeConditions) {
+            min = Math.max(min, propRangeCondition.getMin());
+            max = Math.min(max, propRangeCondition.getMax());
+        }
+        if (min > max) {
+            logger.warn("属性[{}]的范围条件没有交集，条件永远不会通过", propType);
+            return new PropRangeNode<>(propType, new long[0], new long[0]);
+        }
+        return new PropRangeNode<>(propType, new long[]{min}, new long[]{max});
+    }
+
+    private static <T> PropRangeNode<T> union(PropType propType, List<IPropRangeCondition> propRangeConditions) {
+        long[] mins = new long[propRangeConditions.size()];
+        long[] maxs = new long[propRangeConditions.size()];
+        for (int i = 0; i < propRangeConditions.size(); i++) {
+            mins[i] = propRangeConditions.get(i).getMin();
+            maxs[i] = propRangeConditions.get(i).getMax();
+        }
+        return new PropRangeNode<>(propType, mins, maxs);
+    }
+
+    /**
+     * 同一属性的范围条件合并后的节点，属性值落在任一范围内即通过
+     */
+    private static final class PropRangeNode<T> implements ICondition<T> {
+        private final PropType propType;
+        private final long[] mins;
+        private final long[] maxs;
+
+        private PropRangeNode(PropType propType, long[] mins, long[] maxs) {
+            this.propType = propType;
+            this.mins = mins;
+            this.maxs = maxs;
+        }
+
+        @Override
+        public boolean verify(T obj) {
+            long value = ((AbstractCreature) obj).getPropManager().getPropValueOf(propType);
+            for (int i = 0; i < mins.length; i++) {
+                if (value >= mins[i] && value <= maxs[i]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void check() {
+        }
+
+        @Override
+        public int cost() {
+            return IPropRangeCondition.PROP_RANGE_COST;
+        }
+    }
+
+    private static final class CompiledAnd<T> implements Predicate<T> {
+        private final ICondition<T>[] nodes;
+
+        private CompiledAnd(ICondition<T>[] nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        public boolean test(T obj) {
+            for (ICondition<T> node : nodes) {
+                if (!node.verify(obj)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class CompiledOr<T> implements Predicate<T> {
+        private final ICondition<T>[] nodes;
+
+        private CompiledOr(ICondition<T>[] nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        public boolean test(T obj) {
+            for (ICondition<T> node : nodes) {
+                if (node.verify(obj)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.mmorpg.mbdl.business.common.condition;
 
 import java.util.List;
+import java.util.function.Predicate;
 
 /**
  * 条件集合，为了保证{@link ICondition#check()}生效，其对象必须在{@link com.mmorpg.mbdl.framework.resource.annotation.ResDef}
@@ -11,6 +12,9 @@ import java.util.List;
  **/
 public class Conditions<T> {
     List<ICondition<T>> conditionList;
+    /** 编译后的谓词，由{@link ResWithConditionsPostProcessor}在条件检查完后生成，未编译时逐个验证 */
+    private transient Predicate<T> compiledAnd;
+    private transient Predicate<T> compiledOr;
 
     public Conditions() {
     }
@@ -26,6 +30,10 @@ public class Conditions<T> {
      * @return 全部通过返回true，只要有一个失败就返回false
      */
     public boolean verifyAnd(T obj) {
+        Predicate<T> predicate = compiledAnd;
+        if (predicate != null) {
+            return predicate.test(obj);
+        }
         for (ICondition<T> condition : conditionList) {
             if (!condition.verify(obj)) {
                 return false;
@@ -41,6 +49,10 @@ public class Conditions<T> {
      * @return 只要有一个通过返回true，全部失败就返回false
      */
     public boolean verifyOr(T obj) {
+        Predicate<T> predicate = compiledOr;
+        if (predicate != null) {
+            return predicate.test(obj);
+        }
         for (ICondition<T> condition : conditionList) {
             if (condition.verify(obj)) {
                 return true;
@@ -49,4 +61,11 @@ public class Conditions<T> {
         return false;
     }
 
+    /**
+     * 把条件列表编译成谓词，必须在所有条件{@link ICondition#check()}之后调用
+     */
+    public void compile() {
+        compiledAnd = ConditionCompiler.compileAnd(conditionList);
+        compiledOr = ConditionCompiler.compileOr(conditionList);
+    }
 }
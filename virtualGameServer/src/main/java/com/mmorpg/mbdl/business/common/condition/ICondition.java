@@ -17,6 +17,11 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
  **/
 @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "_type")
 public interface ICondition<T> {
+    /**
+     * 默认的验证开销
+     */
+    int DEFAULT_COST = 100;
+
     /**
      * 验证条件是否通过
      *
@@ -29,4 +34,13 @@ public interface ICondition<T> {
      * 检查配置的条件有无异常
      */
     void check();
+
+    /**
+     * 验证开销的估算值，编译后的条件集合按开销从小到大验证，以便尽早短路
+     *
+     * @return 验证开销，默认{@link #DEFAULT_COST}
+     */
+    default int cost() {
+        return DEFAULT_COST;
+    }
 }
@@ -0,0 +1,36 @@
+package com.mmorpg.mbdl.business.common.condition;
+
+import com.mmorpg.mbdl.business.role.model.prop.PropType;
+
+/**
+ * 属性范围条件：验证主体（{@link com.mmorpg.mbdl.business.object.model.AbstractCreature}）的某个属性值在[min,max]之间<br/>
+ * 编译条件集合时，同一属性的范围条件合并为一次属性读取
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+public interface IPropRangeCondition {
+    /**
+     * 属性范围条件的验证开销，只读取一次属性
+     */
+    int PROP_RANGE_COST = 10;
+
+    /**
+     * @return 检查的属性类型
+     */
+    PropType getPropType();
+
+    /**
+     * {@link ICondition#check()}之后才有效
+     *
+     * @return 属性值下限（包含），不限制时为Long.MIN_VALUE
+     */
+    long getMin();
+
+    /**
+     * {@link ICondition#check()}之后才有效
+     *
+     * @return 属性值上限（包含），不限制时为Long.MAX_VALUE
+     */
+    long getMax();
+}
@@ -34,6 +34,8 @@ public class ResWithConditionsPostProcessor implements ResPostProcessor {
                 Conditions<ICondition<?>> conditions = (Conditions<ICondition<?>>) field.get(obj);
                 // 对于同一类资源对象是串行的，所以check是串行的
                 conditions.conditionList.forEach(ICondition::check);
+                // 检查通过后编译成谓词
+                conditions.compile();
             } catch (IllegalAccessException e) {
                 e.printStackTrace();
             }
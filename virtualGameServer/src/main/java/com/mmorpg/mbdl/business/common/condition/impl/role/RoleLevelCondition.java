@@ -3,6 +3,7 @@ package com.mmorpg.mbdl.business.common.condition.impl.role;
 import com.fasterxml.jackson.annotation.JsonTypeName;
 import com.mmorpg.mbdl.business.role.model.Role;
 import com.mmorpg.mbdl.business.role.model.prop.PropType;
+import com.mmorpg.mbdl.business.common.condition.IPropRangeCondition;
 import com.mmorpg.mbdl.business.common.condition.anno.ConditionDesc;
 
 /**
@@ -13,47 +14,17 @@ import com.mmorpg.mbdl.business.common.condition.anno.ConditionDesc;
  **/
 @ConditionDesc("只配置minLevel则只检查最低等级，只配置maxLevel则只检查最高等级，否则同时检查最高最低等级")
 @JsonTypeName("roleLevel")
-public class RoleLevelCondition extends BaseRoleCondition {
-    enum CheckType {
-        /**
-         * 只检查最低等级
-         */
-        checkMin,
-        /**
-         * 只检查最高等级
-         */
-        checkMax,
-        /**
-         * 同时检查最高最低等级
-         */
-        checkAll
-    }
+public class RoleLevelCondition extends BaseRoleCondition implements IPropRangeCondition {
     private Integer minLevel;
     private Integer maxLevel;
-    private transient CheckType checkType;
+    /** check后生成，未配置的一端不限制 */
+    private transient long min = Long.MIN_VALUE;
+    private transient long max = Long.MAX_VALUE;
 
     @Override
     public boolean verify(Role role) {
-        switch (checkType) {
-            case checkMin: {
-                if (role.getPropManager().getPropValueOf(PropType.LEVEL) >= minLevel) {
-                    return true;
-                }
-            }
-            case checkMax: {
-                if (role.getPropManager().getPropValueOf(PropType.LEVEL) <= maxLevel) {
-                    return true;
-                }
-            }
-            case checkAll: {
-                if (role.getPropManager().getPropValueOf(PropType.LEVEL) >= minLevel &&
-                        role.getPropManager().getPropValueOf(PropType.LEVEL) <= maxLevel) {
-                    return true;
-                }
-            }
-            default:
-        }
-        return false;
+        long level = role.getPropManager().getPropValueOf(PropType.LEVEL);
+        return level >= min && level <= max;
     }
 
     @Override
@@ -61,13 +32,28 @@ public class RoleLevelCondition extends BaseRoleCondition {
         if (minLevel == null && maxLevel == null) {
             throw new RuntimeException("等级条件至少要配置最低等级min或最高等级max中的一个");
         }
-        if (maxLevel == null) {
-            checkType = CheckType.checkMin;
-        } else if (minLevel == null) {
-            checkType = CheckType.checkMax;
-        } else {
-            checkType = CheckType.checkAll;
-        }
+        min = minLevel == null ? Long.MIN_VALUE : minLevel;
+        max = maxLevel == null ? Long.MAX_VALUE : maxLevel;
+    }
+
+    @Override
+    public int cost() {
+        return PROP_RANGE_COST;
+    }
+
+    @Override
+    public PropType getPropType() {
+        return PropType.LEVEL;
+    }
+
+    @Override
+    public long getMin() {
+        return min;
+    }
+
+    @Override
+    public long getMax() {
+        return max;
     }
 
     public void setMinLevel(Integer minLevel) {
@@ -0,0 +1,50 @@
+package com.mmorpg.mbdl.business.common.facade;
+
+import com.mmorpg.mbdl.business.common.packet.GlobalMessage;
+import com.mmorpg.mbdl.business.common.packet.HotReloadReq;
+import com.mmorpg.mbdl.business.common.packet.vo.GlobalMessageType;
+import com.mmorpg.mbdl.business.role.model.Role;
+import com.mmorpg.mbdl.framework.communicate.websocket.annotation.PacketHandler;
+import com.mmorpg.mbdl.framework.communicate.websocket.annotation.PacketMethod;
+import com.mmorpg.mbdl.framework.resource.core.StaticResReloader;
+import com.mmorpg.mbdl.framework.thread.task.TaskDispatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+
+/**
+ * 静态资源热更请求处理
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+@PacketHandler
+public class HotReloadFacade {
+    private static final Logger logger = LoggerFactory.getLogger(HotReloadFacade.class);
+    /** 是否允许客户端发送热更请求，只应在内网GM服上开启 */
+    @Value("${server.config.static.res.hotReload.packet.enable:false}")
+    private boolean enable;
+
+    /**
+     * 资源文件内容可能很大，不打印请求日志
+     */
+    @PacketMethod(logOrNot = false)
+    public void handleHotReloadReq(Role role, HotReloadReq hotReloadReq) {
+        if (!enable) {
+            logger.warn("{}发送了热更请求[{}]，热更请求未开启", role, hotReloadReq.getFileName());
+            role.sendPacket(new GlobalMessage(GlobalMessageType.ERROR, "热更请求未开启"));
+            return;
+        }
+        logger.info("{}热更资源文件[{}]", role, hotReloadReq.getFileName());
+        // 热更在加载线程中完成，结果回到玩家队列中发送
+        StaticResReloader.getInstance().reload(hotReloadReq.getFileName(), hotReloadReq.getData())
+                .whenCompleteAsync((results, throwable) -> {
+                    if (throwable != null) {
+                        role.sendPacket(new GlobalMessage(GlobalMessageType.ERROR, String.format("热更失败：%s", throwable.getMessage())));
+                        return;
+                    }
+                    boolean success = results.stream().allMatch(result -> result.isSuccess() || result.isSkipped());
+                    role.sendPacket(new GlobalMessage(success ? GlobalMessageType.SUCCESS : GlobalMessageType.ERROR, results.toString()));
+                }, TaskDispatcher.getInstance().getQueueExecutor(role));
+    }
+}
@@ -21,6 +21,14 @@ public class HotReloadReq extends AbstractPacket {
     public HotReloadReq() {
     }
 
+    public String getFileName() {
+        return fileName;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
     @Override
     public short getPacketId() {
         return PacketIdManager.HOT_RELOAD_REQ;
@@ -0,0 +1,64 @@
+package com.mmorpg.mbdl.business.common.resource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 代码中用到的全局配置项，{@link GlobalSettingRes}加载（含热更）后由{@link GlobalSettingPostProcessor}把值写入对应的枚举，
+ * 使用时直接读取int值，不再按字符串查表
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+public enum GlobalSetting {
+    /** 新增角色默认出生场景 */
+    INIT_MAP_ID("InitMapId"),
+    /** 每次攻击造成的武器耐久度扣除 */
+    DURABILITY_DOWN_PER_ATTACK("DurabilityDownPerAttack");
+
+    private static final Logger logger = LoggerFactory.getLogger(GlobalSetting.class);
+
+    /** 对应{@link GlobalSettingRes#getCode()} */
+    private final String code;
+    private volatile int value;
+    private volatile boolean loaded;
+
+    GlobalSetting(String code) {
+        this.code = code;
+    }
+
+    /**
+     * 整张配置表加载（含热更）后调用，代码中没有用到的配置项忽略，表中已删除的配置项恢复为没有配置
+     */
+    static void updateAll(List<GlobalSettingRes> globalSettingResList) {
+        Map<String, GlobalSettingRes> code2Res = new HashMap<>(globalSettingResList.size() * 2);
+        for (GlobalSettingRes globalSettingRes : globalSettingResList) {
+            code2Res.put(globalSettingRes.getCode(), globalSettingRes);
+        }
+        for (GlobalSetting setting : values()) {
+            GlobalSettingRes globalSettingRes = code2Res.get(setting.code);
+            if (globalSettingRes != null) {
+                setting.value = globalSettingRes.getValue();
+                setting.loaded = true;
+            } else if (setting.loaded) {
+                logger.warn("全局配置[{}]已从配置表中删除", setting.code);
+                setting.loaded = false;
+            }
+        }
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public int getValue() {
+        if (!loaded) {
+            throw new IllegalStateException(String.format("全局配置[%s]没有配置", code));
+        }
+        return value;
+    }
+}
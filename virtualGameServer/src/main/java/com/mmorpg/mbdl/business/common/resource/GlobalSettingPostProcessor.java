@@ -0,0 +1,27 @@
+package com.mmorpg.mbdl.business.common.resource;
+
+import com.mmorpg.mbdl.framework.resource.exposed.ResPostProcessor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 全局配置表加载（含热更）后，把整张表的值写入{@link GlobalSetting}
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+@Component
+public class GlobalSettingPostProcessor implements ResPostProcessor {
+    @Override
+    public void postProcess(Object obj) {
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void postProcessAll(Class<?> resClass, List<?> values) {
+        if (resClass == GlobalSettingRes.class) {
+            GlobalSetting.updateAll((List<GlobalSettingRes>) values);
+        }
+    }
+}
@@ -1,16 +1,19 @@
 package com.mmorpg.mbdl.business.container.manager;
 
+import com.mmorpg.mbdl.business.common.IRoleEntityManager;
 import com.mmorpg.mbdl.business.container.entity.ContainerEntity;
 import com.mmorpg.mbdl.business.container.model.Container;
 import com.mmorpg.mbdl.business.container.model.ContainerType;
 import com.mmorpg.mbdl.business.container.res.ItemRes;
 import com.mmorpg.mbdl.business.role.model.Role;
-import com.mmorpg.mbdl.framework.resource.exposed.IStaticRes;
+import com.mmorpg.mbdl.framework.resource.exposed.IPrimitiveKeyStaticRes;
 import com.mmorpg.mbdl.framework.storage.core.IStorage;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 容器管理器
@@ -19,13 +22,18 @@ import javax.annotation.PostConstruct;
  * @since v1.0 2019/1/24
  **/
 @Component
-public class ContainerManager {
+public class ContainerManager implements IRoleEntityManager<ContainerEntity> {
     private static ContainerManager self;
 
     @Autowired
     private IStorage<Long, ContainerEntity> containerEntityIStorage;
     @Autowired
-    private IStaticRes<Integer, ItemRes> itemResIStaticRes;
+    private IPrimitiveKeyStaticRes<Integer, ItemRes> itemResIStaticRes;
+    /**
+     * 每个容器保留的最近变化条数，前端落后的变化数超过它时改为全量同步
+     */
+    @Value("${server.config.container.sync.logSize:256}")
+    private int syncLogSize;
 
     @PostConstruct
     private void init() {
@@ -36,8 +44,9 @@ public class ContainerManager {
         return self;
     }
 
-    public void bindContainerEntity(Role role) {
-        ContainerEntity containerEntity = containerEntityIStorage.getOrCreate(role.getRoleId(), id -> {
+    @Override
+    public CompletableFuture<ContainerEntity> loadEntityAsync(Role role) {
+        return containerEntityIStorage.getOrCreateAsync(role.getRoleId(), id -> {
             ContainerEntity entity = new ContainerEntity().setRoleId(id);
             // 赠送一点背包物品
             Container packContainer = new Container();
@@ -52,17 +61,27 @@ public class ContainerManager {
             entity.getType2ContainerMap().put(ContainerType.PACK, packContainer);
             return entity;
         });
+    }
+
+    @Override
+    public void bindEntity(Role role, ContainerEntity containerEntity) {
         role.setContainerEntity(containerEntity);
     }
 
-    public ItemRes getItemResByKey(Integer key) {
+    public ItemRes getItemResByKey(int key) {
         return itemResIStaticRes.get(key);
     }
 
+    public int getSyncLogSize() {
+        return syncLogSize;
+    }
+
+    @Override
     public void updateEntity(ContainerEntity containerEntity) {
         containerEntityIStorage.update(containerEntity);
     }
 
+    @Override
     public void mergeUpdateEntity(ContainerEntity containerEntity) {
         containerEntityIStorage.mergeUpdate(containerEntity);
     }
@@ -1,19 +1,21 @@
 package com.mmorpg.mbdl.business.container.model;
 
-import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.google.common.base.MoreObjects;
-import com.google.common.collect.Iterables;
-import com.google.common.collect.TreeMultimap;
+import com.google.common.base.Preconditions;
 import com.mmorpg.mbdl.business.container.exception.ItemNotEnoughException;
 import com.mmorpg.mbdl.business.container.manager.ContainerManager;
+import com.mmorpg.mbdl.business.container.model.creator.AbstractItemCreator;
 import com.mmorpg.mbdl.business.container.model.creator.ItemCreatorManager;
 import com.mmorpg.mbdl.business.container.res.ItemRes;
 import com.mmorpg.mbdl.framework.common.utils.JsonUtil;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
 
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
-import java.util.NavigableSet;
+import java.util.Set;
 
 /**
  * 容器
@@ -24,27 +26,46 @@ import java.util.NavigableSet;
 public class Container {
     private Map<Long, AbstractItem> id2ItemMap = new HashMap<>();
     /**
-     * 内部维护的用于合并可合并物品的数据结构
+     * key -> 同一key的所有物品，用于合并可合并物品以及按key统计数量，不参与序列化，为null时根据id2ItemMap重建
      */
-    @JsonIgnore
-    private TreeMultimap<Integer, AbstractItem> key2ItemMultiMap = TreeMultimap.create();
+    private transient IntObjectMap<ItemStacks> key2ItemStacks;
+    /**
+     * 事务提交期间记录变化的物品，不在事务中时为null
+     */
+    private transient ContainerChange recordingChange;
+    /**
+     * 版本号及最近的变化记录，用于增量同步，不参与序列化，重新加载后版本号重新开始
+     */
+    private transient ContainerSyncLog syncLog;
 
     /**
-     * 创建原本不存在的物品
+     * 创建原本不存在的物品，先补满最新的同类物品，剩余的数量按最大堆叠数拆分成新物品
      * @param key 配置表中的
      * @param amount 数量
      * @return 添加成功返回true，失败返回false
      */
     public boolean createItem(int key, int amount) {
+        Preconditions.checkArgument(amount > 0, "创建的物品数量必须大于0，当前为%s", amount);
         ItemRes itemRes = ContainerManager.getInstance().getItemResByKey(key);
+        AbstractItemCreator creator = ItemCreatorManager.getInstance().getCreatorByItemType(itemRes.getItemType());
         int maxAmount = itemRes.getMaxAmount();
-        if (maxAmount == 1) {
-            for (int i = 0; i < amount; i++) {
-                doAddItem(ItemCreatorManager.getInstance().getCreatorByItemType(itemRes.getItemType()).create(key, 1));
+        ItemStacks itemStacks = getOrCreateItemStacks(key);
+        int amountLeft = amount;
+        AbstractItem lastAbstractItem = itemStacks.last();
+        if (maxAmount > 1 && lastAbstractItem != null) {
+            // 最新的同类物品的剩余空间
+            int toFill = Math.min(maxAmount - lastAbstractItem.getAmount(), amountLeft);
+            if (toFill > 0) {
+                itemStacks.setAmount(lastAbstractItem, lastAbstractItem.getAmount() + toFill);
+                recordChanged(lastAbstractItem);
+                amountLeft -= toFill;
             }
-            return true;
         }
-        createItemHelper1(key, amount, maxAmount);
+        while (amountLeft > 0) {
+            int toCreate = Math.min(maxAmount, amountLeft);
+            doAddItem(creator.create(key, toCreate), itemStacks);
+            amountLeft -= toCreate;
+        }
         return true;
     }
 
@@ -61,97 +82,54 @@ public class Container {
         ItemRes itemRes = ContainerManager.getInstance().getItemResByKey(abstractItem.getKey());
         int maxAmount = itemRes.getMaxAmount();
         if (maxAmount == 1) {
-            doAddItem(abstractItem);
+            doAddItem(abstractItem, getOrCreateItemStacks(abstractItem.getKey()));
             return true;
         }
         return createItem(abstractItem.getKey(), abstractItem.getAmount());
     }
 
-    private void createItemHelper1(int key, int amount, int maxAmount) {
-        ItemRes itemRes = ContainerManager.getInstance().getItemResByKey(key);
-        AbstractItem abstractItem = ItemCreatorManager.getInstance().getCreatorByItemType(itemRes.getItemType()).create(key, amount);
-        // 找到id最新的同类物品，判断其是否达到最大堆叠数，没达到就把物品放到这个物品上
-        NavigableSet<AbstractItem> abstractItems = key2ItemMultiMap.get(abstractItem.getKey());
-        if (!abstractItems.isEmpty()) {
-            // 自动排序了，最后一个是id最大（最新）的
-            AbstractItem lastAbstractItem = Iterables.getLast(abstractItems);
-            // 最后一个物品的剩余空间
-            int amountLeft = maxAmount - lastAbstractItem.getAmount();
-            // 还可以继续放入
-            if (amountLeft > 0) {
-                // 判断物品剩余空间能不能完全容纳此物品
-                if (amountLeft >= abstractItem.getAmount()) {
-                    // 可以完全容下，直接变更最新物品的数量即可
-                    lastAbstractItem.setAmount(lastAbstractItem.getAmount() + abstractItem.getAmount());
-                } else {
-                    lastAbstractItem.setAmount(maxAmount);
-                    createItemHelper1(key, amount - amountLeft, maxAmount);
-                }
-            } else {
-                createItemHelper2(key, amount, abstractItem, maxAmount);
-            }
-        } else {
-            createItemHelper2(key, amount, abstractItem, maxAmount);
-        }
-    }
-
-    private void createItemHelper2(int key, int amount, AbstractItem abstractItem, int maxAmount) {
-        if (amount > maxAmount) {
-            abstractItem.setAmount(maxAmount);
-            doAddItem(abstractItem);
-            createItemHelper1(key, amount - maxAmount, maxAmount);
-        } else {
-            doAddItem(abstractItem);
-        }
-    }
-
-    private void doAddItem(AbstractItem abstractItem) {
+    private void doAddItem(AbstractItem abstractItem, ItemStacks itemStacks) {
         if (abstractItem.getObjectId() == 0) {
             abstractItem.init();
         }
         id2ItemMap.put(abstractItem.getObjectId(), abstractItem);
-        key2ItemMultiMap.put(abstractItem.getKey(), abstractItem);
+        itemStacks.add(abstractItem);
+        recordChanged(abstractItem);
     }
 
     /**
-     * 根据配置表key，删除物品，通常可堆叠的物品属性是一致的，有随机属性的物品不可堆叠，所以这个函数只能用在可堆叠物品上
+     * 根据配置表key，删除物品，从最新的物品开始扣除，通常可堆叠的物品属性是一致的，有随机属性的物品不可堆叠，所以这个函数只能用在可堆叠物品上
      * @param key 物品配置表key
      * @param amount 删除数量
      * @exception com.mmorpg.mbdl.business.container.exception.ItemNotEnoughException 物品数量不足
      */
     public boolean removeItem(int key, int amount) {
+        Preconditions.checkArgument(amount >= 0, "删除的物品数量不能小于0，当前为%s", amount);
         ItemRes itemRes = ContainerManager.getInstance().getItemResByKey(key);
         int maxAmount = itemRes.getMaxAmount();
         if (maxAmount == 1) {
             throw new RuntimeException("不可堆叠物品（上限为1）不可使用此函数扣除");
         }
-        NavigableSet<AbstractItem> abstractItems = key2ItemMultiMap.get(key);
-        if (abstractItems.isEmpty()) {
+        ItemStacks itemStacks = getItemStacks().get(key);
+        if (itemStacks == null || itemStacks.getTotalAmount() < amount) {
             throw new ItemNotEnoughException("物品数量不足");
         }
-        Integer sum = abstractItems.stream().map(AbstractItem::getAmount).reduce(0, Integer::sum);
-        if (amount > sum) {
-            throw new ItemNotEnoughException("物品数量不足");
+        int amountLeft = amount;
+        while (amountLeft > 0) {
+            AbstractItem lastAbstractItem = itemStacks.last();
+            if (lastAbstractItem.getAmount() > amountLeft) {
+                // 最后一个物品够用
+                itemStacks.setAmount(lastAbstractItem, lastAbstractItem.getAmount() - amountLeft);
+                recordChanged(lastAbstractItem);
+                amountLeft = 0;
+            } else {
+                amountLeft -= lastAbstractItem.getAmount();
+                doRemoveItem(lastAbstractItem);
+            }
         }
-        removeHelper(key,amount, abstractItems);
         return true;
     }
 
-    private void removeHelper(int key, int amount, NavigableSet<AbstractItem> abstractItems) {
-        AbstractItem lastAbstractItem = Iterables.getLast(abstractItems);
-        int lack = lastAbstractItem.getAmount() - amount;
-        // 最后一个物品够用
-        if (lack > 0) {
-            lastAbstractItem.setAmount(lack);
-        } else if (lack == 0) {
-            doRemoveItem(lastAbstractItem);
-        } else {
-            // 不够用
-            doRemoveItem(lastAbstractItem);
-            removeHelper(key,-lack,key2ItemMultiMap.get(key));
-        }
-    }
-
     public boolean removeItem(long objectId, int amount) {
         AbstractItem abstractItem = id2ItemMap.get(objectId);
         if (abstractItem == null) {
@@ -169,7 +147,105 @@ public class Container {
 
     private void doRemoveItem(AbstractItem abstractItem) {
         id2ItemMap.remove(abstractItem.getObjectId());
-        key2ItemMultiMap.remove(abstractItem.getKey(), abstractItem);
+        IntObjectMap<ItemStacks> key2ItemStacks = getItemStacks();
+        ItemStacks itemStacks = key2ItemStacks.get(abstractItem.getKey());
+        if (itemStacks != null) {
+            itemStacks.remove(abstractItem);
+            if (itemStacks.isEmpty()) {
+                key2ItemStacks.remove(abstractItem.getKey());
+            }
+        }
+        getSyncLog().append(abstractItem.getObjectId());
+        if (recordingChange != null) {
+            recordingChange.markRemoved(abstractItem.getObjectId());
+        }
+    }
+
+    private void recordChanged(AbstractItem abstractItem) {
+        getSyncLog().append(abstractItem.getObjectId());
+        if (recordingChange != null) {
+            recordingChange.markChanged(abstractItem);
+        }
+    }
+
+    private ContainerSyncLog getSyncLog() {
+        ContainerSyncLog syncLog = this.syncLog;
+        if (syncLog == null) {
+            syncLog = new ContainerSyncLog(ContainerManager.getInstance().getSyncLogSize());
+            this.syncLog = syncLog;
+        }
+        return syncLog;
+    }
+
+    /**
+     * @return 当前版本号，每次物品变化加1
+     */
+    public long getRevision() {
+        return getSyncLog().getRevision();
+    }
+
+    /**
+     * 计算从指定版本到当前版本的增量，每个变化过的物品只出现一次，且为当前状态
+     * @param fromRevision 前端已确认的版本号
+     * @return 版本号无效或相差太多时返回null，此时应下发全量
+     */
+    public ContainerChange diffSince(long fromRevision) {
+        ContainerSyncLog syncLog = getSyncLog();
+        if (!syncLog.canDelta(fromRevision)) {
+            return null;
+        }
+        Set<Long> changedObjectIds = new LinkedHashSet<>();
+        syncLog.collectChangedObjectIds(fromRevision, changedObjectIds);
+        ContainerChange change = new ContainerChange();
+        for (Long objectId : changedObjectIds) {
+            AbstractItem abstractItem = id2ItemMap.get(objectId);
+            if (abstractItem == null) {
+                change.markRemoved(objectId);
+            } else {
+                change.markChanged(abstractItem);
+            }
+        }
+        change.setRevision(fromRevision, syncLog.getRevision());
+        return change;
+    }
+
+    /**
+     * 开始记录变化，由{@link ContainerTransaction}在提交时调用
+     */
+    void startRecording(ContainerChange change) {
+        Preconditions.checkState(recordingChange == null, "容器已经在记录变化，不能嵌套提交事务");
+        this.recordingChange = change;
+    }
+
+    void stopRecording() {
+        this.recordingChange = null;
+    }
+
+    private IntObjectMap<ItemStacks> getItemStacks() {
+        IntObjectMap<ItemStacks> key2ItemStacks = this.key2ItemStacks;
+        if (key2ItemStacks == null) {
+            key2ItemStacks = new IntObjectHashMap<>();
+            for (AbstractItem abstractItem : id2ItemMap.values()) {
+                ItemStacks itemStacks = key2ItemStacks.get(abstractItem.getKey());
+                if (itemStacks == null) {
+                    itemStacks = new ItemStacks();
+                    key2ItemStacks.put(abstractItem.getKey(), itemStacks);
+                }
+                itemStacks.add(abstractItem);
+            }
+            this.key2ItemStacks = key2ItemStacks;
+        }
+        return key2ItemStacks;
+    }
+
+    private ItemStacks getOrCreateItemStacks(int key) {
+        IntObjectMap<ItemStacks> key2ItemStacks = getItemStacks();
+        ItemStacks itemStacks = key2ItemStacks.get(key);
+        if (itemStacks == null) {
+            itemStacks = new ItemStacks();
+            key2ItemStacks.put(key, itemStacks);
+        }
+        return itemStacks;
     }
 
     public Collection<AbstractItem> getAll() {
@@ -182,18 +258,22 @@ public class Container {
      * @return
      */
     public int getAmountByKey(int key) {
-        NavigableSet<AbstractItem> abstractItems = key2ItemMultiMap.get(key);
-        return abstractItems.stream().map(AbstractItem::getAmount).reduce(0, Integer::sum);
+        ItemStacks itemStacks = getItemStacks().get(key);
+        if (itemStacks == null) {
+            return 0;
+        }
+        return (int) Math.min(itemStacks.getTotalAmount(), Integer.MAX_VALUE);
     }
 
     /**
-     * jackson反序列化时会调用以初始化 key2ItemMultiMap
+     * jackson反序列化时会调用，key2ItemStacks在下次使用时重建
      * @param id2ItemMap
      * @return
      */
     public Container setId2ItemMap(Map<Long, AbstractItem> id2ItemMap) {
-        id2ItemMap.values().forEach(item -> key2ItemMultiMap.put(item.getKey(), item));
         this.id2ItemMap = id2ItemMap;
+        this.key2ItemStacks = null;
+        this.syncLog = null;
         return this;
     }
 
@@ -201,6 +281,13 @@ public class Container {
         return id2ItemMap.get(objectId);
     }
 
+    /**
+     * 开始一个批量操作事务，所有操作在{@link ContainerTransaction#commit()}时统一校验后执行
+     */
+    public ContainerTransaction begin() {
+        return new ContainerTransaction(this);
+    }
+
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(this)
@@ -0,0 +1,61 @@
+package com.mmorpg.mbdl.business.container.model;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 一次容器操作产生的变化：数量变化或新增的物品，以及被删除的物品objectId，用于合并成一个增量包通知前端
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+public class ContainerChange {
+    private final Map<Long, AbstractItem> changedItems = new LinkedHashMap<>();
+    private final Set<Long> removedObjectIds = new LinkedHashSet<>();
+    /** 变化前的容器版本号 */
+    private long fromRevision;
+    /** 变化后的容器版本号 */
+    private long toRevision;
+
+    void markChanged(AbstractItem abstractItem) {
+        changedItems.put(abstractItem.getObjectId(), abstractItem);
+        removedObjectIds.remove(abstractItem.getObjectId());
+    }
+
+    void markRemoved(long objectId) {
+        // objectId不会复用，同一次操作中先新增后删除的物品前端无需感知，仍然下发删除也不影响
+        changedItems.remove(objectId);
+        removedObjectIds.add(objectId);
+    }
+
+    void setRevision(long fromRevision, long toRevision) {
+        this.fromRevision = fromRevision;
+        this.toRevision = toRevision;
+    }
+
+    /**
+     * @return 新增或数量变化的物品，按变化顺序排列，数量为变化后的数量
+     */
+    public Collection<AbstractItem> getChangedItems() {
+        return changedItems.values();
+    }
+
+    public Set<Long> getRemovedObjectIds() {
+        return removedObjectIds;
+    }
+
+    public long getFromRevision() {
+        return fromRevision;
+    }
+
+    public long getToRevision() {
+        return toRevision;
+    }
+
+    public boolean isEmpty() {
+        return changedItems.isEmpty() && removedObjectIds.isEmpty();
+    }
+}
@@ -0,0 +1,60 @@
+package com.mmorpg.mbdl.business.container.model;
+
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 容器同步日志，容器每发生一次物品变化版本号加1，并在环形数组中记录变化的物品objectId<br/>
+ * 前端带上已确认的版本号请求同步时，只要该版本之后的变化都还在环形数组中，就只下发这些物品的最新状态，否则下发全量
+ * <p>版本号的高位是每个日志实例唯一的纪元，低32位是变化次数。服务器重启或容器重新加载后，
+ * 前端持有的旧版本号属于其它纪元，从而走全量同步</p>
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+final class ContainerSyncLog {
+    private static final int EPOCH_SHIFT = 32;
+    /** 纪元计数器，起始值随机，使重启前后的纪元也不相同 */
+    private static final AtomicInteger EPOCH_COUNTER = new AtomicInteger(ThreadLocalRandom.current().nextInt());
+    /** 本日志的纪元，单个容器的变化次数不会超过2^32，版本号不会进位到纪元 */
+    private final long epoch;
+    private long revision;
+    /** 版本号r的变化记录在下标 r % capacity 处 */
+    private final long[] objectIds;
+
+    ContainerSyncLog(int capacity) {
+        long nextEpoch;
+        do {
+            nextEpoch = EPOCH_COUNTER.incrementAndGet() & Integer.MAX_VALUE;
+        } while (nextEpoch == 0);
+        this.epoch = nextEpoch;
+        this.revision = epoch << EPOCH_SHIFT;
+        this.objectIds = new long[capacity];
+    }
+
+    long getRevision() {
+        return revision;
+    }
+
+    void append(long objectId) {
+        revision++;
+        objectIds[(int) (revision % objectIds.length)] = objectId;
+    }
+
+    /**
+     * @return 是否可以从指定版本增量同步到当前版本，其它纪元的版本号一律不能
+     */
+    boolean canDelta(long fromRevision) {
+        return fromRevision >>> EPOCH_SHIFT == epoch && fromRevision <= revision && revision - fromRevision <= objectIds.length;
+    }
+
+    /**
+     * 收集指定版本之后变化过的objectId，调用前需要{@link #canDelta(long)}为true
+     */
+    void collectChangedObjectIds(long fromRevision, Set<Long> result) {
+        for (long r = fromRevision + 1; r <= revision; r++) {
+            result.add(objectIds[(int) (r % objectIds.length)]);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.mmorpg.mbdl.business.container.model;
+
+import com.google.common.base.Preconditions;
+import com.mmorpg.mbdl.business.container.exception.ItemNotEnoughException;
+import com.mmorpg.mbdl.business.container.manager.ContainerManager;
+import com.mmorpg.mbdl.business.container.res.ItemRes;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 容器批量操作事务，先收集增删操作，提交时按key汇总一次性校验，全部通过后才修改容器，
+ * 校验失败时容器保持原样；提交结果{@link ContainerChange}用于一次性通知前端和持久化
+ * <pre>
+ *     ContainerChange change = container.begin()
+ *             .removeItem(objectId, 1)
+ *             .addItem(oldEquip)
+ *             .commit();
+ * </pre>
+ * 删除只能扣除事务开始前已有的物品，执行时先删除后添加
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+public class ContainerTransaction {
+    private final Container container;
+    private final List<Operation> operations = new ArrayList<>(4);
+    private boolean committed;
+
+    ContainerTransaction(Container container) {
+        this.container = container;
+    }
+
+    /**
+     * 创建原本不存在的物品
+     */
+    public ContainerTransaction createItem(int key, int amount) {
+        Preconditions.checkArgument(amount > 0, "创建的物品数量必须大于0，当前为%s", amount);
+        return addOperation(new Operation(OperationType.CREATE, key, 0, amount, null));
+    }
+
+    /**
+     * 放入已存在的物品，为null时忽略
+     */
+    public ContainerTransaction addItem(AbstractItem abstractItem) {
+        if (abstractItem == null) {
+            return this;
+        }
+        return addOperation(new Operation(OperationType.ADD, abstractItem.getKey(), abstractItem.getObjectId(),
+                abstractItem.getAmount(), abstractItem));
+    }
+
+    /**
+     * 按key扣除可堆叠物品
+     */
+    public ContainerTransaction removeItem(int key, int amount) {
+        Preconditions.checkArgument(amount >= 0, "删除的物品数量不能小于0，当前为%s", amount);
+        return addOperation(new Operation(OperationType.REMOVE_BY_KEY, key, 0, amount, null));
+    }
+
+    /**
+     * 按objectId删除物品，可堆叠物品按其key扣除
+     */
+    public ContainerTransaction removeItem(long objectId, int amount) {
+        Preconditions.checkArgument(amount >= 0, "删除的物品数量不能小于0，当前为%s", amount);
+        return addOperation(new Operation(OperationType.REMOVE_BY_ID, 0, objectId, amount, null));
+    }
+
+    private ContainerTransaction addOperation(Operation operation) {
+        Preconditions.checkState(!committed, "事务已经提交");
+        operations.add(operation);
+        return this;
+    }
+
+    /**
+     * 校验并执行所有操作
+     * @return 本次事务产生的变化
+     * @exception ItemNotEnoughException 某个key的扣除总数超过容器中已有的数量
+     */
+    public ContainerChange commit() {
+        Preconditions.checkState(!committed, "事务已经提交");
+        committed = true;
+        validate();
+        ContainerChange change = new ContainerChange();
+        long fromRevision = container.getRevision();
+        container.startRecording(change);
+        try {
+            for (Operation operation : operations) {
+                if (operation.type == OperationType.REMOVE_BY_KEY) {
+                    container.removeItem(operation.key, operation.amount);
+                } else if (operation.type == OperationType.REMOVE_BY_ID) {
+                    container.removeItem(operation.objectId, operation.amount);
+                }
+            }
+            for (Operation operation : operations) {
+                if (operation.type == OperationType.CREATE) {
+                    container.createItem(operation.key, operation.amount);
+                } else if (operation.type == OperationType.ADD) {
+                    container.addItem(operation.item);
+                }
+            }
+        } finally {
+            container.stopRecording();
+        }
+        change.setRevision(fromRevision, container.getRevision());
+        return change;
+    }
+
+    /**
+     * 执行前的整体校验，保证执行阶段不会因为数量或objectId问题中途失败
+     */
+    private void validate() {
+        ContainerManager containerManager = ContainerManager.getInstance();
+        IntObjectMap<long[]> key2RemoveAmount = new IntObjectHashMap<>();
+        Set<Long> removedObjectIds = new HashSet<>();
+        Set<Long> addedObjectIds = new HashSet<>();
+        for (Operation operation : operations) {
+            switch (operation.type) {
+                case CREATE:
+                    getItemRes(containerManager, operation.key);
+                    break;
+                case ADD:
+                    getItemRes(containerManager, operation.key);
+                    if (operation.objectId != 0) {
+                        if (!addedObjectIds.add(operation.objectId)
+                                || (container.getItemByObjectId(operation.objectId) != null && !removedObjectIds.contains(operation.objectId))) {
+                            throw new RuntimeException(String.format("objectId为%s的物品重复放入容器", operation.objectId));
+                        }
+                    }
+                    break;
+                case REMOVE_BY_KEY:
+                    if (getItemRes(containerManager, operation.key).getMaxAmount() == 1) {
+                        throw new RuntimeException("不可堆叠物品（上限为1）不可使用此函数扣除");
+                    }
+                    accumulate(key2RemoveAmount, operation.key, operation.amount);
+                    break;
+                case REMOVE_BY_ID:
+                    AbstractItem abstractItem = container.getItemByObjectId(operation.objectId);
+                    if (abstractItem == null) {
+                        throw new RuntimeException(String.format("找不到objectId为%s的物品", operation.objectId));
+                    }
+                    if (getItemRes(containerManager, abstractItem.getKey()).getMaxAmount() == 1) {
+                        if (!removedObjectIds.add(operation.objectId)) {
+                            throw new RuntimeException(String.format("objectId为%s的物品重复删除", operation.objectId));
+                        }
+                    } else {
+                        accumulate(key2RemoveAmount, abstractItem.getKey(), operation.amount);
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException(String.format("未知的容器操作类型[%s]", operation.type));
+            }
+        }
+        for (IntObjectMap.PrimitiveEntry<long[]> entry : key2RemoveAmount.entries()) {
+            if (entry.value()[0] > container.getAmountByKey(entry.key())) {
+                throw new ItemNotEnoughException("物品数量不足");
+            }
+        }
+    }
+
+    private static ItemRes getItemRes(ContainerManager containerManager, int key) {
+        ItemRes itemRes = containerManager.getItemResByKey(key);
+        if (itemRes == null) {
+            throw new RuntimeException(String.format("物品表中不存在key为%s的物品", key));
+        }
+        return itemRes;
+    }
+
+    private static void accumulate(IntObjectMap<long[]> key2RemoveAmount, int key, int amount) {
+        long[] total = key2RemoveAmount.get(key);
+        if (total == null) {
+            total = new long[1];
+            key2RemoveAmount.put(key, total);
+        }
+        total[0] += amount;
+    }
+
+    private enum OperationType {
+        /** 创建新物品 */
+        CREATE,
+        /** 放入已存在的物品 */
+        ADD,
+        /** 按key扣除 */
+        REMOVE_BY_KEY,
+        /** 按objectId删除 */
+        REMOVE_BY_ID
+    }
+
+    private static final class Operation {
+        private final OperationType type;
+        private final int key;
+        private final long objectId;
+        private final int amount;
+        private final AbstractItem item;
+
+        private Operation(OperationType type, int key, long objectId, int amount, AbstractItem item) {
+            this.type = type;
+            this.key = key;
+            this.objectId = objectId;
+            this.amount = amount;
+            this.item = item;
+        }
+    }
+}
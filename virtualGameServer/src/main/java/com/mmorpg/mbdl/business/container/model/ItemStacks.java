@@ -0,0 +1,105 @@
+package com.mmorpg.mbdl.business.container.model;
+
+import java.util.Arrays;
+
+/**
+ * 容器中同一key的所有物品，按objectId升序存放在数组中（最后一个是最新的物品），并维护总数量
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+final class ItemStacks {
+    private static final int DEFAULT_CAPACITY = 4;
+
+    private AbstractItem[] items = new AbstractItem[DEFAULT_CAPACITY];
+    private int size;
+    /** 所有物品数量之和 */
+    private long totalAmount;
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    long getTotalAmount() {
+        return totalAmount;
+    }
+
+    AbstractItem get(int index) {
+        return items[index];
+    }
+
+    /**
+     * @return objectId最大（最新）的物品，没有物品时返回null
+     */
+    AbstractItem last() {
+        return size == 0 ? null : items[size - 1];
+    }
+
+    /**
+     * 按objectId有序插入，新物品的objectId通常最大，直接追加到末尾
+     */
+    void add(AbstractItem abstractItem) {
+        if (size == items.length) {
+            items = Arrays.copyOf(items, size << 1);
+        }
+        int index = size;
+        if (size > 0 && items[size - 1].getObjectId() > abstractItem.getObjectId()) {
+            int found = indexOf(abstractItem.getObjectId());
+            if (found >= 0) {
+                throw new IllegalArgumentException(String.format("objectId为%s的物品重复放入容器", abstractItem.getObjectId()));
+            }
+            index = -(found + 1);
+            System.arraycopy(items, index, items, index + 1, size - index);
+        }
+        items[index] = abstractItem;
+        size++;
+        totalAmount += abstractItem.getAmount();
+    }
+
+    /**
+     * @return 存在并删除返回true
+     */
+    boolean remove(AbstractItem abstractItem) {
+        int index = indexOf(abstractItem.getObjectId());
+        if (index < 0) {
+            return false;
+        }
+        totalAmount -= items[index].getAmount();
+        System.arraycopy(items, index + 1, items, index, size - index - 1);
+        items[--size] = null;
+        return true;
+    }
+
+    /**
+     * 变更其中一个物品的数量，同时更新总数量
+     */
+    void setAmount(AbstractItem abstractItem, int amount) {
+        totalAmount += amount - abstractItem.getAmount();
+        abstractItem.setAmount(amount);
+    }
+
+    /**
+     * 二分查找
+     * @return 找到返回下标，否则返回-(插入位置 + 1)
+     */
+    private int indexOf(long objectId) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midId = items[mid].getObjectId();
+            if (midId < objectId) {
+                low = mid + 1;
+            } else if (midId > objectId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+}
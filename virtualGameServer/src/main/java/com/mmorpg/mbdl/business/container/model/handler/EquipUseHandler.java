@@ -1,12 +1,11 @@
 package com.mmorpg.mbdl.business.container.model.handler;
 
-import com.mmorpg.mbdl.business.container.manager.ContainerManager;
 import com.mmorpg.mbdl.business.container.model.AbstractItem;
 import com.mmorpg.mbdl.business.container.model.Container;
+import com.mmorpg.mbdl.business.container.model.ContainerTransaction;
 import com.mmorpg.mbdl.business.container.model.ItemType;
-import com.mmorpg.mbdl.business.container.packet.ItemAddResp;
-import com.mmorpg.mbdl.business.container.packet.VO.ItemUiInfo;
 import com.mmorpg.mbdl.business.container.res.ItemRes;
+import com.mmorpg.mbdl.business.container.service.ContainerService;
 import com.mmorpg.mbdl.business.equip.manager.EquipManager;
 import com.mmorpg.mbdl.business.equip.model.Equip;
 import com.mmorpg.mbdl.business.role.model.Role;
@@ -27,15 +26,15 @@ public class EquipUseHandler extends AbstractItemUseHandler {
 
     @Override
     public boolean useById(Role role, Container packContainer, AbstractItem abstractItem, ItemRes itemRes, long objectId) {
-        Equip oldEquip = EquipManager.getInstance().equip(role, (Equip) abstractItem);
-        packContainer.removeItem(abstractItem.getObjectId(), 1);
-        if (packContainer.addItem(oldEquip)) {
-            ItemAddResp itemAddResp = new ItemAddResp();
-            ItemUiInfo itemUiInfo = new ItemUiInfo(oldEquip.getObjectId(), oldEquip.getKey(), 1);
-            itemAddResp.getItemUiInfoList().add(itemUiInfo);
-            role.sendPacket(itemAddResp);
-        }
-        ContainerManager.getInstance().mergeUpdateEntity(role.getContainerEntity());
+        Equip toEquip = (Equip) abstractItem;
+        Equip oldEquip = role.getEquipEntity().getEquipTypeEquipMap().get(toEquip.getEquipType());
+        // 穿上的装备移出背包、换下的装备放回背包，合并成一次变化通知和一次持久化；
+        // 背包事务校验失败时抛出异常，装备栏保持原样，提交成功后才穿戴
+        ContainerTransaction transaction = packContainer.begin()
+                .removeItem(toEquip.getObjectId(), 1)
+                .addItem(oldEquip);
+        ContainerService.getInstance().commit(role, transaction);
+        EquipManager.getInstance().equip(role, toEquip);
         EquipManager.getInstance().mergeUpdateEntity(role.getEquipEntity());
         return true;
     }
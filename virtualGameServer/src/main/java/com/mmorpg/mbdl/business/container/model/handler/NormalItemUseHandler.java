@@ -1,10 +1,10 @@
 package com.mmorpg.mbdl.business.container.model.handler;
 
-import com.mmorpg.mbdl.business.container.manager.ContainerManager;
 import com.mmorpg.mbdl.business.container.model.AbstractItem;
 import com.mmorpg.mbdl.business.container.model.Container;
 import com.mmorpg.mbdl.business.container.model.ItemType;
 import com.mmorpg.mbdl.business.container.res.ItemRes;
+import com.mmorpg.mbdl.business.container.service.ContainerService;
 import com.mmorpg.mbdl.business.role.model.Role;
 import org.springframework.stereotype.Component;
 
@@ -23,17 +23,16 @@ public class NormalItemUseHandler extends AbstractItemUseHandler {
 
     @Override
     public boolean useById(Role role, Container packContainer, AbstractItem abstractItem, ItemRes itemRes, long objectId) {
+        // 先扣除物品，扣除失败时不会改变属性
+        ContainerService.getInstance().commit(role, packContainer.begin().removeItem(objectId, 1));
         applyPropChange(role,itemRes.getPropChangeAfterUse());
-        packContainer.removeItem(objectId, 1);
-        ContainerManager.getInstance().mergeUpdateEntity(role.getContainerEntity());
-        return false;
+        return true;
     }
 
     @Override
     public boolean useByKey(Role role, Container packContainer, int key, int amountToUse, ItemRes itemRes) {
+        ContainerService.getInstance().commit(role, packContainer.begin().removeItem(key, amountToUse));
         applyPropChange(role,itemRes.getPropChangeAfterUse());
-        packContainer.removeItem(key, amountToUse);
-        ContainerManager.getInstance().mergeUpdateEntity(role.getContainerEntity());
         return true;
     }
 }
@@ -1,5 +1,6 @@
 package com.mmorpg.mbdl.business.container.packet;
 
+import com.baidu.bjf.remoting.protobuf.annotation.Protobuf;
 import com.baidu.bjf.remoting.protobuf.annotation.ProtobufClass;
 import com.mmorpg.mbdl.business.common.PacketIdManager;
 import com.mmorpg.mbdl.framework.communicate.websocket.annotation.ProtoDesc;
@@ -14,10 +15,16 @@ import com.mmorpg.mbdl.framework.communicate.websocket.model.AbstractPacket;
 @ProtobufClass
 @ProtoDesc(description = "获取背包内容请求")
 public class GetPackContentReq extends AbstractPacket {
+    @Protobuf(description = "前端已确认的背包版本号，没有时为0")
+    private long revision;
 
     public GetPackContentReq() {
     }
 
+    public long getRevision() {
+        return revision;
+    }
+
     @Override
     public short getPacketId() {
         return PacketIdManager.GET_PACK_CONTENT_REQ;
@@ -19,10 +19,17 @@ import java.util.List;
 public class GetPackContentResp extends AbstractPacket {
     @Protobuf(description = "所有物品信息表")
     private List<ItemUiInfo> itemUiInfoList = new ArrayList<>();
+    @Protobuf(description = "背包版本号，之后的变化通过背包变化响应增量下发")
+    private long revision;
 
     public GetPackContentResp() {
     }
 
+    public GetPackContentResp setRevision(long revision) {
+        this.revision = revision;
+        return this;
+    }
+
     public List<ItemUiInfo> getItemUiInfoList() {
         return itemUiInfoList;
     }
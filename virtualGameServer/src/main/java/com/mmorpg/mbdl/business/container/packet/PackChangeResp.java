@@ -0,0 +1,57 @@
+package com.mmorpg.mbdl.business.container.packet;
+
+import com.baidu.bjf.remoting.protobuf.annotation.Protobuf;
+import com.mmorpg.mbdl.business.common.PacketIdManager;
+import com.mmorpg.mbdl.business.container.model.AbstractItem;
+import com.mmorpg.mbdl.business.container.model.ContainerChange;
+import com.mmorpg.mbdl.business.container.packet.VO.ItemUiInfo;
+import com.mmorpg.mbdl.framework.communicate.websocket.annotation.ProtoDesc;
+import com.mmorpg.mbdl.framework.communicate.websocket.model.AbstractPacket;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 背包变化响应，一次容器事务只下发一个；前端按版本号请求背包内容时，差距不大也以此增量下发
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+@ProtoDesc(description = "背包变化响应")
+public class PackChangeResp extends AbstractPacket {
+    @Protobuf(description = "新增或数量变化的物品，数量为变化后的数量")
+    private List<ItemUiInfo> changedItemList = new ArrayList<>();
+    @Protobuf(description = "被删除的物品objectId")
+    private List<Long> removedObjectIdList = new ArrayList<>();
+    @Protobuf(description = "变化前的背包版本号，与前端持有的版本号不一致时前端应重新请求背包内容", required = true)
+    private long fromRevision;
+    @Protobuf(description = "变化后的背包版本号", required = true)
+    private long toRevision;
+
+    public PackChangeResp() {
+    }
+
+    public static PackChangeResp valueOf(ContainerChange change) {
+        PackChangeResp packChangeResp = new PackChangeResp();
+        for (AbstractItem abstractItem : change.getChangedItems()) {
+            packChangeResp.changedItemList.add(new ItemUiInfo(abstractItem.getObjectId(), abstractItem.getKey(), abstractItem.getAmount()));
+        }
+        packChangeResp.removedObjectIdList.addAll(change.getRemovedObjectIds());
+        packChangeResp.fromRevision = change.getFromRevision();
+        packChangeResp.toRevision = change.getToRevision();
+        return packChangeResp;
+    }
+
+    public List<ItemUiInfo> getChangedItemList() {
+        return changedItemList;
+    }
+
+    public List<Long> getRemovedObjectIdList() {
+        return removedObjectIdList;
+    }
+
+    @Override
+    public short getPacketId() {
+        return PacketIdManager.PACK_CHANGE_RESP;
+    }
+}
@@ -3,6 +3,7 @@ package com.mmorpg.mbdl.business.container.res;
 import com.mmorpg.mbdl.business.container.model.ItemType;
 import com.mmorpg.mbdl.business.equip.model.EquipType;
 import com.mmorpg.mbdl.business.role.model.prop.PropType;
+import com.mmorpg.mbdl.framework.resource.annotation.Index;
 import com.mmorpg.mbdl.framework.resource.annotation.Key;
 import com.mmorpg.mbdl.framework.resource.annotation.ResDef;
 
@@ -21,6 +22,7 @@ public class ItemRes {
     private String name;
     private Map<PropType,Long> propChangeAfterUse;
     private int maxAmount;
+    @Index
     private ItemType itemType;
     /** 初始耐久度 */
     private int durability;
@@ -28,6 +30,7 @@ public class ItemRes {
      * 装备类型
      * @return
      */
+    @Index
     private EquipType equipType;
 
     public int getKey() {
@@ -1,18 +1,23 @@
 package com.mmorpg.mbdl.business.container.service;
 
+import com.mmorpg.mbdl.business.container.entity.ContainerEntity;
 import com.mmorpg.mbdl.business.container.manager.ContainerManager;
 import com.mmorpg.mbdl.business.container.model.AbstractItem;
 import com.mmorpg.mbdl.business.container.model.Container;
+import com.mmorpg.mbdl.business.container.model.ContainerChange;
+import com.mmorpg.mbdl.business.container.model.ContainerTransaction;
 import com.mmorpg.mbdl.business.container.model.ContainerType;
 import com.mmorpg.mbdl.business.container.model.handler.ItemUseHandlerManager;
 import com.mmorpg.mbdl.business.container.packet.GetPackContentReq;
 import com.mmorpg.mbdl.business.container.packet.GetPackContentResp;
+import com.mmorpg.mbdl.business.container.packet.PackChangeResp;
 import com.mmorpg.mbdl.business.container.packet.UseItemReq;
 import com.mmorpg.mbdl.business.container.packet.UseItemResp;
 import com.mmorpg.mbdl.business.container.packet.VO.ItemUiInfo;
 import com.mmorpg.mbdl.business.container.res.ItemRes;
 import com.mmorpg.mbdl.business.role.event.RoleLogoutEvent;
 import com.mmorpg.mbdl.business.role.model.Role;
+import com.mmorpg.mbdl.framework.thread.task.TaskDispatcher;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -43,13 +48,41 @@ public class ContainerService {
     }
 
     public void handleRoleLogoutEvent(RoleLogoutEvent roleLogoutEvent) {
-        ContainerManager.getInstance().updateEntity(roleLogoutEvent.getRole().getContainerEntity());
+        // 下线事件在玩家队列中处理，只把写库转移到阻塞线程池
+        ContainerEntity entity = roleLogoutEvent.getRole().getContainerEntity();
+        TaskDispatcher.getInstance().executeBlocking(String.format("保存玩家[%s]的背包", entity.getId()),
+                () -> ContainerManager.getInstance().updateEntity(entity));
     }
 
+    /**
+     * 提交背包事务，有变化时只下发一个变化包、只合并持久化一次
+     * @param role 背包所属角色
+     * @param transaction 背包上开启的事务
+     * @return 本次事务产生的变化
+     */
+    public ContainerChange commit(Role role, ContainerTransaction transaction) {
+        ContainerChange change = transaction.commit();
+        if (!change.isEmpty()) {
+            role.sendPacket(PackChangeResp.valueOf(change));
+            containerManager.mergeUpdateEntity(role.getContainerEntity());
+        }
+        return change;
+    }
+
+    /**
+     * 前端带上已确认的版本号时优先增量下发，版本号无效或落后太多时下发全量
+     */
     public void handleGetPackContentReq(Role role, GetPackContentReq getPackContentReq) {
         Container packContainer = role.getContainerEntity().getType2ContainerMap().get(ContainerType.PACK);
+        if (getPackContentReq.getRevision() != 0) {
+            ContainerChange change = packContainer.diffSince(getPackContentReq.getRevision());
+            if (change != null) {
+                role.sendPacket(PackChangeResp.valueOf(change));
+                return;
+            }
+        }
         Collection<AbstractItem> abstractItems = packContainer.getAll();
-        GetPackContentResp getPackContentResp = new GetPackContentResp();
+        GetPackContentResp getPackContentResp = new GetPackContentResp().setRevision(packContainer.getRevision());
         List<ItemUiInfo> itemUiInfoList = getPackContentResp.getItemUiInfoList();
         for (AbstractItem abstractItem : abstractItems) {
             ItemRes itemRes = containerManager.getItemResByKey(abstractItem.getKey());
@@ -60,8 +93,11 @@ public class ContainerService {
         role.sendPacket(getPackContentResp);
     }
 
+    /**
+     * 使用成功时背包变化已经通过{@link PackChangeResp}下发，只在使用失败时回复{@link UseItemResp}
+     */
     public void handleUseItemReq(Role role, UseItemReq useItemReq) {
-        UseItemResp useItemResp = new UseItemResp();
+        boolean result;
         Container packContainer = role.getContainerEntity().getType2ContainerMap().get(ContainerType.PACK);
         // 只有物品最大堆叠数为1时物品使用请求提供ObjectId
         if (useItemReq.getObjectId() != 0) {
@@ -73,20 +109,20 @@ public class ContainerService {
             if (itemRes.getMaxAmount() != 1) {
                 throw new RuntimeException("提供objectId的物品最大堆叠数不为1");
             }
-            boolean result = ItemUseHandlerManager.getInstance().
+            result = ItemUseHandlerManager.getInstance().
                     getItemUseHandlerByType(abstractItem.getItemType())
                     .useById(role, packContainer, abstractItem, itemRes, useItemReq.getObjectId());
-            useItemResp.setResult(result);
         } else {
             ItemRes itemRes = ContainerManager.getInstance().getItemResByKey(useItemReq.getKey());
             int amountLeft = packContainer.getAmountByKey(useItemReq.getKey());
             if (useItemReq.getAmount() > amountLeft) {
                 throw new RuntimeException("剩余物品数量不足");
             }
-            boolean result = ItemUseHandlerManager.getInstance().getItemUseHandlerByType(itemRes.getItemType())
+            result = ItemUseHandlerManager.getInstance().getItemUseHandlerByType(itemRes.getItemType())
                     .useByKey(role, packContainer, useItemReq.getKey(), useItemReq.getAmount(), itemRes);
-            useItemResp.setResult(result);
         }
-        role.sendPacket(useItemResp);
+        if (!result) {
+            role.sendPacket(new UseItemResp().setResult(false));
+        }
     }
 }
@@ -11,6 +11,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 装备管理器
@@ -36,8 +37,12 @@ public class EquipManager implements IRoleEntityManager<EquipEntity> {
     }
 
     @Override
-    public void bindEntity(Role role) {
-        EquipEntity equipEntity = equipEntityIStorage.getOrCreate(role.getRoleId(), EquipEntity::new);
+    public CompletableFuture<EquipEntity> loadEntityAsync(Role role) {
+        return equipEntityIStorage.getOrCreateAsync(role.getRoleId(), EquipEntity::new);
+    }
+
+    @Override
+    public void bindEntity(Role role, EquipEntity equipEntity) {
         role.setEquipEntity(equipEntity);
         equipEntity.getEquipTypeEquipMap().values().forEach(equip -> equip(role,equip));
     }
@@ -1,7 +1,9 @@
 package com.mmorpg.mbdl.business.equip.service;
 
+import com.mmorpg.mbdl.business.equip.entity.EquipEntity;
 import com.mmorpg.mbdl.business.equip.manager.EquipManager;
 import com.mmorpg.mbdl.business.role.event.RoleLogoutEvent;
+import com.mmorpg.mbdl.framework.thread.task.TaskDispatcher;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
@@ -26,6 +28,9 @@ public class EquipService {
     }
 
     public void handleRoleLogoutEvent(RoleLogoutEvent roleLogoutEvent) {
-        EquipManager.getInstance().updateEntity(roleLogoutEvent.getRole().getEquipEntity());
+        // 下线事件在玩家队列中处理，只把写库转移到阻塞线程池
+        EquipEntity entity = roleLogoutEvent.getRole().getEquipEntity();
+        TaskDispatcher.getInstance().executeBlocking(String.format("保存玩家[%s]的装备", entity.getId()),
+                () -> EquipManager.getInstance().updateEntity(entity));
     }
 }
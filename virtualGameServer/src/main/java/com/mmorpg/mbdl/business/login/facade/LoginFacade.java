@@ -17,7 +17,7 @@ public class LoginFacade {
     @Autowired
     private LoginService loginService;
 
-    @PacketMethod(state = SessionState.CONNECTED)
+    @PacketMethod(state = SessionState.CONNECTED, blocking = true)
     public LoginResultResp loginAuth(ISession session, LoginAuthReq req){
         return loginService.login(session,req);
     }
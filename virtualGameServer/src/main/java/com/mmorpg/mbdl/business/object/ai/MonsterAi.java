@@ -0,0 +1,122 @@
+package com.mmorpg.mbdl.business.object.ai;
+
+import com.mmorpg.mbdl.business.object.model.AbstractCreature;
+import com.mmorpg.mbdl.business.object.model.AbstractVisibleSceneObject;
+import com.mmorpg.mbdl.business.object.model.Monster;
+import com.mmorpg.mbdl.business.role.model.Role;
+import com.mmorpg.mbdl.business.role.model.prop.PropType;
+import com.mmorpg.mbdl.business.skill.combat.CombatBatch;
+import com.mmorpg.mbdl.business.skill.combat.CombatPipeline;
+import com.mmorpg.mbdl.business.skill.packet.vo.SkillHitInfo;
+import com.mmorpg.mbdl.business.skill.util.GameMathUtil;
+import com.mmorpg.mbdl.business.world.scene.model.Scene;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 怪物的简单AI：有仇恨目标时在攻击范围内普通攻击，没有目标时主动怪在索敌范围内找最近的角色<br/>
+ * 由{@link com.mmorpg.mbdl.business.world.manager.SpawnManager}在场景心跳中按出生点的定时器调用，无状态，可被多个场景同时使用
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+@Component
+public class MonsterAi {
+    /**
+     * 普通攻击在命中事件中的技能id
+     */
+    public static final int NORMAL_ATTACK_SKILL_ID = 0;
+
+    /**
+     * 思考间隔（毫秒）
+     */
+    @Value("${server.config.monster.ai.thinkInterval:500}")
+    private int thinkInterval;
+    /**
+     * 普通攻击间隔（毫秒）
+     */
+    @Value("${server.config.monster.ai.attackInterval:1500}")
+    private int attackInterval;
+    /**
+     * 普通攻击范围
+     */
+    @Value("${server.config.monster.ai.attackRange:3}")
+    private int attackRange;
+
+    public int getThinkInterval() {
+        return thinkInterval;
+    }
+
+    /**
+     * 思考一次
+     * @return 距离下一次思考的毫秒数
+     */
+    public long think(Scene scene, Monster monster, long now) {
+        CombatBatch batch = CombatPipeline.getInstance().getBatch(scene);
+        AbstractCreature target = monster.getAggroTarget();
+        if (target != null && !isValidTarget(scene, monster, target, batch)) {
+            target = null;
+            monster.setAggroTarget(null);
+        }
+        if (target == null && monster.getAggroRange() > 0) {
+            target = findNearestRole(scene, monster, batch);
+            monster.setAggroTarget(target);
+        }
+        if (target == null || distanceSq(monster, target) > (long) attackRange * attackRange) {
+            return thinkInterval;
+        }
+        attack(monster, target, batch);
+        return attackInterval;
+    }
+
+    private void attack(Monster monster, AbstractCreature target, CombatBatch batch) {
+        long damage = GameMathUtil.computeDamage(0, (int) monster.getPropManager().getPropValueOf(PropType.ATTACK), 100,
+                (int) target.getPropManager().getPropValueOf(PropType.DEFENCE));
+        long actual = batch.applyDamage(target, damage);
+        batch.addHitEvent(new SkillHitInfo(monster.getObjectId(), NORMAL_ATTACK_SKILL_ID, target.getObjectId(),
+                actual, batch.getPendingHp(target), false));
+    }
+
+    /**
+     * 目标还在场景中、还活着，并且没有跑出追击范围（索敌范围和攻击范围中较大者的两倍）
+     */
+    private boolean isValidTarget(Scene scene, Monster monster, AbstractCreature target, CombatBatch batch) {
+        if (scene.getVisibleObjById(target.getObjectId()) != target || batch.getPendingHp(target) <= 0) {
+            return false;
+        }
+        long leashRange = 2L * Math.max(monster.getAggroRange(), attackRange);
+        return distanceSq(monster, target) <= leashRange * leashRange;
+    }
+
+    private AbstractCreature findNearestRole(Scene scene, Monster monster, CombatBatch batch) {
+        // 没有玩家的场景不查询空间索引，大部分场景的大部分时间都是这种情况
+        if (scene.getObjId2Role().isEmpty()) {
+            return null;
+        }
+        long aggroRangeSq = (long) monster.getAggroRange() * monster.getAggroRange();
+        List<AbstractVisibleSceneObject> candidates = new ArrayList<>();
+        scene.queryInRange(monster.getX(), monster.getY(), monster.getAggroRange(),
+                visibleObj -> visibleObj instanceof Role && distanceSq(monster, visibleObj) <= aggroRangeSq,
+                candidates);
+        AbstractCreature nearest = null;
+        long nearestDistanceSq = Long.MAX_VALUE;
+        for (AbstractVisibleSceneObject candidate : candidates) {
+            Role role = (Role) candidate;
+            long candidateDistanceSq = distanceSq(monster, role);
+            if (candidateDistanceSq < nearestDistanceSq && batch.getPendingHp(role) > 0) {
+                nearest = role;
+                nearestDistanceSq = candidateDistanceSq;
+            }
+        }
+        return nearest;
+    }
+
+    private static long distanceSq(AbstractVisibleSceneObject a, AbstractVisibleSceneObject b) {
+        long dx = (long) a.getX() - b.getX();
+        long dy = (long) a.getY() - b.getY();
+        return dx * dx + dy * dy;
+    }
+}
@@ -4,7 +4,7 @@ import com.mmorpg.mbdl.business.object.model.AbstractVisibleSceneObject;
 import com.mmorpg.mbdl.business.object.model.SceneObjectType;
 import com.mmorpg.mbdl.business.world.model.BornData;
 import com.mmorpg.mbdl.business.world.resource.SceneObjectAttrRes;
-import com.mmorpg.mbdl.framework.resource.exposed.IStaticRes;
+import com.mmorpg.mbdl.framework.resource.exposed.IPrimitiveKeyStaticRes;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -21,7 +21,7 @@ public abstract class AbstractObjectCreator<T extends AbstractVisibleSceneObject
     @Autowired
     private ObjectCreatorManager objectCreatorManager;
     @Autowired
-    protected IStaticRes<Integer, SceneObjectAttrRes> sceneObjectAttrResMap;
+    protected IPrimitiveKeyStaticRes<Integer, SceneObjectAttrRes> sceneObjectAttrResMap;
 
     @PostConstruct
     private void register(){
@@ -41,4 +41,11 @@ public abstract class AbstractObjectCreator<T extends AbstractVisibleSceneObject
      * @return
      */
     public abstract T create(int sceneId,BornData bornData);
+
+    /**
+     * 回收不再使用的场景对象，调用者必须已经让它离开场景并且之后不再持有它，默认不回收
+     * @param sceneObject 不再使用的场景对象
+     */
+    public void recycle(T sceneObject) {
+    }
 }
@@ -1,21 +1,36 @@
 package com.mmorpg.mbdl.business.object.creator;
 
 import com.mmorpg.mbdl.business.object.model.Monster;
+import com.mmorpg.mbdl.business.object.model.MonsterPool;
 import com.mmorpg.mbdl.business.object.model.SceneObjectType;
 import com.mmorpg.mbdl.business.role.model.prop.PropType;
+import com.mmorpg.mbdl.business.world.manager.SceneManager;
 import com.mmorpg.mbdl.business.world.model.BornData;
 import com.mmorpg.mbdl.business.world.resource.SceneObjectAttrRes;
+import com.mmorpg.mbdl.business.world.scene.model.Scene;
 import com.mmorpg.mbdl.framework.common.generator.IdGeneratorFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
- * 怪物生成器
+ * 怪物生成器，怪物按配置表key放入对象池复用
  *
  * @author Sando Geek
  * @since v1.0 2018/12/28
  **/
 @Component
 public class MonsterCreator extends AbstractObjectCreator<Monster> {
+    /**
+     * 每种怪物的对象池最多保留的空闲怪物数
+     */
+    @Value("${server.config.monster.pool.maxIdle:64}")
+    private int poolMaxIdle;
+    /** 场景对象配置表key -> 对象池，多个场景会同时使用 */
+    private final Map<Integer, MonsterPool> key2Pool = new ConcurrentHashMap<>();
+
     @Override
     public SceneObjectType getObjectType() {
         return SceneObjectType.MONSTER;
@@ -23,12 +38,13 @@ public class MonsterCreator extends AbstractObjectCreator<Monster> {
 
     @Override
     public Monster create(int sceneId, BornData bornData) {
-
         SceneObjectAttrRes sceneObjectAttrRes = this.sceneObjectAttrResMap.get(bornData.getObjectKey());
-        Long id = IdGeneratorFactory.getIntance().getObjectIdGenerator().generate();
-        Monster monster = new Monster(id,sceneObjectAttrRes.getName());
-        monster.init();
+        Monster monster = getPool(bornData.getObjectKey()).acquire();
+        // 复用的怪物同样重新设置，配置表热更后生效
+        monster.setName(sceneObjectAttrRes.getName());
         monster.setSceneId(sceneId);
+        monster.setPosition(bornData.getX(), bornData.getY());
+        monster.setAggroRange(bornData.getAggroRange());
         monster.getPropManager().setRootNodeValueOnType(PropType.MAX_HP,sceneObjectAttrRes.getMaxHp());
         monster.getPropManager().setRootNodeValueOnType(PropType.MAX_MP,sceneObjectAttrRes.getMaxMp());
         monster.getPropManager().setRootNodeValueOnType(PropType.ATTACK,sceneObjectAttrRes.getAttack());
@@ -37,4 +53,19 @@ public class MonsterCreator extends AbstractObjectCreator<Monster> {
         monster.fullMP();
         return monster;
     }
+
+    @Override
+    public void recycle(Monster monster) {
+        Scene scene = SceneManager.getInstance().getSceneBySceneId(monster.getSceneId());
+        getPool(monster.getObjectKey()).release(monster, scene);
+    }
+
+    private MonsterPool getPool(int objectKey) {
+        return key2Pool.computeIfAbsent(objectKey, key -> new MonsterPool(key, poolMaxIdle, () -> {
+            // 名称在create中设置
+            Monster monster = new Monster(IdGeneratorFactory.getIntance().getObjectIdGenerator().generate(), null);
+            monster.init();
+            return monster;
+        }));
+    }
 }
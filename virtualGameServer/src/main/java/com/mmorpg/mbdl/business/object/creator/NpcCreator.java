@@ -24,6 +24,7 @@ public class NpcCreator extends AbstractObjectCreator<Npc> {
         SceneObjectAttrRes sceneObjectAttrRes = this.sceneObjectAttrResMap.get(bornData.getObjectKey());
         Npc npc = new Npc((long) bornData.getObjectKey(),sceneObjectAttrRes.getName());
         npc.setSceneId(sceneId);
+        npc.setPosition(bornData.getX(), bornData.getY());
         return npc;
     }
 }
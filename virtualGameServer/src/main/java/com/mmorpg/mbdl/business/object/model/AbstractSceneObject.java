@@ -33,6 +33,11 @@ public abstract class AbstractSceneObject implements Dispatchable<Long> {
         return name;
     }
 
+    public AbstractSceneObject setName(String name) {
+        this.name = name;
+        return this;
+    }
+
     public abstract SceneObjectType getObjectType();
 
     @Override
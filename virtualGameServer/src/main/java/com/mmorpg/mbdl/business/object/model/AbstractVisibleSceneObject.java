@@ -14,6 +14,11 @@ public abstract class AbstractVisibleSceneObject extends AbstractSceneObject {
      * 所在的场景id
      */
     private int sceneId;
+    /**
+     * 场景中的坐标，在场景中时只能通过{@link com.mmorpg.mbdl.business.world.scene.model.Scene#moveTo}修改
+     */
+    private int x;
+    private int y;
 
     public AbstractVisibleSceneObject(Long objectId, String name) {
         super(objectId, name);
@@ -28,6 +33,23 @@ public abstract class AbstractVisibleSceneObject extends AbstractSceneObject {
         return this;
     }
 
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * 设置坐标，只能在进入场景前调用，否则场景的空间索引会失效
+     */
+    public AbstractVisibleSceneObject setPosition(int x, int y) {
+        this.x = x;
+        this.y = y;
+        return this;
+    }
+
     /**
      * 获取该可见物提供给客户端的可见信息
      * @param witness 得到可见信息的角色
@@ -6,8 +6,12 @@ import com.mmorpg.mbdl.business.role.model.Role;
 import com.mmorpg.mbdl.business.role.model.prop.PropTree;
 import com.mmorpg.mbdl.business.role.model.prop.PropType;
 import com.mmorpg.mbdl.business.world.manager.SceneManager;
+import com.mmorpg.mbdl.business.world.manager.SpawnManager;
 import com.mmorpg.mbdl.business.world.scene.model.Scene;
 import com.mmorpg.mbdl.framework.communicate.websocket.model.AbstractPacket;
+import io.netty.util.ResourceLeakTracker;
+
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 怪物
@@ -16,7 +20,27 @@ import com.mmorpg.mbdl.framework.communicate.websocket.model.AbstractPacket;
  * @since v1.0 2018/12/11
  **/
 public class Monster extends AbstractCreature {
-
+    /**
+     * 场景对象配置表的key，决定回收到哪个对象池
+     */
+    private int objectKey;
+    /**
+     * 主动索敌范围，为0时是被动怪
+     */
+    private int aggroRange;
+    /**
+     * 仇恨目标，场景心跳中的AI和任意线程上的受击都会写入，只需要可见性，后写入的覆盖先写入的
+     */
+    private volatile AbstractCreature aggroTarget;
+    /**
+     * 死亡时间，为0时表示活着。血量可能在任意线程上归零，通过CAS保证只有一个线程完成死亡交接
+     */
+    private final AtomicLong deathTime = new AtomicLong();
+    /**
+     * 以下状态由{@link MonsterPool}维护
+     */
+    boolean pooled;
+    ResourceLeakTracker<Monster> leakTracker;
 
     public Monster(Long objectId, String name) {
         super(objectId, name);
@@ -37,6 +61,9 @@ public class Monster extends AbstractCreature {
                 super.doSetPropValue(newValue);
                 Scene scene = SceneManager.getInstance().getSceneBySceneId(getSceneId());
                 scene.broadcast(new MonsterHpUpdate(getObjectId(), newValue));
+                if (newValue <= 0 && deathTime.compareAndSet(0, System.currentTimeMillis())) {
+                    SpawnManager.getInstance().onMonsterDie(Monster.this);
+                }
             }
         }, PropType.CURRENT_HP);
         propManager.getOrCreateTree(PropType.CURRENT_MP);
@@ -57,4 +84,57 @@ public class Monster extends AbstractCreature {
     public SceneObjectType getObjectType() {
         return SceneObjectType.MONSTER;
     }
+
+    /**
+     * 被攻击时，没有仇恨目标则以攻击者为目标
+     */
+    public void onAttacked(AbstractCreature attacker) {
+        if (aggroTarget == null && !isDead()) {
+            aggroTarget = attacker;
+        }
+    }
+
+    /**
+     * 从对象池取出时原地重置，属性树、锁和对象id都保留，属性值由生成器重新设置
+     */
+    void resetForReuse() {
+        deathTime.set(0);
+        aggroTarget = null;
+        propManager.clearAllChildren();
+    }
+
+    public int getObjectKey() {
+        return objectKey;
+    }
+
+    public Monster setObjectKey(int objectKey) {
+        this.objectKey = objectKey;
+        return this;
+    }
+
+    public int getAggroRange() {
+        return aggroRange;
+    }
+
+    public Monster setAggroRange(int aggroRange) {
+        this.aggroRange = aggroRange;
+        return this;
+    }
+
+    public AbstractCreature getAggroTarget() {
+        return aggroTarget;
+    }
+
+    public Monster setAggroTarget(AbstractCreature aggroTarget) {
+        this.aggroTarget = aggroTarget;
+        return this;
+    }
+
+    public boolean isDead() {
+        return deathTime.get() != 0;
+    }
+
+    public long getDeathTime() {
+        return deathTime.get();
+    }
 }
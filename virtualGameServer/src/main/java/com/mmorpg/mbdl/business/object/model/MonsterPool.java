@@ -0,0 +1,134 @@
+package com.mmorpg.mbdl.business.object.model;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.mmorpg.mbdl.business.world.scene.model.Scene;
+import io.netty.util.ResourceLeakDetector;
+import io.netty.util.ResourceLeakDetectorFactory;
+import io.netty.util.ResourceLeakTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Supplier;
+
+/**
+ * 同一配置（场景对象配置表key）的怪物对象池，复用怪物的属性管理器、属性树和对象id，减少快速重生时的内存分配<br/>
+ * 取出的怪物按netty的采样级别做泄漏检测：没有归还就被回收时会输出LEAK日志；重复归还会被拒绝
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+public final class MonsterPool {
+    private static final Logger logger = LoggerFactory.getLogger(MonsterPool.class);
+    private static final ResourceLeakDetector<Monster> LEAK_DETECTOR =
+            ResourceLeakDetectorFactory.instance().newResourceLeakDetector(Monster.class);
+
+    private final int objectKey;
+    private final int maxIdle;
+    /** 池中没有空闲怪物时创建新怪物，需要完成{@link Monster#init()} */
+    private final Supplier<Monster> factory;
+    private final Deque<Monster> idleMonsters = new ArrayDeque<>();
+    private long createdCount;
+    private long reusedCount;
+
+    /**
+     * @param objectKey 场景对象配置表key
+     * @param maxIdle 最多保留的空闲怪物数，超过时归还的怪物直接丢弃
+     * @param factory 创建新怪物
+     */
+    public MonsterPool(int objectKey, int maxIdle, Supplier<Monster> factory) {
+        Preconditions.checkArgument(maxIdle >= 0, "对象池最大空闲数不能小于0，当前为%s", maxIdle);
+        this.objectKey = objectKey;
+        this.maxIdle = maxIdle;
+        this.factory = factory;
+    }
+
+    /**
+     * 取出一个已重置的怪物，没有空闲怪物时新建，属性值需要调用者重新设置
+     */
+    public Monster acquire() {
+        Monster monster;
+        synchronized (this) {
+            monster = idleMonsters.pollFirst();
+            if (monster == null) {
+                createdCount++;
+            } else {
+                reusedCount++;
+            }
+        }
+        if (monster == null) {
+            monster = factory.get();
+        } else {
+            monster.resetForReuse();
+        }
+        monster.pooled = false;
+        monster.setObjectKey(objectKey);
+        monster.leakTracker = LEAK_DETECTOR.track(monster);
+        return monster;
+    }
+
+    /**
+     * 归还怪物，调用者必须已经让怪物离开场景，并且之后不再持有它
+     * @return 放入池中返回true，重复归还或池已满返回false
+     */
+    public boolean release(Monster monster) {
+        synchronized (this) {
+            if (monster.pooled) {
+                logger.error("怪物[{}]重复归还对象池[{}]", monster.getObjectId(), objectKey);
+                return false;
+            }
+            monster.pooled = true;
+        }
+        // 不再引用其它对象，避免池中的怪物延长角色等对象的生命周期
+        monster.setAggroTarget(null);
+        ResourceLeakTracker<Monster> leakTracker = monster.leakTracker;
+        if (leakTracker != null) {
+            leakTracker.close(monster);
+            monster.leakTracker = null;
+        }
+        synchronized (this) {
+            if (idleMonsters.size() >= maxIdle) {
+                return false;
+            }
+            idleMonsters.offerFirst(monster);
+            return true;
+        }
+    }
+
+    /**
+     * 归还怪物，怪物还在场景中时拒绝归还
+     * @param scene 怪物所在的场景，为null时不检查
+     * @return 放入池中返回true，还在场景中、重复归还或池已满返回false
+     */
+    public boolean release(Monster monster, Scene scene) {
+        if (scene != null && scene.getVisibleObjById(monster.getObjectId()) == monster) {
+            logger.error("怪物[{}]还在场景[{}]中，不能归还对象池[{}]", monster.getObjectId(), monster.getSceneId(), objectKey);
+            return false;
+        }
+        return release(monster);
+    }
+
+    public synchronized int getIdleCount() {
+        return idleMonsters.size();
+    }
+
+    public synchronized long getCreatedCount() {
+        return createdCount;
+    }
+
+    public synchronized long getReusedCount() {
+        return reusedCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("objectKey", objectKey)
+                .add("idle", idleMonsters.size())
+                .add("created", createdCount)
+                .add("reused", reusedCount)
+                .toString();
+    }
+}
@@ -19,7 +19,7 @@ public class RegisterFacade {
     @Autowired
     private RegisterService registerService;
     private static Logger logger = LoggerFactory.getLogger(RegisterFacade.class);
-    @PacketMethod(state = SessionState.CONNECTED)
+    @PacketMethod(state = SessionState.CONNECTED, blocking = true)
     public RegisterResp register(ISession session, RegisterReq registerReq){
         return registerService.register(registerReq);
     }
@@ -27,24 +27,24 @@ public class RoleFacade {
     @Autowired
     private RoleService roleService;
 
-    @PacketMethod(state = SessionState.LOGINED)
+    @PacketMethod(state = SessionState.LOGINED, blocking = true)
     public GetRoleListResp handleGetRoleListReq(ISession session, GetRoleListReq getRoleListReq) {
         return roleService.handleGetRoleListReq(session,getRoleListReq);
     }
 
-    @PacketMethod(state = SessionState.LOGINED)
+    @PacketMethod(state = SessionState.LOGINED, blocking = true)
     public AddRoleResp handleAddRoleReq(ISession session, AddRoleReq addRoleReq) {
         return roleService.handleAddRoleReq(session,addRoleReq);
     }
 
-    @PacketMethod(state = SessionState.LOGINED)
+    @PacketMethod(state = SessionState.LOGINED, blocking = true)
     public DeleteRoleResp handleDeleteRoleReq(ISession session, DeleteRoleReq deleteRoleReq) {
         return roleService.handleDeleteRoleReq(session,deleteRoleReq);
     }
 
     @PacketMethod(state = SessionState.LOGINED)
-    public ChooseRoleResp handleChooseRoleReq(ISession session, ChooseRoleReq chooseRoleReq) {
-        return roleService.handleChooseRoleReq(session,chooseRoleReq);
+    public void handleChooseRoleReq(ISession session, ChooseRoleReq chooseRoleReq) {
+        roleService.handleChooseRoleReq(session,chooseRoleReq);
     }
 
     @Subscribe
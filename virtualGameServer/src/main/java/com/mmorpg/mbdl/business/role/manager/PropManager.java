@@ -51,4 +51,11 @@ public class PropManager {
     public void setRootNodeValueOnType(PropType propType, long newValue) {
         type2Tree.get(propType).setRootNodeValue(newValue);
     }
+
+    /**
+     * 清除所有属性树的子节点（如buff、装备加成），保留属性树本身，用于复用生物时原地重置
+     */
+    public void clearAllChildren() {
+        type2Tree.values().forEach(PropTree::clearChildren);
+    }
 }
@@ -0,0 +1,146 @@
+package com.mmorpg.mbdl.business.role.manager;
+
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mmorpg.mbdl.business.container.entity.ContainerEntity;
+import com.mmorpg.mbdl.business.equip.entity.EquipEntity;
+import com.mmorpg.mbdl.business.skill.entity.SkillEntity;
+import com.mmorpg.mbdl.framework.storage.core.IStorage;
+import com.mmorpg.mbdl.framework.storage.core.StorageExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 角色聚合加载器<br>
+ * 批量预热角色相关实体（背包、装备、技能）的缓存。同一时间发起的预热请求会合并成一批，
+ * 每种实体只用一次in查询获取，登录高峰（如停服维护后）时大幅减少数据库查询次数
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+@Component
+public class RoleAggregateLoader {
+    private static final Logger logger = LoggerFactory.getLogger(RoleAggregateLoader.class);
+    /** 单次in查询的最大主键数 */
+    private static final int MAX_BATCH_SIZE = 500;
+    private static RoleAggregateLoader self;
+
+    @Autowired
+    private IStorage<Long, ContainerEntity> containerEntityIStorage;
+    @Autowired
+    private IStorage<Long, EquipEntity> equipEntityIStorage;
+    @Autowired
+    private IStorage<Long, SkillEntity> skillEntityIStorage;
+
+    /** 等待加载的请求 */
+    private final ConcurrentLinkedQueue<PendingPrefetch> pendingQueue = new ConcurrentLinkedQueue<>();
+    /** 是否有线程正在处理等待加载的请求 */
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    /**
+     * 处理线程需要等待查询完成，使用单独的线程：放到阻塞线程池时，调用者在阻塞线程池中等待预热完成，
+     * 登录高峰时阻塞线程全部在等待而处理任务排在它们后面，会死锁
+     */
+    private final ExecutorService drainExecutor = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("角色预热线程-%d").setDaemon(true).build());
+
+    @PostConstruct
+    private void init() {
+        self = this;
+    }
+
+    public static RoleAggregateLoader getInstance() {
+        return self;
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        drainExecutor.shutdown();
+    }
+
+    /**
+     * 预热角色相关实体的缓存
+     * @param roleIds 角色id
+     * @return 预热完成的future
+     */
+    public CompletableFuture<Void> prefetch(Collection<Long> roleIds) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (roleIds.isEmpty()) {
+            future.complete(null);
+            return future;
+        }
+        pendingQueue.offer(new PendingPrefetch(roleIds, future));
+        if (draining.compareAndSet(false, true)) {
+            drainExecutor.execute(this::drain);
+        }
+        return future;
+    }
+
+    /**
+     * 处理等待中的请求，处理一批的过程中新到的请求会合并到下一批
+     */
+    private void drain() {
+        for (;;) {
+            List<PendingPrefetch> batch = new ArrayList<>();
+            PendingPrefetch pending;
+            while ((pending = pendingQueue.poll()) != null) {
+                batch.add(pending);
+            }
+            if (batch.isEmpty()) {
+                draining.set(false);
+                // 释放标记后可能有新请求进来而没有线程处理
+                if (pendingQueue.isEmpty() || !draining.compareAndSet(false, true)) {
+                    return;
+                }
+                continue;
+            }
+            load(batch);
+        }
+    }
+
+    private void load(List<PendingPrefetch> batch) {
+        Set<Long> roleIds = new LinkedHashSet<>();
+        for (PendingPrefetch pending : batch) {
+            roleIds.addAll(pending.roleIds);
+        }
+        try {
+            for (List<Long> partition : Iterables.partition(roleIds, MAX_BATCH_SIZE)) {
+                // 三种实体各一次查询，并行执行
+                CompletableFuture.allOf(
+                        CompletableFuture.runAsync(() -> containerEntityIStorage.getAll(partition), StorageExecutor.getInstance()),
+                        CompletableFuture.runAsync(() -> equipEntityIStorage.getAll(partition), StorageExecutor.getInstance()),
+                        CompletableFuture.runAsync(() -> skillEntityIStorage.getAll(partition), StorageExecutor.getInstance())
+                ).join();
+            }
+            logger.debug("预热{}个角色的实体缓存，合并了{}个请求", roleIds.size(), batch.size());
+            batch.forEach(pending -> pending.future.complete(null));
+        } catch (Exception e) {
+            logger.error("预热{}个角色的实体缓存失败", roleIds.size(), e);
+            batch.forEach(pending -> pending.future.completeExceptionally(e));
+        }
+    }
+
+    private static class PendingPrefetch {
+        private final Collection<Long> roleIds;
+        private final CompletableFuture<Void> future;
+
+        private PendingPrefetch(Collection<Long> roleIds, CompletableFuture<Void> future) {
+            this.roleIds = roleIds;
+            this.future = future;
+        }
+    }
+}
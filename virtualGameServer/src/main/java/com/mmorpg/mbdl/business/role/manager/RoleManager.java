@@ -7,7 +7,7 @@ import com.mmorpg.mbdl.business.role.model.RoleType;
 import com.mmorpg.mbdl.business.role.packet.AddRoleReq;
 import com.mmorpg.mbdl.business.role.resource.RoleLevelRes;
 import com.mmorpg.mbdl.business.shop.res.ConditionTestRes;
-import com.mmorpg.mbdl.business.common.resource.GlobalSettingRes;
+import com.mmorpg.mbdl.business.common.resource.GlobalSetting;
 import com.mmorpg.mbdl.framework.common.generator.IdGeneratorFactory;
 import com.mmorpg.mbdl.framework.common.utils.CommonUtils;
 import com.mmorpg.mbdl.framework.communicate.websocket.model.ISession;
@@ -18,8 +18,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -41,11 +46,11 @@ public class RoleManager {
         return self;
     }
     private static Logger logger = LoggerFactory.getLogger(RoleManager.class);
+    /** 选择角色时等待预热的最长时间，超时后按需加载 */
+    private static final long PREFETCH_TIMEOUT_MILLIS = 3000;
     @Autowired
     private RoleEntityDao roleEntityDao;
     @Autowired
-    private IStaticRes<String, GlobalSettingRes> globalSettingResIStaticRes;
-    @Autowired
     private IStaticRes<Short, RoleLevelRes> roleLevelResMap;
     @Autowired
     private IStaticRes<Integer, ConditionTestRes> conditionTestResIStaticRes;
@@ -111,7 +116,7 @@ public class RoleManager {
                 .setName(addRoleReq.getRoleName())
                 .setRoleId(IdGeneratorFactory.getIntance().getRoleIdGenerator().generate())
                 .setRoleType(addRoleReq.getRoleType())
-                .setSceneId(globalSettingResIStaticRes.get("InitMapId").getValue())
+                .setSceneId(GlobalSetting.INIT_MAP_ID.getValue())
                 .setServerToken(SERVER_TOKEN);
         roleEntityDao.create(roleEntityToCreate);
         return roleEntityToCreate;
@@ -128,24 +133,40 @@ public class RoleManager {
 
 
     /**
-     * 初始化角色
+     * 批量预热角色的实体缓存，登录高峰时多个角色的加载会合并查询，预热失败不影响后续按需加载<br/>
+     * 最多等待{@link #PREFETCH_TIMEOUT_MILLIS}毫秒，需要在阻塞线程池中调用
+     * @param roleId 角色id
+     */
+    public void prefetchRoleEntities(long roleId) {
+        try {
+            RoleAggregateLoader.getInstance().prefetch(Collections.singletonList(roleId)).get(PREFETCH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            logger.warn("预热玩家[roleId={}]的实体缓存失败", roleId, e.getCause());
+        } catch (TimeoutException e) {
+            logger.warn("预热玩家[roleId={}]的实体缓存超过{}ms，改为按需加载", roleId, PREFETCH_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 初始化角色，需要在会话的队列中调用，实体加载完成后回到角色的队列绑定
      * @param session
      * @param roleEntity
-     * @return 成功，true,失败,false
+     * @return 实体绑定完成后得到角色的future，重复初始化时结果为null
      */
-    public Role initRole(ISession session,RoleEntity roleEntity){
+    public CompletableFuture<Role> initRole(ISession session,RoleEntity roleEntity){
         Role role = new Role(roleEntity.getId(), roleEntity.getName());
         role.setRoleEntity(roleEntity);
         role.setSession(session);
         session.bindUser(role);
         role.init();
-        role.bindEntity();
         if (getSession2Role().values().contains(role)){
             logger.error("玩家[roleId={}]重复初始化",role.getRoleId());
-            return null;
+            return CompletableFuture.completedFuture(null);
         }
         addRole(role);
-        return role;
+        return role.bindEntity().thenApply(v -> role);
     }
 
     /**
@@ -17,15 +17,18 @@ import com.mmorpg.mbdl.business.role.packet.*;
 import com.mmorpg.mbdl.business.role.resource.RoleLevelRes;
 import com.mmorpg.mbdl.business.skill.entity.SkillEntity;
 import com.mmorpg.mbdl.business.skill.manager.SkillManager;
+import com.mmorpg.mbdl.business.skill.res.SkillRes;
 import com.mmorpg.mbdl.business.world.manager.SceneManager;
 import com.mmorpg.mbdl.business.world.scene.model.Scene;
 import com.mmorpg.mbdl.framework.communicate.websocket.model.AbstractPacket;
 import com.mmorpg.mbdl.framework.communicate.websocket.model.ISession;
+import com.mmorpg.mbdl.framework.thread.task.TaskDispatcher;
 import io.netty.channel.ChannelFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 角色
@@ -42,18 +45,26 @@ public class Role extends AbstractCreature {
     private ContainerEntity containerEntity;
     private EquipEntity equipEntity;
     private SkillEntity skillEntity;
+    /** 技能下标({@link SkillRes#getIndex()}) -> 技能上次使用时间(毫秒)，从未使用过为0，只在角色的队列中读写 */
+    private long[] skillLastUseTimes = new long[0];
 
     public Role(Long objectId, String name) {
         super(objectId,name);
     }
 
     /**
-     * 绑定各种实体
+     * 绑定各种实体，各实体在存储层I/O线程池中并行加载，全部加载完成后回到角色的队列按顺序绑定
+     * @return 绑定完成的future，在角色的队列中完成
      */
-    public void bindEntity() {
-        ContainerManager.getInstance().bindContainerEntity(this);
-        EquipManager.getInstance().bindEntity(this);
-        SkillManager.getInstance().bindEntity(this);
+    public CompletableFuture<Void> bindEntity() {
+        CompletableFuture<ContainerEntity> containerFuture = ContainerManager.getInstance().loadEntityAsync(this);
+        CompletableFuture<EquipEntity> equipFuture = EquipManager.getInstance().loadEntityAsync(this);
+        CompletableFuture<SkillEntity> skillFuture = SkillManager.getInstance().loadEntityAsync(this);
+        return CompletableFuture.allOf(containerFuture, equipFuture, skillFuture).thenRunAsync(() -> {
+            ContainerManager.getInstance().bindEntity(this, containerFuture.join());
+            EquipManager.getInstance().bindEntity(this, equipFuture.join());
+            SkillManager.getInstance().bindEntity(this, skillFuture.join());
+        }, TaskDispatcher.getInstance().getQueueExecutor(this));
     }
 
     /**
@@ -251,6 +262,15 @@ public class Role extends AbstractCreature {
         return this;
     }
 
+    public long[] getSkillLastUseTimes() {
+        return skillLastUseTimes;
+    }
+
+    public Role setSkillLastUseTimes(long[] skillLastUseTimes) {
+        this.skillLastUseTimes = skillLastUseTimes;
+        return this;
+    }
+
     public Long getRoleId(){
         return getObjectId();
     }
@@ -100,6 +100,26 @@ public class PropNode {
         }
     }
     
+    /**
+     * 删除所有子节点，属性树的值减去所有子节点的值之和
+     */
+    public void removeAllChildren() {
+        try {
+            propTree.getTreeRWLock().writeLock().lock();
+            if (childPropNodeMap.isEmpty()) {
+                return;
+            }
+            long total = 0;
+            for (PropNode propNode : childPropNodeMap.values()) {
+                total += getTotal(propNode);
+            }
+            childPropNodeMap.clear();
+            propTree.addPropValue(-total);
+        } finally {
+            propTree.getTreeRWLock().writeLock().unlock();
+        }
+    }
+
     public PropNode getChild(String name) {
         try {
             propTree.getTreeRWLock().readLock().lock();
@@ -73,6 +73,13 @@ public class PropTree {
         return rootNode.getChild(name);
     }
 
+    /**
+     * 删除根节点的所有子节点，属性值恢复为根节点的值，用于复用生物时原地重置属性树
+     */
+    public void clearChildren() {
+        rootNode.removeAllChildren();
+    }
+
     /**
      * 修改属性的真实值,需要保持为唯一赋值属性的入口，不能新增其它方法修改属性值
      * @param newValue
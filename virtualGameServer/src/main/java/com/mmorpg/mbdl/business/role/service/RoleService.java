@@ -3,6 +3,7 @@ package com.mmorpg.mbdl.business.role.service;
 import com.mmorpg.mbdl.business.object.packet.RoleUiInfoResp;
 import com.mmorpg.mbdl.business.role.entity.RoleEntity;
 import com.mmorpg.mbdl.business.role.event.RoleLogoutEvent;
+import com.mmorpg.mbdl.business.role.manager.RoleAggregateLoader;
 import com.mmorpg.mbdl.business.role.manager.RoleManager;
 import com.mmorpg.mbdl.business.role.model.Role;
 import com.mmorpg.mbdl.business.role.model.prop.PropType;
@@ -22,6 +23,7 @@ import org.springframework.stereotype.Component;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * 角色服务
@@ -54,6 +56,8 @@ public class RoleService {
 
     public GetRoleListResp handleGetRoleListReq(ISession session, GetRoleListReq getRoleListReq) {
         List<RoleEntity> roleEntities = roleManager.getRoleEntityList(session.getAccount());
+        // 玩家接下来大概率会选择其中一个角色，提前异步预热缓存
+        RoleAggregateLoader.getInstance().prefetch(roleEntities.stream().map(RoleEntity::getId).collect(Collectors.toList()));
         GetRoleListResp roleListResp = new GetRoleListResp();
         List<RoleInfo> roleInfoList = roleListResp.getRoleInfoList();
         roleEntities.stream().forEach(roleEntity -> {
@@ -79,10 +83,51 @@ public class RoleService {
         return deleteRoleResp;
     }
 
-    public ChooseRoleResp handleChooseRoleReq(ISession session, ChooseRoleReq chooseRoleReq) {
+    /**
+     * 选择角色，查库和预热缓存在阻塞线程池执行，角色初始化和会话状态变更回到会话队列执行，
+     * 阻塞期间会话队列保持占用，后续请求不会插到角色初始化之前；实体绑定完成后才回复并进入游戏状态
+     */
+    public void handleChooseRoleReq(ISession session, ChooseRoleReq chooseRoleReq) {
+        TaskDispatcher.getInstance().dispatch(new AbstractTask<ISession<Long>, Long>(session) {
+            private RoleEntity roleEntity;
+
+            @Override
+            public String taskName() {
+                return "选择角色";
+            }
+
+            @Override
+            public void execute() {
+                roleEntity = roleManager.findByNameAndServerToken(chooseRoleReq.getName());
+                if (roleEntity != null) {
+                    roleManager.prefetchRoleEntities(roleEntity.getId());
+                }
+            }
+
+            @Override
+            protected void afterBlockingExecute() {
+                // 同一会话连续发来的选择请求，只处理第一个
+                if (session.getState() != SessionState.LOGINED || session.getUser() != null) {
+                    return;
+                }
+                if (roleEntity == null) {
+                    session.sendPacket(new ChooseRoleResp().setResult(false));
+                    return;
+                }
+                // 实体绑定完成后在角色的队列中回复并进入游戏状态
+                roleManager.initRole(session, roleEntity).whenComplete((role, throwable) -> {
+                    if (throwable != null) {
+                        logger.error("初始化玩家[roleId={}]失败", roleEntity.getId(), throwable);
+                        role = null;
+                    }
+                    session.sendPacket(chooseRole(session, role));
+                });
+            }
+        }.setBlocking(true).setMaxExecuteTime(200, TimeUnit.MILLISECONDS));
+    }
+
+    private ChooseRoleResp chooseRole(ISession session, Role role) {
         ChooseRoleResp chooseRoleResp = new ChooseRoleResp().setResult(false);
-        RoleEntity roleEntity = roleManager.findByNameAndServerToken(chooseRoleReq.getName());
-        Role role = roleManager.initRole(session, roleEntity);
         if (role!=null){
             chooseRoleResp.setResult(true);
             RoleUiInfoResp roleUiInfoResp = new RoleUiInfoResp();
@@ -109,7 +154,7 @@ public class RoleService {
         if (role == null){
             return;
         }
-        // logout事件转移到玩家队列处理
+        // logout事件转移到玩家队列处理，订阅者中的写库操作各自转移到阻塞线程池
         TaskDispatcher.getInstance().dispatch(new AbstractTask<Role, Long>(role) {
             @Override
             public String taskName() {
@@ -125,7 +170,9 @@ public class RoleService {
 
     public void handleRoleLogoutEvent(RoleLogoutEvent roleLogoutEvent) {
         Role role = roleLogoutEvent.getRole();
-        roleManager.updateRoleEntity(role.getRoleEntity());
+        RoleEntity roleEntity = role.getRoleEntity();
+        TaskDispatcher.getInstance().executeBlocking(String.format("保存玩家[%s]的角色数据", roleEntity.getId()),
+                () -> roleManager.updateRoleEntity(roleEntity));
         roleManager.removeRoleBySession(role.getSession());
     }
 }
@@ -0,0 +1,86 @@
+package com.mmorpg.mbdl.business.skill.combat;
+
+import com.mmorpg.mbdl.business.object.model.AbstractCreature;
+import com.mmorpg.mbdl.business.role.model.prop.PropType;
+import com.mmorpg.mbdl.business.skill.packet.SkillHitResp;
+import com.mmorpg.mbdl.business.skill.packet.vo.SkillHitInfo;
+import com.mmorpg.mbdl.business.world.scene.model.Scene;
+import io.netty.util.collection.LongObjectHashMap;
+import io.netty.util.collection.LongObjectMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一个场景一次心跳内的战斗结算批次：同一目标的多次扣血合并成一次属性修改（只触发一次血量同步），
+ * 所有命中事件合并成一个{@link SkillHitResp}广播
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+public class CombatBatch {
+    private final LongObjectMap<PendingHp> objectId2PendingHp = new LongObjectHashMap<>();
+    private final List<PendingHp> pendingHps = new ArrayList<>();
+    private SkillHitResp skillHitResp = new SkillHitResp();
+
+    /**
+     * 记录一次扣血，扣除量不超过目标在本批次中的剩余血量
+     * @return 实际扣除的血量
+     */
+    public long applyDamage(AbstractCreature target, long damage) {
+        PendingHp pendingHp = getOrCreatePendingHp(target);
+        long actual = Math.min(Math.max(damage, 0), pendingHp.hp);
+        pendingHp.hp -= actual;
+        return actual;
+    }
+
+    /**
+     * @return 目标计入本批次扣血后的血量
+     */
+    public long getPendingHp(AbstractCreature target) {
+        PendingHp pendingHp = objectId2PendingHp.get((long) target.getObjectId());
+        return pendingHp == null ? target.getPropManager().getPropValueOf(PropType.CURRENT_HP) : pendingHp.hp;
+    }
+
+    public void addHitEvent(SkillHitInfo skillHitInfo) {
+        skillHitResp.addHit(skillHitInfo);
+    }
+
+    /**
+     * 把本批次的血量变化写回目标，并广播命中事件，之后批次可以复用
+     */
+    void flush(Scene scene) {
+        for (PendingHp pendingHp : pendingHps) {
+            // 按差值修改，期间其它线程对血量的修改（如使用药品）不会被覆盖
+            pendingHp.target.changeHp(pendingHp.hp - pendingHp.originalHp);
+        }
+        pendingHps.clear();
+        objectId2PendingHp.clear();
+        if (!skillHitResp.getHitInfoList().isEmpty()) {
+            scene.broadcast(skillHitResp);
+            skillHitResp = new SkillHitResp();
+        }
+    }
+
+    private PendingHp getOrCreatePendingHp(AbstractCreature target) {
+        PendingHp pendingHp = objectId2PendingHp.get((long) target.getObjectId());
+        if (pendingHp == null) {
+            pendingHp = new PendingHp(target, target.getPropManager().getPropValueOf(PropType.CURRENT_HP));
+            objectId2PendingHp.put((long) target.getObjectId(), pendingHp);
+            pendingHps.add(pendingHp);
+        }
+        return pendingHp;
+    }
+
+    private static final class PendingHp {
+        private final AbstractCreature target;
+        private final long originalHp;
+        private long hp;
+
+        private PendingHp(AbstractCreature target, long originalHp) {
+            this.target = target;
+            this.originalHp = originalHp;
+            this.hp = originalHp;
+        }
+    }
+}
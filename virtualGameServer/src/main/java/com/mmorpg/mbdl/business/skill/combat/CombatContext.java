@@ -0,0 +1,160 @@
+package com.mmorpg.mbdl.business.skill.combat;
+
+import com.mmorpg.mbdl.business.equip.model.Equip;
+import com.mmorpg.mbdl.business.object.model.AbstractCreature;
+import com.mmorpg.mbdl.business.role.model.Role;
+import com.mmorpg.mbdl.business.skill.res.SkillRes;
+import com.mmorpg.mbdl.business.world.scene.model.Scene;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一次施法的上下文，请求线程中创建（施法意图），在场景心跳中依次经过各个{@link ICombatStage}
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+public class CombatContext {
+    private static final long[] EMPTY_LONGS = new long[0];
+    private static final boolean[] EMPTY_BOOLEANS = new boolean[0];
+
+    private final Role caster;
+    private final SkillRes skillRes;
+    private final AbstractCreature mainTarget;
+    private Scene scene;
+    private long now;
+    private List<AbstractCreature> targets = Collections.emptyList();
+    /** 以下数组与targets下标一一对应 */
+    private long[] damages = EMPTY_LONGS;
+    private long[] remainingHps = EMPTY_LONGS;
+    private boolean[] criticals = EMPTY_BOOLEANS;
+    private boolean failed;
+    private String failReason;
+    /** 以下为请求线程中扣除的消耗，结算失败时退还，只在施法者的队列中读写 */
+    private Equip chargedWeapon;
+    private int chargedDurability;
+    private long chargedMp;
+    private long castTime;
+    private long previousLastUseTime;
+
+    public CombatContext(Role caster, SkillRes skillRes, AbstractCreature mainTarget) {
+        this.caster = caster;
+        this.skillRes = skillRes;
+        this.mainTarget = mainTarget;
+    }
+
+    void begin(Scene scene, long now) {
+        this.scene = scene;
+        this.now = now;
+    }
+
+    /**
+     * 终止本次施法
+     * @param reason 发给施法者的提示，为null时不提示
+     */
+    public void fail(String reason) {
+        this.failed = true;
+        this.failReason = reason;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    public String getFailReason() {
+        return failReason;
+    }
+
+    public Role getCaster() {
+        return caster;
+    }
+
+    public SkillRes getSkillRes() {
+        return skillRes;
+    }
+
+    public AbstractCreature getMainTarget() {
+        return mainTarget;
+    }
+
+    public Scene getScene() {
+        return scene;
+    }
+
+    /**
+     * @return 本次心跳的时间（毫秒）
+     */
+    public long getNow() {
+        return now;
+    }
+
+    public List<AbstractCreature> getTargets() {
+        return targets;
+    }
+
+    /**
+     * 设置命中的目标，同时按目标数创建伤害等数组
+     */
+    public void setTargets(List<AbstractCreature> targets) {
+        int size = targets.size();
+        this.targets = targets;
+        this.damages = new long[size];
+        this.remainingHps = new long[size];
+        this.criticals = new boolean[size];
+    }
+
+    /**
+     * @return 每个目标受到的伤害，COMPUTE阶段为计算值，APPLY阶段后为实际扣除的血量
+     */
+    public long[] getDamages() {
+        return damages;
+    }
+
+    /**
+     * @return 每个目标受击后的血量，APPLY阶段后有效
+     */
+    public long[] getRemainingHps() {
+        return remainingHps;
+    }
+
+    public boolean[] getCriticals() {
+        return criticals;
+    }
+
+    /**
+     * 记录扣除的消耗，在施法者的队列中调用
+     * @param weapon 扣除耐久度的武器
+     * @param durability 实际扣除的耐久度
+     * @param mp 扣除的蓝量
+     * @param castTime 施法时间，即新的技能上次使用时间
+     * @param previousLastUseTime 施法前的技能上次使用时间
+     */
+    public void recordCost(Equip weapon, int durability, long mp, long castTime, long previousLastUseTime) {
+        this.chargedWeapon = weapon;
+        this.chargedDurability = durability;
+        this.chargedMp = mp;
+        this.castTime = castTime;
+        this.previousLastUseTime = previousLastUseTime;
+    }
+
+    public Equip getChargedWeapon() {
+        return chargedWeapon;
+    }
+
+    public int getChargedDurability() {
+        return chargedDurability;
+    }
+
+    public long getChargedMp() {
+        return chargedMp;
+    }
+
+    public long getCastTime() {
+        return castTime;
+    }
+
+    public long getPreviousLastUseTime() {
+        return previousLastUseTime;
+    }
+}
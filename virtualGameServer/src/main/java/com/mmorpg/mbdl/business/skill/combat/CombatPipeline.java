@@ -0,0 +1,140 @@
+package com.mmorpg.mbdl.business.skill.combat;
+
+import com.mmorpg.mbdl.business.common.packet.GlobalMessage;
+import com.mmorpg.mbdl.business.common.packet.vo.GlobalMessageType;
+import com.mmorpg.mbdl.business.skill.service.SkillService;
+import com.mmorpg.mbdl.business.world.manager.SceneManager;
+import com.mmorpg.mbdl.business.world.scene.model.ISceneTickHandler;
+import com.mmorpg.mbdl.business.world.scene.model.Scene;
+import com.mmorpg.mbdl.framework.thread.task.TaskDispatcher;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 战斗结算流水线：施法请求只把{@link CombatContext}放入所在场景的队列，
+ * 场景心跳时依次让每个施法经过所有{@link ICombatStage}，最后统一写回血量并广播命中事件
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+@Component
+public class CombatPipeline implements ISceneTickHandler {
+    private static final Logger logger = LoggerFactory.getLogger(CombatPipeline.class);
+    private static CombatPipeline self;
+
+    /** 保证所有场景已经创建 */
+    @Autowired
+    private SceneManager sceneManager;
+    @Autowired
+    private List<ICombatStage> combatStageList;
+    private ICombatStage[] stages;
+    /** 场景id -> 场景的战斗状态，启动后只读 */
+    private IntObjectMap<SceneCombat> sceneId2Combat;
+
+    @PostConstruct
+    private void init() {
+        self = this;
+        List<ICombatStage> sortedStages = new ArrayList<>(combatStageList);
+        sortedStages.sort(Comparator.comparing(ICombatStage::getStageType).thenComparingInt(ICombatStage::order));
+        stages = sortedStages.toArray(new ICombatStage[0]);
+        IntObjectMap<SceneCombat> sceneId2Combat = new IntObjectHashMap<>();
+        for (Scene scene : sceneManager.getScenes()) {
+            sceneId2Combat.put(scene.getSceneId(), new SceneCombat());
+        }
+        this.sceneId2Combat = sceneId2Combat;
+    }
+
+    public static CombatPipeline getInstance() {
+        return self;
+    }
+
+    /**
+     * 提交施法意图，在场景下一次心跳时结算；每个施法者同时只能有一个待结算的施法，
+     * 队列长度不超过场景中的玩家数，客户端无法刷满队列
+     * @return 施法者已有待结算的施法时返回false，本次施法被拒绝
+     */
+    public boolean submit(Scene scene, CombatContext context) {
+        SceneCombat sceneCombat = sceneId2Combat.get(scene.getSceneId());
+        if (sceneCombat == null) {
+            throw new RuntimeException(String.format("场景[%s]没有初始化战斗状态", scene.getSceneId()));
+        }
+        if (!sceneCombat.pendingCasterIds.add(context.getCaster().getObjectId())) {
+            return false;
+        }
+        sceneCombat.contexts.offer(context);
+        return true;
+    }
+
+    /**
+     * 获取场景本次心跳的结算批次，其它心跳处理器（如怪物AI）造成的伤害也记入此批次，
+     * 由战斗结算统一写回血量和广播，只能在{@link #order()}更小的心跳处理器中调用
+     */
+    public CombatBatch getBatch(Scene scene) {
+        SceneCombat sceneCombat = sceneId2Combat.get(scene.getSceneId());
+        if (sceneCombat == null) {
+            throw new RuntimeException(String.format("场景[%s]没有初始化战斗状态", scene.getSceneId()));
+        }
+        return sceneCombat.batch;
+    }
+
+    @Override
+    public void tick(Scene scene, long now) {
+        SceneCombat sceneCombat = sceneId2Combat.get(scene.getSceneId());
+        if (sceneCombat == null) {
+            return;
+        }
+        CombatBatch batch = sceneCombat.batch;
+        try {
+            CombatContext context;
+            while ((context = sceneCombat.contexts.poll()) != null) {
+                sceneCombat.pendingCasterIds.remove(context.getCaster().getObjectId());
+                context.begin(scene, now);
+                try {
+                    process(context, batch);
+                } catch (Exception e) {
+                    logger.error("[{}]释放技能[{}]结算失败", context.getCaster(), context.getSkillRes().getSkillId(), e);
+                }
+            }
+        } finally {
+            batch.flush(scene);
+        }
+    }
+
+    private void process(CombatContext context, CombatBatch batch) {
+        for (ICombatStage stage : stages) {
+            stage.process(context, batch);
+            if (context.isFailed()) {
+                if (context.getFailReason() != null) {
+                    context.getCaster().sendPacket(new GlobalMessage(GlobalMessageType.ERROR, context.getFailReason()));
+                }
+                // 没有命中任何目标，消耗在施法者的队列中退还，扣除消耗的任务一定已经执行完
+                TaskDispatcher.getInstance().getQueueExecutor(context.getCaster())
+                        .execute(() -> SkillService.getInstance().refundCost(context));
+                return;
+            }
+        }
+    }
+
+    /**
+     * 一个场景的施法队列和结算批次，批次只在场景心跳中使用
+     */
+    private static final class SceneCombat {
+        private final Queue<CombatContext> contexts = new ConcurrentLinkedQueue<>();
+        /** 有待结算施法的施法者id */
+        private final Set<Long> pendingCasterIds = ConcurrentHashMap.newKeySet();
+        private final CombatBatch batch = new CombatBatch();
+    }
+}
@@ -0,0 +1,18 @@
+package com.mmorpg.mbdl.business.skill.combat;
+
+/**
+ * 战斗结算阶段，按声明顺序执行
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+public enum CombatStageType {
+    /** 校验施法者和目标是否仍在场景中，不修改任何状态；cd、蓝量等消耗在施法者自己的队列中校验并扣除 */
+    VALIDATE,
+    /** 选取目标、计算伤害（暴击、buff加成等在此阶段修改伤害） */
+    COMPUTE,
+    /** 把伤害记入本次心跳的批次 */
+    APPLY,
+    /** 生成命中事件 */
+    NOTIFY
+}
@@ -0,0 +1,30 @@
+package com.mmorpg.mbdl.business.skill.combat;
+
+/**
+ * 战斗结算的一个处理步骤，实现类注册为spring bean即可加入{@link CombatPipeline}，
+ * 按{@link #getStageType()}分阶段、阶段内按{@link #order()}从小到大执行；
+ * 内置步骤的order间隔为100，如暴击可以作为COMPUTE阶段order为200的步骤加入
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+public interface ICombatStage {
+    /**
+     * @return 所属阶段
+     */
+    CombatStageType getStageType();
+
+    /**
+     * @return 阶段内的执行顺序，数值越小越先执行
+     */
+    default int order() {
+        return 0;
+    }
+
+    /**
+     * 处理一次施法，在施法所在场景的心跳中调用；调用{@link CombatContext#fail(String)}后后续步骤不再执行
+     * @param context 本次施法的上下文
+     * @param batch 本次心跳的结算批次
+     */
+    void process(CombatContext context, CombatBatch batch);
+}
@@ -0,0 +1,38 @@
+package com.mmorpg.mbdl.business.skill.combat.stage;
+
+import com.mmorpg.mbdl.business.role.model.Role;
+import com.mmorpg.mbdl.business.skill.combat.CombatBatch;
+import com.mmorpg.mbdl.business.skill.combat.CombatContext;
+import com.mmorpg.mbdl.business.skill.combat.CombatStageType;
+import com.mmorpg.mbdl.business.skill.combat.ICombatStage;
+import com.mmorpg.mbdl.business.world.scene.model.Scene;
+import org.springframework.stereotype.Component;
+
+/**
+ * 施法校验：施法者和目标仍在场景中，cd、蓝量、武器耐久度属于施法者的状态，
+ * 已在{@link com.mmorpg.mbdl.business.skill.service.SkillService#handleUseSkillReq}中校验并扣除
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+@Component
+public class CastValidateStage implements ICombatStage {
+    @Override
+    public CombatStageType getStageType() {
+        return CombatStageType.VALIDATE;
+    }
+
+    @Override
+    public void process(CombatContext context, CombatBatch batch) {
+        Role caster = context.getCaster();
+        Scene scene = context.getScene();
+        // 请求到心跳之间施法者可能已经切换场景或下线，目标可能已经消失，失败后退还消耗
+        if (caster.getSceneId() != scene.getSceneId() || scene.getVisibleObjById(caster.getObjectId()) == null) {
+            context.fail(null);
+            return;
+        }
+        if (scene.getVisibleObjById(context.getMainTarget().getObjectId()) == null) {
+            context.fail("目标已消失，技能释放失败");
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.mmorpg.mbdl.business.skill.combat.stage;
+
+import com.mmorpg.mbdl.business.object.model.AbstractCreature;
+import com.mmorpg.mbdl.business.object.model.Monster;
+import com.mmorpg.mbdl.business.skill.combat.CombatBatch;
+import com.mmorpg.mbdl.business.skill.combat.CombatContext;
+import com.mmorpg.mbdl.business.skill.combat.CombatStageType;
+import com.mmorpg.mbdl.business.skill.combat.ICombatStage;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 把伤害记入批次，伤害修正为实际扣除的血量，被攻击的怪物对施法者产生仇恨
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+@Component
+public class DamageApplyStage implements ICombatStage {
+    @Override
+    public CombatStageType getStageType() {
+        return CombatStageType.APPLY;
+    }
+
+    @Override
+    public void process(CombatContext context, CombatBatch batch) {
+        List<AbstractCreature> targets = context.getTargets();
+        long[] damages = context.getDamages();
+        long[] remainingHps = context.getRemainingHps();
+        for (int i = 0; i < targets.size(); i++) {
+            AbstractCreature target = targets.get(i);
+            damages[i] = batch.applyDamage(target, damages[i]);
+            remainingHps[i] = batch.getPendingHp(target);
+            if (target instanceof Monster) {
+                ((Monster) target).onAttacked(context.getCaster());
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.mmorpg.mbdl.business.skill.combat.stage;
+
+import com.mmorpg.mbdl.business.object.model.AbstractCreature;
+import com.mmorpg.mbdl.business.role.model.prop.PropType;
+import com.mmorpg.mbdl.business.skill.combat.CombatBatch;
+import com.mmorpg.mbdl.business.skill.combat.CombatContext;
+import com.mmorpg.mbdl.business.skill.combat.CombatStageType;
+import com.mmorpg.mbdl.business.skill.combat.ICombatStage;
+import com.mmorpg.mbdl.business.skill.res.SkillRes;
+import com.mmorpg.mbdl.business.skill.util.GameMathUtil;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 基础伤害计算
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+@Component
+public class DamageComputeStage implements ICombatStage {
+    @Override
+    public CombatStageType getStageType() {
+        return CombatStageType.COMPUTE;
+    }
+
+    @Override
+    public int order() {
+        return 100;
+    }
+
+    @Override
+    public void process(CombatContext context, CombatBatch batch) {
+        SkillRes skillRes = context.getSkillRes();
+        int attack = (int) context.getCaster().getPropManager().getPropValueOf(PropType.ATTACK);
+        List<AbstractCreature> targets = context.getTargets();
+        long[] damages = context.getDamages();
+        for (int i = 0; i < targets.size(); i++) {
+            damages[i] = GameMathUtil.computeDamage(skillRes.getBasicDamage(), attack, skillRes.getAttackPercent(),
+                    (int) targets.get(i).getPropManager().getPropValueOf(PropType.DEFENCE));
+        }
+    }
+}
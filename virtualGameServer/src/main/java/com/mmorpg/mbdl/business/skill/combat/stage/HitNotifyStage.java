@@ -0,0 +1,39 @@
+package com.mmorpg.mbdl.business.skill.combat.stage;
+
+import com.mmorpg.mbdl.business.object.model.AbstractCreature;
+import com.mmorpg.mbdl.business.skill.combat.CombatBatch;
+import com.mmorpg.mbdl.business.skill.combat.CombatContext;
+import com.mmorpg.mbdl.business.skill.combat.CombatStageType;
+import com.mmorpg.mbdl.business.skill.combat.ICombatStage;
+import com.mmorpg.mbdl.business.skill.packet.vo.SkillHitInfo;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 生成命中事件，由前端根据事件自行展示，心跳结束时合并广播
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+@Component
+public class HitNotifyStage implements ICombatStage {
+    @Override
+    public CombatStageType getStageType() {
+        return CombatStageType.NOTIFY;
+    }
+
+    @Override
+    public void process(CombatContext context, CombatBatch batch) {
+        long casterId = context.getCaster().getObjectId();
+        int skillId = context.getSkillRes().getSkillId();
+        List<AbstractCreature> targets = context.getTargets();
+        long[] damages = context.getDamages();
+        long[] remainingHps = context.getRemainingHps();
+        boolean[] criticals = context.getCriticals();
+        for (int i = 0; i < targets.size(); i++) {
+            batch.addHitEvent(new SkillHitInfo(casterId, skillId, targets.get(i).getObjectId(),
+                    damages[i], remainingHps[i], criticals[i]));
+        }
+    }
+}
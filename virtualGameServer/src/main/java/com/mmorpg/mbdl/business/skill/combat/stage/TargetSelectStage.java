@@ -0,0 +1,82 @@
+package com.mmorpg.mbdl.business.skill.combat.stage;
+
+import com.mmorpg.mbdl.business.object.model.AbstractCreature;
+import com.mmorpg.mbdl.business.object.model.AbstractVisibleSceneObject;
+import com.mmorpg.mbdl.business.role.model.Role;
+import com.mmorpg.mbdl.business.skill.combat.CombatBatch;
+import com.mmorpg.mbdl.business.skill.combat.CombatContext;
+import com.mmorpg.mbdl.business.skill.combat.CombatStageType;
+import com.mmorpg.mbdl.business.skill.combat.ICombatStage;
+import com.mmorpg.mbdl.business.skill.model.SkillArea;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 选取技能命中的目标，单体技能只命中主目标；范围技能以施法者指向主目标为朝向，
+ * 通过场景空间索引只查询范围附近的对象
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+@Component
+public class TargetSelectStage implements ICombatStage {
+    @Override
+    public CombatStageType getStageType() {
+        return CombatStageType.COMPUTE;
+    }
+
+    @Override
+    public int order() {
+        return 0;
+    }
+
+    @Override
+    public void process(CombatContext context, CombatBatch batch) {
+        SkillArea area = context.getSkillRes().getArea();
+        AbstractCreature mainTarget = context.getMainTarget();
+        if (area == null) {
+            // 本次心跳中已被先结算的施法打死
+            if (batch.getPendingHp(mainTarget) <= 0) {
+                context.fail("目标已死亡，技能释放失败");
+                return;
+            }
+            context.setTargets(Collections.singletonList(mainTarget));
+            return;
+        }
+        Role caster = context.getCaster();
+        int originX = caster.getX();
+        int originY = caster.getY();
+        double length = Math.hypot(mainTarget.getX() - originX, mainTarget.getY() - originY);
+        // 主目标与施法者重合时默认朝向x轴正方向
+        double dirX = length == 0 ? 1 : (mainTarget.getX() - originX) / length;
+        double dirY = length == 0 ? 0 : (mainTarget.getY() - originY) / length;
+        List<AbstractVisibleSceneObject> candidates = new ArrayList<>();
+        context.getScene().queryInRange(originX, originY, area.getRange(),
+                visibleObj -> visibleObj != caster && visibleObj instanceof AbstractCreature
+                        && area.contains(originX, originY, dirX, dirY, visibleObj.getX(), visibleObj.getY())
+                        && batch.getPendingHp((AbstractCreature) visibleObj) > 0,
+                candidates);
+        if (candidates.isEmpty()) {
+            context.fail("范围内没有可以攻击的目标，技能释放失败");
+            return;
+        }
+        int maxTargets = area.getMaxTargets();
+        if (maxTargets > 0 && candidates.size() > maxTargets) {
+            candidates.sort(Comparator.comparingLong(visibleObj -> {
+                long dx = (long) visibleObj.getX() - originX;
+                long dy = (long) visibleObj.getY() - originY;
+                return dx * dx + dy * dy;
+            }));
+            candidates = candidates.subList(0, maxTargets);
+        }
+        List<AbstractCreature> targets = new ArrayList<>(candidates.size());
+        for (AbstractVisibleSceneObject candidate : candidates) {
+            targets.add((AbstractCreature) candidate);
+        }
+        context.setTargets(targets);
+    }
+}
@@ -1,15 +1,11 @@
 package com.mmorpg.mbdl.business.skill.entity;
 
-import com.mmorpg.mbdl.business.common.orm.JsonType;
 import com.mmorpg.mbdl.business.role.model.Role;
-import com.mmorpg.mbdl.business.skill.manager.SkillManager;
 import com.mmorpg.mbdl.framework.storage.annotation.JetCacheConfig;
 import com.mmorpg.mbdl.framework.storage.core.AbstractEntity;
-import org.hibernate.annotations.Type;
 
 import javax.persistence.Entity;
 import javax.persistence.Id;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 技能实体
@@ -23,12 +19,6 @@ public class SkillEntity extends AbstractEntity<Long> {
     private transient Role owner;
     @Id
     private Long roleId;
-    /**
-     * 控制cd
-     * 技能id -> 技能上次使用时间(毫秒)
-     */
-    @Type(type = JsonType.NAME)
-    private ConcurrentHashMap<Integer,Long> skillId2time = new ConcurrentHashMap<>();
 
     public SkillEntity() {
     }
@@ -42,22 +32,8 @@ public class SkillEntity extends AbstractEntity<Long> {
         return this;
     }
 
-    /**
-     * 设置技能上次使用时间
-     * @param skillId
-     * @param lastUseTime
-     */
-    public void setSkillLastUseTime(int skillId, long lastUseTime) {
-        SkillManager instance = SkillManager.getInstance();
-        if (!instance.containsSkillId(skillId)) {
-            return;
-        }
-        skillId2time.put(skillId, lastUseTime);
-        instance.mergeUpdateEntity(this);
-    }
-
     @Override
     public Long getId() {
         return roleId;
     }
-}
\ No newline at end of file
+}
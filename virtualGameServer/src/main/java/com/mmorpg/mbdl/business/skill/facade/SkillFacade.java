@@ -1,5 +1,8 @@
 package com.mmorpg.mbdl.business.skill.facade;
 
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+import com.mmorpg.mbdl.business.role.event.RoleLogoutEvent;
 import com.mmorpg.mbdl.business.role.model.Role;
 import com.mmorpg.mbdl.business.skill.packet.UseSkillReq;
 import com.mmorpg.mbdl.business.skill.service.SkillService;
@@ -23,4 +26,10 @@ public class SkillFacade {
         }
         SkillService.getInstance().handleUseSkillReq(role,useSkillReq);
     }
+
+    @Subscribe
+    @AllowConcurrentEvents
+    public void handleLogoutEvent(RoleLogoutEvent roleLogoutEvent){
+        SkillService.getInstance().handleRoleLogoutEvent(roleLogoutEvent);
+    }
 }
@@ -3,29 +3,21 @@ package com.mmorpg.mbdl.business.skill.manager;
 import com.alicp.jetcache.Cache;
 import com.alicp.jetcache.embedded.CaffeineCacheBuilder;
 import com.mmorpg.mbdl.business.common.IRoleEntityManager;
-import com.mmorpg.mbdl.business.common.packet.GlobalMessage;
-import com.mmorpg.mbdl.business.common.packet.vo.GlobalMessageType;
-import com.mmorpg.mbdl.business.common.resource.GlobalSettingRes;
-import com.mmorpg.mbdl.business.equip.entity.EquipEntity;
-import com.mmorpg.mbdl.business.equip.manager.EquipManager;
-import com.mmorpg.mbdl.business.equip.model.Equip;
-import com.mmorpg.mbdl.business.object.model.AbstractCreature;
 import com.mmorpg.mbdl.business.role.model.Role;
-import com.mmorpg.mbdl.business.role.model.prop.PropType;
 import com.mmorpg.mbdl.business.skill.entity.SkillEntity;
 import com.mmorpg.mbdl.business.skill.packet.SkillListUpdate;
 import com.mmorpg.mbdl.business.skill.packet.vo.SkillUiInfo;
 import com.mmorpg.mbdl.business.skill.res.SkillRes;
-import com.mmorpg.mbdl.business.skill.util.GameMathUtil;
-import com.mmorpg.mbdl.framework.resource.exposed.IStaticRes;
+import com.mmorpg.mbdl.framework.resource.exposed.IPrimitiveKeyStaticRes;
 import com.mmorpg.mbdl.framework.storage.core.IStorage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -42,16 +34,13 @@ public class SkillManager implements IRoleEntityManager<SkillEntity> {
     private IStorage<Long,SkillEntity> skillEntityIStorage;
 
     @Autowired
-    private IStaticRes<Integer, SkillRes> skillId2SkillRes;
-    @Autowired
-    private IStaticRes<String, GlobalSettingRes> globalSettingRes;
+    private IPrimitiveKeyStaticRes<Integer, SkillRes> skillId2SkillRes;
     /**
-     * 角色id -> map 技能key -> 技能使用毫秒
-     * 技能最长cd不超过20分钟
+     * 角色id -> 下线时保存的技能上次使用时间，只在登录和下线时读写，重新登录时cd不会被重置<br/>
+     * 技能最长cd不超过20分钟，超过后不再需要保存
      */
-    private Cache<Long, ConcurrentHashMap<Integer, Long>> cache = CaffeineCacheBuilder.createCaffeineCacheBuilder()
-            .expireAfterAccess(20, TimeUnit.MINUTES)
-            .loader((key -> new ConcurrentHashMap(16)))
+    private Cache<Long, long[]> roleId2SavedLastUseTimes = CaffeineCacheBuilder.createCaffeineCacheBuilder()
+            .expireAfterWrite(20, TimeUnit.MINUTES)
             .buildCache();
 
     @PostConstruct
@@ -63,48 +52,6 @@ public class SkillManager implements IRoleEntityManager<SkillEntity> {
         return self;
     }
 
-    public void useSkill(Role role, SkillRes skillRes, AbstractCreature target) {
-        // 检查cd
-        ConcurrentHashMap<Integer, Long> key2lastUseTime = cache.get(role.getRoleId());
-        Long lastUseTime = key2lastUseTime.get(skillRes.getSkillId());
-        if (lastUseTime != null && (System.currentTimeMillis() - lastUseTime < skillRes.getCd())) {
-            role.sendPacket(new GlobalMessage(GlobalMessageType.ERROR, String.format("[%s]技能还在cd中", skillRes.getSkillName())));
-            return;
-        }
-        int mpCost = skillRes.getMpCost();
-        long damage = GameMathUtil.computeDamage(skillRes.getBasicDamage(),
-                (int) role.getPropManager().getPropValueOf(PropType.ATTACK),
-                skillRes.getAttackPercent(),
-                (int) target.getPropManager().getPropValueOf(PropType.DEFENCE));
-        // TODO 目前没有其它途径消耗蓝，如果有要注意是否会出现线程安全问题,可能需要把后续判断等操作放到回调中，以便上锁
-        long currentMp = role.getPropManager().getPropValueOf(PropType.CURRENT_MP);
-        if (mpCost > currentMp) {
-            role.sendPacket(new GlobalMessage(GlobalMessageType.ERROR, "蓝量不足,技能释放失败"));
-            return;
-        }
-        EquipEntity equipEntity = role.getEquipEntity();
-        Equip weapon = equipEntity.getWeapon();
-        int currentDurability = weapon.getCurrentDurability();
-        if (currentDurability == 0) {
-            role.sendPacket(new GlobalMessage(GlobalMessageType.ERROR, "武器耐久度不足，需要维修后才能使用"));
-            return;
-        }
-        // 扣除耐久度
-        weapon.reduceCurrentDurability(globalSettingRes.get("DurabilityDownPerAttack").getValue());
-        EquipManager.getInstance().mergeUpdateEntity(equipEntity);
-        long currentHp = role.getPropManager().getPropValueOf(PropType.CURRENT_HP);
-        if (damage < currentHp) {
-            target.changeHp(-damage);
-        } else {
-            target.changeHp(-currentHp);
-        }
-
-        role.changeMp(-mpCost);
-        // 给目标造成的血量扣除 {"skillId":2,"targetId":183887031360888321}
-        role.broadcast(new GlobalMessage(String.format("玩家[%s]对[%s]造成%s伤害", role.getName(), target.getName(), damage)), true);
-        key2lastUseTime.put(skillRes.getSkillId(), System.currentTimeMillis());
-    }
-
     public SkillRes getSkillResById(int skillId) {
         return skillId2SkillRes.get(skillId);
     }
@@ -113,11 +60,62 @@ public class SkillManager implements IRoleEntityManager<SkillEntity> {
         return skillId2SkillRes.containsKey(skillId);
     }
 
+    /**
+     * @return 技能数量，用于创建按{@link SkillRes#getIndex()}索引的数组
+     */
+    public int getSkillCount() {
+        return skillId2SkillRes.size();
+    }
+
+    /**
+     * 获取技能上次使用时间
+     * @param skillIndex {@link SkillRes#getIndex()}
+     * @return 从未使用过返回0
+     */
+    public long getLastUseTime(Role role, int skillIndex) {
+        long[] lastUseTimes = role.getSkillLastUseTimes();
+        return skillIndex < lastUseTimes.length ? lastUseTimes[skillIndex] : 0;
+    }
+
+    /**
+     * 设置技能上次使用时间，只在角色的队列中调用
+     * @param skillIndex {@link SkillRes#getIndex()}
+     * @param lastUseTime
+     */
+    public void setLastUseTime(Role role, int skillIndex, long lastUseTime) {
+        long[] lastUseTimes = role.getSkillLastUseTimes();
+        if (skillIndex >= lastUseTimes.length) {
+            // 首次施法或热更新增技能时才会扩容
+            lastUseTimes = Arrays.copyOf(lastUseTimes, Math.max(skillIndex + 1, Math.max(getSkillCount(), lastUseTimes.length << 1)));
+            role.setSkillLastUseTimes(lastUseTimes);
+        }
+        lastUseTimes[skillIndex] = lastUseTime;
+    }
+
+    /**
+     * 下线时保存技能上次使用时间，在角色的队列中调用
+     */
+    public void saveLastUseTimes(Role role) {
+        if (role.getSkillLastUseTimes().length > 0) {
+            roleId2SavedLastUseTimes.put(role.getRoleId(), role.getSkillLastUseTimes());
+        }
+    }
+
     @Override
-    public void bindEntity(Role role) {
-        SkillEntity entity = skillEntityIStorage.getOrCreate(role.getRoleId(), SkillEntity::new);
+    public CompletableFuture<SkillEntity> loadEntityAsync(Role role) {
+        return skillEntityIStorage.getOrCreateAsync(role.getRoleId(), SkillEntity::new);
+    }
+
+    @Override
+    public void bindEntity(Role role, SkillEntity entity) {
         entity.setOwner(role);
         role.setSkillEntity(entity);
+        // 恢复上次下线时保存的cd
+        long[] savedLastUseTimes = roleId2SavedLastUseTimes.get(role.getRoleId());
+        if (savedLastUseTimes != null) {
+            roleId2SavedLastUseTimes.remove(role.getRoleId());
+            role.setSkillLastUseTimes(savedLastUseTimes);
+        }
         // 发送技能列表信息
         List<SkillUiInfo> skillUiInfoList = new ArrayList<>(4);
         for (SkillRes skillRes : skillId2SkillRes.values()) {
@@ -0,0 +1,107 @@
+package com.mmorpg.mbdl.business.skill.model;
+
+/**
+ * 技能范围描述，在技能表中以json配置，如：{"shape":"SECTOR","radius":30,"angle":120,"maxTargets":5}
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+public class SkillArea {
+    private SkillAreaShape shape;
+    /**
+     * 半径，直线技能为长度
+     */
+    private int radius;
+    /**
+     * 扇形角度，单位度
+     */
+    private int angle;
+    /**
+     * 直线技能的宽度
+     */
+    private int width;
+    /**
+     * 最多命中的目标数，超过时优先命中近的目标，0表示不限制
+     */
+    private int maxTargets;
+    /** 扇形半角的余弦，加载后计算 */
+    private transient double cosHalfAngle;
+    /** 外接正方形的半边长，用于场景空间索引查询，加载后计算 */
+    private transient int range;
+
+    /**
+     * 资源加载后调用，检查配置并预计算
+     */
+    public void init() {
+        if (shape == null) {
+            throw new RuntimeException("技能范围没有配置形状");
+        }
+        if (radius <= 0) {
+            throw new RuntimeException(String.format("[%s]技能范围的半径（长度）必须大于0，当前为%s", shape, radius));
+        }
+        if (maxTargets < 0) {
+            throw new RuntimeException(String.format("技能范围的最大目标数不能小于0，当前为%s", maxTargets));
+        }
+        switch (shape) {
+            case CIRCLE:
+                range = radius;
+                break;
+            case SECTOR:
+                if (angle <= 0 || angle > 360) {
+                    throw new RuntimeException(String.format("扇形技能范围的角度必须在(0,360]之间，当前为%s", angle));
+                }
+                cosHalfAngle = Math.cos(Math.toRadians(angle / 2.0));
+                range = radius;
+                break;
+            case LINE:
+                if (width <= 0) {
+                    throw new RuntimeException(String.format("直线技能范围的宽度必须大于0，当前为%s", width));
+                }
+                range = (int) Math.ceil(Math.hypot(radius, width / 2.0));
+                break;
+            default:
+                throw new RuntimeException(String.format("未知的技能范围形状[%s]", shape));
+        }
+    }
+
+    /**
+     * 判断点是否在范围内
+     * @param originX 施法者坐标
+     * @param originY 施法者坐标
+     * @param dirX 朝向的单位向量
+     * @param dirY 朝向的单位向量
+     * @param x 被判断的点
+     * @param y 被判断的点
+     */
+    public boolean contains(int originX, int originY, double dirX, double dirY, int x, int y) {
+        long dx = (long) x - originX;
+        long dy = (long) y - originY;
+        long distanceSquare = dx * dx + dy * dy;
+        switch (shape) {
+            case CIRCLE:
+                return distanceSquare <= (long) radius * radius;
+            case SECTOR:
+                if (distanceSquare > (long) radius * radius) {
+                    return false;
+                }
+                return distanceSquare == 0 || dx * dirX + dy * dirY >= cosHalfAngle * Math.sqrt(distanceSquare);
+            case LINE:
+                double projection = dx * dirX + dy * dirY;
+                return projection >= 0 && projection <= radius && Math.abs(dx * dirY - dy * dirX) <= width / 2.0;
+            default:
+                return false;
+        }
+    }
+
+    public SkillAreaShape getShape() {
+        return shape;
+    }
+
+    public int getMaxTargets() {
+        return maxTargets;
+    }
+
+    public int getRange() {
+        return range;
+    }
+}
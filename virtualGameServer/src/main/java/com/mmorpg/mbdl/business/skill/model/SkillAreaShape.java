@@ -0,0 +1,16 @@
+package com.mmorpg.mbdl.business.skill.model;
+
+/**
+ * 技能范围形状，都以施法者为原点，朝向为施法者指向主目标的方向
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+public enum SkillAreaShape {
+    /** 以施法者为圆心的圆，使用radius */
+    CIRCLE,
+    /** 以施法者为顶点的扇形，使用radius和angle */
+    SECTOR,
+    /** 从施法者出发的矩形，radius为长度，width为宽度 */
+    LINE
+}
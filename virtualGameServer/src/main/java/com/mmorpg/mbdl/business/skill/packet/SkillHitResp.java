@@ -0,0 +1,39 @@
+package com.mmorpg.mbdl.business.skill.packet;
+
+import com.baidu.bjf.remoting.protobuf.annotation.Protobuf;
+import com.mmorpg.mbdl.business.common.PacketIdManager;
+import com.mmorpg.mbdl.business.skill.packet.vo.SkillHitInfo;
+import com.mmorpg.mbdl.framework.communicate.websocket.annotation.ProtoDesc;
+import com.mmorpg.mbdl.framework.communicate.websocket.model.AbstractPacket;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 技能命中结果，一个场景一次心跳内的所有命中合并在一个包中广播
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+@ProtoDesc(description = "技能命中结果")
+public class SkillHitResp extends AbstractPacket {
+    @Protobuf(description = "命中的目标")
+    private List<SkillHitInfo> hitInfoList = new ArrayList<>();
+
+    public SkillHitResp() {
+    }
+
+    public SkillHitResp addHit(SkillHitInfo hitInfo) {
+        hitInfoList.add(hitInfo);
+        return this;
+    }
+
+    public List<SkillHitInfo> getHitInfoList() {
+        return hitInfoList;
+    }
+
+    @Override
+    public short getPacketId() {
+        return PacketIdManager.SKILL_HIT_RESP;
+    }
+}
@@ -0,0 +1,60 @@
+package com.mmorpg.mbdl.business.skill.packet.vo;
+
+import com.baidu.bjf.remoting.protobuf.annotation.Protobuf;
+
+/**
+ * 技能命中事件，前端据此自行展示伤害文字和特效
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+public class SkillHitInfo {
+    @Protobuf(description = "施法者id", required = true)
+    private long casterId;
+    @Protobuf(description = "技能id", required = true)
+    private int skillId;
+    @Protobuf(description = "目标对象的id", required = true)
+    private long targetId;
+    @Protobuf(description = "造成的伤害", required = true)
+    private long damage;
+    @Protobuf(description = "目标受击后的血量", required = true)
+    private long currentHp;
+    @Protobuf(description = "是否暴击", required = true)
+    private boolean critical;
+
+    public SkillHitInfo() {
+    }
+
+    public SkillHitInfo(long casterId, int skillId, long targetId, long damage, long currentHp, boolean critical) {
+        this.casterId = casterId;
+        this.skillId = skillId;
+        this.targetId = targetId;
+        this.damage = damage;
+        this.currentHp = currentHp;
+        this.critical = critical;
+    }
+
+    public long getCasterId() {
+        return casterId;
+    }
+
+    public int getSkillId() {
+        return skillId;
+    }
+
+    public long getTargetId() {
+        return targetId;
+    }
+
+    public long getDamage() {
+        return damage;
+    }
+
+    public long getCurrentHp() {
+        return currentHp;
+    }
+
+    public boolean isCritical() {
+        return critical;
+    }
+}
@@ -0,0 +1,44 @@
+package com.mmorpg.mbdl.business.skill.res;
+
+import java.util.Arrays;
+
+/**
+ * 技能id到连续下标的映射，下标从0开始按首次加载顺序分配，热更时已有技能的下标不变，
+ * 用于在角色身上以数组保存每个技能的状态<br>
+ * 用按技能id排序的两个int数组保存，二分查找，不装箱
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+final class SkillIndex {
+    /** 已分配下标的技能id，升序 */
+    private static int[] skillIds = new int[0];
+    /** 与skillIds一一对应的下标 */
+    private static int[] indexes = new int[0];
+
+    private SkillIndex() {
+    }
+
+    /**
+     * 只在资源加载时调用
+     */
+    static synchronized int indexOf(int skillId) {
+        int pos = Arrays.binarySearch(skillIds, skillId);
+        if (pos >= 0) {
+            return indexes[pos];
+        }
+        int insertAt = -pos - 1;
+        int index = skillIds.length;
+        skillIds = insert(skillIds, insertAt, skillId);
+        indexes = insert(indexes, insertAt, index);
+        return index;
+    }
+
+    private static int[] insert(int[] array, int insertAt, int value) {
+        int[] result = new int[array.length + 1];
+        System.arraycopy(array, 0, result, 0, insertAt);
+        result[insertAt] = value;
+        System.arraycopy(array, insertAt, result, insertAt + 1, array.length - insertAt);
+        return result;
+    }
+}
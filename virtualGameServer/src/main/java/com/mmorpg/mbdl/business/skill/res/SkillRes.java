@@ -1,7 +1,9 @@
 package com.mmorpg.mbdl.business.skill.res;
 
+import com.mmorpg.mbdl.business.skill.model.SkillArea;
 import com.mmorpg.mbdl.framework.resource.annotation.Key;
 import com.mmorpg.mbdl.framework.resource.annotation.ResDef;
+import com.mmorpg.mbdl.framework.resource.exposed.IAfterResLoad;
 
 /**
  * 技能资源
@@ -10,7 +12,7 @@ import com.mmorpg.mbdl.framework.resource.annotation.ResDef;
  * @since v1.0 2019/2/26
  **/
 @ResDef
-public class SkillRes {
+public class SkillRes implements IAfterResLoad {
     /**
      * 技能id
      */
@@ -36,6 +38,14 @@ public class SkillRes {
      * 攻击加成百分比
      */
     private short attackPercent;
+    /**
+     * 技能范围，不配置时为单体技能
+     */
+    private SkillArea area;
+    /**
+     * 技能的连续下标，加载后分配，不对应资源文件中的列
+     */
+    private transient int index;
 
     public int getSkillId() {
         return skillId;
@@ -60,4 +70,20 @@ public class SkillRes {
     public short getAttackPercent() {
         return attackPercent;
     }
+
+    public SkillArea getArea() {
+        return area;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    @Override
+    public void afterLoad() {
+        index = SkillIndex.indexOf(skillId);
+        if (area != null) {
+            area.init();
+        }
+    }
 }
@@ -1,9 +1,18 @@
 package com.mmorpg.mbdl.business.skill.service;
 
+import com.mmorpg.mbdl.business.common.packet.GlobalMessage;
+import com.mmorpg.mbdl.business.common.packet.vo.GlobalMessageType;
+import com.mmorpg.mbdl.business.common.resource.GlobalSetting;
+import com.mmorpg.mbdl.business.equip.entity.EquipEntity;
+import com.mmorpg.mbdl.business.equip.manager.EquipManager;
+import com.mmorpg.mbdl.business.equip.model.Equip;
 import com.mmorpg.mbdl.business.object.model.AbstractCreature;
 import com.mmorpg.mbdl.business.object.model.AbstractVisibleSceneObject;
+import com.mmorpg.mbdl.business.role.event.RoleLogoutEvent;
 import com.mmorpg.mbdl.business.role.model.Role;
 import com.mmorpg.mbdl.business.role.model.prop.PropType;
+import com.mmorpg.mbdl.business.skill.combat.CombatContext;
+import com.mmorpg.mbdl.business.skill.combat.CombatPipeline;
 import com.mmorpg.mbdl.business.skill.manager.SkillManager;
 import com.mmorpg.mbdl.business.skill.packet.UseSkillReq;
 import com.mmorpg.mbdl.business.skill.res.SkillRes;
@@ -52,6 +61,77 @@ public class SkillService {
         if (skillRes == null) {
             return;
         }
-        skillManager.useSkill(role, skillRes, (AbstractCreature) visibleObj);
+        // cd、蓝量、武器耐久度属于施法者，在施法者自己的队列中校验和扣除，场景心跳只结算命中和伤害
+        long now = System.currentTimeMillis();
+        String failReason = checkCost(role, skillRes, now);
+        if (failReason != null) {
+            role.sendPacket(new GlobalMessage(GlobalMessageType.ERROR, failReason));
+            return;
+        }
+        CombatContext context = new CombatContext(role, skillRes, (AbstractCreature) visibleObj);
+        if (!CombatPipeline.getInstance().submit(scene, context)) {
+            role.sendPacket(new GlobalMessage(GlobalMessageType.ERROR, "上一个技能还未结算，施法过于频繁"));
+            return;
+        }
+        chargeCost(role, skillRes, now, context);
+    }
+
+    /**
+     * @return 不能施法的原因，可以施法时返回null
+     */
+    private String checkCost(Role role, SkillRes skillRes, long now) {
+        if (now - skillManager.getLastUseTime(role, skillRes.getIndex()) < skillRes.getCd()) {
+            return String.format("[%s]技能还在cd中", skillRes.getSkillName());
+        }
+        if (skillRes.getMpCost() > role.getPropManager().getPropValueOf(PropType.CURRENT_MP)) {
+            return "蓝量不足,技能释放失败";
+        }
+        Equip weapon = role.getEquipEntity().getWeapon();
+        if (weapon.getCurrentDurability() == 0) {
+            return "武器耐久度不足，需要维修后才能使用";
+        }
+        return null;
+    }
+
+    /**
+     * 扣除武器耐久度、蓝量，并进入cd，扣除的消耗记录在施法上下文中，结算失败时退还
+     */
+    private void chargeCost(Role role, SkillRes skillRes, long now, CombatContext context) {
+        EquipEntity equipEntity = role.getEquipEntity();
+        Equip weapon = equipEntity.getWeapon();
+        int durabilityBefore = weapon.getCurrentDurability();
+        weapon.reduceCurrentDurability(GlobalSetting.DURABILITY_DOWN_PER_ATTACK.getValue());
+        EquipManager.getInstance().mergeUpdateEntity(equipEntity);
+        role.changeMp(-skillRes.getMpCost());
+        long previousLastUseTime = skillManager.getLastUseTime(role, skillRes.getIndex());
+        skillManager.setLastUseTime(role, skillRes.getIndex(), now);
+        context.recordCost(weapon, durabilityBefore - weapon.getCurrentDurability(), skillRes.getMpCost(), now, previousLastUseTime);
+    }
+
+    /**
+     * 施法没有命中任何目标（目标消失、死亡等）时退还消耗，在施法者的队列中调用
+     */
+    public void refundCost(CombatContext context) {
+        Role role = context.getCaster();
+        SkillRes skillRes = context.getSkillRes();
+        EquipEntity equipEntity = role.getEquipEntity();
+        // 期间更换了武器时不退还耐久度
+        Equip weapon = context.getChargedWeapon();
+        if (weapon != null && weapon == equipEntity.getWeapon() && context.getChargedDurability() > 0) {
+            weapon.setCurrentDurability(weapon.getCurrentDurability() + context.getChargedDurability());
+            EquipManager.getInstance().mergeUpdateEntity(equipEntity);
+        }
+        role.changeMp(context.getChargedMp());
+        // 期间没有再次使用该技能时才恢复cd
+        if (skillManager.getLastUseTime(role, skillRes.getIndex()) == context.getCastTime()) {
+            skillManager.setLastUseTime(role, skillRes.getIndex(), context.getPreviousLastUseTime());
+        }
+    }
+
+    /**
+     * 保存技能cd，重新登录后恢复
+     */
+    public void handleRoleLogoutEvent(RoleLogoutEvent roleLogoutEvent) {
+        skillManager.saveLastUseTimes(roleLogoutEvent.getRole());
     }
 }
@@ -1,23 +1,39 @@
 package com.mmorpg.mbdl.business.world.manager;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.mmorpg.mbdl.business.object.model.AbstractVisibleSceneObject;
 import com.mmorpg.mbdl.business.role.entity.RoleEntity;
 import com.mmorpg.mbdl.business.role.model.Role;
 import com.mmorpg.mbdl.business.world.resource.SceneRes;
+import com.mmorpg.mbdl.business.world.scene.model.ISceneTickHandler;
 import com.mmorpg.mbdl.business.world.scene.model.Scene;
 import com.mmorpg.mbdl.business.world.scene.packet.SceneUiInfoResp;
 import com.mmorpg.mbdl.business.world.scene.packet.vo.SceneCanGoInfo;
-import com.mmorpg.mbdl.framework.resource.exposed.IStaticRes;
+import com.mmorpg.mbdl.framework.resource.exposed.IPrimitiveKeyStaticRes;
 import com.mmorpg.mbdl.framework.storage.core.IStorage;
+import com.mmorpg.mbdl.framework.thread.task.AbstractTask;
+import com.mmorpg.mbdl.framework.thread.task.TaskDispatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * 场景管理器
@@ -26,35 +42,79 @@ import java.util.Map;
  * @since v1.0 2018/12/21
  **/
 @Component
-public class SceneManager {
+public class SceneManager implements ApplicationListener<ContextRefreshedEvent> {
     private static Logger logger = LoggerFactory.getLogger(SceneManager.class);
     private static SceneManager self;
     private Map<Integer, Scene> sceneId2SceneMap = new HashMap<>(16);
     @Autowired
-    private IStaticRes<Integer, SceneRes> id2SceneRes;
+    private IPrimitiveKeyStaticRes<Integer, SceneRes> id2SceneRes;
     @Autowired
     private IStorage<Long, RoleEntity> roleEntityIStorage;
     @Autowired
     private SpawnManager spawnManager;
+    /**
+     * 场景空间索引的格子边长
+     */
+    @Value("${server.config.scene.grid.cellSize:16}")
+    private int gridCellSize;
+    /**
+     * 场景心跳间隔，毫秒
+     */
+    @Value("${server.config.scene.tick.period:50}")
+    private int tickPeriod;
+    private ISceneTickHandler[] tickHandlers;
+    /**
+     * 只负责按时把各场景的心跳任务放入场景队列，心跳本身在业务线程池执行
+     */
+    private ScheduledExecutorService tickScheduler;
 
     @PostConstruct
     private void init() {
         self = this;
         // 初始化场景
         id2SceneRes.values().forEach(sceneRes -> {
-            Scene scene = new Scene().setName(sceneRes.getName())
+            Scene scene = new Scene(gridCellSize).setName(sceneRes.getName())
                     .setSceneId(sceneRes.getSceneId());
             sceneId2SceneMap.put(scene.getSceneId(),scene);
         });
         spawnManager.spawnAll(sceneId2SceneMap.values());
-
-        // TODO 初始化怪物
     }
 
     public static SceneManager getInstance() {
         return self;
     }
 
+    /**
+     * 所有bean初始化完成后开始场景心跳
+     */
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        if (tickScheduler != null || event.getApplicationContext().getParent() != null) {
+            return;
+        }
+        List<ISceneTickHandler> handlers = new ArrayList<>(event.getApplicationContext().getBeansOfType(ISceneTickHandler.class).values());
+        handlers.sort(Comparator.comparingInt(ISceneTickHandler::order));
+        tickHandlers = handlers.toArray(new ISceneTickHandler[0]);
+        tickScheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("场景心跳调度").setDaemon(true).build());
+        for (Scene scene : sceneId2SceneMap.values()) {
+            SceneTicker sceneTicker = new SceneTicker(scene);
+            tickScheduler.scheduleAtFixedRate(sceneTicker::dispatch, tickPeriod, tickPeriod, TimeUnit.MILLISECONDS);
+        }
+        logger.info("场景心跳启动，间隔[{}ms]，场景数[{}]，处理器数[{}]", tickPeriod, sceneId2SceneMap.size(), tickHandlers.length);
+    }
+
+    @PreDestroy
+    private void shutdownTick() {
+        if (tickScheduler != null) {
+            tickScheduler.shutdownNow();
+        }
+    }
+
+    public Collection<Scene> getScenes() {
+        return sceneId2SceneMap.values();
+    }
+
     public Scene getSceneBySceneId(int sceneId){
         return sceneId2SceneMap.get(sceneId);
     }
@@ -92,4 +152,53 @@ public class SceneManager {
         ));
         return sceneUiInfoResp;
     }
+
+    /**
+     * 把一个场景的心跳放入场景队列，上一次心跳还没执行完时跳过本次，避免任务堆积
+     */
+    private final class SceneTicker {
+        private final Scene scene;
+        private final AtomicBoolean ticking = new AtomicBoolean();
+
+        private SceneTicker(Scene scene) {
+            this.scene = scene;
+        }
+
+        private void dispatch() {
+            if (!ticking.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                TaskDispatcher.getInstance().dispatch(new AbstractTask<Scene, Long>(scene, false) {
+                    @Override
+                    public String taskName() {
+                        return "场景心跳";
+                    }
+
+                    @Override
+                    public void execute() {
+                        try {
+                            long now = System.currentTimeMillis();
+                            for (ISceneTickHandler tickHandler : tickHandlers) {
+                                try {
+                                    tickHandler.tick(scene, now);
+                                } catch (Exception e) {
+                                    logger.error("场景[{}]心跳处理器[{}]执行失败", scene.getSceneId(), tickHandler.getClass().getSimpleName(), e);
+                                }
+                            }
+                        } finally {
+                            ticking.set(false);
+                        }
+                    }
+                }.setLogOrNot(false));
+            } catch (RejectedExecutionException e) {
+                // 停服时业务线程池已关闭
+                ticking.set(false);
+            } catch (RuntimeException e) {
+                // 异常不能抛给调度器，否则之后的心跳会被取消
+                ticking.set(false);
+                logger.error("场景[{}]心跳分发失败", scene.getSceneId(), e);
+            }
+        }
+    }
 }
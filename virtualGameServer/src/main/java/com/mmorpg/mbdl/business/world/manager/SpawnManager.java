@@ -1,40 +1,90 @@
 package com.mmorpg.mbdl.business.world.manager;
 
+import com.mmorpg.mbdl.business.object.ai.MonsterAi;
 import com.mmorpg.mbdl.business.object.creator.AbstractObjectCreator;
 import com.mmorpg.mbdl.business.object.creator.ObjectCreatorManager;
 import com.mmorpg.mbdl.business.object.model.AbstractVisibleSceneObject;
+import com.mmorpg.mbdl.business.object.model.Monster;
+import com.mmorpg.mbdl.business.world.model.BornData;
 import com.mmorpg.mbdl.business.world.resource.BornRes;
 import com.mmorpg.mbdl.business.world.resource.SceneObjectAttrRes;
+import com.mmorpg.mbdl.business.world.scene.model.ISceneTickHandler;
 import com.mmorpg.mbdl.business.world.scene.model.Scene;
-import com.mmorpg.mbdl.framework.resource.exposed.IStaticRes;
+import com.mmorpg.mbdl.framework.resource.exposed.IPrimitiveKeyStaticRes;
+import com.mmorpg.mbdl.framework.thread.TimingWheel;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
 import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
- * 怪物出生管理器
+ * 怪物出生管理器，负责怪物的整个生命周期：出生、死亡后消失、定时重生以及AI<br/>
+ * 每个怪物出生点在所在场景的时间轮中始终只有一个定时器，怪物活着时是下一次AI思考，死亡后是重生，
+ * 全部在场景心跳中推进，不为每个怪物创建线程或定时任务
  *
  * @author Sando Geek
  * @since v1.0 2018/12/13
  **/
 @Component
-public class SpawnManager {
+public class SpawnManager implements ISceneTickHandler {
+    private static final Logger logger = LoggerFactory.getLogger(SpawnManager.class);
+    /**
+     * 时间轮的槽数，默认心跳间隔下一圈约25秒，更长的重生延迟在槽中多停留几圈
+     */
+    private static final int WHEEL_SIZE = 512;
+    private static SpawnManager self;
+
     @Autowired
-    protected IStaticRes<Integer, SceneObjectAttrRes> sceneObjectAttrResMap;
+    protected IPrimitiveKeyStaticRes<Integer, SceneObjectAttrRes> sceneObjectAttrResMap;
     @Autowired
-    private IStaticRes<Integer, BornRes> bornResMap;
+    private IPrimitiveKeyStaticRes<Integer, BornRes> bornResMap;
     @Autowired
     private ObjectCreatorManager objectCreatorManager;
+    @Autowired
+    private MonsterAi monsterAi;
+    /**
+     * 时间轮的刻度，与场景心跳间隔一致
+     */
+    @Value("${server.config.scene.tick.period:50}")
+    private int tickPeriod;
+    /**
+     * 出生数据没有配置重生延迟时使用的默认值（毫秒）
+     */
+    @Value("${server.config.monster.respawnDelay:30000}")
+    private int defaultRespawnDelay;
+    /** 场景id -> 场景的出生状态，启动后只读 */
+    private IntObjectMap<SceneSpawn> sceneId2Spawn = new IntObjectHashMap<>();
+
+    @PostConstruct
+    private void init() {
+        self = this;
+    }
+
+    public static SpawnManager getInstance() {
+        return self;
+    }
 
     /**
      * 让所有怪物出生到相应的场景
      * @param scenes
      */
     public void spawnAll(Collection<Scene> scenes){
+        long now = System.currentTimeMillis();
         scenes.forEach(scene -> {
             int sceneId = scene.getSceneId();
-            bornResMap.get(sceneId).getBornDataList().forEach(bornData -> {
+            SceneSpawn sceneSpawn = new SceneSpawn(new TimingWheel<>(tickPeriod, WHEEL_SIZE, now));
+            List<BornData> bornDataList = bornResMap.get(sceneId).getBornDataList();
+            for (int i = 0; i < bornDataList.size(); i++) {
+                BornData bornData = bornDataList.get(i);
                 SceneObjectAttrRes sceneObjectAttrRes = sceneObjectAttrResMap.get(bornData.getObjectKey());
                 AbstractObjectCreator creator = objectCreatorManager.getCreatorByObjectType(sceneObjectAttrRes.getObjectType());
                 if (creator == null) {
@@ -43,8 +93,107 @@ public class SpawnManager {
                 AbstractVisibleSceneObject visibleSceneObject
                         = creator.create(sceneId, bornData);
                 scene.appearInScene(visibleSceneObject);
-            });
+                if (visibleSceneObject instanceof Monster) {
+                    SpawnPoint spawnPoint = new SpawnPoint(bornData, creator);
+                    spawnPoint.monster = (Monster) visibleSceneObject;
+                    // 错开同一场景怪物的思考时间，避免集中在同一次心跳
+                    sceneSpawn.wheel.schedule(spawnPoint, monsterAi.getThinkInterval() + (long) i * tickPeriod % monsterAi.getThinkInterval());
+                }
+            }
+            sceneId2Spawn.put(sceneId, sceneSpawn);
+        });
+    }
 
+    /**
+     * 怪物血量归零时调用，可能在任意线程上，每只怪物只调用一次，在场景下一次心跳时从场景中消失
+     */
+    public void onMonsterDie(Monster monster) {
+        SceneSpawn sceneSpawn = sceneId2Spawn.get(monster.getSceneId());
+        if (sceneSpawn != null) {
+            sceneSpawn.deadMonsters.offer(monster);
+        }
+    }
+
+    /**
+     * 在战斗结算之前执行，AI造成的伤害与玩家技能一起统一结算
+     */
+    @Override
+    public int order() {
+        return -100;
+    }
+
+    @Override
+    public void tick(Scene scene, long now) {
+        SceneSpawn sceneSpawn = sceneId2Spawn.get(scene.getSceneId());
+        if (sceneSpawn == null) {
+            return;
+        }
+        Monster deadMonster;
+        while ((deadMonster = sceneSpawn.deadMonsters.poll()) != null) {
+            scene.disappearInScene(deadMonster);
+        }
+        TimingWheel<SpawnPoint> wheel = sceneSpawn.wheel;
+        wheel.advance(now, spawnPoint -> {
+            try {
+                onTimer(scene, wheel, spawnPoint, now);
+            } catch (Exception e) {
+                logger.error("场景[{}]出生点[{}]定时器执行失败", scene.getSceneId(), spawnPoint.bornData.getObjectKey(), e);
+                // 保证出生点不会因为异常失去定时器
+                wheel.schedule(spawnPoint, monsterAi.getThinkInterval());
+            }
         });
     }
+
+    private void onTimer(Scene scene, TimingWheel<SpawnPoint> wheel, SpawnPoint spawnPoint, long now) {
+        Monster monster = spawnPoint.monster;
+        if (monster == null) {
+            monster = (Monster) spawnPoint.creator.create(scene.getSceneId(), spawnPoint.bornData);
+            scene.appearInScene(monster);
+            spawnPoint.monster = monster;
+            wheel.schedule(spawnPoint, monsterAi.getThinkInterval());
+            return;
+        }
+        if (monster.isDead()) {
+            if (scene.getVisibleObjById(monster.getObjectId()) == monster) {
+                // 在本次心跳取出死亡怪物之后才死亡，等下一次心跳离开场景后再回收
+                wheel.schedule(spawnPoint, tickPeriod);
+                return;
+            }
+            // 死亡的怪物已经在之前的心跳中离开场景，回收后由重生复用
+            spawnPoint.monster = null;
+            int respawnDelay = spawnPoint.bornData.getRespawnDelay() > 0 ? spawnPoint.bornData.getRespawnDelay() : defaultRespawnDelay;
+            long remaining = respawnDelay - (now - monster.getDeathTime());
+            spawnPoint.creator.recycle(monster);
+            wheel.schedule(spawnPoint, remaining);
+            return;
+        }
+        wheel.schedule(spawnPoint, monsterAi.think(scene, monster, now));
+    }
+
+    /**
+     * 怪物出生点，只在场景心跳中读写
+     */
+    private static final class SpawnPoint {
+        private final BornData bornData;
+        private final AbstractObjectCreator creator;
+        /** 当前的怪物，死亡后等待重生时为null */
+        private Monster monster;
+
+        private SpawnPoint(BornData bornData, AbstractObjectCreator creator) {
+            this.bornData = bornData;
+            this.creator = creator;
+        }
+    }
+
+    /**
+     * 一个场景的出生点定时器和待消失的死亡怪物
+     */
+    private static final class SceneSpawn {
+        private final TimingWheel<SpawnPoint> wheel;
+        private final Queue<Monster> deadMonsters = new ConcurrentLinkedQueue<>();
+
+        private SceneSpawn(TimingWheel<SpawnPoint> wheel) {
+            this.wheel = wheel;
+        }
+    }
 }
@@ -8,8 +8,37 @@ package com.mmorpg.mbdl.business.world.model;
  **/
 public class BornData {
     private int objectKey;
+    /**
+     * 出生坐标
+     */
+    private int x;
+    private int y;
+    /**
+     * 死亡后重生的延迟（毫秒），不配置时使用默认值
+     */
+    private int respawnDelay;
+    /**
+     * 主动索敌范围，不配置时为被动怪，只反击攻击者
+     */
+    private int aggroRange;
 
     public int getObjectKey() {
         return objectKey;
     }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getRespawnDelay() {
+        return respawnDelay;
+    }
+
+    public int getAggroRange() {
+        return aggroRange;
+    }
 }
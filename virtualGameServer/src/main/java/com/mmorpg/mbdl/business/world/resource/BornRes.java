@@ -8,12 +8,12 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.util.List;
 
 /**
- * 怪物出生静态资源
+ * 怪物出生静态资源，场景id和怪物的配置表key由{@link BornResPostProcessor}检查
  *
  * @author Sando Geek
  * @since v1.0 2018/12/6
  **/
-@ResDef(suffix = ".json")
+@ResDef(suffix = ".json", dependsOn = {SceneRes.class, SceneObjectAttrRes.class})
 public class BornRes {
     @Key
     private int sceneId;
@@ -0,0 +1,67 @@
+package com.mmorpg.mbdl.business.world.resource;
+
+import com.mmorpg.mbdl.business.world.model.BornData;
+import com.mmorpg.mbdl.framework.resource.exposed.IPrimitiveKeyStaticRes;
+import com.mmorpg.mbdl.framework.resource.exposed.ResPostProcessor;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.core.ResolvableType;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 检查出生资源引用的场景和怪物配置都存在，场景资源或场景对象属性资源热更后随之重新检查<br>
+ * 后处理器在BeanFactoryPostProcessor阶段创建，不能使用@Autowired，通过BeanFactoryAware查找静态资源
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+@Component
+public class BornResPostProcessor implements ResPostProcessor, BeanFactoryAware {
+    private ListableBeanFactory beanFactory;
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) {
+        this.beanFactory = (ListableBeanFactory) beanFactory;
+    }
+
+    @Override
+    public void postProcess(Object obj) {
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void postProcessAll(Class<?> resClass, List<?> values) {
+        if (resClass != BornRes.class) {
+            return;
+        }
+        IPrimitiveKeyStaticRes<Integer, SceneRes> sceneResMap = getStaticRes(SceneRes.class);
+        IPrimitiveKeyStaticRes<Integer, SceneObjectAttrRes> sceneObjectAttrResMap = getStaticRes(SceneObjectAttrRes.class);
+        for (BornRes bornRes : (List<BornRes>) values) {
+            if (!sceneResMap.containsKey(bornRes.getSceneId())) {
+                throw new RuntimeException(String.format("出生资源[%s]对应的场景不存在", bornRes.getSceneId()));
+            }
+            if (bornRes.getBornDataList() == null) {
+                continue;
+            }
+            for (BornData bornData : bornRes.getBornDataList()) {
+                if (!sceneObjectAttrResMap.containsKey(bornData.getObjectKey())) {
+                    throw new RuntimeException(String.format("场景[%s]的出生资源引用了不存在的场景对象[%s]",
+                            bornRes.getSceneId(), bornData.getObjectKey()));
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <V> IPrimitiveKeyStaticRes<Integer, V> getStaticRes(Class<V> resClass) {
+        String[] beanNames = beanFactory.getBeanNamesForType(
+                ResolvableType.forClassWithGenerics(IPrimitiveKeyStaticRes.class, Integer.class, resClass));
+        if (beanNames.length != 1) {
+            throw new RuntimeException(String.format("找不到资源类[%s]的静态资源", resClass.getSimpleName()));
+        }
+        return (IPrimitiveKeyStaticRes<Integer, V>) beanFactory.getBean(beanNames[0]);
+    }
+}
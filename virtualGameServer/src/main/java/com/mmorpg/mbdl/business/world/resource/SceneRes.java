@@ -2,6 +2,7 @@ package com.mmorpg.mbdl.business.world.resource;
 
 import com.mmorpg.mbdl.framework.resource.annotation.Key;
 import com.mmorpg.mbdl.framework.resource.annotation.ResDef;
+import com.mmorpg.mbdl.framework.resource.annotation.Unique;
 
 import java.util.List;
 
@@ -15,6 +16,7 @@ import java.util.List;
 public class SceneRes {
     @Key
     private int sceneId;
+    @Unique
     private String name;
     /**
      * 可前往的场景id集合
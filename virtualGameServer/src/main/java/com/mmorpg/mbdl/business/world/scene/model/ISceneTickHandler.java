@@ -0,0 +1,24 @@
+package com.mmorpg.mbdl.business.world.scene.model;
+
+/**
+ * 场景心跳处理器，实现类注册为spring bean即可，每个场景每次心跳按{@link #order()}依次调用<br/>
+ * 同一场景的心跳在该场景的任务队列中串行执行，处理器内按场景划分的状态不需要加锁
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+public interface ISceneTickHandler {
+    /**
+     * 场景心跳
+     * @param scene 场景
+     * @param now 本次心跳的时间（毫秒），同一次心跳的所有处理器相同
+     */
+    void tick(Scene scene, long now);
+
+    /**
+     * 执行顺序，数值越小越先执行
+     */
+    default int order() {
+        return 0;
+    }
+}
@@ -5,9 +5,12 @@ import com.mmorpg.mbdl.business.role.model.Role;
 import com.mmorpg.mbdl.business.world.manager.SceneManager;
 import com.mmorpg.mbdl.business.world.packet.ObjectDisappearResp;
 import com.mmorpg.mbdl.framework.communicate.websocket.model.AbstractPacket;
+import com.mmorpg.mbdl.framework.thread.interfaces.Dispatchable;
 
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 
 /**
  * 场景
@@ -15,7 +18,7 @@ import java.util.concurrent.ConcurrentHashMap;
  * @author Sando Geek
  * @since v1.0 2018/12/11
  **/
-public class Scene {
+public class Scene implements Dispatchable<Long> {
     /**
      * 场景id
      */
@@ -27,6 +30,17 @@ public class Scene {
 
     private Map<Long, AbstractVisibleSceneObject> objectId2VisibleObject = new ConcurrentHashMap<>(64);
     private Map<Long, Role> objId2Role = new ConcurrentHashMap<>(32);
+    /**
+     * 可见物的空间索引，用于范围查询
+     */
+    private final SceneGrid grid;
+
+    /**
+     * @param gridCellSize 空间索引的格子边长，通常取常用技能范围的量级
+     */
+    public Scene(int gridCellSize) {
+        this.grid = new SceneGrid(gridCellSize);
+    }
 
     public AbstractVisibleSceneObject getVisibleObjById(long objId) {
         return objectId2VisibleObject.get(objId);
@@ -53,6 +67,7 @@ public class Scene {
             objId2Role.put(self.getRoleId(),self);
         }
         objectId2VisibleObject.put(visibleSceneObject.getObjectId(),visibleSceneObject);
+        grid.add(visibleSceneObject);
     }
 
     /**
@@ -66,7 +81,26 @@ public class Scene {
             objId2Role.remove(role.getRoleId());
         }
         objId2Role.values().forEach(role -> role.sendPacket(new ObjectDisappearResp().setId(visibleSceneObject.getObjectId())));
-        objectId2VisibleObject.remove(visibleSceneObject.getObjectId());
+        if (objectId2VisibleObject.remove(visibleSceneObject.getObjectId()) != null) {
+            grid.remove(visibleSceneObject);
+        }
+    }
+
+    /**
+     * 移动场景中的可见物，同时更新空间索引
+     */
+    public void moveTo(AbstractVisibleSceneObject visibleSceneObject, int x, int y) {
+        grid.move(visibleSceneObject, x, y);
+    }
+
+    /**
+     * 范围查询，只遍历以(x,y)为中心、range为半边长的正方形覆盖的格子，再由filter做精确判断
+     * @param filter 精确判断（如扇形、矩形），在索引的读锁内调用，不能有耗时操作
+     * @param result 满足条件的可见物追加到此列表
+     */
+    public void queryInRange(int x, int y, int range, Predicate<? super AbstractVisibleSceneObject> filter,
+                             List<AbstractVisibleSceneObject> result) {
+        grid.query(x, y, range, filter, result);
     }
 
     /**
@@ -99,4 +133,12 @@ public class Scene {
     public Map<Long, Role> getObjId2Role() {
         return objId2Role;
     }
+
+    /**
+     * 场景心跳在场景自己的任务队列中执行，取负数避免与场景对象的id（如npc）共用队列
+     */
+    @Override
+    public Long dispatchId() {
+        return -(long) sceneId;
+    }
 }
@@ -0,0 +1,136 @@
+package com.mmorpg.mbdl.business.world.scene.model;
+
+import com.mmorpg.mbdl.business.object.model.AbstractVisibleSceneObject;
+import io.netty.util.collection.LongObjectHashMap;
+import io.netty.util.collection.LongObjectMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * 场景的均匀网格空间索引，把可见物按坐标放入边长为cellSize的格子中，
+ * 范围查询只遍历与范围外接正方形相交的格子，开销与范围内的对象数相关，与场景对象总数无关<br/>
+ * 场景对象可能在不同线程进出场景，使用读写锁保护，查询之间可以并发
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+final class SceneGrid {
+    private final int cellSize;
+    /** 格子坐标打包成long -> 格子中的可见物 */
+    private final LongObjectMap<List<AbstractVisibleSceneObject>> cells = new LongObjectHashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    SceneGrid(int cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException(String.format("场景网格边长必须大于0，当前为%s", cellSize));
+        }
+        this.cellSize = cellSize;
+    }
+
+    void add(AbstractVisibleSceneObject visibleSceneObject) {
+        lock.writeLock().lock();
+        try {
+            doAdd(visibleSceneObject, cellKey(visibleSceneObject.getX(), visibleSceneObject.getY()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(AbstractVisibleSceneObject visibleSceneObject) {
+        lock.writeLock().lock();
+        try {
+            doRemove(visibleSceneObject, cellKey(visibleSceneObject.getX(), visibleSceneObject.getY()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 移动可见物并更新所在格子，坐标在锁内修改，保证查询看到的坐标与格子一致
+     */
+    void move(AbstractVisibleSceneObject visibleSceneObject, int x, int y) {
+        lock.writeLock().lock();
+        try {
+            long oldKey = cellKey(visibleSceneObject.getX(), visibleSceneObject.getY());
+            long newKey = cellKey(x, y);
+            if (oldKey != newKey) {
+                doRemove(visibleSceneObject, oldKey);
+                visibleSceneObject.setPosition(x, y);
+                doAdd(visibleSceneObject, newKey);
+            } else {
+                visibleSceneObject.setPosition(x, y);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 查询以(x,y)为中心、range为半边长的正方形所覆盖格子中满足条件的可见物
+     * @param filter 精确判断，在读锁内调用，不能有耗时操作
+     * @param result 结果追加到此列表
+     */
+    void query(int x, int y, int range, Predicate<? super AbstractVisibleSceneObject> filter, List<AbstractVisibleSceneObject> result) {
+        int minCellX = Math.floorDiv(x - range, cellSize);
+        int maxCellX = Math.floorDiv(x + range, cellSize);
+        int minCellY = Math.floorDiv(y - range, cellSize);
+        int maxCellY = Math.floorDiv(y + range, cellSize);
+        lock.readLock().lock();
+        try {
+            for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+                for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+                    List<AbstractVisibleSceneObject> cell = cells.get(pack(cellX, cellY));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (int i = 0; i < cell.size(); i++) {
+                        AbstractVisibleSceneObject visibleSceneObject = cell.get(i);
+                        if (filter.test(visibleSceneObject)) {
+                            result.add(visibleSceneObject);
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void doAdd(AbstractVisibleSceneObject visibleSceneObject, long key) {
+        List<AbstractVisibleSceneObject> cell = cells.get(key);
+        if (cell == null) {
+            cell = new ArrayList<>(8);
+            cells.put(key, cell);
+        }
+        cell.add(visibleSceneObject);
+    }
+
+    private void doRemove(AbstractVisibleSceneObject visibleSceneObject, long key) {
+        List<AbstractVisibleSceneObject> cell = cells.get(key);
+        if (cell == null) {
+            return;
+        }
+        // 格子中对象不多，交换到末尾删除，避免数组移动
+        int index = cell.indexOf(visibleSceneObject);
+        if (index < 0) {
+            return;
+        }
+        int last = cell.size() - 1;
+        cell.set(index, cell.get(last));
+        cell.remove(last);
+        if (cell.isEmpty()) {
+            cells.remove(key);
+        }
+    }
+
+    private long cellKey(int x, int y) {
+        return pack(Math.floorDiv(x, cellSize), Math.floorDiv(y, cellSize));
+    }
+
+    private static long pack(int cellX, int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xFFFFFFFFL);
+    }
+}
@@ -9,5 +9,12 @@ public interface IIdGenerator {
      * 生成一个id
      * @return
      */
-    Long generate();
+    long generate();
+
+    /**
+     * 批量生成id
+     * @param n 数量
+     * @return id数组
+     */
+    long[] generate(int n);
 }
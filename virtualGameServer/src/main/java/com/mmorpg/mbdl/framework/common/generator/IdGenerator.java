@@ -1,5 +1,6 @@
 package com.mmorpg.mbdl.framework.common.generator;
 
+import com.google.common.base.Preconditions;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.netty.util.internal.ConcurrentSet;
 import org.apache.commons.lang3.time.StopWatch;
@@ -9,6 +10,8 @@ import org.springframework.context.support.ClassPathXmlApplicationContext;
 
 import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * 经过定制的Twitter_Snowflake算法<br>
@@ -64,84 +67,146 @@ public class IdGenerator implements IIdGenerator {
         return sequenceBits;
     }
 
-    /** 毫秒内序列号(0~511) */
-    private long sequence = 0L;
-    /** 毫秒内id生成计数器,由于大多数情况下生成的id不在同一毫秒，按原方式容易导致很多Id末尾是一串0，这里用计数器使Id末尾数字更均匀 */
-    private long count = 0L;
+    /** 状态字中count的位移，状态字结构：相对时间截(39位) | count(9位) | sequence(9位) */
+    private static final long stateCountShift = sequenceBits;
+    /** 状态字中时间截的位移 */
+    private static final long stateTimestampShift = stateCountShift + sequenceBits;
+    /** 逻辑时钟允许领先系统时钟的最大毫秒数，时钟回拨超过此值时生成id失败 */
+    private static final long maxDriftMillis = 1000L;
+    /** 逻辑时钟领先过多时的等待时间 */
+    private static final long parkNanos = TimeUnit.MILLISECONDS.toNanos(1);
 
-    /** 上次生成ID的时间截 */
-    private long lastTimestamp = -1L;
+    /**
+     * 打包的生成状态：上次生成ID的相对时间截 | 毫秒内id生成计数器 | 毫秒内序列号(0~511)<br>
+     * 计数器：由于大多数情况下生成的id不在同一毫秒，按原方式容易导致很多Id末尾是一串0，这里用计数器使Id末尾数字更均匀，
+     * 序列号跨毫秒滚动，计数器每毫秒从0开始，用于判断毫秒内的序列号是否用完
+     */
+    private final AtomicLong state = new AtomicLong(0L);
 
     private long generatorId;
     private long datacenterId;
     private long serverId;
     private long beginOn ;
+    /** 时间截以外的固定部分 */
+    private final long nodeBits;
 
     public IdGenerator(long generatorId, long datacenterId, long serverId, long beginOn) {
         this.generatorId = generatorId;
         this.datacenterId = datacenterId;
         this.serverId = serverId;
         this.beginOn = beginOn;
+        this.nodeBits = (generatorId << threadIdShift)
+                | (datacenterId << datacenterIdShift)
+                | (serverId << serverIdShift);
     }
 
     /**
-     * 生成id，如果时钟发生回拨，那么会尝试生成10（默认）次id,超出次数会抛出RuntimeException
+     * 生成id，时钟回拨不超过{@link #maxDriftMillis}时沿用上次的时间截继续生成，超出会抛出RuntimeException<br>
+     * 单个生成不创建数组，也不装箱
      * @return id
      */
     @Override
-    public Long generate() {
-        return nextId(10);
+    public long generate() {
+        for (;;) {
+            long current = state.get();
+            long slot = nextSlot(current);
+            if (slot < 0) {
+                LockSupport.parkNanos(parkNanos);
+                continue;
+            }
+            long sequence = (current + 1) & sequenceMask;
+            // 只预留一个，最后的count就是第一个count
+            if (state.compareAndSet(current, slot | sequence)) {
+                return ((slot >>> stateTimestampShift) << timestampLeftShift) | nodeBits | sequence;
+            }
+        }
     }
 
     /**
-     * 发生时钟回拨时尝试生成Id的次数，到达上限后悔抛出异常
-     * @param tryTimes 尝试次数
-     * @return id
+     * 批量生成id，用于批量刷怪、批量创建物品等场景，每毫秒的序列号用一次CAS批量预留
+     * @param n 数量
+     * @return id数组，id各不相同，时间截部分按生成顺序不减
      */
-    public Long generate(int tryTimes) {
-        return nextId(tryTimes);
-    }
-    /** 由于加锁也能每秒生成30w个以上的id，因此可以考虑不做优化 */
-    private synchronized long nextId(int tryTimes) {
-        long timestamp = timeGen();
-        if (timestamp < lastTimestamp) {
-            if (tryTimes==0) {
-                throw new RuntimeException("时钟发生回移，本次生成id失败");
-            }
-            return nextId(--tryTimes);
+    @Override
+    public long[] generate(int n) {
+        Preconditions.checkArgument(n >= 0, "id数量[%s]不能小于0", n);
+        long[] ids = new long[n];
+        int filled = 0;
+        while (filled < n) {
+            filled += reserve(ids, filled, n - filled);
         }
+        return ids;
+    }
 
-        //如果上次生成时间和当前时间相同,在同一毫秒内
-        if (lastTimestamp == timestamp) {
-            //count自增，因为sequence只有9bit，所以和sequenceMask相与一下，去掉高位
-            count = (count+1) & sequenceMask;
-            sequence = (sequence + 1) & sequenceMask;
-            //判断是否溢出,也就是每毫秒内超过512，当为512时，与sequenceMask相与，count就等于0
-            if (count == 0) {
-                //自旋等待到下一毫秒
-                timestamp = tailNextMillis(lastTimestamp);
+    /**
+     * 用CAS在当前毫秒内预留最多n个序列号，并把对应的id写入ids
+     * @param ids 写入的数组
+     * @param offset 写入的起始下标
+     * @param n 期望的数量
+     * @return 实际预留的数量，为0表示逻辑时钟领先过多，已等待
+     */
+    private int reserve(long[] ids, int offset, int n) {
+        for (;;) {
+            long current = state.get();
+            long sequence = current & sequenceMask;
+            long slot = nextSlot(current);
+            if (slot < 0) {
+                LockSupport.parkNanos(parkNanos);
+                return 0;
+            }
+            long timestamp = slot >>> stateTimestampShift;
+            long firstCount = (slot >>> stateCountShift) & sequenceMask;
+            int reserved = (int) Math.min(n, sequenceMask + 1 - firstCount);
+            long lastCount = firstCount + reserved - 1;
+            long next = (timestamp << stateTimestampShift)
+                    | (lastCount << stateCountShift)
+                    | ((sequence + reserved) & sequenceMask);
+            if (state.compareAndSet(current, next)) {
+                long high = (timestamp << timestampLeftShift) | nodeBits;
+                for (int i = 0; i < reserved; i++) {
+                    ids[offset + i] = high | ((sequence + 1 + i) & sequenceMask);
+                }
+                return reserved;
             }
-        } else {
-            // 如果和上次生成时间不同,重置count，就是下一毫秒开始，count计数重新从0开始累加
-            count = 0;
-            sequence = (sequence + 1) & sequenceMask;
         }
-        // logger.info("{}",sequence);
-        lastTimestamp = timestamp;
-        return ((timestamp - this.beginOn) << timestampLeftShift)
-                | ( generatorId << threadIdShift)
-                | (datacenterId << datacenterIdShift)
-                | (serverId << serverIdShift)
-                | sequence;
     }
 
-    // 防止产生的时间比之前的时间还要小（由于NTP回拨等问题）,保持增量的趋势.
-    private long tailNextMillis(final long lastTimestamp) {
-        long timestamp = this.timeGen();
-        while (timestamp <= lastTimestamp) {
-            timestamp = this.timeGen();
+    /**
+     * 计算下一次预留使用的相对时间截和毫秒内第一个count<br>
+     * 时钟回拨或当前毫秒的序列号用完时不自旋等待，而是在逻辑时钟上继续（借用下一毫秒），
+     * 逻辑时钟最多领先系统时钟{@link #maxDriftMillis}毫秒
+     * @param current 当前的状态字
+     * @return 打包格式同状态字，sequence部分为0；逻辑时钟领先过多需要等待时返回-1
+     */
+    private long nextSlot(long current) {
+        long lastTimestamp = current >>> stateTimestampShift;
+        long count = (current >>> stateCountShift) & sequenceMask;
+        long now = timeGen() - beginOn;
+
+        long timestamp;
+        long firstCount;
+        if (now > lastTimestamp) {
+            // 下一毫秒开始，count计数重新从0开始累加
+            timestamp = now;
+            firstCount = 0;
+        } else {
+            if (lastTimestamp - now > maxDriftMillis) {
+                throw new RuntimeException(String.format("时钟发生回移[%s]ms，本次生成id失败", lastTimestamp - now));
+            }
+            if (count == sequenceMask) {
+                // 毫秒内超过512个，借用下一毫秒
+                timestamp = lastTimestamp + 1;
+                firstCount = 0;
+                if (timestamp - now > maxDriftMillis) {
+                    return -1;
+                }
+            } else {
+                // 同一毫秒内（或时钟小幅回拨），沿用上次的时间截
+                timestamp = lastTimestamp;
+                firstCount = count + 1;
+            }
         }
-        return timestamp;
+        return (timestamp << stateTimestampShift) | (firstCount << stateCountShift);
     }
 
     // 获取当前的时间戳
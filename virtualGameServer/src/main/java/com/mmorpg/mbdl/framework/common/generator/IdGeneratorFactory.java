@@ -10,7 +10,6 @@ import javax.annotation.PostConstruct;
 import java.text.DateFormat;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Id生成器工厂
@@ -33,12 +32,8 @@ public class IdGeneratorFactory {
     private long serverId = 1;
     /** 用来生成玩家Id的实例的数量 */
     private int maxPlayerInstance = 6;
-    /** 玩家IdGenerator实例数组下标 */
-    private AtomicInteger arrayIndexOfPlayer = new AtomicInteger(-1);
     /** 用来生成对象Id的实例的数量 */
     private int maxObjectInstance = 10;
-    /** 对象IdGenerator实例数组下标 */
-    private AtomicInteger arrayIndexOfObject = new AtomicInteger(-1);
     private IdGenerator[] playerInstanceIdGenerators = new IdGenerator[maxPlayerInstance];
     private IdGenerator[] ObjectInstanceIdGenerators = new IdGenerator[maxObjectInstance];
 
@@ -71,18 +66,25 @@ public class IdGeneratorFactory {
     }
 
     /**
-     * 获取角色IdGenerator
+     * 获取角色IdGenerator，按线程分槽，同一线程总是使用同一个实例，不同线程尽量分散到不同实例上
      * @return IdGenerator
      */
     public IdGenerator getRoleIdGenerator(){
-        return playerInstanceIdGenerators[arrayIndexOfPlayer.updateAndGet(n -> (n+1)%maxPlayerInstance)];
+        return playerInstanceIdGenerators[slotOfCurrentThread(maxPlayerInstance)];
     }
 
     /**
-     * 获取对象IdGenerator
+     * 获取对象IdGenerator，按线程分槽
      * @return IdGenerator
      */
     public IdGenerator getObjectIdGenerator(){
-        return ObjectInstanceIdGenerators[arrayIndexOfObject.updateAndGet(n -> (n+1)%maxObjectInstance)];
+        return ObjectInstanceIdGenerators[slotOfCurrentThread(maxObjectInstance)];
+    }
+
+    /**
+     * 按线程id分槽，代替所有线程共享的轮询计数器，避免在计数器上竞争
+     */
+    private static int slotOfCurrentThread(int slots) {
+        return (int) (Thread.currentThread().getId() % slots);
     }
 }
@@ -0,0 +1,255 @@
+package com.mmorpg.mbdl.framework.common.shutdown;
+
+import com.google.common.base.MoreObjects;
+import com.mmorpg.mbdl.framework.communicate.websocket.model.ISession;
+import com.mmorpg.mbdl.framework.communicate.websocket.model.SessionManager;
+import com.mmorpg.mbdl.framework.communicate.websocket.server.WebSocketServer;
+import com.mmorpg.mbdl.framework.storage.core.IStorage;
+import com.mmorpg.mbdl.framework.storage.core.StorageExecutor;
+import com.mmorpg.mbdl.framework.thread.task.TaskDispatcher;
+import io.netty.channel.Channel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 停服流程<br>
+ * spring容器关闭时（销毁bean之前）依次执行：停止接受新连接并暂停读取请求 -> 排空任务队列 -> 刷新发送缓冲并关闭会话 ->
+ * 排空下线产生的任务 -> 合并更新的实体分批入库 -> 关闭线程池。
+ * 关闭会话放在实体入库之前，因为下线处理本身也会写库和合并更新。每个阶段都有超时时间，超时后继续下一阶段，
+ * 未入库的实体仍在{@link com.mmorpg.mbdl.framework.storage.core.MergeUpdateJournal}中，下次启动时重放
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+@Component
+public class GracefulShutdown implements ApplicationListener<ContextClosedEvent> {
+    private static final Logger logger = LoggerFactory.getLogger(GracefulShutdown.class);
+    private static final long POLL_INTERVAL_MILLIS = 10;
+    private static final long PROGRESS_LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /** 停止接受新连接的超时时间，秒 */
+    @Value("${server.config.shutdown.stopAcceptTimeout:3}")
+    private int stopAcceptTimeout;
+    /** 排空任务队列的超时时间，秒 */
+    @Value("${server.config.shutdown.drainTimeout:10}")
+    private int drainTimeout;
+    /** 关闭会话的超时时间，秒 */
+    @Value("${server.config.shutdown.sessionCloseTimeout:5}")
+    private int sessionCloseTimeout;
+    /** 合并更新实体入库的超时时间，秒 */
+    @Value("${server.config.shutdown.flushTimeout:30}")
+    private int flushTimeout;
+    /** 合并更新实体入库时每批（每个事务）的实体数 */
+    @Value("${server.config.shutdown.flushBatchSize:200}")
+    private int flushBatchSize;
+    /** 关闭线程池的超时时间，秒 */
+    @Value("${server.config.shutdown.terminateTimeout:5}")
+    private int terminateTimeout;
+
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private final List<StepResult> stepResults = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void onApplicationEvent(ContextClosedEvent event) {
+        if (event.getApplicationContext().getParent() != null) {
+            return;
+        }
+        shutdown(event.getApplicationContext());
+    }
+
+    /**
+     * 执行停服流程，只会执行一次
+     * @param applicationContext spring上下文
+     */
+    public void shutdown(ApplicationContext applicationContext) {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        long start = System.nanoTime();
+        logger.info("开始停服...");
+        runStep("停止接受新连接", stopAcceptTimeout, this::stopAccepting);
+        runStep("排空任务队列", drainTimeout, this::drainTaskQueues);
+        runStep("关闭会话", sessionCloseTimeout, this::closeSessions);
+        runStep("排空下线任务", drainTimeout, this::drainTaskQueues);
+        runStep("合并更新实体入库", flushTimeout, (deadline, result) -> flushMergeUpdates(applicationContext, deadline, result));
+        runStep("关闭线程池", terminateTimeout, this::terminateExecutors);
+        logger.info("停服完成，总耗时{}ms，各阶段：{}", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), stepResults);
+    }
+
+    /**
+     * 各阶段的执行结果
+     */
+    public List<StepResult> getStepResults() {
+        return Collections.unmodifiableList(stepResults);
+    }
+
+    private void runStep(String name, int timeoutSeconds, Step step) {
+        long start = System.nanoTime();
+        StepResult result = new StepResult(name);
+        try {
+            result.completed = step.run(start + TimeUnit.SECONDS.toNanos(timeoutSeconds), result);
+        } catch (Exception e) {
+            logger.error("停服阶段[{}]失败", name, e);
+        }
+        result.elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        stepResults.add(result);
+        if (result.completed) {
+            logger.info("停服阶段[{}]完成，耗时{}ms，{}", name, result.elapsedMillis, result.detail);
+        } else {
+            logger.warn("停服阶段[{}]未完成（超时{}秒），耗时{}ms，{}", name, timeoutSeconds, result.elapsedMillis, result.detail);
+        }
+    }
+
+    private boolean stopAccepting(long deadline, StepResult result) {
+        boolean completed = WebSocketServer.getInstance().stopAccepting(remainingNanos(deadline), TimeUnit.NANOSECONDS);
+        // 已建立的连接不再读取新的请求，否则任务队列无法排空
+        Collection<ISession<Long>> sessions = SessionManager.getInstance().getAllSessions();
+        for (ISession<Long> session : sessions) {
+            session.getChannel().config().setAutoRead(false);
+        }
+        result.detail = String.format("暂停读取的会话[%s]个", sessions.size());
+        return completed;
+    }
+
+    private boolean drainTaskQueues(long deadline, StepResult result) throws InterruptedException {
+        TaskDispatcher taskDispatcher = TaskDispatcher.getInstance();
+        long initial = taskDispatcher.getInFlightTaskCount();
+        long lastLogTime = System.nanoTime();
+        long remaining;
+        while ((remaining = taskDispatcher.getInFlightTaskCount()) > 0) {
+            long now = System.nanoTime();
+            if (now - deadline >= 0) {
+                result.detail = String.format("开始时任务数[%s]，剩余任务数[%s]", initial, remaining);
+                return false;
+            }
+            if (now - lastLogTime >= PROGRESS_LOG_INTERVAL_NANOS) {
+                logger.info("排空任务队列中，剩余任务数[{}]", remaining);
+                lastLogTime = now;
+            }
+            Thread.sleep(POLL_INTERVAL_MILLIS);
+        }
+        result.detail = String.format("开始时任务数[%s]", initial);
+        return true;
+    }
+
+    private boolean closeSessions(long deadline, StepResult result) {
+        List<ISession<Long>> sessions = new ArrayList<>(SessionManager.getInstance().getAllSessions());
+        for (ISession<Long> session : sessions) {
+            // 先把发送缓冲中的包发出去，再关闭
+            session.getChannel().flush();
+            session.close();
+        }
+        int closed = 0;
+        for (ISession<Long> session : sessions) {
+            Channel channel = session.getChannel();
+            if (channel.closeFuture().awaitUninterruptibly(remainingNanos(deadline), TimeUnit.NANOSECONDS)) {
+                closed++;
+            }
+        }
+        result.detail = String.format("会话总数[%s]，已关闭[%s]", sessions.size(), closed);
+        return closed == sessions.size();
+    }
+
+    @SuppressWarnings("rawtypes")
+    private boolean flushMergeUpdates(ApplicationContext applicationContext, long deadline, StepResult result) throws Exception {
+        Collection<IStorage> storages = applicationContext.getBeansOfType(IStorage.class).values();
+        List<CompletableFuture<Integer>> futures = new ArrayList<>(storages.size());
+        for (IStorage storage : storages) {
+            futures.add(storage.flushMergeUpdates(flushBatchSize));
+        }
+        int flushed = 0;
+        int failed = 0;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                flushed += futures.get(i).get(remainingNanos(deadline), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                result.detail = String.format("已入库实体[%s]个，%s个存储未完成，未入库的实体将在下次启动时从预写日志恢复", flushed, futures.size() - i);
+                return false;
+            } catch (Exception e) {
+                failed++;
+                logger.error("合并更新实体入库失败，未入库的实体将在下次启动时从预写日志恢复", e);
+            }
+        }
+        result.detail = String.format("存储[%s]个，已入库实体[%s]个，失败的存储[%s]个", storages.size(), flushed, failed);
+        return failed == 0;
+    }
+
+    private boolean terminateExecutors(long deadline, StepResult result) throws InterruptedException {
+        boolean business = TaskDispatcher.getInstance().shutdown(remainingNanos(deadline), TimeUnit.NANOSECONDS);
+        boolean storage = StorageExecutor.getInstance().shutdown(remainingNanos(deadline), TimeUnit.NANOSECONDS);
+        boolean network = WebSocketServer.getInstance().shutdown(remainingNanos(deadline), TimeUnit.NANOSECONDS);
+        result.detail = String.format("业务线程池[%s]，存储线程池[%s]，网络线程池[%s]", business, storage, network);
+        return business && storage && network;
+    }
+
+    private static long remainingNanos(long deadline) {
+        return Math.max(deadline - System.nanoTime(), 0);
+    }
+
+    @FunctionalInterface
+    private interface Step {
+        /**
+         * 执行停服阶段
+         * @param deadline 截止时间（System.nanoTime）
+         * @param result 阶段结果，用于填写进度
+         * @return 是否在截止时间前完成
+         * @throws Exception 执行失败
+         */
+        boolean run(long deadline, StepResult result) throws Exception;
+    }
+
+    /**
+     * 停服阶段的执行结果
+     */
+    public static class StepResult {
+        private final String name;
+        private boolean completed;
+        private long elapsedMillis;
+        private String detail = "";
+
+        private StepResult(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isCompleted() {
+            return completed;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public String getDetail() {
+            return detail;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("name", name)
+                    .add("completed", completed)
+                    .add("elapsedMillis", elapsedMillis)
+                    .add("detail", detail)
+                    .toString();
+        }
+    }
+}
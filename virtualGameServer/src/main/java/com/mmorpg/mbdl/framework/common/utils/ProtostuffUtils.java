@@ -22,8 +22,13 @@ import java.util.concurrent.ConcurrentHashMap;
 public class ProtostuffUtils {
     private static Map<Class<?>, Schema<?>> cachedSchema = new ConcurrentHashMap<>();
 
+    /**
+     * 获取类对应的schema，创建后会缓存起来
+     * @param clazz 类
+     * @return schema
+     */
     @SuppressWarnings("unchecked")
-    private static <T> Schema<T> getSchema(Class<T> clazz) {
+    public static <T> Schema<T> getSchema(Class<T> clazz) {
         return (Schema<T>) cachedSchema.computeIfAbsent(clazz, RuntimeSchema::getSchema);
     }
 
@@ -28,4 +28,9 @@ public @interface PacketMethod {
      * 也就是聊天请求应该根据不同的频道(作为dispatcheId)生成AbstractTask submit到频道对应的队列中
      */
     boolean executeParallel() default false;
+    /**
+     * 是否为阻塞方法（如访问数据库），阻塞方法在单独的弹性线程池中执行，返回的包回到玩家队列发送，
+     * 执行期间玩家队列的后续请求等待，保证顺序
+     */
+    boolean blocking() default false;
 }
@@ -56,7 +56,11 @@ public class AbstractPacketDispatcherHandler extends SimpleChannelInboundHandler
         } else {
             abstractTask = new HandleReqTask<>(session, packetMethodDefinition, session, abstractPacket);
         }
-        abstractTask = abstractTask.setMaxExecuteTime(30, TimeUnit.MILLISECONDS);
+        if (abstractTask.isBlocking()) {
+            abstractTask = abstractTask.setMaxExecuteTime(200, TimeUnit.MILLISECONDS);
+        } else {
+            abstractTask = abstractTask.setMaxExecuteTime(30, TimeUnit.MILLISECONDS);
+        }
         TaskDispatcher.getInstance().dispatch(abstractTask, executeParallel);
         // TaskExecutorGroup.addTask(new HandleReqTask(packetMethodDefinition,session,abstractPacket));
     }
@@ -13,6 +13,10 @@ public class HandleReqTask<E extends Dispatchable<T>, T extends Serializable> ex
     private PacketMethodDefinition packetMethodDefinition;
     private ISession<T> session;
     private AbstractPacket abstractPacket;
+    /**
+     * 阻塞执行时暂存的返回包，回到玩家队列后发送
+     */
+    private AbstractPacket response;
     /**
      * 使用ChannelId获取队列，玩家频繁上下线的情况下会导致产生大量无用队列，因此应使用PlayerId拿TaskQueue
      */
@@ -23,6 +27,7 @@ public class HandleReqTask<E extends Dispatchable<T>, T extends Serializable> ex
         this.setAbstractPacket(abstractPacket);
         // 根据方法注解决定是否打印日志
         this.setLogOrNot(packetMethodDefinition.getPacketMethodAnno().logOrNot());
+        this.setBlocking(packetMethodDefinition.getPacketMethodAnno().blocking());
     }
 
     @Override
@@ -60,7 +65,19 @@ public class HandleReqTask<E extends Dispatchable<T>, T extends Serializable> ex
         }
 
         if (obj != null){
-            session.sendPacket((AbstractPacket) obj);
+            if (isBlocking()) {
+                response = (AbstractPacket) obj;
+            } else {
+                session.sendPacket((AbstractPacket) obj);
+            }
+        }
+    }
+
+    @Override
+    protected void afterBlockingExecute() {
+        if (response != null) {
+            session.sendPacket(response);
+            response = null;
         }
     }
     public PacketMethodDefinition getPacketMethodDefinition() {
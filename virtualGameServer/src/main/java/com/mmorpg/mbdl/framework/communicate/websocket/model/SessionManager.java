@@ -9,6 +9,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -58,4 +60,12 @@ public class SessionManager {
     public ISession<Long> getSession(ChannelId channelId){
         return channelId2Sessions.get(channelId);
     }
+
+    /**
+     * 获取所有session
+     * @return 所有session的只读视图
+     */
+    public Collection<ISession<Long>> getAllSessions(){
+        return Collections.unmodifiableCollection(channelId2Sessions.values());
+    }
 }
@@ -16,6 +16,7 @@ import org.springframework.context.support.ClassPathXmlApplicationContext;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class WebSocketServer {
@@ -54,6 +55,7 @@ public class WebSocketServer {
     }
     private EventLoopGroup bossGroup;
     private EventLoopGroup workerGroup;
+    private Channel serverChannel;
 
     public void  bind(int netPort) throws Exception {
         try {
@@ -87,7 +89,7 @@ public class WebSocketServer {
                     .childOption(ChannelOption.SO_KEEPALIVE,true)
                     .handler(new LoggingHandler(LogLevel.INFO))
                     .childHandler(this.webSocketServerInitializer);
-            Channel channel = bootstrap.bind(netPort).sync().channel();
+            serverChannel = bootstrap.bind(netPort).sync().channel();
             logger.info("WebSocket服务器已启动完成");
             // 阻塞，直到channel.close
             // channel.closeFuture().sync();
@@ -97,10 +99,42 @@ public class WebSocketServer {
         }
     }
 
+    /**
+     * 停止接受新连接，已建立的连接不受影响
+     * @param timeout 等待时间
+     * @param timeUnit 时间单位
+     * @return 是否在等待时间内完成
+     */
+    public boolean stopAccepting(long timeout, TimeUnit timeUnit) {
+        if (serverChannel == null) {
+            return true;
+        }
+        boolean closed = serverChannel.close().awaitUninterruptibly(timeout, timeUnit);
+        return bossGroup.shutdownGracefully(0, timeout, timeUnit).awaitUninterruptibly(timeout, timeUnit) && closed;
+    }
+
     // 辅助线程优雅退出
     public void shutdown() {
-        this.bossGroup.shutdownGracefully();
-        this.workerGroup.shutdownGracefully();
+        if (this.bossGroup != null) {
+            this.bossGroup.shutdownGracefully();
+        }
+        if (this.workerGroup != null) {
+            this.workerGroup.shutdownGracefully();
+        }
+    }
+
+    /**
+     * 关闭I/O线程，等待已提交的写操作完成
+     * @param timeout 等待时间
+     * @param timeUnit 时间单位
+     * @return 是否在等待时间内完成
+     */
+    public boolean shutdown(long timeout, TimeUnit timeUnit) {
+        shutdown();
+        if (this.workerGroup == null) {
+            return true;
+        }
+        return this.workerGroup.terminationFuture().awaitUninterruptibly(timeout, timeUnit);
     }
 
     public static void  main(String[] args) throws Exception {
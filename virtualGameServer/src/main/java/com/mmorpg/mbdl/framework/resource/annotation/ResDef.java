@@ -35,6 +35,13 @@ public @interface ResDef {
      */
     boolean isTable() default true;
 
+    /**
+     * 依赖的资源类，依赖的资源完成后处理（包括{@link com.mmorpg.mbdl.framework.resource.exposed.IAfterResLoad#afterLoad()}）后才后处理当前资源
+     * <p>所有资源文件的解析互不依赖，并行进行；后处理中需要读取其他资源的后处理结果时配置此值</p>
+     * @return 依赖的资源类
+     */
+    Class<?>[] dependsOn() default {};
+
     // /**
     //  * 当前类是否对应单个Resource文件，默认true
     //  * @return 单个true,多个false
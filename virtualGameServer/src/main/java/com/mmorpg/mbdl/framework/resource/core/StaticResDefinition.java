@@ -1,23 +1,28 @@
 package com.mmorpg.mbdl.framework.resource.core;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
-import com.mmorpg.mbdl.framework.common.utils.FileUtils;
-import com.mmorpg.mbdl.framework.common.utils.ProtostuffUtils;
-import com.mmorpg.mbdl.framework.common.utils.StringUtil;
+import com.mmorpg.mbdl.framework.resource.exposed.BaseResResolver;
+import com.mmorpg.mbdl.framework.resource.exposed.ResPostProcessor;
 import com.mmorpg.mbdl.framework.resource.impl.StaticRes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.core.io.Resource;
 import org.springframework.util.StringUtils;
-import org.xerial.snappy.SnappyInputStream;
-import org.xerial.snappy.SnappyOutputStream;
 
-import java.io.*;
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * 静态资源定义
@@ -27,13 +32,18 @@ import java.util.Map;
  **/
 public class StaticResDefinition {
     private static final Logger logger = LoggerFactory.getLogger(StaticResDefinition.class);
-    private static final String runParentPath = IStaticResUtil.getRunParentPath();
     /** 资源文件全路径名 */
     private String fullFileName;
     /**
      * 版本（最后修改时间）
      */
     private long[] version = new long[1];
+    /** 资源文件大小 */
+    private long sourceSize;
+    /** 资源文件内容哈希，需要时才计算 */
+    private volatile Long sourceHash;
+    /** 资源类字段哈希，资源类的字段变化后镜像中的数据不可用 */
+    private final long schemaHash;
     /** V的实际类型 */
     private Class<?> vClass;
 
@@ -41,8 +51,10 @@ public class StaticResDefinition {
 
     /** id字段 */
     private Field idField;
-    private Map<String,Field> uniqueFieldName2Field;
-    private Map<String,Field> indexFieldName2Field;
+    private Map<String,Field> uniqueFieldName2Field = ImmutableMap.of();
+    private Map<String,Field> indexFieldName2Field = ImmutableMap.of();
+    /** 依赖的静态资源，见{@link com.mmorpg.mbdl.framework.resource.annotation.ResDef#dependsOn()} */
+    private Set<StaticResDefinition> dependencies = Collections.emptySet();
     /**
      * 实际存储静态资源数据的对象
      */
@@ -51,13 +63,28 @@ public class StaticResDefinition {
     private ImmutableMap.Builder key2ResourceBuilder = ImmutableMap.builder();
     private ConfigurableListableBeanFactory beanFactory;
 
-    private File tempFile;
-
     public StaticResDefinition(Class<?> vClass) {
         fullFileName = IStaticResUtil.getFullFileName(vClass);
         this.vClass = vClass;
-        String filePath = StringUtil.fommat("{}/resTemp/{}.pbstuff", runParentPath, vClass.getSimpleName());
-        tempFile = new File(filePath);
+        this.schemaHash = computeSchemaHash(vClass);
+    }
+
+    /**
+     * 根据资源类（含父类）中参与序列化的字段名和类型计算哈希
+     */
+    private static long computeSchemaHash(Class<?> vClass) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (Class<?> clazz = vClass; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (Field field : clazz.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) {
+                    continue;
+                }
+                hasher.putString(field.getName(), StandardCharsets.UTF_8)
+                        .putString(field.getGenericType().getTypeName(), StandardCharsets.UTF_8);
+            }
+        }
+        return hasher.hash().asLong();
     }
 
     public String getFullFileName() {
@@ -73,14 +100,43 @@ public class StaticResDefinition {
         idField.setAccessible(true);
     }
 
+    public void setUniqueFields(Collection<Field> uniqueFields) {
+        this.uniqueFieldName2Field = toFieldName2Field(uniqueFields);
+    }
+
+    public void setIndexFields(Collection<Field> indexFields) {
+        this.indexFieldName2Field = toFieldName2Field(indexFields);
+    }
+
+    private static Map<String, Field> toFieldName2Field(Collection<Field> fields) {
+        ImmutableMap.Builder<String, Field> builder = ImmutableMap.builder();
+        for (Field field : fields) {
+            field.setAccessible(true);
+            builder.put(field.getName(), field);
+        }
+        return builder.build();
+    }
+
+    public Set<StaticResDefinition> getDependencies() {
+        return dependencies;
+    }
+
+    public void setDependencies(Set<StaticResDefinition> dependencies) {
+        this.dependencies = dependencies;
+    }
+
     public Class<?> getvClass() {
         return vClass;
     }
 
+    public StaticRes getStaticRes() {
+        return staticRes;
+    }
+
     public void setStaticRes(StaticRes staticRes) {
         this.staticRes = staticRes;
         try {
-            key2ResourceField = this.staticRes.getClass().getSuperclass().getDeclaredField("key2Resource");
+            key2ResourceField = StaticRes.class.getDeclaredField("key2Resource");
         } catch (NoSuchFieldException e) {
             e.printStackTrace();
         }
@@ -102,7 +158,9 @@ public class StaticResDefinition {
     public void setResource(Resource resource) {
         this.resource = resource;
         try {
-            this.version[0] = resource.getFile().lastModified();
+            File file = resource.getFile();
+            this.version[0] = file.lastModified();
+            this.sourceSize = file.length();
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -115,68 +173,161 @@ public class StaticResDefinition {
     }
 
     /**
-     * 设置{@link StaticRes}的存储map，并返回该map
-     * @return
+     * 设置{@link StaticRes}的存储map，并建立唯一值字段和索引字段的查找表
      */
+    @SuppressWarnings("unchecked")
     public void setImmutableMap() {
         ImmutableMap immutableMap = key2ResourceBuilder.build();
-        setKey2Resource(immutableMap);
         key2ResourceBuilder = ImmutableMap.builder();
+        staticRes.swap(immutableMap, uniqueFieldName2Field.values(), indexFieldName2Field.values());
     }
 
-    public void writeToFile() {
+    /**
+     * 用解析器解析资源文件，并在镜像中记录解析结果
+     * @param resolver 资源文件对应的解析器
+     * @param image 静态资源镜像
+     */
+    public void resolve(BaseResResolver resolver, StaticResImage image) {
+        resolver.resolve(this);
         setImmutableMap();
-        try {
-            if (!tempFile.exists()) {
-                FileUtils.createFile(tempFile);
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+        image.record(this, StaticResImage.encode(staticRes.values()));
+        image.markDirty();
+    }
+
+    /**
+     * 尝试从静态资源镜像中加载
+     * @param image 静态资源镜像
+     * @return 镜像中有可用的数据并加载成功返回true
+     */
+    public boolean tryLoadFromImage(StaticResImage image) {
+        List<?> values = image.tryDecode(this);
+        if (values == null) {
+            return false;
         }
+        values.forEach(this::add);
+        setImmutableMap();
+        logger.debug("静态资源[{}]从镜像中加载", fullFileName);
+        return true;
+    }
 
-        try (FileOutputStream fileOutputStream = new FileOutputStream(tempFile);
-             SnappyOutputStream outputStream = new SnappyOutputStream(fileOutputStream);) {
-            outputStream.write(version);
-            ProtostuffUtils.writeListTo(outputStream, staticRes.values());
-            logger.info("资源[{}]生成新的缓存文件[{}]", fullFileName, tempFile.getAbsolutePath());
-        } catch (IOException e) {
-            e.printStackTrace();
+    /**
+     * 资源文件的版本（最后修改时间）
+     */
+    public long getVersion() {
+        return version[0];
+    }
+
+    public long getSourceSize() {
+        return sourceSize;
+    }
+
+    /**
+     * 资源文件内容的哈希
+     */
+    public long getSourceHash() {
+        Long hash = sourceHash;
+        if (hash == null) {
+            try {
+                hash = com.google.common.io.Files.asByteSource(resource.getFile()).hash(Hashing.murmur3_128()).asLong();
+            } catch (IOException e) {
+                throw new RuntimeException(String.format("计算资源文件[%s]的哈希失败", fullFileName), e);
+            }
+            sourceHash = hash;
         }
+        return hash;
+    }
+
+    public long getSchemaHash() {
+        return schemaHash;
     }
 
     /**
-     * 从.pbstuff格式的文件中解析
+     * 热更：重新解析资源文件，经过后处理器处理并建立索引后，一次性替换{@link StaticRes}中的资源对象，
+     * 任一步骤失败都会保留原来的资源对象<br>
+     * 替换后依赖它的资源后处理时能读取到新数据，同一批热更的资源全部成功后调用{@link Reloaded#commit(StaticResImage)}，
+     * 有资源失败时调用{@link Reloaded#rollback(List)}恢复
+     * @param resolver 资源文件对应的解析器
+     * @param resPostProcessors 按优先级排好序的后处理器
+     * @return 替换结果
      */
-    public boolean tryParseFromPbstuffFile() {
-        if (!tempFile.exists()) {
-            return false;
+    @SuppressWarnings("unchecked")
+    public Reloaded reload(BaseResResolver resolver, List<ResPostProcessor> resPostProcessors) {
+        if (staticRes == null) {
+            throw new RuntimeException(String.format("资源文件[%s]不是表格型资源，不支持热更", fullFileName));
         }
-        try (BufferedInputStream bufferedInputStream = new BufferedInputStream(new FileInputStream(tempFile));
-             SnappyInputStream inputStream = new SnappyInputStream(bufferedInputStream);
-        ) {
-            long[] versionFromFile = new long[1];
-            int size = inputStream.read(versionFromFile);
-            if (this.version[0] != versionFromFile[0]) {
-                // 版本不一致
-                return false;
-            }
-            List<?> values = ProtostuffUtils.parseListFrom(inputStream, vClass);
-            values.forEach(this::add);
-            setImmutableMap();
+        long lastModified;
+        long size;
+        try {
+            File file = resource.getFile();
+            lastModified = file.lastModified();
+            size = file.length();
         } catch (IOException e) {
-            e.printStackTrace();
-            logger.error("静态资源[{}]从缓存文件中加载,加载失败", fullFileName);
-            return false;
+            throw new RuntimeException(String.format("读取资源文件[%s]的修改时间失败", fullFileName), e);
         }
-        logger.info("静态资源[{}]从缓存文件中加载,加载成功", fullFileName);
-        return true;
+        ImmutableMap immutableMap;
+        key2ResourceBuilder = ImmutableMap.builder();
+        try {
+            resolver.resolve(this);
+            immutableMap = key2ResourceBuilder.build();
+        } finally {
+            key2ResourceBuilder = ImmutableMap.builder();
+        }
+        byte[] body = StaticResImage.encode(immutableMap.values());
+        for (ResPostProcessor resPostProcessor : resPostProcessors) {
+            immutableMap.values().forEach(resPostProcessor::postProcess);
+        }
+        List<?> values = immutableMap.values().asList();
+        for (ResPostProcessor resPostProcessor : resPostProcessors) {
+            resPostProcessor.postProcessAll(vClass, values);
+        }
+        ImmutableMap oldMap = staticRes.swap(immutableMap, uniqueFieldName2Field.values(), indexFieldName2Field.values());
+        return new Reloaded(oldMap, body, lastModified, size);
     }
 
-    public void setKey2Resource(ImmutableMap immutableMap) {
-        try {
-            key2ResourceField.set(staticRes, immutableMap);
-        } catch (IllegalAccessException e) {
-            e.printStackTrace();
+    /**
+     * 已替换但还没有提交的热更结果
+     */
+    public class Reloaded {
+        /** 替换前的资源对象 */
+        private final ImmutableMap oldMap;
+        private final byte[] body;
+        private final long lastModified;
+        private final long size;
+
+        private Reloaded(ImmutableMap oldMap, byte[] body, long lastModified, long size) {
+            this.oldMap = oldMap;
+            this.body = body;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+
+        public ImmutableMap getOldMap() {
+            return oldMap;
+        }
+
+        /**
+         * 记录新的版本，并在镜像中记录新的数据
+         * @param image 静态资源镜像
+         */
+        public void commit(StaticResImage image) {
+            version[0] = lastModified;
+            sourceSize = size;
+            sourceHash = null;
+            image.record(StaticResDefinition.this, body);
+            image.markDirty();
+        }
+
+        /**
+         * 换回替换前的资源对象，并重新执行{@link ResPostProcessor#postProcessAll(Class, List)}恢复后处理器中保存的数据
+         * @param resPostProcessors 按优先级排好序的后处理器
+         */
+        @SuppressWarnings("unchecked")
+        public void rollback(List<ResPostProcessor> resPostProcessors) {
+            staticRes.swap(oldMap, uniqueFieldName2Field.values(), indexFieldName2Field.values());
+            List<?> values = oldMap.values().asList();
+            for (ResPostProcessor resPostProcessor : resPostProcessors) {
+                resPostProcessor.postProcessAll(vClass, values);
+            }
         }
     }
 
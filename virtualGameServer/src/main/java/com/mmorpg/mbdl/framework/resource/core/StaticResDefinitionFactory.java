@@ -18,9 +18,19 @@ public class StaticResDefinitionFactory {
      * fullFileName -> StaticResDefinition
      */
     private Map<String, StaticResDefinition> fullFileName2StaticResDefinition = new ConcurrentHashMap<>(32);
+    /** 静态资源镜像，热更后用于重新生成镜像文件 */
+    private StaticResImage staticResImage;
 
     public Map<String, StaticResDefinition> getFullFileName2StaticResDefinition() {
         return fullFileName2StaticResDefinition;
     }
 
+    public StaticResImage getStaticResImage() {
+        return staticResImage;
+    }
+
+    public void setStaticResImage(StaticResImage staticResImage) {
+        this.staticResImage = staticResImage;
+    }
+
 }
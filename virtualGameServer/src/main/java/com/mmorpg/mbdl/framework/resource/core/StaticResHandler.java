@@ -1,17 +1,20 @@
 package com.mmorpg.mbdl.framework.resource.core;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.mmorpg.mbdl.EnhanceStarter;
 import com.mmorpg.mbdl.framework.common.utils.SpringPropertiesUtil;
 import com.mmorpg.mbdl.framework.common.utils.StringUtil;
+import com.mmorpg.mbdl.framework.resource.annotation.Index;
 import com.mmorpg.mbdl.framework.resource.annotation.Key;
 import com.mmorpg.mbdl.framework.resource.annotation.ResDef;
+import com.mmorpg.mbdl.framework.resource.annotation.Unique;
 import com.mmorpg.mbdl.framework.resource.exposed.AbstractMetadataReaderPostProcessor;
 import com.mmorpg.mbdl.framework.resource.exposed.BaseResResolver;
 import com.mmorpg.mbdl.framework.resource.exposed.IStaticRes;
 import com.mmorpg.mbdl.framework.resource.exposed.ResPostProcessor;
+import com.mmorpg.mbdl.framework.resource.impl.PrimitiveKeyStaticRes;
 import com.mmorpg.mbdl.framework.resource.impl.StaticRes;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import net.bytebuddy.ByteBuddy;
@@ -23,6 +26,7 @@ import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ListableBeanFactory;
 import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.core.io.FileSystemResource;
@@ -38,9 +42,12 @@ import org.springframework.util.SystemPropertyUtils;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.reflections.ReflectionUtils.getAllFields;
 import static org.reflections.ReflectionUtils.withAnnotation;
@@ -109,89 +116,189 @@ public class StaticResHandler implements BeanFactoryPostProcessor {
 
     /**
      * 处理静态资源
+     * <p>1.关联所有解析器的资源文件；2.不区分解析器并行解析全部资源文件；3.注册到bean工厂；
+     * 4.按{@link ResDef#dependsOn()}的拓扑顺序分层后处理，同一层的资源并行后处理</p>
      * @param beanFactory bean工厂
      */
     private void handleStaticRes(ConfigurableListableBeanFactory beanFactory){
         StopWatch stopWatch = new StopWatch();
         stopWatch.start();
+        StaticResImage image = StaticResImage.open(StaticResImage.getImageFile());
+        long openImageTime = stopWatch.getTime();
+        Map<String, StaticResDefinition> fileName2StaticResDefinition = staticResDefinitionFactory.getFullFileName2StaticResDefinition();
+        Map<StaticResDefinition, BaseResResolver> staticResDefinition2Resolver = new HashMap<>(fileName2StaticResDefinition.size());
         beanFactory.getBeansOfType(BaseResResolver.class).values().forEach(baseResResolver -> {
-            Resource[] resources;
-            ResourcePatternResolver resourcePatternResolver = new PathMatchingResourcePatternResolver();
+            for (Resource res : getResources(baseResResolver)) {
+                StaticResDefinition staticResDefinition = bindResource(fileName2StaticResDefinition, res);
+                if (staticResDefinition != null) {
+                    logger.debug("静态资源{}成功关联到类[{}]",staticResDefinition.getFullFileName(),staticResDefinition.getvClass().getSimpleName());
+                    staticResDefinition2Resolver.put(staticResDefinition, baseResResolver);
+                }
+            }
+        });
+        checkNullResStaticResDefinition(fileName2StaticResDefinition);
+
+        Map<StaticResDefinition, ResLoadCost> staticResDefinition2Cost = new ConcurrentHashMap<>(staticResDefinition2Resolver.size());
+        // 解析阶段互不依赖，利用ForkJoinPool并行处理，因为包含IO,所以使用自定义的ForkJoinPool
+        long parseStart = stopWatch.getTime();
+        runInForkJoinPool(() -> staticResDefinition2Resolver.entrySet().parallelStream().forEach(entry -> {
+            StaticResDefinition staticResDefinition = entry.getKey();
+            ResLoadCost cost = new ResLoadCost(staticResDefinition.getFullFileName());
+            long start = System.nanoTime();
             try {
-                String locationPattern = StringUtil.fommat("file:{}**/*{}", IStaticResUtil.getRunParentPath(), baseResResolver.suffix());
-                resources = resourcePatternResolver.getResources(locationPattern);
-            } catch (IOException e) {
-                String message = String.format("获取后缀为[%s]的资源时发生IO异常", baseResResolver.suffix());
-                throw new RuntimeException(message);
+                if (staticResDefinition.tryLoadFromImage(image)) {
+                    cost.fromImage = true;
+                } else {
+                    // 镜像中没有或已过期，解析源文件，加载完成后重新生成镜像
+                    staticResDefinition.resolve(entry.getValue(), image);
+                }
+            } catch (Exception e) {
+                throw new RuntimeException(String.format("静态资源[%s]解析失败", staticResDefinition.getFullFileName()), e);
+            }
+            cost.loadNanos = System.nanoTime() - start;
+            staticResDefinition2Cost.put(staticResDefinition, cost);
+        }));
+        long parseTime = stopWatch.getTime() - parseStart;
+
+        for (StaticResDefinition staticResDefinition : staticResDefinition2Resolver.keySet()) {
+            try {
+                staticResDefinition.registerToBeanFactory();
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(String.format("静态资源[%s]注册失败", staticResDefinition.getFullFileName()), e);
             }
-            Map<String, StaticResDefinition> fileName2StaticResDefinition = beanFactory
-                    .getBean(StaticResDefinitionFactory.class).getFullFileName2StaticResDefinition();
+        }
 
-            Map<String, ResPostProcessor> resPostProcessorMap = beanFactory.getBeansOfType(ResPostProcessor.class);
-            ArrayList<ResPostProcessor> resPostProcessors = Lists.newArrayList(resPostProcessorMap.values());
-            resPostProcessors.sort((o1, o2) -> {
-                if (o1.order() > o2.order()) {
-                    return -1;
-                } else if (o1.order() < o2.order()) {
-                    return 1;
+        long postProcessStart = stopWatch.getTime();
+        List<ResPostProcessor> resPostProcessors = getSortedResPostProcessors(beanFactory);
+        List<List<StaticResDefinition>> levels = sortByDependency(staticResDefinition2Resolver.keySet());
+        for (List<StaticResDefinition> level : levels) {
+            runInForkJoinPool(() -> level.parallelStream().forEach(staticResDefinition -> {
+                long start = System.nanoTime();
+                try {
+                    ImmutableList<?> values = staticResDefinition.getStaticRes().values();
+                    resPostProcessors.forEach(resPostProcessor -> values.forEach(resPostProcessor::postProcess));
+                    resPostProcessors.forEach(resPostProcessor -> resPostProcessor.postProcessAll(staticResDefinition.getvClass(), values));
+                } catch (Exception e) {
+                    throw new RuntimeException(String.format("静态资源[%s]后处理失败", staticResDefinition.getFullFileName()), e);
                 }
-                return 0;
-            });
-            // 利用ForkJoinPool并行处理，因为包含IO,所以使用自定义的ForkJoinPool
-            Runnable resourceLoadTask = () -> {
-                Arrays.stream(resources).parallel().filter(Resource::isReadable).map((res)->{
-                    String filename = res.getFilename();
-                    // 初始化StaticResDefinition的Resource resources字段
-                    StaticResDefinition staticResDefinitionResult = Optional.ofNullable(fileName2StaticResDefinition.get(filename)).orElseGet(() -> {
-                        String resPathRelative2ClassPath = IStaticResUtil.getResPathRelative2ClassPath((FileSystemResource) res);
-                        return fileName2StaticResDefinition.get(resPathRelative2ClassPath);
-                    });
-                    if (staticResDefinitionResult!=null){
-                        Resource resource = staticResDefinitionResult.getResource();
-                        if ( resource != null ){
-                            String newPath = IStaticResUtil.getResPathRelative2ClassPath((FileSystemResource) res);
-                            String oldPath = IStaticResUtil.getResPathRelative2ClassPath((FileSystemResource) resource);
-                            String message = String.format(
-                                    "资源类[%s]对应两份文件：[%s],[%s],请在其注解上使用@ResDef(relativePath = \"%s\")或@ResDef(relativePath = \"%s\")确定此类对应的资源文件",
-                                    staticResDefinitionResult.getvClass().getSimpleName(),
-                                    newPath, oldPath, newPath, oldPath
-                            );
-                            throw new RuntimeException(message);
-                        }
-                        staticResDefinitionResult.setResource(res);
-                    }
-                    return staticResDefinitionResult;
-                }).filter(Objects::nonNull).forEach((staticResDefinition -> {
-                    logger.debug("静态资源{}成功关联到类[{}]",staticResDefinition.getFullFileName(),staticResDefinition.getvClass().getSimpleName());
-                    try {
-                        if (!staticResDefinition.tryParseFromPbstuffFile()) {
-                            baseResResolver.resolve(staticResDefinition);
-                            // 没从缓存读取，说明缓存文件是旧的，重新生成缓存文件
-                            staticResDefinition.writeToFile();
-                        }
-                        ImmutableMap immutableMap = staticResDefinition.registerToBeanFactory();
-                        resPostProcessors.forEach(resPostProcessor -> immutableMap.values().forEach(resPostProcessor::postProcess));
-                    } catch (Exception e) {
-                        throw new RuntimeException(String.format("静态资源[%s]解析失败", staticResDefinition.getFullFileName()), e);
-                    }
+                staticResDefinition2Cost.get(staticResDefinition).postProcessNanos = System.nanoTime() - start;
+            }));
+        }
+        long postProcessTime = stopWatch.getTime() - postProcessStart;
+        stopWatch.stop();
+        forkJoinPool.shutdown();
 
-                }));
-            };
+        long loadFromImageCount = staticResDefinition2Cost.values().stream().filter(cost -> cost.fromImage).count();
+        logger.info("静态资源加载完毕，耗时{}ms（映射镜像{}ms，解析{}ms，后处理{}ms共{}层），从镜像加载{}个，解析源文件{}个",
+                stopWatch.getTime(), openImageTime, parseTime, postProcessTime, levels.size(),
+                loadFromImageCount, staticResDefinition2Cost.size() - loadFromImageCount);
+        if (logger.isInfoEnabled()) {
+            StringBuilder builder = new StringBuilder("各静态资源加载耗时：");
+            staticResDefinition2Cost.values().stream()
+                    .sorted(Comparator.comparingLong(ResLoadCost::totalNanos).reversed())
+                    .forEach(cost -> builder.append(System.lineSeparator()).append(cost));
+            logger.info(builder.toString());
+        }
+        image.release();
+        if (image.isDirty()) {
+            image.write(StaticResImage.getImageFile());
+        }
+        staticResDefinitionFactory.setStaticResImage(image);
+    }
 
-            // 使用默认ForkJoinPool执行耗时测试
-            // resourceLoadTask.run();
+    /**
+     * 获取解析器能解析的所有资源文件
+     */
+    private Resource[] getResources(BaseResResolver baseResResolver) {
+        ResourcePatternResolver resourcePatternResolver = new PathMatchingResourcePatternResolver();
+        try {
+            String locationPattern = StringUtil.fommat("file:{}**/*{}", IStaticResUtil.getRunParentPath(), baseResResolver.suffix());
+            return resourcePatternResolver.getResources(locationPattern);
+        } catch (IOException e) {
+            String message = String.format("获取后缀为[%s]的资源时发生IO异常", baseResResolver.suffix());
+            throw new RuntimeException(message);
+        }
+    }
 
-            try {
-                forkJoinPool.submit(resourceLoadTask).get();
-            } catch (InterruptedException | ExecutionException e) {
-                throw new RuntimeException(e);
+    /**
+     * 初始化资源文件对应的StaticResDefinition的Resource字段
+     * @return 资源文件对应的StaticResDefinition，没有对应的资源类或文件不可读时返回null
+     */
+    private StaticResDefinition bindResource(Map<String, StaticResDefinition> fileName2StaticResDefinition, Resource res) {
+        if (!res.isReadable()) {
+            return null;
+        }
+        String filename = res.getFilename();
+        StaticResDefinition staticResDefinitionResult = Optional.ofNullable(fileName2StaticResDefinition.get(filename)).orElseGet(() -> {
+            String resPathRelative2ClassPath = IStaticResUtil.getResPathRelative2ClassPath((FileSystemResource) res);
+            return fileName2StaticResDefinition.get(resPathRelative2ClassPath);
+        });
+        if (staticResDefinitionResult!=null){
+            Resource resource = staticResDefinitionResult.getResource();
+            if ( resource != null ){
+                String newPath = IStaticResUtil.getResPathRelative2ClassPath((FileSystemResource) res);
+                String oldPath = IStaticResUtil.getResPathRelative2ClassPath((FileSystemResource) resource);
+                String message = String.format(
+                        "资源类[%s]对应两份文件：[%s],[%s],请在其注解上使用@ResDef(relativePath = \"%s\")或@ResDef(relativePath = \"%s\")确定此类对应的资源文件",
+                        staticResDefinitionResult.getvClass().getSimpleName(),
+                        newPath, oldPath, newPath, oldPath
+                );
+                throw new RuntimeException(message);
+            }
+            staticResDefinitionResult.setResource(res);
+        }
+        return staticResDefinitionResult;
+    }
+
+    private void runInForkJoinPool(Runnable task) {
+        try {
+            forkJoinPool.submit(task).get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 按依赖关系分层，每一层的资源只依赖前面层中的资源，不在参数中的依赖忽略
+     * @param staticResDefinitions 待排序的静态资源定义
+     * @return 分层后的静态资源定义，按层的先后顺序排列
+     * @throws RuntimeException 如果资源之间存在循环依赖
+     */
+    static List<List<StaticResDefinition>> sortByDependency(Collection<StaticResDefinition> staticResDefinitions) {
+        Set<StaticResDefinition> remaining = new LinkedHashSet<>(staticResDefinitions);
+        List<List<StaticResDefinition>> levels = new ArrayList<>();
+        while (!remaining.isEmpty()) {
+            List<StaticResDefinition> level = remaining.stream()
+                    .filter(staticResDefinition -> staticResDefinition.getDependencies().stream().noneMatch(remaining::contains))
+                    .collect(Collectors.toList());
+            if (level.isEmpty()) {
+                throw new RuntimeException(String.format("静态资源之间存在循环依赖：%s", remaining.stream()
+                        .map(staticResDefinition -> staticResDefinition.getvClass().getSimpleName())
+                        .collect(Collectors.joining(","))));
             }
+            remaining.removeAll(level);
+            levels.add(level);
+        }
+        return levels;
+    }
 
+    /**
+     * 获取所有的静态资源对象后处理器，按优先级从高到低排序
+     * @param beanFactory bean工厂
+     * @return 排好序的后处理器
+     */
+    static List<ResPostProcessor> getSortedResPostProcessors(ListableBeanFactory beanFactory) {
+        Map<String, ResPostProcessor> resPostProcessorMap = beanFactory.getBeansOfType(ResPostProcessor.class);
+        ArrayList<ResPostProcessor> resPostProcessors = Lists.newArrayList(resPostProcessorMap.values());
+        resPostProcessors.sort((o1, o2) -> {
+            if (o1.order() > o2.order()) {
+                return -1;
+            } else if (o1.order() < o2.order()) {
+                return 1;
+            }
+            return 0;
         });
-        stopWatch.stop();
-        forkJoinPool.shutdown();
-        checkNullResStaticResDefinition(beanFactory.getBean(StaticResDefinitionFactory.class).getFullFileName2StaticResDefinition());
-        logger.info("静态资源解析完毕，耗时{}ms",stopWatch.getTime());
+        return resPostProcessors;
     }
 
     /**
@@ -236,6 +343,15 @@ public class StaticResHandler implements BeanFactoryPostProcessor {
                     break;
                 }
                 staticResDefinition.setIdField(idField);
+                staticResDefinition.setUniqueFields(getAllFields(clazz, withAnnotation(Unique.class)));
+                staticResDefinition.setIndexFields(getAllFields(clazz, withAnnotation(Index.class)));
+                staticResDefinition.setDependencies(Arrays.stream(resDef.dependsOn()).map(dependency -> {
+                    StaticResDefinition dependencyDefinition = class2StaticResDefinitionMap.get(dependency);
+                    if (dependencyDefinition == null) {
+                        throw new RuntimeException(String.format("资源类[%s]依赖的类[%s]不是资源类", clazz.getSimpleName(), dependency.getName()));
+                    }
+                    return dependencyDefinition;
+                }).collect(Collectors.toSet()));
                 Class idBoxedType = null;
                 if (idField.getType().isPrimitive()){
                     switch (idField.getType().getSimpleName()) {
@@ -278,8 +394,10 @@ public class StaticResHandler implements BeanFactoryPostProcessor {
                     idBoxedType = idField.getType();
                 }
 
+                // 整数主键使用不装箱的PrimitiveKeyStaticRes
+                Class<?> staticResBaseClass = PrimitiveKeyStaticRes.support(idBoxedType) ? PrimitiveKeyStaticRes.class : StaticRes.class;
                 TypeDescription.Generic genericStaticRes =
-                        TypeDescription.Generic.Builder.parameterizedType(StaticRes.class, idBoxedType, clazz).build();
+                        TypeDescription.Generic.Builder.parameterizedType(staticResBaseClass, idBoxedType, clazz).build();
                 String packageName = clazz.getPackage().getName();
                 DynamicType.Unloaded<?> staticResUnloaded = new ByteBuddy().subclass(genericStaticRes)
                         .name(packageName + "." + StaticRes.class.getSimpleName() + idBoxedType.getSimpleName() + clazz.getSimpleName())
@@ -336,4 +454,27 @@ public class StaticResHandler implements BeanFactoryPostProcessor {
         return convertClassNameToResourcePath(SystemPropertyUtils.resolvePlaceholders(basePackage));
     }
 
+    /**
+     * 单个资源文件的加载耗时
+     */
+    private static class ResLoadCost {
+        private final String fullFileName;
+        private boolean fromImage;
+        private long loadNanos;
+        private long postProcessNanos;
+
+        private ResLoadCost(String fullFileName) {
+            this.fullFileName = fullFileName;
+        }
+
+        private long totalNanos() {
+            return loadNanos + postProcessNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("[%s]%s%dms，后处理%dms", fullFileName, fromImage ? "从镜像加载" : "解析源文件",
+                    TimeUnit.NANOSECONDS.toMillis(loadNanos), TimeUnit.NANOSECONDS.toMillis(postProcessNanos));
+        }
+    }
 }
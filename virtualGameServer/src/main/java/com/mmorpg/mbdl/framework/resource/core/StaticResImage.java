@@ -0,0 +1,335 @@
+package com.mmorpg.mbdl.framework.resource.core;
+
+import com.mmorpg.mbdl.framework.common.utils.FileUtils;
+import com.mmorpg.mbdl.framework.common.utils.ProtostuffUtils;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.Unpooled;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+
+/**
+ * 所有表格型静态资源的二进制镜像<br>
+ * 启动时把镜像文件整体mmap，先只解析目录，每个资源类在加载时才解码自己的数据段，
+ * 源文件的修改时间和大小不变，或者内容哈希不变，并且资源类的字段没有变化时直接从镜像解码，不再解析源文件。
+ * 镜像保存的是后处理之前的数据，从镜像加载后仍会经过{@link com.mmorpg.mbdl.framework.resource.exposed.ResPostProcessor}处理<br>
+ * 文件结构：magic | 格式版本 | 目录项数 | 目录crc | 目录 | 数据段...<br>
+ * 目录项：类名 | 源文件修改时间 | 源文件大小 | 源文件内容哈希 | 资源类字段哈希 | 数据段偏移 | 数据段长度 | 数据段crc
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+public class StaticResImage {
+    private static final Logger logger = LoggerFactory.getLogger(StaticResImage.class);
+    private static final int MAGIC = 0x52534D47;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_LENGTH = 16;
+    /** 目录项中除类名以外的固定长度 */
+    private static final int ENTRY_FIXED_LENGTH = 2 + 8 * 5 + 4 + 4;
+    private static final String IMAGE_FILE_NAME = "static-res.img";
+    /** 旧版本按类保存的缓存文件后缀 */
+    private static final String LEGACY_SUFFIX = ".pbstuff";
+
+    /** 映射的镜像文件，加载完成后释放 */
+    private volatile MappedByteBuffer buffer;
+    /** 资源类名 -> 镜像文件中的目录项 */
+    private volatile Map<String, Entry> className2Entry;
+    /** 资源类名 -> 当前数据（后处理之前的编码），用于生成新的镜像 */
+    private final ConcurrentMap<String, Section> className2Section = new ConcurrentHashMap<>(64);
+    /** 是否需要重新生成镜像（有资源从源文件解析，或者源文件只有修改时间变了） */
+    private volatile boolean dirty;
+
+    private StaticResImage(MappedByteBuffer buffer, Map<String, Entry> className2Entry) {
+        this.buffer = buffer;
+        this.className2Entry = className2Entry;
+    }
+
+    /**
+     * 镜像文件
+     */
+    public static File getImageFile() {
+        return new File(IStaticResUtil.getRunParentPath() + "resTemp/" + IMAGE_FILE_NAME);
+    }
+
+    /**
+     * 打开并映射镜像文件，只解析目录，文件不存在或已损坏时返回空的镜像
+     * @param file 镜像文件
+     * @return 镜像
+     */
+    public static StaticResImage open(File file) {
+        if (!file.isFile()) {
+            return empty();
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_LENGTH || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                logger.warn("静态资源镜像[{}]格式不匹配，将重新生成", file.getAbsolutePath());
+                return empty();
+            }
+            int entryCount = buffer.getInt();
+            int tocCrc = buffer.getInt();
+            int tocStart = buffer.position();
+            Map<String, Entry> className2Entry = new HashMap<>(entryCount * 2);
+            for (int i = 0; i < entryCount; i++) {
+                Entry entry = Entry.read(buffer);
+                className2Entry.put(entry.className, entry);
+            }
+            if (crc(buffer, tocStart, buffer.position() - tocStart) != tocCrc) {
+                logger.warn("静态资源镜像[{}]目录校验失败，将重新生成", file.getAbsolutePath());
+                return empty();
+            }
+            return new StaticResImage(buffer, className2Entry);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("静态资源镜像[{}]读取失败，将重新生成", file.getAbsolutePath(), e);
+            return empty();
+        }
+    }
+
+    private static StaticResImage empty() {
+        StaticResImage image = new StaticResImage(null, Collections.emptyMap());
+        image.dirty = true;
+        return image;
+    }
+
+    /**
+     * 从镜像中解码资源类的数据，镜像中没有或已过期时返回null，解码成功时同时记录该资源类的数据
+     * @param staticResDefinition 静态资源定义
+     * @return 资源对象列表
+     */
+    public List<?> tryDecode(StaticResDefinition staticResDefinition) {
+        Entry entry = className2Entry.get(staticResDefinition.getvClass().getName());
+        if (entry == null || entry.schemaHash != staticResDefinition.getSchemaHash()) {
+            return null;
+        }
+        if (entry.sourceLastModified != staticResDefinition.getVersion() || entry.sourceSize != staticResDefinition.getSourceSize()) {
+            // 修改时间变了但内容没变（如重新检出），仍然可用，重新生成镜像以更新修改时间
+            if (entry.sourceHash != staticResDefinition.getSourceHash()) {
+                return null;
+            }
+            dirty = true;
+        }
+        try {
+            ByteBuffer body = slice(buffer, entry.offset, entry.length);
+            if (crc(body) != entry.crc) {
+                logger.warn("静态资源镜像中[{}]的数据校验失败", staticResDefinition.getFullFileName());
+                return null;
+            }
+            List<?> values;
+            if (entry.length == 0) {
+                values = Collections.emptyList();
+            } else {
+                try (InputStream inputStream = new ByteBufInputStream(Unpooled.wrappedBuffer(body.duplicate()), true)) {
+                    values = ProtostuffUtils.parseListFrom(inputStream, staticResDefinition.getvClass());
+                }
+            }
+            byte[] bytes = new byte[entry.length];
+            body.get(bytes);
+            // 修改时间和大小没变时不重新计算源文件哈希
+            className2Section.put(entry.className, new Section(staticResDefinition, bytes, entry.sourceHash));
+            return values;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("静态资源镜像中[{}]的数据解码失败", staticResDefinition.getFullFileName(), e);
+            return null;
+        }
+    }
+
+    /**
+     * 把资源对象编码成镜像中的数据段，需要在后处理之前调用
+     * @param values 资源对象
+     * @return 数据段
+     */
+    public static byte[] encode(Collection<?> values) {
+        if (values.isEmpty()) {
+            return new byte[0];
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            ProtostuffUtils.writeListTo(outputStream, new ArrayList<>(values));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * 记录资源类的当前数据，生成镜像时使用
+     * @param staticResDefinition 静态资源定义
+     * @param body {@link #encode(Collection)}的结果
+     */
+    public void record(StaticResDefinition staticResDefinition, byte[] body) {
+        className2Section.put(staticResDefinition.getvClass().getName(), new Section(staticResDefinition, body, staticResDefinition.getSourceHash()));
+    }
+
+    /**
+     * 标记镜像需要重新生成
+     */
+    public void markDirty() {
+        dirty = true;
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * 所有资源加载完成后释放对镜像文件的映射
+     */
+    public void release() {
+        buffer = null;
+        className2Entry = Collections.emptyMap();
+    }
+
+    /**
+     * 用记录的所有资源类数据生成新的镜像文件，先写临时文件再替换
+     * @param file 镜像文件
+     */
+    public synchronized void write(File file) {
+        List<Section> sections = new ArrayList<>(className2Section.values());
+        sections.sort(Comparator.comparing(section -> section.className));
+        try {
+            long offset = HEADER_LENGTH;
+            List<byte[]> classNames = new ArrayList<>(sections.size());
+            for (Section section : sections) {
+                byte[] className = section.className.getBytes(StandardCharsets.UTF_8);
+                classNames.add(className);
+                offset += ENTRY_FIXED_LENGTH + className.length;
+            }
+            ByteBuffer toc = ByteBuffer.allocate((int) (offset - HEADER_LENGTH));
+            for (Section section : sections) {
+                new Entry(section.className,
+                        section.sourceLastModified,
+                        section.sourceSize,
+                        section.sourceHash,
+                        section.schemaHash,
+                        offset, section.body.length, crc(ByteBuffer.wrap(section.body))).write(toc);
+                offset += section.body.length;
+            }
+            toc.flip();
+
+            FileUtils.makeDir(file.getParentFile());
+            Path tempPath = Files.createTempFile(file.getParentFile().toPath(), IMAGE_FILE_NAME, ".tmp");
+            try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+                outputStream.writeInt(MAGIC);
+                outputStream.writeInt(FORMAT_VERSION);
+                outputStream.writeInt(sections.size());
+                outputStream.writeInt(crc(toc));
+                outputStream.write(toc.array(), 0, toc.remaining());
+                for (Section section : sections) {
+                    outputStream.write(section.body);
+                }
+            }
+            try {
+                Files.move(tempPath, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // 旧镜像仍被映射时部分系统不允许替换，下次启动时会重新生成
+                Files.deleteIfExists(tempPath);
+                throw e;
+            }
+            dirty = false;
+            FileUtils.clearByFileFilter(file.getParent(), false, FileUtils.withSuffix(LEGACY_SUFFIX));
+            logger.info("生成静态资源镜像[{}]，资源类[{}]个，大小{}KB", file.getAbsolutePath(), sections.size(), offset / 1024);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("生成静态资源镜像[{}]失败", file.getAbsolutePath(), e);
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, long offset, int length) {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position((int) offset);
+        duplicate.limit((int) offset + length);
+        return duplicate.slice();
+    }
+
+    private static int crc(ByteBuffer buffer, long offset, int length) {
+        return crc(slice(buffer, offset, length));
+    }
+
+    /**
+     * 计算buffer剩余部分的crc，不改变buffer的position
+     */
+    private static int crc(ByteBuffer buffer) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(buffer.duplicate());
+        return (int) crc32.getValue();
+    }
+
+    /**
+     * 资源类的一份数据
+     */
+    private static class Section {
+        private final String className;
+        private final long sourceLastModified;
+        private final long sourceSize;
+        private final long sourceHash;
+        private final long schemaHash;
+        private final byte[] body;
+
+        private Section(StaticResDefinition staticResDefinition, byte[] body, long sourceHash) {
+            this.className = staticResDefinition.getvClass().getName();
+            this.sourceLastModified = staticResDefinition.getVersion();
+            this.sourceSize = staticResDefinition.getSourceSize();
+            this.sourceHash = sourceHash;
+            this.schemaHash = staticResDefinition.getSchemaHash();
+            this.body = body;
+        }
+    }
+
+    /**
+     * 目录项
+     */
+    private static class Entry {
+        private final String className;
+        private final long sourceLastModified;
+        private final long sourceSize;
+        private final long sourceHash;
+        private final long schemaHash;
+        private final long offset;
+        private final int length;
+        private final int crc;
+
+        private Entry(String className, long sourceLastModified, long sourceSize, long sourceHash, long schemaHash, long offset, int length, int crc) {
+            this.className = className;
+            this.sourceLastModified = sourceLastModified;
+            this.sourceSize = sourceSize;
+            this.sourceHash = sourceHash;
+            this.schemaHash = schemaHash;
+            this.offset = offset;
+            this.length = length;
+            this.crc = crc;
+        }
+
+        private static Entry read(ByteBuffer buffer) {
+            byte[] className = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(className);
+            return new Entry(new String(className, StandardCharsets.UTF_8),
+                    buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong(),
+                    buffer.getInt(), buffer.getInt());
+        }
+
+        private void write(ByteBuffer buffer) {
+            byte[] classNameBytes = className.getBytes(StandardCharsets.UTF_8);
+            buffer.putShort((short) classNameBytes.length);
+            buffer.put(classNameBytes);
+            buffer.putLong(sourceLastModified);
+            buffer.putLong(sourceSize);
+            buffer.putLong(sourceHash);
+            buffer.putLong(schemaHash);
+            buffer.putLong(offset);
+            buffer.putInt(length);
+            buffer.putInt(crc);
+        }
+    }
+}
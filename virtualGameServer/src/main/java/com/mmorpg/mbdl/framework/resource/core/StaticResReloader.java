@@ -0,0 +1,423 @@
+package com.mmorpg.mbdl.framework.resource.core;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mmorpg.mbdl.framework.common.utils.JsonUtil;
+import com.mmorpg.mbdl.framework.resource.exposed.BaseResResolver;
+import com.mmorpg.mbdl.framework.resource.exposed.ResPostProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 静态资源热更<br>
+ * 监控资源文件所在的目录，资源文件修改后（或收到热更请求写入新文件后）在热更线程中重新解析，
+ * 经过{@link ResPostProcessor}处理并建立索引后原子地替换{@link com.mmorpg.mbdl.framework.resource.impl.StaticRes}中的资源对象，
+ * 任一步骤失败都保留原来的资源对象。依赖热更资源（{@link com.mmorpg.mbdl.framework.resource.annotation.ResDef#dependsOn()}）的资源随后按依赖顺序重新加载并后处理，
+ * 同一批热更中任一资源失败时已替换的资源全部回滚。业务代码需要通过{@link com.mmorpg.mbdl.framework.resource.exposed.IStaticRes}访问资源才能看到热更后的数据，
+ * 启动时复制出来的数据不会更新
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+@Component
+public class StaticResReloader {
+    private static final Logger logger = LoggerFactory.getLogger(StaticResReloader.class);
+    private static StaticResReloader self;
+
+    /** 是否监控资源文件的修改 */
+    @Value("${server.config.static.res.hotReload.watch:false}")
+    private boolean watch;
+    /** 资源文件最后一次修改后等待多久再热更，毫秒，用于合并编辑器保存时产生的多次修改事件 */
+    @Value("${server.config.static.res.hotReload.quietPeriod:500}")
+    private long quietPeriod;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+    @Autowired
+    private StaticResDefinitionFactory staticResDefinitionFactory;
+
+    /** 资源文件绝对路径 -> StaticResDefinition */
+    private Map<Path, StaticResDefinition> path2StaticResDefinition;
+    private List<BaseResResolver> resResolvers;
+    private List<ResPostProcessor> resPostProcessors;
+    /** 热更在单独的线程中串行执行，不占用业务线程 */
+    private final ExecutorService reloadExecutor = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("资源热更线程-%d").setDaemon(true).build());
+    private WatchService watchService;
+    private Thread watchThread;
+
+    public static StaticResReloader getInstance() {
+        return self;
+    }
+
+    @PostConstruct
+    private void init() throws IOException {
+        self = this;
+        Map<Path, StaticResDefinition> path2Definition = new HashMap<>(32);
+        for (StaticResDefinition staticResDefinition : staticResDefinitionFactory.getFullFileName2StaticResDefinition().values()) {
+            if (staticResDefinition.getResource() != null) {
+                path2Definition.put(toPath(staticResDefinition), staticResDefinition);
+            }
+        }
+        this.path2StaticResDefinition = path2Definition;
+        this.resResolvers = new ArrayList<>(applicationContext.getBeansOfType(BaseResResolver.class).values());
+        this.resPostProcessors = StaticResHandler.getSortedResPostProcessors(applicationContext);
+        if (watch) {
+            startWatching();
+        }
+    }
+
+    /**
+     * 热更指定的资源文件
+     * @param fullFileNames 资源文件全路径名（{@link StaticResDefinition#getFullFileName()}）
+     * @param force 资源文件没有修改时是否也重新加载
+     * @return 各文件的热更结果
+     */
+    public CompletableFuture<List<ReloadResult>> reload(Collection<String> fullFileNames, boolean force) {
+        List<StaticResDefinition> staticResDefinitions = new ArrayList<>(fullFileNames.size());
+        for (String fullFileName : fullFileNames) {
+            staticResDefinitions.add(getStaticResDefinition(fullFileName));
+        }
+        return CompletableFuture.supplyAsync(() -> reloadAll(staticResDefinitions, force), reloadExecutor);
+    }
+
+    /**
+     * 用新的文件内容替换资源文件并热更，只能替换已存在的资源文件
+     * @param fullFileName 资源文件全路径名（{@link StaticResDefinition#getFullFileName()}）
+     * @param data 新的文件内容
+     * @return 热更结果
+     */
+    public CompletableFuture<List<ReloadResult>> reload(String fullFileName, byte[] data) {
+        StaticResDefinition staticResDefinition = getStaticResDefinition(fullFileName);
+        return CompletableFuture.supplyAsync(() -> {
+            Path path = toPath(staticResDefinition);
+            try {
+                // 先写临时文件再替换，避免解析到写了一半的文件
+                Path tempPath = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+                Files.write(tempPath, data);
+                Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new RuntimeException(String.format("写入资源文件[%s]失败", fullFileName), e);
+            }
+            return reloadAll(Collections.singletonList(staticResDefinition), false);
+        }, reloadExecutor);
+    }
+
+    private StaticResDefinition getStaticResDefinition(String fullFileName) {
+        StaticResDefinition staticResDefinition = staticResDefinitionFactory.getFullFileName2StaticResDefinition().get(fullFileName);
+        Preconditions.checkArgument(staticResDefinition != null, "资源文件[%s]不存在", fullFileName);
+        return staticResDefinition;
+    }
+
+    /**
+     * 热更资源及依赖它们的资源，任一资源热更失败时已替换的资源全部回滚，保证依赖关系中的资源是同一批数据
+     */
+    private List<ReloadResult> reloadAll(Collection<StaticResDefinition> staticResDefinitions, boolean force) {
+        long start = System.nanoTime();
+        Set<StaticResDefinition> dependents = getDependents(staticResDefinitions);
+        Set<StaticResDefinition> all = new LinkedHashSet<>(staticResDefinitions);
+        all.addAll(dependents);
+        List<ReloadResult> results = new ArrayList<>(all.size());
+        // 已替换的资源，按替换顺序
+        Map<StaticResDefinition, StaticResDefinition.Reloaded> reloaded = new LinkedHashMap<>();
+        ReloadResult failed = null;
+        // 被依赖的资源先热更，依赖它的资源后处理时读取到的是新数据
+        for (List<StaticResDefinition> level : StaticResHandler.sortByDependency(all)) {
+            for (StaticResDefinition staticResDefinition : level) {
+                if (failed != null) {
+                    break;
+                }
+                ReloadResult result;
+                if (dependents.contains(staticResDefinition)) {
+                    // 依赖的资源都没有热更时不需要重新后处理
+                    if (staticResDefinition.getDependencies().stream().noneMatch(reloaded::containsKey)) {
+                        continue;
+                    }
+                    // 文件本身没有修改，强制重新加载才能重新后处理
+                    result = reload(staticResDefinition, true, reloaded);
+                } else {
+                    result = reload(staticResDefinition, force, reloaded);
+                }
+                results.add(result);
+                if (!result.success && !result.skipped) {
+                    failed = result;
+                }
+            }
+        }
+        if (failed != null) {
+            rollback(reloaded, results, failed);
+        } else {
+            StaticResImage image = staticResDefinitionFactory.getStaticResImage();
+            reloaded.values().forEach(reloadedRes -> reloadedRes.commit(image));
+            if (image.isDirty()) {
+                image.write(StaticResImage.getImageFile());
+            }
+        }
+        logger.info("静态资源热更完成，耗时{}ms，{}", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), results);
+        return results;
+    }
+
+    /**
+     * 按替换的相反顺序换回原来的资源，依赖其它资源的先恢复
+     */
+    private void rollback(Map<StaticResDefinition, StaticResDefinition.Reloaded> reloaded, List<ReloadResult> results, ReloadResult failed) {
+        List<StaticResDefinition> swapped = new ArrayList<>(reloaded.keySet());
+        Collections.reverse(swapped);
+        for (StaticResDefinition staticResDefinition : swapped) {
+            try {
+                reloaded.get(staticResDefinition).rollback(resPostProcessors);
+            } catch (Exception e) {
+                logger.error("静态资源[{}]回滚失败", staticResDefinition.getFullFileName(), e);
+            }
+        }
+        for (ReloadResult result : results) {
+            if (result.success) {
+                result.success = false;
+                result.error = String.format("静态资源[%s]热更失败，已回滚", failed.fullFileName);
+            }
+        }
+        logger.error("静态资源[{}]热更失败，回滚了同一批热更的{}个资源", failed.fullFileName, swapped.size());
+    }
+
+    /**
+     * 获取直接或间接依赖这些资源的其它资源，见{@link com.mmorpg.mbdl.framework.resource.annotation.ResDef#dependsOn()}
+     * @param staticResDefinitions 热更的资源
+     * @return 依赖它们但不在参数中的资源
+     */
+    private Set<StaticResDefinition> getDependents(Collection<StaticResDefinition> staticResDefinitions) {
+        Set<StaticResDefinition> reloading = new HashSet<>(staticResDefinitions);
+        Set<StaticResDefinition> dependents = new LinkedHashSet<>();
+        boolean found;
+        do {
+            found = false;
+            for (StaticResDefinition candidate : path2StaticResDefinition.values()) {
+                if (!reloading.contains(candidate) && candidate.getDependencies().stream().anyMatch(reloading::contains)) {
+                    reloading.add(candidate);
+                    dependents.add(candidate);
+                    found = true;
+                }
+            }
+        } while (found);
+        return dependents;
+    }
+
+    private ReloadResult reload(StaticResDefinition staticResDefinition, boolean force,
+                                Map<StaticResDefinition, StaticResDefinition.Reloaded> reloaded) {
+        long start = System.nanoTime();
+        ReloadResult result = new ReloadResult(staticResDefinition.getFullFileName());
+        try {
+            if (!force && toPath(staticResDefinition).toFile().lastModified() == staticResDefinition.getVersion()) {
+                result.skipped = true;
+                return result;
+            }
+            StaticResDefinition.Reloaded reloadedRes = staticResDefinition.reload(getResolver(staticResDefinition), resPostProcessors);
+            reloaded.put(staticResDefinition, reloadedRes);
+            diff(staticResDefinition, reloadedRes.getOldMap(), result);
+            result.success = true;
+        } catch (Exception e) {
+            result.error = e.getMessage();
+            logger.error("静态资源[{}]热更失败，保留原来的资源", staticResDefinition.getFullFileName(), e);
+        } finally {
+            result.elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+        return result;
+    }
+
+    /**
+     * 统计新增、删除、修改的资源对象数，修改通过比较序列化后的json判断
+     */
+    private void diff(StaticResDefinition staticResDefinition, ImmutableMap<?, ?> oldMap, ReloadResult result) {
+        List<?> newValues = staticResDefinition.getStaticRes().values();
+        Set<Object> newKeys = new HashSet<>(newValues.size());
+        for (Object newValue : newValues) {
+            Object key = getKey(staticResDefinition, newValue);
+            newKeys.add(key);
+            Object oldValue = oldMap.get(key);
+            if (oldValue == null) {
+                result.added++;
+            } else if (!JsonUtil.object2String(oldValue).equals(JsonUtil.object2String(newValue))) {
+                result.changed++;
+            }
+        }
+        for (Object key : oldMap.keySet()) {
+            if (!newKeys.contains(key)) {
+                result.removed++;
+            }
+        }
+        result.total = newValues.size();
+    }
+
+    private static Object getKey(StaticResDefinition staticResDefinition, Object value) {
+        try {
+            return staticResDefinition.getIdField().get(value);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private BaseResResolver getResolver(StaticResDefinition staticResDefinition) {
+        String filename = staticResDefinition.getResource().getFilename();
+        for (BaseResResolver resResolver : resResolvers) {
+            if (filename.endsWith(resResolver.suffix())) {
+                return resResolver;
+            }
+        }
+        throw new RuntimeException(String.format("找不到资源文件[%s]的解析器", staticResDefinition.getFullFileName()));
+    }
+
+    private void startWatching() throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        Set<Path> dirs = new HashSet<>();
+        for (Path path : path2StaticResDefinition.keySet()) {
+            if (dirs.add(path.getParent())) {
+                path.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+        }
+        watchThread = new Thread(this::watchLoop, "资源文件监控线程");
+        watchThread.setDaemon(true);
+        watchThread.start();
+        logger.info("开始监控{}个目录下的资源文件", dirs.size());
+    }
+
+    /**
+     * 收集修改事件，安静期（quietPeriod）内没有新的修改事件后把收集到的文件提交热更
+     */
+    private void watchLoop() {
+        Set<StaticResDefinition> pending = new LinkedHashSet<>();
+        try {
+            for (;;) {
+                WatchKey watchKey = pending.isEmpty() ? watchService.take() : watchService.poll(quietPeriod, TimeUnit.MILLISECONDS);
+                if (watchKey == null) {
+                    List<StaticResDefinition> staticResDefinitions = new ArrayList<>(pending);
+                    pending.clear();
+                    reloadExecutor.execute(() -> reloadAll(staticResDefinitions, false));
+                    continue;
+                }
+                Path dir = (Path) watchKey.watchable();
+                for (WatchEvent<?> event : watchKey.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // 事件丢失，目录下的资源文件都检查一遍，没有修改的会被跳过
+                        path2StaticResDefinition.forEach((path, staticResDefinition) -> {
+                            if (path.getParent().equals(dir)) {
+                                pending.add(staticResDefinition);
+                            }
+                        });
+                        continue;
+                    }
+                    StaticResDefinition staticResDefinition = path2StaticResDefinition.get(dir.resolve((Path) event.context()));
+                    if (staticResDefinition != null) {
+                        pending.add(staticResDefinition);
+                    }
+                }
+                watchKey.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            logger.info("资源文件监控线程退出");
+        }
+    }
+
+    private static Path toPath(StaticResDefinition staticResDefinition) {
+        try {
+            return staticResDefinition.getResource().getFile().toPath().toAbsolutePath().normalize();
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("获取资源文件[%s]的路径失败", staticResDefinition.getFullFileName()), e);
+        }
+    }
+
+    @PreDestroy
+    private void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+        reloadExecutor.shutdownNow();
+    }
+
+    /**
+     * 单个资源文件的热更结果
+     */
+    public static class ReloadResult {
+        private final String fullFileName;
+        private boolean success;
+        /** 文件没有修改，跳过 */
+        private boolean skipped;
+        private int total;
+        private int added;
+        private int removed;
+        private int changed;
+        private long elapsedMillis;
+        private String error;
+
+        private ReloadResult(String fullFileName) {
+            this.fullFileName = fullFileName;
+        }
+
+        public String getFullFileName() {
+            return fullFileName;
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+
+        public boolean isSkipped() {
+            return skipped;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public int getAdded() {
+            return added;
+        }
+
+        public int getRemoved() {
+            return removed;
+        }
+
+        public int getChanged() {
+            return changed;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            MoreObjects.ToStringHelper helper = MoreObjects.toStringHelper(this).add("file", fullFileName);
+            if (skipped) {
+                return helper.add("skipped", true).toString();
+            }
+            if (!success) {
+                return helper.add("error", error).add("elapsedMillis", elapsedMillis).toString();
+            }
+            return helper.add("total", total)
+                    .add("added", added)
+                    .add("removed", removed)
+                    .add("changed", changed)
+                    .add("elapsedMillis", elapsedMillis)
+                    .toString();
+        }
+    }
+}
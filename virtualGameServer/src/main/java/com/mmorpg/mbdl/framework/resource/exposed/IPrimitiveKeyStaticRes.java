@@ -0,0 +1,59 @@
+package com.mmorpg.mbdl.framework.resource.exposed;
+
+/**
+ * 主键为int、short、byte、long及其包装类型的静态资源访问接口，按基础类型的主键查找时不装箱<br/>
+ * 需要不装箱查找时用此接口代替{@link IStaticRes}注入，如IPrimitiveKeyStaticRes&lt;Integer, SkillRes&gt;
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+public interface IPrimitiveKeyStaticRes<K extends Number, V> extends IStaticRes<K, V> {
+
+    /**
+     * 根据整数主键获取V类型的对象，不装箱，相当于调用get(int key,true)
+     * @param key 资源主键值
+     * @return 资源对象
+     * @throws IllegalArgumentException 如果资源不存在
+     */
+    V get(int key);
+
+    /**
+     * 根据整数主键获取V类型的对象，不装箱
+     * @param key 资源主键值
+     * @param throwExceptionNotExist 资源不存在时是否抛出异常
+     * @return 资源对象，不存在并且throwExceptionNotExist==false时返回null
+     * @throws IllegalArgumentException throwExceptionNotExist==true 并且资源不存在
+     */
+    V get(int key, boolean throwExceptionNotExist);
+
+    /**
+     * 当前整数主键是否有对应的值，不装箱
+     * @param key 资源主键值
+     * @return 有 true 没有 false
+     */
+    boolean containsKey(int key);
+
+    /**
+     * 根据long类型主键获取V类型的对象，不装箱，相当于调用get(long key,true)
+     * @param key 资源主键值
+     * @return 资源对象
+     * @throws IllegalArgumentException 如果资源不存在
+     */
+    V get(long key);
+
+    /**
+     * 根据long类型主键获取V类型的对象，不装箱
+     * @param key 资源主键值
+     * @param throwExceptionNotExist 资源不存在时是否抛出异常
+     * @return 资源对象，不存在并且throwExceptionNotExist==false时返回null
+     * @throws IllegalArgumentException throwExceptionNotExist==true 并且资源不存在
+     */
+    V get(long key, boolean throwExceptionNotExist);
+
+    /**
+     * 当前long类型主键是否有对应的值，不装箱
+     * @param key 资源主键值
+     * @return 有 true 没有 false
+     */
+    boolean containsKey(long key);
+}
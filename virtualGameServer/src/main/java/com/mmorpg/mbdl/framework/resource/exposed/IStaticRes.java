@@ -45,4 +45,40 @@ public interface IStaticRes<K,V> {
      * @return 资源对象的数量
      */
     int size();
+
+    /**
+     * 根据唯一值字段（{@link com.mmorpg.mbdl.framework.resource.annotation.Unique}标注的字段）获取V类型的对象
+     * @param fieldName 字段名
+     * @param value 字段值，类型需要与字段的包装类型一致，如short字段需要传入Short
+     * @return 资源对象，不存在返回null
+     * @throws IllegalArgumentException 如果字段不是唯一值字段
+     */
+    V getByUnique(String fieldName, Object value);
+
+    /**
+     * 根据int类型的唯一值字段获取V类型的对象，不装箱，其它类型的字段使用{@link #getByUnique(String, Object)}
+     * @param fieldName 字段名
+     * @param value 字段值
+     * @return 资源对象，不存在返回null
+     * @throws IllegalArgumentException 如果字段不是int类型的唯一值字段
+     */
+    V getByUniqueInt(String fieldName, int value);
+
+    /**
+     * 根据索引字段（{@link com.mmorpg.mbdl.framework.resource.annotation.Index}标注的字段）获取所有字段值相等的V类型的对象
+     * @param fieldName 字段名
+     * @param value 字段值，类型需要与字段的包装类型一致，如short字段需要传入Short
+     * @return 按资源文件中顺序排列的ImmutableList，不会返回null
+     * @throws IllegalArgumentException 如果字段不是索引字段
+     */
+    ImmutableList<V> getByIndex(String fieldName, Object value);
+
+    /**
+     * 根据int类型的索引字段获取所有字段值相等的V类型的对象，不装箱，其它类型的字段使用{@link #getByIndex(String, Object)}
+     * @param fieldName 字段名
+     * @param value 字段值
+     * @return 按资源文件中顺序排列的ImmutableList，不会返回null
+     * @throws IllegalArgumentException 如果字段不是int类型的索引字段
+     */
+    ImmutableList<V> getByIndexInt(String fieldName, int value);
 }
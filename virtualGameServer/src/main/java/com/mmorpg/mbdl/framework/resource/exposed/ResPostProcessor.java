@@ -1,5 +1,7 @@
 package com.mmorpg.mbdl.framework.resource.exposed;
 
+import java.util.List;
+
 /**
  * 静态资源对象后处理器
  *
@@ -9,12 +11,24 @@ package com.mmorpg.mbdl.framework.resource.exposed;
 public interface ResPostProcessor {
     /**
      * 对解析出来的每个静态资源对象进行后处理<br/>
-     * 注意：这个方法是并发运行的（但obj.getClass()相同的类运行在同一线程中），注意规避并发问题
+     * 注意：这个方法是并发运行的（但obj.getClass()相同的类运行在同一线程中），注意规避并发问题<br/>
+     * 调用时所有资源都已解析完毕，但只有{@link com.mmorpg.mbdl.framework.resource.annotation.ResDef#dependsOn()}中的资源保证已经后处理完毕
      *
      * @param obj
      */
     void postProcess(Object obj);
 
+    /**
+     * 同一个资源文件的所有资源对象都经过全部后处理器处理后调用（启动加载和热更时都会调用），
+     * 用于处理整张表的数据，如表中删除的行<br/>
+     * 热更时在替换{@link IStaticRes}中的资源对象之前调用
+     *
+     * @param resClass 资源类
+     * @param values 资源文件中的全部资源对象
+     */
+    default void postProcessAll(Class<?> resClass, List<?> values) {
+    }
+
     /**
      * 优先级，数值越大越先被应用到静态资源对象上
      *
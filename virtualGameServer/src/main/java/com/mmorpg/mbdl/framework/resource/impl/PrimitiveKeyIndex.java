@@ -0,0 +1,74 @@
+package com.mmorpg.mbdl.framework.resource.impl;
+
+import io.netty.util.collection.LongObjectHashMap;
+import io.netty.util.collection.LongObjectMap;
+
+import java.util.Map;
+
+/**
+ * 整数主键到资源对象的只读查找表，查找时不装箱
+ * <p>主键连续或接近连续时使用以(key - minKey)为下标的数组，否则使用开放寻址的LongObjectHashMap</p>
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+final class PrimitiveKeyIndex<V> {
+    /** 数组长度不超过资源数量的这个倍数时使用数组 */
+    private static final int DENSE_FACTOR = 2;
+    /** 资源很少时，数组长度不超过这个值也使用数组 */
+    private static final int DENSE_MIN_LENGTH = 64;
+
+    private final long minKey;
+    /** 数组形式的查找表，主键稀疏时为null */
+    private final Object[] denseValues;
+    /** 哈希表形式的查找表，主键紧凑时为null */
+    private final LongObjectMap<V> sparseValues;
+
+    private PrimitiveKeyIndex(long minKey, Object[] denseValues, LongObjectMap<V> sparseValues) {
+        this.minKey = minKey;
+        this.denseValues = denseValues;
+        this.sparseValues = sparseValues;
+    }
+
+    /**
+     * @param key2Resource 主键为{@link Number}的整数类型的资源对象
+     */
+    static <V> PrimitiveKeyIndex<V> of(Map<?, V> key2Resource) {
+        long minKey = Long.MAX_VALUE;
+        long maxKey = Long.MIN_VALUE;
+        for (Object key : key2Resource.keySet()) {
+            long value = ((Number) key).longValue();
+            minKey = Math.min(minKey, value);
+            maxKey = Math.max(maxKey, value);
+        }
+        if (key2Resource.isEmpty()) {
+            return new PrimitiveKeyIndex<>(0, new Object[0], null);
+        }
+        // maxKey - minKey可能溢出，溢出时为负数
+        long length = maxKey - minKey + 1;
+        long denseLimit = Math.max((long) key2Resource.size() * DENSE_FACTOR, DENSE_MIN_LENGTH);
+        if (length > 0 && length <= denseLimit) {
+            Object[] denseValues = new Object[(int) length];
+            for (Map.Entry<?, V> entry : key2Resource.entrySet()) {
+                denseValues[(int) (((Number) entry.getKey()).longValue() - minKey)] = entry.getValue();
+            }
+            return new PrimitiveKeyIndex<>(minKey, denseValues, null);
+        }
+        LongObjectMap<V> sparseValues = new LongObjectHashMap<>(key2Resource.size());
+        for (Map.Entry<?, V> entry : key2Resource.entrySet()) {
+            sparseValues.put(((Number) entry.getKey()).longValue(), entry.getValue());
+        }
+        return new PrimitiveKeyIndex<>(minKey, null, sparseValues);
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        Object[] values = denseValues;
+        if (values != null) {
+            // 溢出时offset为负数或大于数组长度，都会返回null
+            long offset = key - minKey;
+            return offset >= 0 && offset < values.length ? (V) values[(int) offset] : null;
+        }
+        return sparseValues.get(key);
+    }
+}
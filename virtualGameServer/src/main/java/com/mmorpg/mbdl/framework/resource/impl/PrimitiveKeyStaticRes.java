@@ -0,0 +1,72 @@
+package com.mmorpg.mbdl.framework.resource.impl;
+
+import com.google.common.collect.ImmutableMap;
+import com.mmorpg.mbdl.framework.resource.exposed.IPrimitiveKeyStaticRes;
+
+/**
+ * 主键为int、short、byte、long及其包装类型的静态资源，主键查找使用{@link PrimitiveKeyIndex}，不装箱
+ * @author Sando Geek
+ * @since v1.0
+ **/
+public class PrimitiveKeyStaticRes<K extends Number, V> extends StaticRes<K, V> implements IPrimitiveKeyStaticRes<K, V> {
+
+    /**
+     * 主键类型是否可以使用{@link PrimitiveKeyStaticRes}
+     * @param keyType 主键的包装类型
+     */
+    public static boolean support(Class<?> keyType) {
+        return keyType == Integer.class || keyType == Short.class || keyType == Byte.class || keyType == Long.class;
+    }
+
+    @Override
+    PrimitiveKeyIndex<V> createPrimitiveKeyIndex(ImmutableMap<K, V> key2Resource) {
+        return PrimitiveKeyIndex.of(key2Resource);
+    }
+
+    @Override
+    public V get(K key, boolean throwExceptionNotExist) {
+        if (key == null) {
+            return super.get(null, throwExceptionNotExist);
+        }
+        return get(key.longValue(), throwExceptionNotExist);
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return key != null && containsKey(key.longValue());
+    }
+
+    @Override
+    public V get(int key) {
+        return get((long) key, true);
+    }
+
+    @Override
+    public V get(int key, boolean throwExceptionNotExist) {
+        return get((long) key, throwExceptionNotExist);
+    }
+
+    @Override
+    public boolean containsKey(int key) {
+        return containsKey((long) key);
+    }
+
+    @Override
+    public V get(long key) {
+        return get(key, true);
+    }
+
+    @Override
+    public V get(long key, boolean throwExceptionNotExist) {
+        V res = primitiveKeyIndex().get(key);
+        if (res == null && throwExceptionNotExist){
+            throw new IllegalArgumentException(String.format("资源文件[%s]中不存在键为[%s]的静态资源",getFullFileName(),key));
+        }
+        return res;
+    }
+
+    @Override
+    public boolean containsKey(long key) {
+        return primitiveKeyIndex().get(key) != null;
+    }
+}
@@ -1,28 +1,33 @@
 package com.mmorpg.mbdl.framework.resource.impl;
 
-import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.mmorpg.mbdl.framework.resource.exposed.IStaticRes;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
 
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
  * 静态资源访问接口的实现类
- * TODO 实现getByUnique getByIndex功能
  * @author Sando Geek
  * @since v1.0
  **/
 public class StaticRes<K,V> implements IStaticRes<K,V> {
-    /** 如果要热更，要注意并发访问带来的问题 */
+    /** 用于序列化，读取统一通过{@link #snapshot} */
     private Map<K, V> key2Resource;
     /** 资源文件全路径名 */
     private transient String fullFileName;
 
     /**
-     * 缓存所有V,实现热更功能时需要记得把此值设置为null
+     * 资源数据快照，热更时整体替换，读取方在一次访问中总是看到同一版本的主键表、values和索引
      */
-    private transient ImmutableList<V> values;
+    private transient volatile Snapshot<K, V> snapshot;
 
     @Override
     public V get(K key) {
@@ -31,7 +36,7 @@ public class StaticRes<K,V> implements IStaticRes<K,V> {
 
     @Override
     public V get(K key, boolean throwExceptionNotExist) {
-        V res = key2Resource.get(key);
+        V res = snapshot().key2Resource.get(key);
         if (res == null && throwExceptionNotExist){
             throw new IllegalArgumentException(String.format("资源文件[%s]中不存在键为[%s]的静态资源",fullFileName,key));
         }
@@ -40,30 +45,189 @@ public class StaticRes<K,V> implements IStaticRes<K,V> {
 
     @Override
     public boolean containsKey(K key) {
-        return key2Resource.containsKey(key);
+        return snapshot().key2Resource.containsKey(key);
+    }
+
+    /**
+     * 当前快照中整数主键的查找表，只有{@link PrimitiveKeyStaticRes}中不为null
+     */
+    PrimitiveKeyIndex<V> primitiveKeyIndex() {
+        return snapshot().primitiveKeyIndex;
     }
 
     @Override
     public ImmutableList<V> values() {
-        if (values != null) {
-            return values;
-        }
-        values = ((ImmutableMap<K, V>) key2Resource).values().asList();
-        return values;
+        return snapshot().values;
     }
 
     @Override
     public int size() {
-        ImmutableCollection<V> vs = values != null ? values : ((ImmutableMap<K, V>) key2Resource).values();
-        return vs.size();
+        return snapshot().values.size();
+    }
+
+    @Override
+    public V getByUnique(String fieldName, Object value) {
+        ImmutableMap<Object, V> value2Resource = snapshot().uniqueField2Resource.get(fieldName);
+        if (value2Resource == null) {
+            throw new IllegalArgumentException(String.format("资源文件[%s]中的字段[%s]不是唯一值字段", fullFileName, fieldName));
+        }
+        return value2Resource.get(value);
+    }
+
+    @Override
+    public V getByUniqueInt(String fieldName, int value) {
+        IntObjectMap<V> value2Resource = snapshot().intUniqueField2Resource.get(fieldName);
+        if (value2Resource == null) {
+            throw new IllegalArgumentException(String.format("资源文件[%s]中的字段[%s]不是int类型的唯一值字段", fullFileName, fieldName));
+        }
+        return value2Resource.get(value);
+    }
+
+    @Override
+    public ImmutableList<V> getByIndex(String fieldName, Object value) {
+        ImmutableListMultimap<Object, V> value2Resources = snapshot().indexField2Resources.get(fieldName);
+        if (value2Resources == null) {
+            throw new IllegalArgumentException(String.format("资源文件[%s]中的字段[%s]不是索引字段", fullFileName, fieldName));
+        }
+        return value2Resources.get(value);
+    }
+
+    @Override
+    public ImmutableList<V> getByIndexInt(String fieldName, int value) {
+        IntObjectMap<ImmutableList<V>> value2Resources = snapshot().intIndexField2Resources.get(fieldName);
+        if (value2Resources == null) {
+            throw new IllegalArgumentException(String.format("资源文件[%s]中的字段[%s]不是int类型的索引字段", fullFileName, fieldName));
+        }
+        ImmutableList<V> resources = value2Resources.get(value);
+        return resources == null ? ImmutableList.of() : resources;
+    }
+
+    /**
+     * 用新的资源对象替换当前的资源对象，先建立唯一值字段和索引字段的查找表，再一次性替换快照，
+     * 建立查找表失败时不影响当前的资源对象
+     * @param key2Resource 新的资源对象
+     * @param uniqueFields 唯一值字段
+     * @param indexFields 索引字段
+     * @return 替换前的资源对象，首次设置时返回空的ImmutableMap
+     * @throws RuntimeException 如果唯一值字段存在重复的值
+     */
+    public ImmutableMap<K, V> swap(ImmutableMap<K, V> key2Resource, Collection<Field> uniqueFields, Collection<Field> indexFields) {
+        Snapshot<K, V> newSnapshot = new Snapshot<>(key2Resource, createPrimitiveKeyIndex(key2Resource), uniqueFields, indexFields, fullFileName);
+        Snapshot<K, V> oldSnapshot = this.snapshot;
+        this.key2Resource = key2Resource;
+        this.snapshot = newSnapshot;
+        return oldSnapshot == null ? ImmutableMap.of() : oldSnapshot.key2Resource;
+    }
+
+    /**
+     * 创建整数主键的查找表，主键为整数类型的子类覆盖此方法
+     * @param key2Resource 资源对象
+     * @return 整数主键的查找表，主键不是整数类型时返回null
+     */
+    PrimitiveKeyIndex<V> createPrimitiveKeyIndex(ImmutableMap<K, V> key2Resource) {
+        return null;
+    }
+
+    /**
+     * 反序列化得到的对象没有快照，用key2Resource建立不含索引的快照
+     */
+    @SuppressWarnings("unchecked")
+    private Snapshot<K, V> snapshot() {
+        Snapshot<K, V> current = this.snapshot;
+        if (current == null) {
+            ImmutableMap<K, V> immutableMap = ImmutableMap.copyOf(key2Resource);
+            current = new Snapshot<>(immutableMap, createPrimitiveKeyIndex(immutableMap), Collections.emptyList(), Collections.emptyList(), fullFileName);
+            this.snapshot = current;
+        }
+        return current;
     }
 
     // public ImmutableMap<K,V> getKey2Resource() {
     //     return key2Resource;
     // }
 
+    String getFullFileName() {
+        return fullFileName;
+    }
+
     public void setFullFileName(String fullFileName) {
         this.fullFileName = fullFileName;
     }
 
+    /**
+     * 某一版本的资源数据，创建后不再修改
+     */
+    private static class Snapshot<K, V> {
+        private final ImmutableMap<K, V> key2Resource;
+        /** 整数主键的查找表，主键不是整数类型时为null */
+        private final PrimitiveKeyIndex<V> primitiveKeyIndex;
+        private final ImmutableList<V> values;
+        /** 唯一值字段名 -> (字段值 -> 资源对象) */
+        private final ImmutableMap<String, ImmutableMap<Object, V>> uniqueField2Resource;
+        /** 索引字段名 -> (字段值 -> 资源对象列表) */
+        private final ImmutableMap<String, ImmutableListMultimap<Object, V>> indexField2Resources;
+        /** int类型的唯一值字段名 -> (字段值 -> 资源对象)，只读 */
+        private final ImmutableMap<String, IntObjectMap<V>> intUniqueField2Resource;
+        /** int类型的索引字段名 -> (字段值 -> 资源对象列表)，只读 */
+        private final ImmutableMap<String, IntObjectMap<ImmutableList<V>>> intIndexField2Resources;
+
+        private Snapshot(ImmutableMap<K, V> key2Resource, PrimitiveKeyIndex<V> primitiveKeyIndex, Collection<Field> uniqueFields, Collection<Field> indexFields, String fullFileName) {
+            this.key2Resource = key2Resource;
+            this.primitiveKeyIndex = primitiveKeyIndex;
+            this.values = key2Resource.values().asList();
+            Map<String, ImmutableMap<Object, V>> uniqueMap = new HashMap<>(uniqueFields.size());
+            Map<String, IntObjectMap<V>> intUniqueMap = new HashMap<>(uniqueFields.size());
+            for (Field field : uniqueFields) {
+                Map<Object, V> value2Resource = new HashMap<>(values.size());
+                for (V resource : values) {
+                    Object value = getFieldValue(field, resource, fullFileName);
+                    if (value != null && value2Resource.put(value, resource) != null) {
+                        throw new RuntimeException(String.format("资源文件[%s]中唯一值字段[%s]存在重复的值[%s]", fullFileName, field.getName(), value));
+                    }
+                }
+                ImmutableMap<Object, V> immutableMap = ImmutableMap.copyOf(value2Resource);
+                uniqueMap.put(field.getName(), immutableMap);
+                if (isIntField(field)) {
+                    IntObjectMap<V> intMap = new IntObjectHashMap<>(immutableMap.size());
+                    immutableMap.forEach((value, resource) -> intMap.put((Integer) value, resource));
+                    intUniqueMap.put(field.getName(), intMap);
+                }
+            }
+            Map<String, ImmutableListMultimap<Object, V>> indexMap = new HashMap<>(indexFields.size());
+            Map<String, IntObjectMap<ImmutableList<V>>> intIndexMap = new HashMap<>(indexFields.size());
+            for (Field field : indexFields) {
+                ImmutableListMultimap.Builder<Object, V> builder = ImmutableListMultimap.builder();
+                for (V resource : values) {
+                    Object value = getFieldValue(field, resource, fullFileName);
+                    if (value != null) {
+                        builder.put(value, resource);
+                    }
+                }
+                ImmutableListMultimap<Object, V> multimap = builder.build();
+                indexMap.put(field.getName(), multimap);
+                if (isIntField(field)) {
+                    IntObjectMap<ImmutableList<V>> intMap = new IntObjectHashMap<>(multimap.keySet().size());
+                    multimap.keySet().forEach(value -> intMap.put((Integer) value, multimap.get(value)));
+                    intIndexMap.put(field.getName(), intMap);
+                }
+            }
+            this.uniqueField2Resource = ImmutableMap.copyOf(uniqueMap);
+            this.intUniqueField2Resource = ImmutableMap.copyOf(intUniqueMap);
+            this.indexField2Resources = ImmutableMap.copyOf(indexMap);
+            this.intIndexField2Resources = ImmutableMap.copyOf(intIndexMap);
+        }
+
+        private static Object getFieldValue(Field field, Object resource, String fullFileName) {
+            try {
+                return field.get(resource);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(String.format("读取资源文件[%s]中字段[%s]的值失败", fullFileName, field.getName()), e);
+            }
+        }
+
+        private static boolean isIntField(Field field) {
+            return field.getType() == int.class || field.getType() == Integer.class;
+        }
+    }
+
 }
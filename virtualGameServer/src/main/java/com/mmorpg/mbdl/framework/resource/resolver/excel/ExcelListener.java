@@ -3,7 +3,6 @@ package com.mmorpg.mbdl.framework.resource.resolver.excel;
 import com.alibaba.excel.context.AnalysisContext;
 import com.alibaba.excel.event.AnalysisEventListener;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.mmorpg.mbdl.framework.common.utils.JsonUtil;
 import com.mmorpg.mbdl.framework.resource.core.StaticResDefinition;
 import com.mmorpg.mbdl.framework.resource.exposed.IExcelFormat;
 import org.apache.commons.lang3.StringUtils;
@@ -35,9 +34,9 @@ public class ExcelListener extends AnalysisEventListener<ArrayList<String>> {
      */
     private Map<Integer,String> index2FieldJsonName = new HashMap<>(16);
     /**
-     * 下标到字段类型的映射
+     * 行数据绑定器，表头处理完后创建
      */
-    private Map<Integer, Class<?>> index2FieldType = new HashMap<>(16);
+    private ExcelRowBinder rowBinder;
     /**
      * 用于检查key是否唯一
      */
@@ -49,33 +48,14 @@ public class ExcelListener extends AnalysisEventListener<ArrayList<String>> {
         if (!tableHeadHandleOver){
             handleTableHead(list);
         }else {
-            if (index2FieldType.size()==0){
-                initIndex2FieldTypeAndCheckOne2One();
+            if (rowBinder == null){
+                initRowBinderAndCheckOne2One();
             }
             // 跳过id字段为空的行
-            if (list.get(idFieldIndex)==null){
+            if (list.size() <= idFieldIndex || list.get(idFieldIndex)==null){
                 return;
             }
-            // vClass实例的json数据形式
-            ArrayList<String> vClassObjectInJsonArray=new ArrayList<>(16);
-            int max = list.size()-1;
-            for (Integer integer : index2FieldJsonName.keySet()) {
-                if (integer > max){
-                    break;
-                }
-                String content = list.get(integer);
-                if (StringUtils.isEmpty(content)) {
-                    continue;
-                }
-                Class<?> fieldType = index2FieldType.get(integer);
-                if (fieldType.isEnum() || fieldType == String.class) {
-                    // 枚举或者字符串前后要加引号
-                    content = "\"" + content + "\"";
-                }
-                vClassObjectInJsonArray.add("\"" + index2FieldJsonName.get(integer) + "\":" + content);
-            }
-            String vClassObjectInJson ="{" + String.join("," ,vClassObjectInJsonArray) + "}";
-            Object resource = JsonUtil.string2Object(vClassObjectInJson, staticResDefinition.getvClass());
+            Object resource = rowBinder.bind(list, context.getCurrentRowNum());
             Object priKey = null;
             try {
                 priKey = staticResDefinition.getIdField().get(resource);
@@ -133,9 +113,9 @@ public class ExcelListener extends AnalysisEventListener<ArrayList<String>> {
     }
 
     /**
-     * 初始化index2FieldType并检查类字段与表的字段能否一一对应
+     * 检查类字段与表的字段能否一一对应并创建行数据绑定器
      */
-    private void initIndex2FieldTypeAndCheckOne2One() {
+    private void initRowBinderAndCheckOne2One() {
         Field[] declaredFields = staticResDefinition.getvClass().getDeclaredFields();
         Map<String,Field> fieldJsonName2Field = new HashMap<>(16);
         Arrays.stream(declaredFields)
@@ -166,6 +146,7 @@ public class ExcelListener extends AnalysisEventListener<ArrayList<String>> {
                     staticResDefinition.getvClass().getSimpleName()
             ));
         }
+        Map<Integer, Field> index2Field = new HashMap<>(index2FieldJsonName.size());
         index2FieldJsonName.keySet().forEach(integer -> {
             String fieldJsonName = index2FieldJsonName.get(integer);
             Field field = fieldJsonName2Field.get(fieldJsonName);
@@ -173,7 +154,8 @@ public class ExcelListener extends AnalysisEventListener<ArrayList<String>> {
                 throw new RuntimeException(String.format("资源文件[%s]字段名为[%s]的列在关联的类[%s]中没有找到对应的字段",
                         staticResDefinition.getFullFileName(),fieldJsonName,staticResDefinition.getvClass().getSimpleName()));
             }
-            index2FieldType.put(integer, field.getType());
+            index2Field.put(integer, field);
         });
+        rowBinder = new ExcelRowBinder(staticResDefinition.getFullFileName(), staticResDefinition.getvClass(), index2Field, index2FieldJsonName);
     }
 }
@@ -0,0 +1,211 @@
+package com.mmorpg.mbdl.framework.resource.resolver.excel;
+
+import com.baidu.bjf.remoting.protobuf.EnumReadable;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.mmorpg.mbdl.framework.common.utils.JsonUtil;
+import com.mmorpg.mbdl.framework.reflectasm.withunsafe.FieldAccess;
+import org.apache.commons.lang3.StringUtils;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Excel行数据到资源对象的绑定器，表头处理完后为每一列预先生成转换和赋值逻辑，
+ * 每行数据直接转换后写入资源对象的字段，不再拼接json字符串
+ * <p>与原来的json反序列化相比：不经过setter和@JsonCreator，字段上的@JsonDeserialize、@JsonFormat等注解不生效（类型上的注解仍然生效），
+ * 字符串单元格原样赋值，不再做json转义处理（如\n不会被转换成换行）</p>
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+class ExcelRowBinder {
+    private final String fullFileName;
+    private final Constructor<?> constructor;
+    private final FieldAccess fieldAccess;
+    /** 参与绑定的列下标，升序 */
+    private final int[] columnIndexes;
+    /** 与columnIndexes一一对应的列名 */
+    private final String[] columnNames;
+    /** 与columnIndexes一一对应的列绑定逻辑 */
+    private final ColumnSetter[] columnSetters;
+
+    /**
+     * @param fullFileName 资源文件全路径名
+     * @param vClass 资源类
+     * @param index2Field 列下标到字段的映射
+     * @param index2ColumnName 列下标到列名的映射
+     */
+    ExcelRowBinder(String fullFileName, Class<?> vClass, Map<Integer, Field> index2Field, Map<Integer, String> index2ColumnName) {
+        this.fullFileName = fullFileName;
+        try {
+            this.constructor = vClass.getDeclaredConstructor();
+            this.constructor.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException(String.format("资源类[%s]缺少无参构造器", vClass.getSimpleName()), e);
+        }
+        this.fieldAccess = FieldAccess.accessUnsafe(vClass);
+        TreeMap<Integer, Field> sorted = new TreeMap<>(index2Field);
+        this.columnIndexes = new int[sorted.size()];
+        this.columnNames = new String[sorted.size()];
+        this.columnSetters = new ColumnSetter[sorted.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Field> entry : sorted.entrySet()) {
+            columnIndexes[i] = entry.getKey();
+            columnNames[i] = index2ColumnName.get(entry.getKey());
+            columnSetters[i] = createColumnSetter(entry.getValue());
+            i++;
+        }
+    }
+
+    /**
+     * 把一行数据绑定到新的资源对象上，空单元格保持字段默认值
+     * @param row 一行数据
+     * @param rowNum 行号，从0开始
+     * @return 资源对象
+     */
+    Object bind(List<String> row, int rowNum) {
+        Object resource;
+        try {
+            resource = constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(String.format("资源文件[%s]实例化资源类[%s]失败",
+                    fullFileName, constructor.getDeclaringClass().getSimpleName()), e);
+        }
+        int size = row.size();
+        for (int i = 0; i < columnIndexes.length; i++) {
+            int columnIndex = columnIndexes[i];
+            if (columnIndex >= size) {
+                break;
+            }
+            String content = row.get(columnIndex);
+            if (StringUtils.isEmpty(content)) {
+                continue;
+            }
+            try {
+                columnSetters[i].set(resource, content);
+            } catch (RuntimeException e) {
+                throw new RuntimeException(String.format("资源文件[%s]第[%s]行[%s]列的值[%s]转换失败",
+                        fullFileName, rowNum + 1, columnNames[i], content), e);
+            }
+        }
+        return resource;
+    }
+
+    private ColumnSetter createColumnSetter(Field field) {
+        final int fieldIndex = fieldAccess.getIndex(field);
+        final FieldAccess access = fieldAccess;
+        final Class<?> type = field.getType();
+        final JavaType javaType = JsonUtil.getTypeFactory().constructType(field.getGenericType());
+        if (type == int.class) {
+            return (instance, content) -> access.setInt(instance, fieldIndex, parseInt(content, javaType));
+        } else if (type == long.class) {
+            return (instance, content) -> access.setLong(instance, fieldIndex, parseLong(content, javaType));
+        } else if (type == short.class) {
+            return (instance, content) -> access.setShort(instance, fieldIndex, (Short) parseByJson(content, javaType));
+        } else if (type == byte.class) {
+            return (instance, content) -> access.setByte(instance, fieldIndex, (Byte) parseByJson(content, javaType));
+        } else if (type == double.class) {
+            return (instance, content) -> access.setDouble(instance, fieldIndex, parseDouble(content, javaType));
+        } else if (type == float.class) {
+            return (instance, content) -> access.setFloat(instance, fieldIndex, (float) parseDouble(content, javaType));
+        } else if (type == boolean.class) {
+            return (instance, content) -> access.setBoolean(instance, fieldIndex, parseBoolean(content, javaType));
+        } else if (type == char.class) {
+            return (instance, content) -> access.setChar(instance, fieldIndex, (Character) parseQuotedByJson(content, javaType));
+        } else if (type == Integer.class) {
+            return (instance, content) -> access.setObject(instance, fieldIndex, parseInt(content, javaType));
+        } else if (type == Long.class) {
+            return (instance, content) -> access.setObject(instance, fieldIndex, parseLong(content, javaType));
+        } else if (type == Double.class) {
+            return (instance, content) -> access.setObject(instance, fieldIndex, parseDouble(content, javaType));
+        } else if (type == Boolean.class) {
+            return (instance, content) -> access.setObject(instance, fieldIndex, parseBoolean(content, javaType));
+        } else if (type == String.class) {
+            return (instance, content) -> access.setObject(instance, fieldIndex, content);
+        } else if (type.isEnum()) {
+            final Map<String, Object> name2Enum = createName2Enum(type);
+            return (instance, content) -> {
+                Object value = name2Enum.get(content);
+                if (value == null) {
+                    value = parseQuotedByJson(content, javaType);
+                }
+                access.setObject(instance, fieldIndex, value);
+            };
+        }
+        // 集合、Map、自定义类型等单元格内容为json
+        return (instance, content) -> access.setObject(instance, fieldIndex, parseByJson(content, javaType));
+    }
+
+    /**
+     * 枚举的单元格内容到枚举值的映射，使用EnumReadableDeserializer的枚举按value()映射，其他枚举按名称映射
+     */
+    private static Map<String, Object> createName2Enum(Class<?> enumType) {
+        Object[] constants = enumType.getEnumConstants();
+        Map<String, Object> name2Enum = new HashMap<>(constants.length * 2);
+        boolean byReadableValue = EnumReadable.class.isAssignableFrom(enumType)
+                && enumType.isAnnotationPresent(JsonDeserialize.class);
+        for (Object constant : constants) {
+            String name = byReadableValue ? String.valueOf(((EnumReadable) constant).value()) : ((Enum<?>) constant).name();
+            name2Enum.put(name, constant);
+        }
+        return name2Enum;
+    }
+
+    /*
+     * 以下parseXxx先按常规格式快速解析，失败时交给json解析，兼容"1.0"等写法
+     */
+
+    private static int parseInt(String content, JavaType javaType) {
+        try {
+            return Integer.parseInt(content);
+        } catch (NumberFormatException e) {
+            return (Integer) parseByJson(content, javaType);
+        }
+    }
+
+    private static long parseLong(String content, JavaType javaType) {
+        try {
+            return Long.parseLong(content);
+        } catch (NumberFormatException e) {
+            return (Long) parseByJson(content, javaType);
+        }
+    }
+
+    private static double parseDouble(String content, JavaType javaType) {
+        try {
+            return Double.parseDouble(content);
+        } catch (NumberFormatException e) {
+            return ((Number) parseByJson(content, javaType)).doubleValue();
+        }
+    }
+
+    private static boolean parseBoolean(String content, JavaType javaType) {
+        if ("true".equals(content)) {
+            return true;
+        } else if ("false".equals(content)) {
+            return false;
+        }
+        return (Boolean) parseByJson(content, javaType);
+    }
+
+    private static Object parseByJson(String content, JavaType javaType) {
+        return JsonUtil.string2Object(content, javaType);
+    }
+
+    private static Object parseQuotedByJson(String content, JavaType javaType) {
+        return JsonUtil.string2Object(JsonUtil.object2String(content), javaType);
+    }
+
+    /**
+     * 单列的转换和赋值逻辑
+     */
+    @FunctionalInterface
+    private interface ColumnSetter {
+        void set(Object instance, String content);
+    }
+}
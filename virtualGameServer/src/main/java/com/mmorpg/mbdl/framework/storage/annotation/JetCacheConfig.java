@@ -82,6 +82,15 @@ public @interface JetCacheConfig {
      */
     String keyCovertor() default CacheConsts.UNDEFINED_STRING;
 
+    /**
+     * 提前刷新时间，单位为timeUnit，实体写入缓存超过此时间后再被访问会重新写入缓存以延长过期时间，
+     * 避免热点实体过期后的集中查库，不配置则不提前刷新
+     * <p>只支持cacheType为LOCAL：重新写入前要确认缓存中仍是读到的同一个实例，远程缓存每次读取都是反序列化出的副本，
+     * 无法确认期间没有被其它节点更新。只有通过{@link com.mmorpg.mbdl.framework.storage.core.IStorage#get}读取的实体才会提前刷新</p>
+     * @return 提前刷新时间
+     */
+    int refreshAfter() default CacheConsts.UNDEFINED_INT;
+
     /**
      * 合并delay时间内的变更
      * @return
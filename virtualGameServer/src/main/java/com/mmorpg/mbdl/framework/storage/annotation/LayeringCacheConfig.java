@@ -53,4 +53,23 @@ public @interface LayeringCacheConfig {
      * @return SecondaryCache
      */
     SecondaryCache secondaryCache() default @SecondaryCache();
+
+    /**
+     * 是否缓存数据库中不存在的主键（负缓存）。负缓存存放在二级缓存中，所有节点共享，
+     * 创建实体时直接覆盖，不会让其它节点看不到新创建的实体
+     * @return boolean
+     */
+    boolean cacheNullValue() default true;
+
+    /**
+     * 负缓存的过期时间为二级缓存过期时间除以此值
+     * @return int
+     */
+    int nullValueMagnification() default 10;
+
+    /**
+     * 合并delay时间内的变更
+     * @return int
+     */
+    int delay() default 10;
 }
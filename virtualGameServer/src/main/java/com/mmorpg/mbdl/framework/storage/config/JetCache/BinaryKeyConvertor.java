@@ -0,0 +1,66 @@
+package com.mmorpg.mbdl.framework.storage.config.JetCache;
+
+import com.alicp.jetcache.support.FastjsonKeyConvertor;
+
+import java.util.function.Function;
+
+/**
+ * 基本类型主键的key转换器<br>
+ * {@link FastjsonKeyConvertor}会把每个Long主键都经过json序列化为字符串，而实体主键基本都是Long或者Integer。
+ * 远程缓存使用{@link #INSTANCE}，整数主键直接转为大端序的定长字节数组；
+ * 本地缓存使用{@link #LOCAL_INSTANCE}，基本类型主键原样作为key。其它类型的主键仍交给{@link FastjsonKeyConvertor}。
+ * 同一个缓存中的主键类型需一致，否则不同类型的主键可能转换出相同的key
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+public class BinaryKeyConvertor implements Function<Object, Object> {
+    public static final BinaryKeyConvertor INSTANCE = new BinaryKeyConvertor(true);
+    public static final BinaryKeyConvertor LOCAL_INSTANCE = new BinaryKeyConvertor(false);
+
+    /** 是否转为字节数组，本地缓存使用字节数组作为key时无法正确比较相等 */
+    private final boolean toBytes;
+
+    private BinaryKeyConvertor(boolean toBytes) {
+        this.toBytes = toBytes;
+    }
+
+    @Override
+    public Object apply(Object originalKey) {
+        if (originalKey == null) {
+            return null;
+        }
+        if (originalKey instanceof String) {
+            return originalKey;
+        }
+        if (!toBytes) {
+            return isPrimitiveKey(originalKey) ? originalKey : FastjsonKeyConvertor.INSTANCE.apply(originalKey);
+        }
+        if (originalKey instanceof Long) {
+            return toBytes((Long) originalKey, Long.BYTES);
+        }
+        if (originalKey instanceof Integer) {
+            return toBytes((Integer) originalKey, Integer.BYTES);
+        }
+        if (originalKey instanceof Short) {
+            return toBytes((Short) originalKey, Short.BYTES);
+        }
+        if (originalKey instanceof Byte) {
+            return new byte[]{(Byte) originalKey};
+        }
+        return FastjsonKeyConvertor.INSTANCE.apply(originalKey);
+    }
+
+    private static boolean isPrimitiveKey(Object key) {
+        return key instanceof Long || key instanceof Integer || key instanceof Short || key instanceof Byte;
+    }
+
+    private static byte[] toBytes(long value, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = length - 1; i >= 0; i--) {
+            bytes[i] = (byte) value;
+            value >>>= 8;
+        }
+        return bytes;
+    }
+}
@@ -2,6 +2,7 @@ package com.mmorpg.mbdl.framework.storage.config.JetCache;
 
 import com.alicp.jetcache.Cache;
 import com.alicp.jetcache.anno.CacheConsts;
+import com.alicp.jetcache.anno.CacheType;
 import com.alicp.jetcache.anno.support.CachedAnnoConfig;
 import com.alicp.jetcache.anno.support.GlobalCacheConfig;
 import com.google.common.base.Preconditions;
@@ -63,6 +64,14 @@ public class JetCacheBeanPostProcessor implements BeanPostProcessor, Application
                     Preconditions.checkNotNull(ann,"%s没有配置%s注解",eClass.getSimpleName(),JetCacheConfig.class.getSimpleName());
                     storageJetCache.setDelay(ann.delay());
                     storageJetCache.setCache(getCache(ann,eClass));
+                    if (!CacheConsts.isUndefined(ann.refreshAfter()) && ann.cacheType() != CacheType.LOCAL) {
+                        logger.warn("实体[{}]的缓存类型为{}，提前刷新只支持LOCAL，refreshAfter不生效", eClass.getSimpleName(), ann.cacheType());
+                    } else if (!CacheConsts.isUndefined(ann.refreshAfter())) {
+                        long refreshAfterMillis = ann.timeUnit().toMillis(ann.refreshAfter());
+                        // 未配置过期时间时，写入时间记录保留两倍的提前刷新时间
+                        long expireMillis = CacheConsts.isUndefined(ann.expire()) ? refreshAfterMillis * 2 : ann.timeUnit().toMillis(ann.expire());
+                        storageJetCache.setRefreshAhead(refreshAfterMillis, expireMillis);
+                    }
                 }
 
             }catch (Exception e){
@@ -6,9 +6,6 @@ import com.alicp.jetcache.anno.support.GlobalCacheConfig;
 import com.alicp.jetcache.anno.support.SpringConfigProvider;
 import com.alicp.jetcache.embedded.CaffeineCacheBuilder;
 import com.alicp.jetcache.redis.RedisCacheBuilder;
-import com.alicp.jetcache.support.FastjsonKeyConvertor;
-import com.alicp.jetcache.support.KryoValueDecoder;
-import com.alicp.jetcache.support.KryoValueEncoder;
 import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -61,16 +58,15 @@ public class JetCacheConfiguration {
         Map<String, CacheBuilder> localBuilders = new HashMap<>(1);
         CacheBuilder localBuilder = CaffeineCacheBuilder.createCaffeineCacheBuilder()
                 .expireAfterAccess(2, TimeUnit.MINUTES)
-                .keyConvertor(FastjsonKeyConvertor.INSTANCE);
+                .keyConvertor(BinaryKeyConvertor.LOCAL_INSTANCE);
         localBuilders.put(CacheConsts.DEFAULT_AREA, localBuilder);
 
         Map<String, CacheBuilder> remoteBuilders = new HashMap<>(1);
         RedisCacheBuilder remoteCacheBuilder = RedisCacheBuilder.createRedisCacheBuilder()
                 .expireAfterWrite(30,TimeUnit.MINUTES)
-                .keyConvertor(FastjsonKeyConvertor.INSTANCE)
-                // TODO 使用ProtoStuff编码解码
-                .valueEncoder(KryoValueEncoder.INSTANCE)
-                .valueDecoder(KryoValueDecoder.INSTANCE)
+                .keyConvertor(BinaryKeyConvertor.INSTANCE)
+                .valueEncoder(ProtostuffValueEncoder.INSTANCE)
+                .valueDecoder(ProtostuffValueDecoder.INSTANCE)
                 .jedisPool(pool);
         remoteBuilders.put(CacheConsts.DEFAULT_AREA, remoteCacheBuilder);
 
@@ -0,0 +1,46 @@
+package com.mmorpg.mbdl.framework.storage.config.JetCache;
+
+import com.alicp.jetcache.support.KryoValueDecoder;
+import com.mmorpg.mbdl.framework.common.utils.ProtostuffUtils;
+import io.protostuff.GraphIOUtil;
+import io.protostuff.Schema;
+
+import java.util.function.Function;
+
+/**
+ * 基于Protostuff的JetCache远程缓存值解码器，与{@link ProtostuffValueEncoder}配套使用<br>
+ * 不是以{@link ProtostuffValueEncoder#IDENTITY_NUMBER}开头的数据交给Kryo解码，
+ * 切换编码方式后redis中尚未过期的旧数据仍可读取
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+public class ProtostuffValueDecoder implements Function<byte[], Object> {
+    public static final ProtostuffValueDecoder INSTANCE = new ProtostuffValueDecoder();
+    private static final int HEADER_LENGTH = 4;
+
+    private ProtostuffValueDecoder() {
+    }
+
+    @Override
+    public Object apply(byte[] buffer) {
+        if (parseHeader(buffer) != ProtostuffValueEncoder.IDENTITY_NUMBER) {
+            return KryoValueDecoder.INSTANCE.apply(buffer);
+        }
+        Schema<ProtostuffValueEncoder.ValueWrapper> schema = ProtostuffUtils.getSchema(ProtostuffValueEncoder.ValueWrapper.class);
+        ProtostuffValueEncoder.ValueWrapper wrapper = schema.newMessage();
+        try {
+            GraphIOUtil.mergeFrom(buffer, HEADER_LENGTH, buffer.length - HEADER_LENGTH, wrapper, schema);
+        } catch (Exception e) {
+            throw new RuntimeException(String.format("Protostuff解码失败，数据长度[%s]", buffer.length), e);
+        }
+        return wrapper.getValue();
+    }
+
+    private static int parseHeader(byte[] buffer) {
+        if (buffer.length < HEADER_LENGTH) {
+            return 0;
+        }
+        return (buffer[0] & 0xFF) << 24 | (buffer[1] & 0xFF) << 16 | (buffer[2] & 0xFF) << 8 | (buffer[3] & 0xFF);
+    }
+}
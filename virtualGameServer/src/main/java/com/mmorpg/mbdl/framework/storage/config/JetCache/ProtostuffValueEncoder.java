@@ -0,0 +1,66 @@
+package com.mmorpg.mbdl.framework.storage.config.JetCache;
+
+import com.mmorpg.mbdl.framework.common.utils.ProtostuffUtils;
+import io.protostuff.GraphIOUtil;
+import io.protostuff.LinkedBuffer;
+import io.protostuff.Schema;
+
+import java.util.function.Function;
+
+/**
+ * 基于Protostuff的JetCache远程缓存值编码器<br>
+ * 使用graph模式序列化，同一对象在实体中被多处引用时（如{@link com.mmorpg.mbdl.business.container.model.Container}中的物品）
+ * 反序列化后仍是同一个对象。编码结果以{@link #IDENTITY_NUMBER}开头，解码器据此区分旧的Kryo编码数据
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+public class ProtostuffValueEncoder implements Function<Object, byte[]> {
+    public static final ProtostuffValueEncoder INSTANCE = new ProtostuffValueEncoder();
+    static final int IDENTITY_NUMBER = 0x50535446;
+    private static final int HEADER_LENGTH = 4;
+    private static final ThreadLocal<LinkedBuffer> BUFFER = ThreadLocal.withInitial(() -> LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE));
+
+    private ProtostuffValueEncoder() {
+    }
+
+    @Override
+    public byte[] apply(Object value) {
+        ValueWrapper wrapper = new ValueWrapper(value);
+        Schema<ValueWrapper> schema = ProtostuffUtils.getSchema(ValueWrapper.class);
+        LinkedBuffer buffer = BUFFER.get();
+        byte[] body;
+        try {
+            body = GraphIOUtil.toByteArray(wrapper, schema, buffer);
+        } catch (Exception e) {
+            throw new RuntimeException(String.format("Protostuff编码[%s]失败", value == null ? null : value.getClass().getName()), e);
+        } finally {
+            buffer.clear();
+        }
+        byte[] result = new byte[HEADER_LENGTH + body.length];
+        result[0] = (byte) (IDENTITY_NUMBER >>> 24);
+        result[1] = (byte) (IDENTITY_NUMBER >>> 16);
+        result[2] = (byte) (IDENTITY_NUMBER >>> 8);
+        result[3] = (byte) IDENTITY_NUMBER;
+        System.arraycopy(body, 0, result, HEADER_LENGTH, body.length);
+        return result;
+    }
+
+    /**
+     * 编码的值是JetCache内部的CacheValueHolder，类型不固定，包装一层后由protostuff写入其类型
+     */
+    static final class ValueWrapper {
+        private Object value;
+
+        ValueWrapper() {
+        }
+
+        ValueWrapper(Object value) {
+            this.value = value;
+        }
+
+        Object getValue() {
+            return value;
+        }
+    }
+}
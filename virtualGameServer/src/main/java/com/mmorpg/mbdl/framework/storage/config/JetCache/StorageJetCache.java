@@ -2,14 +2,17 @@ package com.mmorpg.mbdl.framework.storage.config.JetCache;
 
 import com.alicp.jetcache.Cache;
 import com.alicp.jetcache.CacheGetResult;
+import com.alicp.jetcache.MultiGetResult;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.base.Preconditions;
-import com.mmorpg.mbdl.framework.common.utils.JsonUtil;
-import com.mmorpg.mbdl.framework.storage.annotation.JetCacheConfig;
+import com.google.common.util.concurrent.Striped;
 import com.mmorpg.mbdl.framework.storage.core.AbstractEntity;
 import com.mmorpg.mbdl.framework.storage.core.EntityCreator;
 import com.mmorpg.mbdl.framework.storage.core.IStorage;
-import com.mmorpg.mbdl.framework.thread.task.DelayedTask;
-import com.mmorpg.mbdl.framework.thread.task.TaskDispatcher;
+import com.mmorpg.mbdl.framework.storage.core.MergeUpdateJournal;
+import com.mmorpg.mbdl.framework.storage.core.MergeUpdater;
+import com.mmorpg.mbdl.framework.storage.core.StorageExecutor;
+import com.mmorpg.mbdl.framework.storage.core.StorageStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.jpa.repository.support.JpaEntityInformation;
@@ -21,7 +24,16 @@ import javax.persistence.EntityExistsException;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityNotFoundException;
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
 
 /**
  * 使用JetCache的IStorage默认实现类
@@ -34,48 +46,39 @@ public class StorageJetCache <PK extends Serializable &Comparable<PK>,E extends
         implements IStorage<PK,E> {
     private static final Logger logger = LoggerFactory.getLogger(StorageJetCache.class);
     private Cache<PK,E> cache;
-    /** {@link JetCacheConfig#delay()} */
-    private int delay;
-    /** 代理对象 */
-    private IStorage<PK,E> proxy;
 
     private final EntityManager entityManager;
-
+    private final StorageStats stats;
+    /** 正在从数据库加载的主键，同一主键的并发未命中只查询一次数据库 */
+    private final ConcurrentHashMap<PK, CompletableFuture<E>> loadingFutures = new ConcurrentHashMap<>();
+    /** 合并更新的延迟入库 */
+    private final MergeUpdater<PK, E> mergeUpdater = new MergeUpdater<>();
+    /** 实体写入缓存的时间，用于提前刷新，为null时不提前刷新 */
+    private volatile com.github.benmanes.caffeine.cache.Cache<PK, Long> writeTimes;
+    private long refreshAfterMillis;
+    /** 同一主键的缓存写入互斥，保证提前刷新的"比较后写入"不会覆盖期间的更新或删除 */
+    private final Striped<Lock> writeLocks = Striped.lock(64);
 
     public StorageJetCache(JpaEntityInformation<E, ?> entityInformation, EntityManager entityManager) {
         super(entityInformation, entityManager);
         this.entityManager = entityManager;
+        this.stats = StorageStats.of(entityInformation.getJavaType());
     }
 
     @Override
     @Transactional(rollbackFor = Exception.class)
     public E create(E entity) {
         Preconditions.checkNotNull(entity,"entity不能为null");
-        CacheGetResult<E> cacheGetResult = cache.GET(entity.getId());
-        if (cacheGetResult.isSuccess()){
-            E entityFromCache = cacheGetResult.getValue();
-            // 缓存中缓存了其null值，说明数据库中没有，直接存库
-            if (entityFromCache == null) {
-                return doInsert(entity);
-            }
-            // 缓存中有，说明数据库中也有，那么不应该创建，抛出异常
-            else {
-                throw new EntityExistsException("数据库中已存在该实体，考虑使用update?");
-            }
-        }
-        // 缓存中没有成功获取就查数据库
-        else {
-            if (exists(entity.getId())){
-                throw new EntityExistsException("数据库中已存在该实体，考虑使用update?");
-            }else {
-                return doInsert(entity);
-            }
+        // 通过get判断是否存在，未命中时的查库会被合并，结果也会缓存起来
+        if (get(entity.getId()) != null) {
+            throw new EntityExistsException("数据库中已存在该实体，考虑使用update?");
         }
+        return doInsert(entity);
     }
 
     private E doInsert(E entity) {
         E e = saveAndFlush(entity);
-        cache.put(entity.getId(),e);
+        putToCache(entity.getId(), e);
         return e;
     }
 
@@ -83,7 +86,7 @@ public class StorageJetCache <PK extends Serializable &Comparable<PK>,E extends
         // merge返回的实体和参数的实体不一致,原因在于merge方法会调用userType的deepCopy来构造复制的对象，而使用jackson序列化时JsonType中deepCopy无法获取泛型
         PK id = entity.getId();
         E merge = saveAndFlush(entity);
-        cache.put(id, merge);
+        putToCache(id, merge);
     }
 
     @Override
@@ -91,24 +94,10 @@ public class StorageJetCache <PK extends Serializable &Comparable<PK>,E extends
     public void update(E entity) {
         PK id = entity.getId();
         Preconditions.checkNotNull(id,"id不能为null");
-        CacheGetResult<E> cacheGetResult = cache.GET(id);
-        if (cacheGetResult.isSuccess()){
-            E entityFromCache = cacheGetResult.getValue();
-            // 缓存中缓存了其null值，说明数据库中没有
-            if (entityFromCache == null) {
-                throw new EntityNotFoundException("数据库中不存在该实体，先create一下？");
-            }
-            // 缓存中有，说明数据库中也有
-            else {
-                executeUpdate(entity);
-            }
-        }else {
-            if (exists(entity.getId())){
-                executeUpdate(entity);
-            }else {
-                throw new EntityNotFoundException("数据库中不存在该实体，先create一下？");
-            }
+        if (get(id) == null) {
+            throw new EntityNotFoundException("数据库中不存在该实体，先create一下？");
         }
+        executeUpdate(entity);
     }
 
     private void executeUpdate(E entity) {
@@ -118,28 +107,20 @@ public class StorageJetCache <PK extends Serializable &Comparable<PK>,E extends
 
     @Override
     public void mergeUpdate(E entity) {
-        if (this.delay == 0) {
-            proxy.update(entity);
-            return;
-        }
-        else if (!entity.getCanCreateMergeUpdateTask().compareAndSet(true, false)) {
-            return;
+        mergeUpdater.mergeUpdate(entity);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void updateAll(Collection<E> entities) {
+        for (E e : MergeUpdater.saveAllAndFlush(this, entities)) {
+            putToCache(e.getId(), e);
         }
-        TaskDispatcher.getInstance().dispatch(new DelayedTask(null, delay, TimeUnit.SECONDS) {
-            @Override
-            public String taskName() {
-                return String.format("合并更新实体[%s]：%s", entity.getClass().getSimpleName(), JsonUtil.object2String(entity));
-            }
+    }
 
-            @Override
-            public void execute() {
-                try {
-                    proxy.update(entity);
-                } finally {
-                    entity.getCanCreateMergeUpdateTask().set(true);
-                }
-            }
-        }.setLogOrNot(true).setMaxExecuteTime(30, TimeUnit.MILLISECONDS), true);
+    @Override
+    public CompletableFuture<Integer> flushMergeUpdates(int batchSize) {
+        return mergeUpdater.flushMergeUpdates(batchSize);
     }
 
     @Override
@@ -147,13 +128,151 @@ public class StorageJetCache <PK extends Serializable &Comparable<PK>,E extends
         Preconditions.checkNotNull(id,"id不能为null");
         CacheGetResult<E> cacheGetResult = cache.GET(id);
         if (cacheGetResult.isSuccess()){
+            stats.recordHit();
             E entityFromCache = cacheGetResult.getValue();
+            refreshAheadIfNecessary(id, entityFromCache);
             return entityFromCache;
-        }else {
+        }
+        stats.recordMiss();
+        return load(id);
+    }
+
+    /**
+     * 从数据库加载实体并缓存（不管是null还是实体），同一主键同时只有一个线程查询数据库，其它线程等待其结果
+     */
+    private E load(PK id) {
+        CompletableFuture<E> future = new CompletableFuture<>();
+        CompletableFuture<E> loadingFuture = loadingFutures.putIfAbsent(id, future);
+        if (loadingFuture != null) {
+            stats.recordSharedLoad();
+            try {
+                return loadingFuture.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
             E entity = findOne(id);
-            // 不管是null还是实体都缓存起来
-            cache.put(id,entity);
+            putToCache(id, entity);
+            success = true;
+            future.complete(entity);
+            return entity;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            stats.recordLoad(System.nanoTime() - start, success);
+            loadingFutures.remove(id, future);
+        }
+    }
+
+    private void putToCache(PK id, E entity) {
+        Lock lock = writeLocks.get(id);
+        lock.lock();
+        try {
+            cache.put(id, entity);
+            if (writeTimes != null && entity != null) {
+                writeTimes.put(id, System.currentTimeMillis());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 热点实体在过期前重新写入缓存以延长过期时间，避免过期后的集中查库。
+     * 只有缓存中仍是读到的同一个实例时才重新写入，期间被更新或删除则放弃，不需要查库。
+     * 依赖实例的同一性，只用于LOCAL缓存，见{@link com.mmorpg.mbdl.framework.storage.annotation.JetCacheConfig#refreshAfter()}
+     */
+    private void refreshAheadIfNecessary(PK id, E entity) {
+        if (writeTimes == null || entity == null) {
+            return;
+        }
+        Long writeTime = writeTimes.getIfPresent(id);
+        long now = System.currentTimeMillis();
+        if (writeTime != null && now - writeTime < refreshAfterMillis) {
+            return;
+        }
+        // 先更新写入时间，避免同一实体被重复刷新
+        writeTimes.put(id, now);
+        StorageExecutor.getInstance().execute(() -> {
+            Lock lock = writeLocks.get(id);
+            lock.lock();
+            try {
+                if (cache.get(id) != entity) {
+                    return;
+                }
+                cache.put(id, entity);
+                stats.recordRefresh();
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    @Override
+    public Map<PK, E> getAll(Collection<PK> ids) {
+        Preconditions.checkNotNull(ids,"ids不能为null");
+        Set<PK> keys = new HashSet<>(ids);
+        Map<PK, E> result = new HashMap<>(keys.size());
+        if (keys.isEmpty()) {
+            return result;
+        }
+        MultiGetResult<PK, E> multiGetResult = cache.GET_ALL(keys);
+        Set<PK> missKeys = new HashSet<>(keys);
+        if (multiGetResult.isSuccess()) {
+            for (Map.Entry<PK, CacheGetResult<E>> entry : multiGetResult.getValues().entrySet()) {
+                CacheGetResult<E> cacheGetResult = entry.getValue();
+                if (cacheGetResult.isSuccess()) {
+                    missKeys.remove(entry.getKey());
+                    if (cacheGetResult.getValue() != null) {
+                        result.put(entry.getKey(), cacheGetResult.getValue());
+                    }
+                }
+            }
+        }
+        if (missKeys.isEmpty()) {
+            return result;
+        }
+        // 缓存中没有的用一次in查询获取
+        Map<PK, E> loaded = new HashMap<>(missKeys.size());
+        for (E entity : findAll(missKeys)) {
+            loaded.put(entity.getId(), entity);
+        }
+        for (PK missKey : missKeys) {
+            // 不存在的也缓存null值，查询期间其它线程已写入缓存的以缓存为准
+            E cached = putToCacheIfAbsent(missKey, loaded.get(missKey));
+            if (cached != null) {
+                result.put(missKey, cached);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 缓存中没有该主键时才写入，避免批量查询的旧结果覆盖查询期间创建或更新的实体
+     * @return 写入后缓存中的实体
+     */
+    private E putToCacheIfAbsent(PK id, E entity) {
+        Lock lock = writeLocks.get(id);
+        lock.lock();
+        try {
+            CacheGetResult<E> cacheGetResult = cache.GET(id);
+            if (cacheGetResult.isSuccess()) {
+                return cacheGetResult.getValue();
+            }
+            cache.put(id, entity);
+            if (writeTimes != null && entity != null) {
+                writeTimes.put(id, System.currentTimeMillis());
+            }
             return entity;
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -174,39 +293,58 @@ public class StorageJetCache <PK extends Serializable &Comparable<PK>,E extends
     @Transactional(rollbackFor = Exception.class)
     public E remove(PK id) {
         Preconditions.checkNotNull(id,"id不能为null");
-        CacheGetResult<E> cacheGetResult = cache.GET(id);
-        if (cacheGetResult.isSuccess()){
-            E entity = cacheGetResult.getValue();
-            // 缓存中缓存了其null值，说明数据库中没有，直接返回null
-            if (entity == null) {
-                return entity;
-            }
-            // 缓存中有，说明数据库中也有
-            else {
-                delete(entity);
-                cache.put(id,null);
-                return entity;
-            }
-        }else {
-            // 缓存没有直接查库
-            E entity = findOne(id);
-            if (entity != null){
-                delete(entity);
-                cache.put(id,null);
+        E entity = get(id);
+        // 缓存或数据库中都没有，直接返回null
+        if (entity == null) {
+            return null;
+        }
+        delete(entity);
+        Lock lock = writeLocks.get(id);
+        lock.lock();
+        try {
+            cache.put(id,null);
+            if (writeTimes != null) {
+                writeTimes.invalidate(id);
             }
-            return entity;
+        } finally {
+            lock.unlock();
         }
+        return entity;
+    }
+
+    /**
+     * 此实体类的缓存统计
+     */
+    public StorageStats getStats() {
+        return stats;
     }
 
     public void setDelay(int delay) {
-        this.delay = delay;
+        mergeUpdater.setDelay(delay);
     }
 
     public void setProxy(IStorage<PK, E> proxy) {
-        this.proxy = proxy;
+        mergeUpdater.setProxy(proxy);
+        MergeUpdateJournal.register(getDomainClass(), proxy);
     }
 
     public void setCache(Cache<PK, E> cache) {
         this.cache = cache;
     }
+
+    /**
+     * 设置提前刷新的时间，实体写入缓存超过此时间后再被访问会提前刷新
+     * @param refreshAfterMillis 小于等于0时不提前刷新
+     * @param expireMillis 缓存的过期时间
+     */
+    public void setRefreshAhead(long refreshAfterMillis, long expireMillis) {
+        if (refreshAfterMillis <= 0) {
+            this.writeTimes = null;
+            return;
+        }
+        this.refreshAfterMillis = refreshAfterMillis;
+        this.writeTimes = Caffeine.newBuilder()
+                .expireAfterWrite(Math.max(expireMillis, refreshAfterMillis), TimeUnit.MILLISECONDS)
+                .build();
+    }
 }
@@ -31,6 +31,7 @@ public class LayeringCacheBeanPostProcessor implements BeanPostProcessor, Applic
                 Class<? extends IStorage> storageClazz = ((IStorage)bean).getClass();
                 // 获取此代理对象的目标对象
                 StorageLayeringCache storageLayeringCache = (StorageLayeringCache) ReflectUtils.getTarget(bean);
+                storageLayeringCache.setProxy((IStorage) bean);
                 Class<IStorage> daoClass =null;
                 for (Class clz:storageClazz.getInterfaces()){
                     if (IStorage.class.isAssignableFrom(clz)){
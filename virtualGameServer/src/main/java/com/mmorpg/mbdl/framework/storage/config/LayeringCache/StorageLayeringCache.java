@@ -12,6 +12,8 @@ import com.mmorpg.mbdl.framework.storage.annotation.LayeringCacheConfig;
 import com.mmorpg.mbdl.framework.storage.core.AbstractEntity;
 import com.mmorpg.mbdl.framework.storage.core.EntityCreator;
 import com.mmorpg.mbdl.framework.storage.core.IStorage;
+import com.mmorpg.mbdl.framework.storage.core.MergeUpdateJournal;
+import com.mmorpg.mbdl.framework.storage.core.MergeUpdater;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,8 +22,15 @@ import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
 import org.springframework.data.repository.NoRepositoryBean;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityExistsException;
 import javax.persistence.EntityManager;
+import javax.persistence.EntityNotFoundException;
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * IStorage的默认实现类
@@ -33,11 +42,19 @@ import java.io.Serializable;
 public class StorageLayeringCache<PK extends Serializable &Comparable<PK>,E extends AbstractEntity<PK>> extends SimpleJpaRepository<E,PK>
         implements IStorage<PK,E> {
     private static final Logger logger = LoggerFactory.getLogger(StorageLayeringCache.class);
+    /** 实体类 -> 缓存配置，配置只在第一次使用时从注解中解析 */
+    private static final Map<Class<?>, LayeringCacheSetting> CLASS_2_SETTING = new ConcurrentHashMap<>();
 
     /** IStorageBeanPostProcessor中注入 */
     private CacheManager cacheManager;
     /** 泛型E的实际类型 */
     private Class<? extends AbstractEntity> eClazz;
+    /** 一级缓存（Caffeine）+ 二级缓存（Redis），其它节点的一级缓存由layering-cache通过redis pub/sub失效 */
+    private volatile Cache cache;
+    /** 正在从数据库加载的主键，同一主键的并发未命中只查询一次数据库 */
+    private final ConcurrentHashMap<PK, CompletableFuture<E>> loadingFutures = new ConcurrentHashMap<>();
+    /** 合并更新的延迟入库 */
+    private final MergeUpdater<PK, E> mergeUpdater = new MergeUpdater<>();
 
     public void setCacheManager(CacheManager cacheManager) {
         this.cacheManager = cacheManager;
@@ -45,34 +62,55 @@ public class StorageLayeringCache<PK extends Serializable &Comparable<PK>,E exte
 
     public void seteClazz(Class<? extends AbstractEntity> eClazz) {
         this.eClazz = eClazz;
+        mergeUpdater.setDelay(getLayeringCacheConfig(eClazz).delay());
+    }
+
+    public void setProxy(IStorage<PK, E> proxy) {
+        mergeUpdater.setProxy(proxy);
+        MergeUpdateJournal.register(getDomainClass(), proxy);
     }
 
     public StorageLayeringCache(JpaEntityInformation<E, ?> entityInformation, EntityManager entityManager) {
         super(entityInformation, entityManager);
     }
 
-    /**
-     * 根据entityClass获取缓存
-     * @return Cache
-     */
-    private Cache getCache(){
+    private static LayeringCacheConfig getLayeringCacheConfig(Class<?> eClazz) {
         LayeringCacheConfig layeringCacheConfig = eClazz.getAnnotation(LayeringCacheConfig.class);
-        Preconditions.checkNotNull(layeringCacheConfig,"实体类[%s]没有使用@CacheConfig配置缓存",eClazz.getSimpleName());
-        String cacheName = layeringCacheConfig.cacheName();
-        if (StringUtils.isEmpty(cacheName)){
-            cacheName = eClazz.getSimpleName();
-        }
+        Preconditions.checkNotNull(layeringCacheConfig,"实体类[%s]没有使用@LayeringCacheConfig配置缓存",eClazz.getSimpleName());
+        return layeringCacheConfig;
+    }
+
+    private static LayeringCacheSetting createSetting(Class<?> eClazz) {
+        LayeringCacheConfig layeringCacheConfig = getLayeringCacheConfig(eClazz);
         FirstCache firstCache = layeringCacheConfig.firstCache();
         SecondaryCache secondaryCache = layeringCacheConfig.secondaryCache();
         FirstCacheSetting firstCacheSetting = new FirstCacheSetting(firstCache.initialCapacity(), firstCache.maximumSize(),
                 firstCache.expireTime(), firstCache.timeUnit(), firstCache.expireMode());
 
         SecondaryCacheSetting secondaryCacheSetting = new SecondaryCacheSetting(secondaryCache.expireTime(),
-                secondaryCache.preloadTime(), secondaryCache.timeUnit(), secondaryCache.forceRefresh());
-        LayeringCacheSetting layeringCacheSetting = new LayeringCacheSetting(firstCacheSetting, secondaryCacheSetting, layeringCacheConfig.depict());
-        // 通过cacheName和缓存配置获取Cache
-        Cache cache = cacheManager.getCache(cacheName, layeringCacheSetting);
-        return cache;
+                secondaryCache.preloadTime(), secondaryCache.timeUnit(), secondaryCache.forceRefresh(),
+                layeringCacheConfig.cacheNullValue(), layeringCacheConfig.nullValueMagnification());
+        return new LayeringCacheSetting(firstCacheSetting, secondaryCacheSetting, layeringCacheConfig.depict());
+    }
+
+    /**
+     * 根据entityClass获取缓存，第一次调用后缓存起来
+     * @return Cache
+     */
+    private Cache getCache(){
+        Cache current = cache;
+        if (current != null) {
+            return current;
+        }
+        String cacheName = getLayeringCacheConfig(eClazz).cacheName();
+        if (StringUtils.isEmpty(cacheName)){
+            cacheName = eClazz.getSimpleName();
+        }
+        LayeringCacheSetting layeringCacheSetting = CLASS_2_SETTING.computeIfAbsent(eClazz, StorageLayeringCache::createSetting);
+        // 通过cacheName和缓存配置获取Cache，同名同配置的Cache由CacheManager保证唯一
+        current = cacheManager.getCache(cacheName, layeringCacheSetting);
+        cache = current;
+        return current;
     }
 
     /**
@@ -83,39 +121,125 @@ public class StorageLayeringCache<PK extends Serializable &Comparable<PK>,E exte
     @Override
     @Transactional(rollbackFor = {Exception.class})
     public E create(E entity) {
-        Cache cache = getCache();
+        Preconditions.checkNotNull(entity,"entity不能为null");
+        if (get(entity.getId()) != null) {
+            throw new EntityExistsException("数据库中已存在该实体，考虑使用update?");
+        }
+        return doInsert(entity);
+    }
+
+    private E doInsert(E entity) {
         E entityAfterSave = this.saveAndFlush(entity);
-        cache.put(entity.getId(),entity);
+        getCache().put(entity.getId(), entityAfterSave);
         return entityAfterSave;
     }
 
+    @SuppressWarnings("unchecked")
     public E getFromCache(PK id,Class<? extends AbstractEntity> eClazz){
         Cache cache = getCache();
         return (E)cache.get(id,eClazz);
     }
 
+    /**
+     * 未命中时加载结果由layering-cache写入缓存，{@link LayeringCacheConfig#cacheNullValue()}开启时不存在的主键也会写入二级缓存，
+     * 之后的获取直接返回null，不再查询数据库
+     */
     @Override
+    @SuppressWarnings("unchecked")
     public E get(PK id) {
-        return null;
+        Preconditions.checkNotNull(id,"id不能为null");
+        Class<E> entityClass = (Class<E>) eClazz;
+        return getCache().get(id, entityClass, () -> load(id));
+    }
+
+    /**
+     * 从数据库加载实体，同一主键同时只有一个线程查询数据库，其它线程等待其结果，结果由调用者写入缓存
+     */
+    private E load(PK id) {
+        CompletableFuture<E> future = new CompletableFuture<>();
+        CompletableFuture<E> loadingFuture = loadingFutures.putIfAbsent(id, future);
+        if (loadingFuture != null) {
+            try {
+                return loadingFuture.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+        try {
+            E entity = findOne(id);
+            future.complete(entity);
+            return entity;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loadingFutures.remove(id, future);
+        }
     }
 
     @Override
+    @Transactional(rollbackFor = Exception.class)
     public E getOrCreate(PK id, EntityCreator<PK, E> entityCreator) {
-        return null;
+        Preconditions.checkNotNull(id,"id不能为null");
+        E entity = get(id);
+        if (entity != null) {
+            return entity;
+        }
+        return doInsert(entityCreator.create(id));
     }
 
     @Override
+    @Transactional(rollbackFor = Exception.class)
     public void update(E entity) {
-        return;
+        PK id = entity.getId();
+        Preconditions.checkNotNull(id,"id不能为null");
+        if (get(id) == null) {
+            throw new EntityNotFoundException("数据库中不存在该实体，先create一下？");
+        }
+        E merge = saveAndFlush(entity);
+        getCache().put(id, merge);
     }
 
     @Override
+    @Transactional(rollbackFor = Exception.class)
     public E remove(PK id) {
-        return null;
+        Preconditions.checkNotNull(id,"id不能为null");
+        E entity = get(id);
+        if (entity == null) {
+            return null;
+        }
+        delete(entity);
+        getCache().evict(id);
+        return entity;
+    }
+
+    /**
+     * 使指定主键的缓存失效（包括其它节点的一级缓存），下次获取时重新从数据库加载
+     * @param id 主键
+     */
+    public void invalidate(PK id) {
+        Preconditions.checkNotNull(id,"id不能为null");
+        getCache().evict(id);
     }
 
     @Override
     public void mergeUpdate(E entity) {
+        mergeUpdater.mergeUpdate(entity);
+    }
 
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void updateAll(Collection<E> entities) {
+        for (E e : MergeUpdater.saveAllAndFlush(this, entities)) {
+            getCache().put(e.getId(), e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Integer> flushMergeUpdates(int batchSize) {
+        return mergeUpdater.flushMergeUpdates(batchSize);
     }
 }
@@ -4,6 +4,10 @@ import org.springframework.data.repository.NoRepositoryBean;
 import org.springframework.data.repository.Repository;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 存储层（包括缓存）接口
@@ -31,6 +35,23 @@ public interface IStorage<PK extends Serializable&Comparable<PK>,E extends Abstr
      */
     E get(PK id);
 
+    /**
+     * 根据主键批量获取实体（同步）
+     * <p>实现类应先批量查缓存，缓存中没有的再用一次查询从数据库中批量获取，并放入缓存</p>
+     * @param ids 主键
+     * @return 主键 -> 实体，不存在的主键不包含在内
+     */
+    default Map<PK, E> getAll(Collection<PK> ids) {
+        Map<PK, E> result = new HashMap<>(ids.size());
+        for (PK id : ids) {
+            E entity = get(id);
+            if (entity != null) {
+                result.put(id, entity);
+            }
+        }
+        return result;
+    }
+
     // /**
     //  * 根据唯一字段（@Column(unique = true)的字段）获取一个实体（同步）
     //  * <p>先从缓存中找，找不到再从数据库中找</p>
@@ -63,6 +84,19 @@ public interface IStorage<PK extends Serializable&Comparable<PK>,E extends Abstr
      */
     void mergeUpdate(E entity);
 
+    /**
+     * 在同一个事务中批量更新缓存和数据库中的实体，实体必须已存在，用于合并更新的批量入库
+     * @param entities 实体
+     */
+    void updateAll(Collection<E> entities);
+
+    /**
+     * 立即把所有等待合并更新的实体分批入库（停服时调用），每批在存储层I/O线程池中用一个事务入库
+     * @param batchSize 每批实体数
+     * @return 入库完成的future，结果为入库的实体数
+     */
+    CompletableFuture<Integer> flushMergeUpdates(int batchSize);
+
     /**
      * 删除缓存（同步）和数据库（异步）中指定主键的实体
      * @param id 主键
@@ -70,6 +104,45 @@ public interface IStorage<PK extends Serializable&Comparable<PK>,E extends Abstr
      */
     E remove(PK id);
 
+    /**
+     * 在存储层I/O线程池中执行{@link #get(Serializable)}，可用于并行加载多个实体
+     * <p>回调默认在I/O线程中执行，需要回到玩家队列时使用
+     * {@link com.mmorpg.mbdl.framework.thread.task.TaskDispatcher#getQueueExecutor}作为回调的Executor</p>
+     * @param id 主键
+     * @return 实体的future，不存在时结果为null
+     */
+    default CompletableFuture<E> getAsync(PK id) {
+        return CompletableFuture.supplyAsync(() -> get(id), StorageExecutor.getInstance());
+    }
+
+    /**
+     * 在存储层I/O线程池中执行{@link #getOrCreate(Serializable, EntityCreator)}
+     * @param id 主键
+     * @param entityCreator 实体创建器
+     * @return 实体的future
+     */
+    default CompletableFuture<E> getOrCreateAsync(PK id, EntityCreator<PK,E> entityCreator) {
+        return CompletableFuture.supplyAsync(() -> getOrCreate(id, entityCreator), StorageExecutor.getInstance());
+    }
+
+    /**
+     * 在存储层I/O线程池中执行{@link #update(AbstractEntity)}
+     * @param entity 实体
+     * @return 更新完成的future
+     */
+    default CompletableFuture<Void> updateAsync(E entity) {
+        return CompletableFuture.runAsync(() -> update(entity), StorageExecutor.getInstance());
+    }
+
+    /**
+     * 在存储层I/O线程池中执行{@link #remove(Serializable)}
+     * @param id 主键
+     * @return 被删除实体的future，不存在时结果为null
+     */
+    default CompletableFuture<E> removeAsync(PK id) {
+        return CompletableFuture.supplyAsync(() -> remove(id), StorageExecutor.getInstance());
+    }
+
     // /**
     //  * 使指定主键的缓存失效
     //  * @param id
@@ -0,0 +1,495 @@
+package com.mmorpg.mbdl.framework.storage.core;
+
+import com.google.common.base.Preconditions;
+import com.mmorpg.mbdl.framework.common.utils.JsonUtil;
+import com.mmorpg.mbdl.framework.common.utils.ProtostuffUtils;
+import io.protostuff.GraphIOUtil;
+import io.protostuff.LinkedBuffer;
+import io.protostuff.Schema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * 合并更新的预写日志<br>
+ * {@link IStorage#mergeUpdate(AbstractEntity)}会把变更留在内存中延迟入库，延迟期间宕机会丢失数据。
+ * 每次合并更新前先把实体追加写入内存映射的日志文件，入库成功后写入一条入库记录，启动时重放尚未入库的实体。
+ * <p>日志按段存放，段中的实体都已入库或已被更新的记录取代后，从最旧的段开始依次删除。
+ * 记录格式：长度(int) | crc32(int) | 序号(long) | 类型(byte) | key长度(short) | key | 内容</p>
+ * <p>默认只保证进程崩溃时不丢数据（数据已在操作系统页缓存中），需要防止机器掉电时开启force，每次写入都会刷盘</p>
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+@Component
+public class MergeUpdateJournal implements ApplicationListener<ContextRefreshedEvent> {
+    private static final Logger logger = LoggerFactory.getLogger(MergeUpdateJournal.class);
+    private static final String FILE_PREFIX = "journal-";
+    private static final String FILE_SUFFIX = ".log";
+    /** 长度 + crc32 */
+    private static final int RECORD_HEADER_LENGTH = 8;
+    /** 序号 + 类型 + key长度 */
+    private static final int CONTENT_HEADER_LENGTH = 11;
+    private static final byte TYPE_ENTITY = 1;
+    private static final byte TYPE_FLUSHED = 2;
+    private static final byte[] EMPTY_KEY = new byte[0];
+    private static final ThreadLocal<LinkedBuffer> BUFFER = ThreadLocal.withInitial(() -> LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE));
+    /** 实体类 -> 存储，用于重放 */
+    private static final Map<Class<?>, IStorage<?, ?>> CLASS_2_STORAGE = new ConcurrentHashMap<>();
+    private static MergeUpdateJournal self;
+
+    @Value("${server.config.storage.journal.enable:true}")
+    private boolean enable;
+    @Value("${server.config.storage.journal.dir:journal}")
+    private String dir;
+    /** 段大小，MB */
+    @Value("${server.config.storage.journal.segmentSize:64}")
+    private int segmentSize;
+    @Value("${server.config.storage.journal.force:false}")
+    private boolean force;
+
+    private final Object lock = new Object();
+    /** 段号 -> 段 */
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    /** 实体key -> 实体最新一条未入库的记录 */
+    private final Map<String, Position> pending = new HashMap<>();
+    /** 上次运行遗留的、待重放的日志文件 */
+    private final List<File> recoveredFiles = new ArrayList<>();
+    /** 实体key -> 待重放的记录 */
+    private final Map<String, ReplayRecord> key2ReplayRecord = new LinkedHashMap<>();
+    /** 已入库的记录序号 */
+    private final Set<Long> flushedSequences = new HashSet<>();
+    private File directory;
+    private Segment active;
+    private long sequence;
+    private volatile boolean replayed;
+
+    @PostConstruct
+    private void init() {
+        self = this;
+        if (!enable) {
+            return;
+        }
+        Preconditions.checkArgument(segmentSize > 0, "合并更新日志段大小必须大于0");
+        segmentSize = (int) Math.min((long) segmentSize << 20, Integer.MAX_VALUE);
+        directory = new File(dir);
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new RuntimeException(String.format("无法创建合并更新日志目录[%s]", directory.getAbsolutePath()));
+        }
+        File[] files = directory.listFiles((d, name) -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX));
+        long lastIndex = 0;
+        if (files != null) {
+            Arrays.sort(files);
+            recoveredFiles.addAll(Arrays.asList(files));
+            for (File file : files) {
+                lastIndex = Math.max(lastIndex, parseIndex(file));
+                // 序号延续上次运行的，重放过程中崩溃时新旧日志的序号仍可比较
+                sequence = Math.max(sequence, readSegment(file));
+            }
+        }
+        synchronized (lock) {
+            roll(lastIndex + 1, segmentSize);
+        }
+        logger.info("合并更新日志目录[{}]，待重放日志文件{}个", directory.getAbsolutePath(), recoveredFiles.size());
+    }
+
+    public static MergeUpdateJournal getInstance() {
+        return self;
+    }
+
+    /**
+     * 注册实体类对应的存储，重放时通过它更新实体
+     * @param entityClass 实体类
+     * @param storage 存储（代理对象）
+     */
+    public static void register(Class<?> entityClass, IStorage<?, ?> storage) {
+        CLASS_2_STORAGE.put(entityClass, storage);
+    }
+
+    /**
+     * 追加实体的最新状态，必须在合并更新返回前调用
+     * @param entity 实体
+     * @return 记录的序号，未开启日志时返回0
+     */
+    public long append(AbstractEntity<?> entity) {
+        if (!enable) {
+            return 0;
+        }
+        String key = keyOf(entity);
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] body = serialize(entity);
+        synchronized (lock) {
+            long recordSequence = ++sequence;
+            Position position = write(recordSequence, TYPE_ENTITY, keyBytes, body);
+            position.segment.live++;
+            Position old = pending.put(key, position);
+            if (old != null) {
+                old.segment.live--;
+                truncateIfPossible();
+            }
+            return recordSequence;
+        }
+    }
+
+    /**
+     * 实体最新一条未入库记录的序号，入库前获取，入库成功后传给{@link #flushed(AbstractEntity, long)}
+     * @param entity 实体
+     * @return 序号，没有未入库的记录时返回0
+     */
+    public long lastSequence(AbstractEntity<?> entity) {
+        if (!enable) {
+            return 0;
+        }
+        synchronized (lock) {
+            Position position = pending.get(keyOf(entity));
+            return position == null ? 0 : position.sequence;
+        }
+    }
+
+    /**
+     * 实体已入库，入库期间又有新的记录时不做处理，等待下一次入库
+     * @param entity 实体
+     * @param flushedSequence 入库前通过{@link #lastSequence(AbstractEntity)}获取的序号
+     */
+    public void flushed(AbstractEntity<?> entity, long flushedSequence) {
+        if (!enable || flushedSequence == 0) {
+            return;
+        }
+        String key = keyOf(entity);
+        synchronized (lock) {
+            Position position = pending.get(key);
+            if (position == null || position.sequence != flushedSequence) {
+                return;
+            }
+            pending.remove(key);
+            position.segment.live--;
+            // 写入入库记录，重放时跳过已入库的实体
+            write(++sequence, TYPE_FLUSHED, EMPTY_KEY, ByteBuffer.allocate(Long.BYTES).putLong(flushedSequence).array());
+            truncateIfPossible();
+        }
+    }
+
+    /**
+     * spring容器启动完成后（服务器对外开放前）重放上次运行遗留的日志
+     */
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        if (!enable || replayed || event.getApplicationContext().getParent() != null) {
+            return;
+        }
+        replayed = true;
+        if (recoveredFiles.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        int replayCount = 0;
+        int failCount = 0;
+        for (ReplayRecord record : key2ReplayRecord.values()) {
+            if (flushedSequences.contains(record.sequence)) {
+                continue;
+            }
+            if (replay(record)) {
+                replayCount++;
+            } else {
+                failCount++;
+            }
+        }
+        for (File file : recoveredFiles) {
+            if (!file.delete()) {
+                logger.warn("删除已重放的合并更新日志[{}]失败", file.getAbsolutePath());
+            }
+        }
+        recoveredFiles.clear();
+        key2ReplayRecord.clear();
+        flushedSequences.clear();
+        logger.info("重放合并更新日志完成，重放实体{}个，失败{}个，耗时{}ms", replayCount, failCount,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    @PreDestroy
+    private void close() {
+        if (!enable) {
+            return;
+        }
+        synchronized (lock) {
+            for (Segment segment : segments.values()) {
+                segment.buffer.force();
+                unmap(segment.buffer);
+            }
+            segments.clear();
+            active = null;
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private boolean replay(ReplayRecord record) {
+        Object entity = null;
+        try {
+            entity = deserialize(record.className, record.body);
+            IStorage storage = CLASS_2_STORAGE.get(entity.getClass());
+            Preconditions.checkNotNull(storage, "实体类[%s]没有对应的存储", record.className);
+            storage.update((AbstractEntity) entity);
+            return true;
+        } catch (Exception e) {
+            logger.error("重放合并更新日志失败，实体[{}]：{}", record.key, entity == null ? null : JsonUtil.object2String(entity), e);
+            // 写入新的日志中，下次启动时再次重放
+            if (entity instanceof AbstractEntity) {
+                append((AbstractEntity<?>) entity);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 读取日志文件中的记录
+     * @return 文件中最大的序号
+     */
+    private long readSegment(File file) {
+        MappedByteBuffer buffer;
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("读取合并更新日志[%s]失败", file.getAbsolutePath()), e);
+        }
+        long maxSequence = 0;
+        try {
+            CRC32 crc32 = new CRC32();
+            while (buffer.remaining() >= RECORD_HEADER_LENGTH) {
+                int length = buffer.getInt();
+                int crc = buffer.getInt();
+                // 长度为0说明后面没有数据了
+                if (length == 0) {
+                    break;
+                }
+                if (length < CONTENT_HEADER_LENGTH || length > buffer.remaining()) {
+                    logger.warn("合并更新日志[{}]在位置[{}]处记录长度非法，忽略后续内容", file.getName(), buffer.position());
+                    break;
+                }
+                byte[] content = new byte[length];
+                buffer.get(content);
+                crc32.reset();
+                crc32.update(content, 0, length);
+                if ((int) crc32.getValue() != crc) {
+                    logger.warn("合并更新日志[{}]在位置[{}]处校验失败，忽略后续内容", file.getName(), buffer.position());
+                    break;
+                }
+                ByteBuffer contentBuffer = ByteBuffer.wrap(content);
+                long recordSequence = contentBuffer.getLong();
+                maxSequence = Math.max(maxSequence, recordSequence);
+                byte type = contentBuffer.get();
+                byte[] keyBytes = new byte[contentBuffer.getShort()];
+                contentBuffer.get(keyBytes);
+                if (type == TYPE_FLUSHED) {
+                    flushedSequences.add(contentBuffer.getLong());
+                    continue;
+                }
+                byte[] body = new byte[contentBuffer.remaining()];
+                contentBuffer.get(body);
+                String key = new String(keyBytes, StandardCharsets.UTF_8);
+                ReplayRecord old = key2ReplayRecord.get(key);
+                if (old == null || old.sequence < recordSequence) {
+                    key2ReplayRecord.put(key, new ReplayRecord(recordSequence, key, body));
+                }
+            }
+        } finally {
+            unmap(buffer);
+        }
+        return maxSequence;
+    }
+
+    private Position write(long recordSequence, byte type, byte[] keyBytes, byte[] body) {
+        int length = CONTENT_HEADER_LENGTH + keyBytes.length + body.length;
+        byte[] content = ByteBuffer.allocate(length)
+                .putLong(recordSequence)
+                .put(type)
+                .putShort((short) keyBytes.length)
+                .put(keyBytes)
+                .put(body)
+                .array();
+        CRC32 crc32 = new CRC32();
+        crc32.update(content, 0, length);
+        int recordLength = RECORD_HEADER_LENGTH + length;
+        if (active == null) {
+            throw new RuntimeException("合并更新日志已关闭");
+        }
+        if (active.buffer.remaining() < recordLength) {
+            roll(active.index + 1, Math.max(segmentSize, recordLength));
+        }
+        MappedByteBuffer buffer = active.buffer;
+        int start = buffer.position();
+        // 先写内容和校验码，最后写长度，写入过程中崩溃时读到的长度为0
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(start + RECORD_HEADER_LENGTH);
+        duplicate.put(content);
+        buffer.putInt(start + Integer.BYTES, (int) crc32.getValue());
+        buffer.putInt(start, length);
+        buffer.position(start + recordLength);
+        if (force) {
+            buffer.force();
+        }
+        return new Position(recordSequence, active);
+    }
+
+    /**
+     * 从最旧的段开始删除没有未入库记录的段，必须按顺序删除，否则较新段中的入库记录可能先于其对应的实体记录被删除
+     */
+    private void truncateIfPossible() {
+        while (!segments.isEmpty()) {
+            Segment oldest = segments.firstEntry().getValue();
+            if (oldest.live > 0) {
+                return;
+            }
+            if (oldest == active) {
+                // 所有记录都已入库，当前段写入较多时换一个新段，旧段随后删除
+                if (active.buffer.position() < segmentSize / 4) {
+                    return;
+                }
+                roll(active.index + 1, segmentSize);
+                continue;
+            }
+            segments.pollFirstEntry();
+            oldest.delete();
+        }
+    }
+
+    private void roll(long index, int size) {
+        File file = new File(directory, String.format("%s%020d%s", FILE_PREFIX, index, FILE_SUFFIX));
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            randomAccessFile.setLength(size);
+            active = new Segment(index, file, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("创建合并更新日志[%s]失败", file.getAbsolutePath()), e);
+        }
+        segments.put(index, active);
+    }
+
+    private static String keyOf(AbstractEntity<?> entity) {
+        return entity.getClass().getName() + '#' + entity.getId();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> byte[] serialize(T entity) {
+        Schema<T> schema = ProtostuffUtils.getSchema((Class<T>) entity.getClass());
+        LinkedBuffer buffer = BUFFER.get();
+        try {
+            // graph模式保证实体中被多处引用的同一对象反序列化后仍是同一对象
+            return GraphIOUtil.toByteArray(entity, schema, buffer);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    private static Object deserialize(String className, byte[] body) throws ClassNotFoundException {
+        Schema<?> schema = ProtostuffUtils.getSchema(Class.forName(className));
+        return mergeFrom(body, schema);
+    }
+
+    private static <T> T mergeFrom(byte[] body, Schema<T> schema) {
+        T message = schema.newMessage();
+        GraphIOUtil.mergeFrom(body, message, schema);
+        return message;
+    }
+
+    private static long parseIndex(File file) {
+        String name = file.getName();
+        return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+    }
+
+    /**
+     * 尽早释放内存映射，失败时等待GC回收
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            java.lang.reflect.Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (NoSuchMethodException e) {
+            // java8
+            try {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            } catch (Exception ignored) {
+                // 等待GC回收
+            }
+        } catch (Exception ignored) {
+            // 等待GC回收
+        }
+    }
+
+    private static final class Segment {
+        private final long index;
+        private final File file;
+        private final MappedByteBuffer buffer;
+        /** 段中未入库（且未被取代）的实体记录数 */
+        private int live;
+
+        private Segment(long index, File file, MappedByteBuffer buffer) {
+            this.index = index;
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        private void delete() {
+            unmap(buffer);
+            if (!file.delete()) {
+                logger.warn("删除合并更新日志[{}]失败", file.getAbsolutePath());
+            }
+        }
+    }
+
+    private static final class Position {
+        private final long sequence;
+        private final Segment segment;
+
+        private Position(long sequence, Segment segment) {
+            this.sequence = sequence;
+            this.segment = segment;
+        }
+    }
+
+    private static final class ReplayRecord {
+        private final long sequence;
+        private final String key;
+        private final String className;
+        private final byte[] body;
+
+        private ReplayRecord(long sequence, String key, byte[] body) {
+            this.sequence = sequence;
+            this.key = key;
+            this.className = key.substring(0, key.lastIndexOf('#'));
+            this.body = body;
+        }
+    }
+}
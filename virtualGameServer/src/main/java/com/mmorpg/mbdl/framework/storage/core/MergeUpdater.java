@@ -0,0 +1,126 @@
+package com.mmorpg.mbdl.framework.storage.core;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.mmorpg.mbdl.framework.thread.task.DelayedTask;
+import com.mmorpg.mbdl.framework.thread.task.TaskDispatcher;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 各IStorage实现共用的合并更新逻辑：延迟入库任务、停服时批量入库以及预写日志的入库标记
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+public class MergeUpdater<PK extends Serializable & Comparable<PK>, E extends AbstractEntity<PK>> {
+    /** 合并更新的延迟（秒），为0时直接入库 */
+    private int delay;
+    /** 存储的代理对象，入库需要经过事务 */
+    private IStorage<PK, E> proxy;
+    /** 已创建合并更新任务、尚未入库的实体 */
+    private final ConcurrentHashMap<PK, E> mergePendingEntities = new ConcurrentHashMap<>();
+
+    public void setDelay(int delay) {
+        this.delay = delay;
+    }
+
+    public void setProxy(IStorage<PK, E> proxy) {
+        this.proxy = proxy;
+    }
+
+    /**
+     * {@link IStorage#mergeUpdate(AbstractEntity)}的实现
+     */
+    public void mergeUpdate(E entity) {
+        if (this.delay == 0) {
+            proxy.update(entity);
+            return;
+        }
+        // 先写入预写日志，延迟入库期间宕机时可在启动时恢复
+        MergeUpdateJournal.getInstance().append(entity);
+        if (!entity.getCanCreateMergeUpdateTask().compareAndSet(true, false)) {
+            return;
+        }
+        mergePendingEntities.put(entity.getId(), entity);
+        TaskDispatcher.getInstance().dispatch(new DelayedTask(null, delay, TimeUnit.SECONDS) {
+            @Override
+            public String taskName() {
+                return String.format("合并更新实体[%s]", entity.getClass().getSimpleName());
+            }
+
+            @Override
+            public void execute() {
+                try {
+                    // 停服时可能已被flushMergeUpdates入库
+                    if (mergePendingEntities.remove(entity.getId(), entity)) {
+                        flushMerged(Collections.singletonList(entity));
+                    }
+                } finally {
+                    entity.getCanCreateMergeUpdateTask().set(true);
+                }
+            }
+        }.setMaxExecuteTime(30, TimeUnit.MILLISECONDS), true);
+    }
+
+    /**
+     * {@link IStorage#flushMergeUpdates(int)}的实现
+     */
+    public CompletableFuture<Integer> flushMergeUpdates(int batchSize) {
+        List<E> entities = new ArrayList<>(mergePendingEntities.size());
+        for (E entity : mergePendingEntities.values()) {
+            if (mergePendingEntities.remove(entity.getId(), entity)) {
+                entities.add(entity);
+            }
+        }
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (List<E> batch : Lists.partition(entities, batchSize)) {
+            futures.add(CompletableFuture.runAsync(() -> flushMerged(batch), StorageExecutor.getInstance()));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(v -> entities.size());
+    }
+
+    /**
+     * 合并更新的实体入库，入库成功后在预写日志中标记
+     */
+    private void flushMerged(List<E> entities) {
+        MergeUpdateJournal journal = MergeUpdateJournal.getInstance();
+        long[] sequences = new long[entities.size()];
+        for (int i = 0; i < sequences.length; i++) {
+            sequences[i] = journal.lastSequence(entities.get(i));
+        }
+        if (entities.size() == 1) {
+            proxy.update(entities.get(0));
+        } else {
+            proxy.updateAll(entities);
+        }
+        for (int i = 0; i < sequences.length; i++) {
+            journal.flushed(entities.get(i), sequences[i]);
+        }
+    }
+
+    /**
+     * {@link IStorage#updateAll(Collection)}的数据库部分，需要在调用者的事务中执行，整批只flush一次
+     * @param repository 实体所在的仓库
+     * @param entities 要更新的实体
+     * @return merge后的实体，由调用者写入缓存
+     */
+    public static <PK extends Serializable & Comparable<PK>, E extends AbstractEntity<PK>> List<E> saveAllAndFlush(
+            JpaRepository<E, PK> repository, Collection<E> entities) {
+        List<E> merged = new ArrayList<>(entities.size());
+        for (E entity : entities) {
+            Preconditions.checkNotNull(entity.getId(),"id不能为null");
+            merged.add(repository.save(entity));
+        }
+        repository.flush();
+        return merged;
+    }
+}
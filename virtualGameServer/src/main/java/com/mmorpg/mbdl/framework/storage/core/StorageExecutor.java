@@ -0,0 +1,63 @@
+package com.mmorpg.mbdl.framework.storage.core;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 存储层I/O线程池，{@link IStorage}的异步方法在此执行，线程数不应超过数据库连接池的最大连接数
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+@Component
+public class StorageExecutor implements Executor {
+    private static final Logger logger = LoggerFactory.getLogger(StorageExecutor.class);
+    private static StorageExecutor self;
+
+    @Value("${server.config.storage.io.poolSize:16}")
+    private int poolSize;
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    private void init() {
+        self = this;
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("存储IO线程-%d").build());
+        executor.allowCoreThreadTimeOut(true);
+        logger.info("存储层I/O线程池线程数[{}]", poolSize);
+    }
+
+    public static StorageExecutor getInstance() {
+        return self;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        executor.execute(command);
+    }
+
+    /**
+     * 关闭线程池，等待已提交的任务执行完毕
+     * @param timeout 等待时间
+     * @param timeUnit 时间单位
+     * @return 是否在等待时间内关闭完成
+     * @throws InterruptedException 等待时被中断
+     */
+    public boolean shutdown(long timeout, TimeUnit timeUnit) throws InterruptedException {
+        executor.shutdown();
+        return executor.awaitTermination(timeout, timeUnit);
+    }
+
+    public ThreadPoolExecutor getExecutor() {
+        return executor;
+    }
+}
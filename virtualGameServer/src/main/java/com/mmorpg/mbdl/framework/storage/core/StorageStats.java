@@ -0,0 +1,131 @@
+package com.mmorpg.mbdl.framework.storage.core;
+
+import com.google.common.base.MoreObjects;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 存储层按实体类统计的缓存命中、未命中以及数据库加载耗时
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+public class StorageStats {
+    private static final ConcurrentMap<Class<?>, StorageStats> CLASS_2_STATS = new ConcurrentHashMap<>();
+
+    private final Class<?> entityClass;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    /** 并发未命中时等待其它线程加载结果的次数（被合并的数据库查询次数） */
+    private final LongAdder sharedLoadCount = new LongAdder();
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder loadFailureCount = new LongAdder();
+    private final LongAdder totalLoadNanos = new LongAdder();
+    private final LongAdder refreshCount = new LongAdder();
+
+    private StorageStats(Class<?> entityClass) {
+        this.entityClass = entityClass;
+    }
+
+    /**
+     * 获取实体类对应的统计，不存在则创建
+     * @param entityClass 实体类
+     * @return StorageStats
+     */
+    public static StorageStats of(Class<?> entityClass) {
+        return CLASS_2_STATS.computeIfAbsent(entityClass, StorageStats::new);
+    }
+
+    /**
+     * 所有实体类的统计
+     */
+    public static Collection<StorageStats> all() {
+        return Collections.unmodifiableCollection(CLASS_2_STATS.values());
+    }
+
+    public void recordHit() {
+        hitCount.increment();
+    }
+
+    public void recordMiss() {
+        missCount.increment();
+    }
+
+    public void recordSharedLoad() {
+        sharedLoadCount.increment();
+    }
+
+    public void recordLoad(long loadNanos, boolean success) {
+        loadCount.increment();
+        totalLoadNanos.add(loadNanos);
+        if (!success) {
+            loadFailureCount.increment();
+        }
+    }
+
+    public void recordRefresh() {
+        refreshCount.increment();
+    }
+
+    public Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getSharedLoadCount() {
+        return sharedLoadCount.sum();
+    }
+
+    public long getLoadCount() {
+        return loadCount.sum();
+    }
+
+    public long getLoadFailureCount() {
+        return loadFailureCount.sum();
+    }
+
+    public long getRefreshCount() {
+        return refreshCount.sum();
+    }
+
+    public double getHitRate() {
+        long hit = getHitCount();
+        long total = hit + getMissCount();
+        return total == 0 ? 1.0 : (double) hit / total;
+    }
+
+    /**
+     * 平均每次数据库加载耗时（毫秒）
+     */
+    public double getAverageLoadMillis() {
+        long loads = getLoadCount();
+        return loads == 0 ? 0 : (double) totalLoadNanos.sum() / loads / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("entity", entityClass.getSimpleName())
+                .add("hit", getHitCount())
+                .add("miss", getMissCount())
+                .add("hitRate", String.format("%.2f%%", getHitRate() * 100))
+                .add("load", getLoadCount())
+                .add("sharedLoad", getSharedLoadCount())
+                .add("loadFailure", getLoadFailureCount())
+                .add("avgLoadMs", String.format("%.3f", getAverageLoadMillis()))
+                .add("refresh", getRefreshCount())
+                .toString();
+    }
+}
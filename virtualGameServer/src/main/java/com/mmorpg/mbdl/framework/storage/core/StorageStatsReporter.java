@@ -0,0 +1,63 @@
+package com.mmorpg.mbdl.framework.storage.core;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定时打印{@link StorageStats}，停服时再打印一次
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+@Component
+public class StorageStatsReporter {
+    private static final Logger logger = LoggerFactory.getLogger(StorageStatsReporter.class);
+
+    /**
+     * 打印间隔（分钟），为0时不定时打印
+     */
+    @Value("${server.config.storage.stats.logInterval:10}")
+    private int logInterval;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    private void init() {
+        if (logInterval <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("存储统计").setDaemon(true).build());
+        scheduler.scheduleAtFixedRate(this::report, logInterval, logInterval, TimeUnit.MINUTES);
+    }
+
+    /**
+     * 打印所有实体类的统计
+     */
+    public void report() {
+        try {
+            for (StorageStats stats : StorageStats.all()) {
+                logger.info("{}", stats);
+            }
+        } catch (RuntimeException e) {
+            // 异常不能抛给调度器，否则之后的打印会被取消
+            logger.error("打印存储统计失败", e);
+        }
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        report();
+    }
+}
@@ -10,6 +10,7 @@ import java.io.Serializable;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 业务线程池，以及所有与业务线程池关联的队列
@@ -22,6 +23,8 @@ public class PoolExecutor<K extends Serializable, V extends ScheduledExecutorSer
     private V businessThreadPool;
     /** 业务所有的任务队列 */
     private ITimeOutHashMap<K, TaskQueue<K>> businessThreadPoolTaskQueues;
+    /** 已提交但尚未执行完毕的任务数（包括在队列中等待的），不包括尚未到期的延迟任务 */
+    private final LongAdder inFlightTaskCount = new LongAdder();
 
     public PoolExecutor(V businessThreadPool, long timeout, TimeUnit timeUnit) {
         this.businessThreadPool = businessThreadPool;
@@ -50,8 +53,47 @@ public class PoolExecutor<K extends Serializable, V extends ScheduledExecutorSer
      * @return ScheduledFuture可用于控制任务以及检查状态
      */
     public ScheduledFuture<?> addTask(AbstractTask<? extends Dispatchable<K>, K> runnable) {
+        if (businessThreadPool instanceof WorkStealingExecutor) {
+            // 串行任务投递到队列亲和的工作线程
+            TaskQueue<K> taskQueue = runnable.isExecuteParallel() ? null : runnable.getTaskQueue();
+            int affinity = taskQueue == null ? -1 : taskQueue.getAffinity();
+            return ((WorkStealingExecutor) businessThreadPool).submit(runnable, affinity);
+        }
         return businessThreadPool.schedule(runnable, 0, TimeUnit.NANOSECONDS);
     }
+    /**
+     * 任务提交到队列或线程池时调用
+     */
+    public void taskSubmitted() {
+        inFlightTaskCount.increment();
+    }
+
+    /**
+     * 任务执行完毕时调用
+     */
+    public void taskCompleted() {
+        inFlightTaskCount.decrement();
+    }
+
+    /**
+     * 已提交但尚未执行完毕的任务数，停服时用于判断队列是否已排空
+     */
+    public long getInFlightTaskCount() {
+        return inFlightTaskCount.sum();
+    }
+
+    /**
+     * 关闭业务线程池，尚未到期的延迟任务不再执行
+     * @param timeout 等待时间
+     * @param timeUnit 时间单位
+     * @return 是否在等待时间内关闭完成
+     * @throws InterruptedException 等待时被中断
+     */
+    public boolean shutdown(long timeout, TimeUnit timeUnit) throws InterruptedException {
+        businessThreadPool.shutdown();
+        return businessThreadPool.awaitTermination(timeout, timeUnit);
+    }
+
     /**
      * 添加延时执行任务
      * @param runnable 任务
@@ -0,0 +1,112 @@
+package com.mmorpg.mbdl.framework.thread;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 单线程时间轮：定时器按到期的刻度放入槽中，推进时只检查经过的槽，添加和到期都是O(1)<br/>
+ * 不创建线程，由调用者（如场景心跳）驱动{@link #advance(long, Consumer)}，非线程安全
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+public final class TimingWheel<T> {
+    /** 每个刻度的毫秒数 */
+    private final long tickDuration;
+    private final int mask;
+    private final List<Timer<T>>[] slots;
+    private final long startTime;
+    /** 已经处理过的刻度 */
+    private long currentTick;
+    private int size;
+    /** 推进时暂存到期的定时器，回调在遍历槽之后执行，回调中可以再添加定时器 */
+    private final List<T> expired = new ArrayList<>();
+
+    /**
+     * @param tickDuration 每个刻度的毫秒数，通常等于驱动它的心跳间隔
+     * @param wheelSize 槽数，会向上取整为2的幂，超过一圈的定时器在槽中多停留几圈
+     * @param startTime 起始时间（毫秒）
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickDuration, int wheelSize, long startTime) {
+        Preconditions.checkArgument(tickDuration > 0, "时间轮刻度必须大于0，当前为%s", tickDuration);
+        Preconditions.checkArgument(wheelSize > 0 && wheelSize <= 1 << 20, "时间轮槽数必须在(0, 2^20]之间，当前为%s", wheelSize);
+        int normalizedSize = Integer.highestOneBit(wheelSize);
+        if (normalizedSize < wheelSize) {
+            normalizedSize <<= 1;
+        }
+        this.tickDuration = tickDuration;
+        this.mask = normalizedSize - 1;
+        this.slots = new List[normalizedSize];
+        for (int i = 0; i < normalizedSize; i++) {
+            slots[i] = new ArrayList<>();
+        }
+        this.startTime = startTime;
+    }
+
+    /**
+     * 添加定时器，到期时间向上取整到刻度，最少在下一个刻度到期
+     * @param task 到期时回调的对象
+     * @param delay 相对于已推进到的时间的延迟（毫秒）
+     */
+    public void schedule(T task, long delay) {
+        long ticks = Math.max(1, (Math.max(delay, 0) + tickDuration - 1) / tickDuration);
+        long deadlineTick = currentTick + ticks;
+        slots[(int) (deadlineTick & mask)].add(new Timer<>(task, deadlineTick));
+        size++;
+    }
+
+    /**
+     * 推进到指定时间，依次回调到期的定时器
+     * @param now 当前时间（毫秒），小于已推进到的时间时什么都不做
+     * @param consumer 到期回调
+     */
+    public void advance(long now, Consumer<? super T> consumer) {
+        long targetTick = (now - startTime) / tickDuration;
+        while (currentTick < targetTick) {
+            currentTick++;
+            List<Timer<T>> slot = slots[(int) (currentTick & mask)];
+            for (int i = slot.size() - 1; i >= 0; i--) {
+                Timer<T> timer = slot.get(i);
+                if (timer.deadlineTick <= currentTick) {
+                    // 槽内无序，用最后一个填补空位
+                    Timer<T> last = slot.remove(slot.size() - 1);
+                    if (i < slot.size()) {
+                        slot.set(i, last);
+                    }
+                    size--;
+                    expired.add(timer.task);
+                }
+            }
+            if (!expired.isEmpty()) {
+                try {
+                    for (T task : expired) {
+                        consumer.accept(task);
+                    }
+                } finally {
+                    expired.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 尚未到期的定时器数量
+     */
+    public int size() {
+        return size;
+    }
+
+    private static final class Timer<T> {
+        private final T task;
+        private final long deadlineTick;
+
+        private Timer(T task, long deadlineTick) {
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
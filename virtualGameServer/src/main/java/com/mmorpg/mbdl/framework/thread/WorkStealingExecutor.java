@@ -0,0 +1,344 @@
+package com.mmorpg.mbdl.framework.thread;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 工作窃取业务线程池<br>
+ * 每个工作线程拥有自己的任务队列，任务优先投递到指定的（亲和的）工作线程，空闲的工作线程会从其它线程的队列中窃取任务。
+ * 串行的{@link com.mmorpg.mbdl.framework.thread.task.TaskQueue}同一时刻最多只有一个任务在池中，
+ * 下一个任务默认投递到刚执行完上一个任务的线程，所以队列内严格有序，且玩家数据尽量留在同一个线程的CPU缓存中。
+ * 延迟任务和周期任务由单独的定时线程计时，到期后再投递到工作线程执行
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+public class WorkStealingExecutor extends AbstractExecutorService implements ScheduledExecutorService {
+    private static final ThreadLocal<Worker> CURRENT_WORKER = new ThreadLocal<>();
+
+    private final Worker[] workers;
+    /** 定时线程，只负责计时，不执行业务 */
+    private final ScheduledThreadPoolExecutor timer;
+    private final AtomicInteger roundRobin = new AtomicInteger();
+    private final CountDownLatch terminationLatch;
+    private final LongAdder stealCount = new LongAdder();
+    private volatile boolean shutdown;
+
+    public WorkStealingExecutor(int nThreads, ThreadFactory threadFactory) {
+        Preconditions.checkArgument(nThreads > 0, "线程数必须大于0");
+        Preconditions.checkNotNull(threadFactory);
+        this.workers = new Worker[nThreads];
+        this.terminationLatch = new CountDownLatch(nThreads);
+        this.timer = new ScheduledThreadPoolExecutor(1, Executors.defaultThreadFactory());
+        this.timer.setRemoveOnCancelPolicy(true);
+        // 关闭后不再等待尚未到期的延迟任务
+        this.timer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        for (int i = 0; i < nThreads; i++) {
+            workers[i] = new Worker(i);
+        }
+        for (Worker worker : workers) {
+            Thread thread = threadFactory.newThread(worker);
+            worker.thread = thread;
+            thread.start();
+        }
+    }
+
+    /**
+     * 获取当前线程在所属工作窃取线程池中的下标
+     * @return 当前线程不是工作线程时返回-1
+     */
+    public static int currentWorkerIndex() {
+        Worker worker = CURRENT_WORKER.get();
+        return worker == null ? -1 : worker.index;
+    }
+
+    /**
+     * 投递任务到指定的工作线程
+     * @param command 任务
+     * @param affinity 亲和的工作线程下标，小于0时由线程池选择（工作线程中提交的投递到自身，否则轮询）
+     */
+    public void execute(Runnable command, int affinity) {
+        Preconditions.checkNotNull(command);
+        if (shutdown) {
+            throw new RejectedExecutionException("线程池已关闭");
+        }
+        Worker target = selectWorker(affinity);
+        target.deque.offerLast(command);
+        // 目标线程空闲则直接唤醒，否则唤醒一个空闲线程来窃取
+        if (target.idle) {
+            LockSupport.unpark(target.thread);
+        } else {
+            signalIdleWorker(target.index);
+        }
+    }
+
+    /**
+     * 投递任务到指定的工作线程
+     * @return ScheduledFuture可用于控制任务以及检查状态
+     */
+    public ScheduledFuture<?> submit(Runnable command, int affinity) {
+        ScheduledFutureTask<Object> futureTask = new ScheduledFutureTask<>(command, null, System.nanoTime());
+        execute(futureTask, affinity);
+        return futureTask;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        execute(command, -1);
+    }
+
+    private Worker selectWorker(int affinity) {
+        if (affinity >= 0) {
+            return workers[affinity % workers.length];
+        }
+        Worker current = CURRENT_WORKER.get();
+        if (current != null && current.owner() == this) {
+            return current;
+        }
+        return workers[(roundRobin.getAndIncrement() & Integer.MAX_VALUE) % workers.length];
+    }
+
+    private void signalIdleWorker(int except) {
+        int length = workers.length;
+        int start = ThreadLocalRandom.current().nextInt(length);
+        for (int i = 0; i < length; i++) {
+            Worker worker = workers[(start + i) % length];
+            if (worker.index != except && worker.idle) {
+                LockSupport.unpark(worker.thread);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        Preconditions.checkNotNull(command);
+        return doSchedule(new ScheduledFutureTask<>(command, null, triggerTime(delay, unit)), delay, unit);
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        Preconditions.checkNotNull(callable);
+        return doSchedule(new ScheduledFutureTask<>(callable, triggerTime(delay, unit)), delay, unit);
+    }
+
+    private <V> ScheduledFutureTask<V> doSchedule(ScheduledFutureTask<V> futureTask, long delay, TimeUnit unit) {
+        if (delay <= 0) {
+            execute(futureTask);
+        } else {
+            futureTask.timerFuture = timer.schedule(() -> execute(futureTask), delay, unit);
+        }
+        return futureTask;
+    }
+
+    /**
+     * 周期任务到期后投递到工作线程执行，执行时间超过周期时会与下一周期并行，需要串行的请通过TaskQueue提交
+     */
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        Preconditions.checkNotNull(command);
+        return timer.scheduleAtFixedRate(() -> execute(command), initialDelay, period, unit);
+    }
+
+    /**
+     * 周期任务到期后投递到工作线程执行，延迟从投递时开始计算，需要串行的请通过TaskQueue提交
+     */
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        Preconditions.checkNotNull(command);
+        return timer.scheduleWithFixedDelay(() -> execute(command), initialDelay, delay, unit);
+    }
+
+    private static long triggerTime(long delay, TimeUnit unit) {
+        return System.nanoTime() + unit.toNanos(Math.max(delay, 0));
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        timer.shutdown();
+        for (Worker worker : workers) {
+            LockSupport.unpark(worker.thread);
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> remains = new ArrayList<>();
+        remains.addAll(timer.shutdownNow());
+        shutdown = true;
+        for (Worker worker : workers) {
+            Runnable runnable;
+            while ((runnable = worker.deque.pollFirst()) != null) {
+                remains.add(runnable);
+            }
+            worker.thread.interrupt();
+            LockSupport.unpark(worker.thread);
+        }
+        return remains;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminationLatch.getCount() == 0 && timer.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if (!terminationLatch.await(timeout, unit)) {
+            return false;
+        }
+        return timer.awaitTermination(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 累计窃取的任务数
+     */
+    public long getStealCount() {
+        return stealCount.sum();
+    }
+
+    public int getPoolSize() {
+        return workers.length;
+    }
+
+    private final class Worker implements Runnable {
+        private final int index;
+        private final ConcurrentLinkedDeque<Runnable> deque = new ConcurrentLinkedDeque<>();
+        private volatile boolean idle;
+        private Thread thread;
+
+        private Worker(int index) {
+            this.index = index;
+        }
+
+        private WorkStealingExecutor owner() {
+            return WorkStealingExecutor.this;
+        }
+
+        @Override
+        public void run() {
+            CURRENT_WORKER.set(this);
+            try {
+                for (;;) {
+                    Runnable task = nextTask();
+                    if (task == null) {
+                        // 先声明空闲再检查一次，与execute中先入队再检查idle配合，避免丢失唤醒
+                        idle = true;
+                        task = nextTask();
+                        if (task == null) {
+                            if (shutdown) {
+                                return;
+                            }
+                            LockSupport.park(this);
+                        }
+                        idle = false;
+                    }
+                    if (task != null) {
+                        runTask(task);
+                    }
+                }
+            } finally {
+                idle = false;
+                CURRENT_WORKER.remove();
+                terminationLatch.countDown();
+            }
+        }
+
+        private Runnable nextTask() {
+            Runnable task = deque.pollFirst();
+            if (task != null) {
+                return task;
+            }
+            int length = workers.length;
+            int start = ThreadLocalRandom.current().nextInt(length);
+            for (int i = 0; i < length; i++) {
+                Worker victim = workers[(start + i) % length];
+                if (victim == this) {
+                    continue;
+                }
+                task = victim.deque.pollFirst();
+                if (task != null) {
+                    stealCount.increment();
+                    return task;
+                }
+            }
+            return null;
+        }
+
+        private void runTask(Runnable task) {
+            try {
+                task.run();
+            } catch (Throwable t) {
+                Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+                if (handler != null) {
+                    handler.uncaughtException(thread, t);
+                }
+            }
+        }
+    }
+
+    private static final class ScheduledFutureTask<V> extends FutureTask<V> implements ScheduledFuture<V> {
+        private final long triggerTime;
+        private volatile Future<?> timerFuture;
+
+        private ScheduledFutureTask(Runnable runnable, V result, long triggerTime) {
+            super(runnable, result);
+            this.triggerTime = triggerTime;
+        }
+
+        private ScheduledFutureTask(Callable<V> callable, long triggerTime) {
+            super(callable);
+            this.triggerTime = triggerTime;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(triggerTime - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            if (other == this) {
+                return 0;
+            }
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            Future<?> future = timerFuture;
+            if (cancelled && future != null) {
+                future.cancel(false);
+            }
+            return cancelled;
+        }
+    }
+}
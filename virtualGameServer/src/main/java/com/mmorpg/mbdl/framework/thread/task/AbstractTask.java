@@ -8,6 +8,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -16,6 +17,9 @@ import java.util.concurrent.TimeUnit;
  * @author sando
  */
 public abstract class AbstractTask<E extends Dispatchable<T>, T extends Serializable> implements Runnable {
+    private static final int BLOCKING_PHASE_INIT = 0;
+    private static final int BLOCKING_PHASE_OFFLOADED = 1;
+    private static final int BLOCKING_PHASE_RESUMED = 2;
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
     private long maxDelay = TimeUnit.NANOSECONDS.convert(2,TimeUnit.MILLISECONDS);
     private long maxExecute = TimeUnit.NANOSECONDS.convert(3,TimeUnit.MILLISECONDS);
@@ -33,6 +37,12 @@ public abstract class AbstractTask<E extends Dispatchable<T>, T extends Serializ
 
     private E dispatcher;
     private boolean executeParallel = false;
+    /**
+     * 是否为阻塞任务，阻塞任务的execute在阻塞线程池中执行，执行完毕后回到业务线程池调用{@link #afterBlockingExecute()}，
+     * 在此之前所在队列的后续任务不会执行
+     */
+    private boolean blocking = false;
+    private int blockingPhase = BLOCKING_PHASE_INIT;
     private TaskQueue<T> taskQueue;
     private PoolExecutor<T, ? extends ScheduledExecutorService> executor;
 
@@ -113,6 +123,26 @@ public abstract class AbstractTask<E extends Dispatchable<T>, T extends Serializ
 
     @Override
     public void run() {
+        if (blocking && blockingPhase == BLOCKING_PHASE_INIT) {
+            // 转移到阻塞线程池执行，队列保持占用状态直到回到业务线程池
+            blockingPhase = BLOCKING_PHASE_OFFLOADED;
+            try {
+                TaskDispatcher.getInstance().executeBlocking(this);
+                return;
+            } catch (RejectedExecutionException e) {
+                logger.warn("阻塞线程池拒绝了任务:{}，在当前线程执行", taskName());
+            }
+        }
+        if (blockingPhase == BLOCKING_PHASE_RESUMED) {
+            try {
+                afterBlockingExecute();
+            } catch (Exception e) {
+                logger.error("[{}] 任务:{}阻塞执行后的处理失败，抛出异常", dispatcher, taskName(), e);
+            } finally {
+                complete();
+            }
+            return;
+        }
         // TODO 统计超时任务
         try {
             if (countTime) {
@@ -131,9 +161,12 @@ public abstract class AbstractTask<E extends Dispatchable<T>, T extends Serializ
                     log(delayTime,executeTime);
                 }
                 ThreadUtils.removeCurrentThreadTask();
-                // 不是并行执行的情况下才会把队列下一个任务加入线程池
-                if (!isExecuteParallel()){
-                    getTaskQueue().andThen();
+                if (blockingPhase == BLOCKING_PHASE_OFFLOADED) {
+                    // 阻塞部分执行完毕，回到业务线程池
+                    blockingPhase = BLOCKING_PHASE_RESUMED;
+                    getExecutor().addTask(this);
+                } else {
+                    complete();
                 }
             }
         } catch (Exception e) {
@@ -141,6 +174,23 @@ public abstract class AbstractTask<E extends Dispatchable<T>, T extends Serializ
         }
     }
 
+    private void complete() {
+        try {
+            // 不是并行执行的情况下才会把队列下一个任务加入线程池
+            if (!isExecuteParallel()){
+                getTaskQueue().andThen();
+            }
+        } finally {
+            getExecutor().taskCompleted();
+        }
+    }
+
+    /**
+     * 阻塞任务在阻塞线程池执行完毕后，回到业务线程池（所在队列）执行的处理
+     */
+    protected void afterBlockingExecute() {
+    }
+
     /**
      * 定义真正执行前的一些处理
      */
@@ -207,6 +257,15 @@ public abstract class AbstractTask<E extends Dispatchable<T>, T extends Serializ
         return executor;
     }
 
+    public boolean isBlocking() {
+        return blocking;
+    }
+
+    public AbstractTask<E, T> setBlocking(boolean blocking) {
+        this.blocking = blocking;
+        return this;
+    }
+
     public void setCountTime(boolean countTime) {
         this.countTime = countTime;
     }
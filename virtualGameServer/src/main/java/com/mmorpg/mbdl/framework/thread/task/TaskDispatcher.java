@@ -2,18 +2,26 @@ package com.mmorpg.mbdl.framework.thread.task;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.mmorpg.mbdl.framework.thread.PoolExecutor;
+import com.mmorpg.mbdl.framework.thread.WorkStealingExecutor;
 import com.mmorpg.mbdl.framework.thread.interfaces.Dispatchable;
 import io.netty.util.concurrent.DefaultEventExecutorGroup;
-import io.netty.util.concurrent.EventExecutorGroup;
-import io.netty.util.concurrent.ScheduledFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 任务分发器
@@ -22,11 +30,34 @@ import java.util.concurrent.TimeUnit;
 @Component
 public class TaskDispatcher {
     private static final Logger logger = LoggerFactory.getLogger(TaskDispatcher.class);
+    private static final String EXECUTOR_WORK_STEALING = "workStealing";
+    private static final String EXECUTOR_EVENT_EXECUTOR = "eventExecutor";
     @Value("${server.config.thread.name}")
     private String threadNameFormat;
     @Value("${server.config.thread.poolSize}")
     private int poolSize;
-    private PoolExecutor<Long, EventExecutorGroup> businessPoolExecutor;
+    /**
+     * 业务线程池类型，workStealing：工作窃取线程池，eventExecutor：netty的DefaultEventExecutorGroup
+     */
+    @Value("${server.config.thread.executor:workStealing}")
+    private String executorType;
+    /**
+     * 阻塞任务线程池的最大线程数
+     */
+    @Value("${server.config.thread.blocking.poolSize:64}")
+    private int blockingPoolSize;
+    /**
+     * 阻塞任务是否使用虚拟线程执行，当前JDK不支持时退回普通线程池
+     */
+    @Value("${server.config.thread.blocking.virtual:false}")
+    private boolean blockingUseVirtualThread;
+    private PoolExecutor<Long, ? extends ScheduledExecutorService> businessPoolExecutor;
+    /**
+     * 执行阻塞任务（如JDBC访问）的弹性线程池，业务线程池只执行非阻塞的游戏逻辑
+     */
+    private ExecutorService blockingExecutor;
+    /** 已提交但尚未执行完毕的阻塞任务数 */
+    private final AtomicLong blockingInFlightCount = new AtomicLong();
 
     private static TaskDispatcher self;
     public static TaskDispatcher getInstance(){
@@ -42,8 +73,70 @@ public class TaskDispatcher {
             int processors = Runtime.getRuntime().availableProcessors();
             poolSize = (processors <= 4) ? processors * 2 : processors + 8;
         }
-        DefaultEventExecutorGroup eventExecutors = new DefaultEventExecutorGroup(poolSize, namedThreadFactory);
-        businessPoolExecutor = new PoolExecutor<>(eventExecutors, 1, TimeUnit.MINUTES);
+        if (EXECUTOR_EVENT_EXECUTOR.equals(executorType)) {
+            businessPoolExecutor = new PoolExecutor<>(new DefaultEventExecutorGroup(poolSize, namedThreadFactory), 1, TimeUnit.MINUTES);
+        } else if (EXECUTOR_WORK_STEALING.equals(executorType)) {
+            businessPoolExecutor = new PoolExecutor<>(new WorkStealingExecutor(poolSize, namedThreadFactory), 1, TimeUnit.MINUTES);
+        } else {
+            throw new IllegalArgumentException(String.format("不支持的业务线程池类型[%s]", executorType));
+        }
+        logger.info("业务线程池类型[{}]，线程数[{}]", executorType, poolSize);
+        blockingExecutor = createBlockingExecutor();
+    }
+
+    private ExecutorService createBlockingExecutor() {
+        if (blockingUseVirtualThread) {
+            try {
+                // JDK21+才有虚拟线程，反射调用以兼容当前的编译版本
+                Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                logger.info("阻塞任务使用虚拟线程执行");
+                return (ExecutorService) method.invoke(null);
+            } catch (NoSuchMethodException e) {
+                logger.warn("当前JDK不支持虚拟线程，阻塞任务使用普通线程池执行");
+            } catch (ReflectiveOperationException e) {
+                throw new RuntimeException("创建虚拟线程执行器失败", e);
+            }
+        }
+        ThreadFactory blockingThreadFactory = new ThreadFactoryBuilder()
+                .setNameFormat(threadNameFormat + "阻塞-%d").build();
+        // 空闲时线程全部回收，繁忙时最多扩展到blockingPoolSize，超出的排队
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(blockingPoolSize, blockingPoolSize,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), blockingThreadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        logger.info("阻塞任务线程池最大线程数[{}]", blockingPoolSize);
+        return executor;
+    }
+
+    /**
+     * 在阻塞线程池中执行任务
+     * @param runnable 会阻塞的任务
+     */
+    public void executeBlocking(Runnable runnable) {
+        executeBlocking("阻塞任务", runnable);
+    }
+
+    /**
+     * 在阻塞线程池中执行任务，任务执行完毕前计入{@link #getInFlightTaskCount()}，抛出的异常记录日志
+     * @param taskName 任务名，用于日志
+     * @param runnable 会阻塞的任务
+     * @throws java.util.concurrent.RejectedExecutionException 阻塞线程池已关闭
+     */
+    public void executeBlocking(String taskName, Runnable runnable) {
+        blockingInFlightCount.incrementAndGet();
+        try {
+            blockingExecutor.execute(() -> {
+                try {
+                    runnable.run();
+                } catch (Throwable e) {
+                    logger.error("阻塞任务[{}]执行失败", taskName, e);
+                } finally {
+                    blockingInFlightCount.decrementAndGet();
+                }
+            });
+        } catch (RuntimeException e) {
+            blockingInFlightCount.decrementAndGet();
+            throw e;
+        }
     }
 
     /**
@@ -58,16 +151,58 @@ public class TaskDispatcher {
         }
         if (intoThreadPoolDirectly){
             abstractTask.setExecuteParallel(true);
-            return (ScheduledFuture<?>) businessPoolExecutor.executeTask(abstractTask);
+            businessPoolExecutor.taskSubmitted();
+            return businessPoolExecutor.executeTask(abstractTask);
         }
         // dispatcherId为null的任务并行执行
         if (abstractTask.getDispatcher()==null){
             abstractTask.setExecuteParallel(true);
-            return (ScheduledFuture<?>) businessPoolExecutor.executeTask(abstractTask);
+            businessPoolExecutor.taskSubmitted();
+            return businessPoolExecutor.executeTask(abstractTask);
         }
 
         TaskQueue<Long> taskQueue = businessPoolExecutor.getOrCreateTaskQueue(abstractTask.getDispatcher().dispatchId());
-        return (ScheduledFuture<?>)taskQueue.submit(abstractTask);
+        return taskQueue.submit(abstractTask);
+    }
+
+    /**
+     * 获取把任务提交到dispatcher对应队列的Executor，用于让异步操作（如{@link com.mmorpg.mbdl.framework.storage.core.IStorage#getAsync}）
+     * 的回调回到玩家队列中串行执行
+     * @param dispatcher 分发者，如玩家
+     * @return Executor
+     */
+    public <E extends Dispatchable<Long>> Executor getQueueExecutor(E dispatcher) {
+        return runnable -> dispatch(new AbstractTask<E, Long>(dispatcher) {
+            @Override
+            public String taskName() {
+                return "异步回调";
+            }
+
+            @Override
+            public void execute() {
+                runnable.run();
+            }
+        });
+    }
+
+    /**
+     * 已提交但尚未执行完毕的任务数，包括业务任务和阻塞任务（如下线时的写库）
+     */
+    public long getInFlightTaskCount() {
+        return businessPoolExecutor.getInFlightTaskCount() + blockingInFlightCount.get();
+    }
+
+    /**
+     * 关闭业务线程池和阻塞任务线程池，调用前应先排空任务队列
+     * @param timeout 每个线程池的等待时间
+     * @param timeUnit 时间单位
+     * @return 是否都在等待时间内关闭完成
+     * @throws InterruptedException 等待时被中断
+     */
+    public boolean shutdown(long timeout, TimeUnit timeUnit) throws InterruptedException {
+        boolean businessTerminated = businessPoolExecutor.shutdown(timeout, timeUnit);
+        blockingExecutor.shutdown();
+        return blockingExecutor.awaitTermination(timeout, timeUnit) && businessTerminated;
     }
 
     /**
@@ -1,6 +1,7 @@
 package com.mmorpg.mbdl.framework.thread.task;
 
 import com.mmorpg.mbdl.framework.thread.PoolExecutor;
+import com.mmorpg.mbdl.framework.thread.WorkStealingExecutor;
 import com.mmorpg.mbdl.framework.thread.interfaces.Dispatchable;
 
 import java.io.Serializable;
@@ -8,7 +9,6 @@ import java.util.LinkedList;
 import java.util.Queue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * 任务队列<br>
@@ -30,9 +30,13 @@ public class TaskQueue<T extends Serializable> {
      */
     private final Queue<AbstractTask<? extends Dispatchable<T>, T>> queue;
     /**
-     * 队列是否有任务在线程池中
+     * 队列是否有任务在线程池中，由queue的锁保护
      */
-    private AtomicBoolean hasTaskInPool = new AtomicBoolean(false);
+    private boolean hasTaskInPool = false;
+    /**
+     * 上次执行此队列任务的工作线程下标，用于工作窃取线程池的亲和投递，-1表示无偏好
+     */
+    private volatile int affinity = -1;
 
     public TaskQueue(T key, PoolExecutor<T, ? extends ScheduledExecutorService> poolExecutor) {
         this.key = key;
@@ -50,14 +54,16 @@ public class TaskQueue<T extends Serializable> {
      */
     public ScheduledFuture<?> submit(AbstractTask<? extends Dispatchable<T>, T> abstractTask){
         abstractTask.setTaskQueue(this);
-        if (hasTaskInPool.compareAndSet(false, true)) {
-            return poolExecutor.executeTask(abstractTask);
-        } else {
-            synchronized (queue) {
+        poolExecutor.taskSubmitted();
+        // 判断与入队必须在同一把锁内，否则可能与andThen交错导致任务滞留在队列中
+        synchronized (queue) {
+            if (hasTaskInPool) {
                 this.queue.offer(abstractTask);
+                return null;
             }
+            hasTaskInPool = true;
         }
-        return null;
+        return poolExecutor.executeTask(abstractTask);
     }
 
     /**
@@ -65,20 +71,29 @@ public class TaskQueue<T extends Serializable> {
      * @return
      */
     public void andThen() {
+        int workerIndex = WorkStealingExecutor.currentWorkerIndex();
+        if (workerIndex >= 0) {
+            affinity = workerIndex;
+        }
+        AbstractTask<? extends Dispatchable<T>, T> abstractTask;
         synchronized (queue) {
-            AbstractTask<? extends Dispatchable<T>, T> abstractTask = queue.poll();
-            if (abstractTask != null) {
-                poolExecutor.executeTask(abstractTask);
-            } else {
-                hasTaskInPool.set(false);
+            abstractTask = queue.poll();
+            if (abstractTask == null) {
+                hasTaskInPool = false;
+                return;
             }
         }
+        poolExecutor.executeTask(abstractTask);
     }
 
     public T getKey() {
         return key;
     }
 
+    public int getAffinity() {
+        return affinity;
+    }
+
     public PoolExecutor<T, ? extends ScheduledExecutorService> getPoolExecutor() {
         return poolExecutor;
     }
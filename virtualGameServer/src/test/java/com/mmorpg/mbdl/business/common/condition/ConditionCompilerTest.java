@@ -0,0 +1,198 @@
+package com.mmorpg.mbdl.business.common.condition;
+
+import com.mmorpg.mbdl.business.common.condition.impl.role.BaseRoleCondition;
+import com.mmorpg.mbdl.business.common.condition.impl.role.RoleLevelCondition;
+import com.mmorpg.mbdl.business.role.model.Role;
+import com.mmorpg.mbdl.business.role.model.prop.PropTree;
+import com.mmorpg.mbdl.business.role.model.prop.PropType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 编译后的{@link Conditions#verifyAnd}、{@link Conditions#verifyOr}与未编译时逐个验证的结果对比
+ */
+class ConditionCompilerTest {
+    private static final int MAX_LEVEL = 120;
+
+    private Role role;
+    private PropTree levelTree;
+
+    @BeforeEach
+    void setUp() {
+        role = new Role(1L, "test");
+        levelTree = new PropTree();
+        role.getPropManager().setPropTreeOnPropType(levelTree, PropType.LEVEL);
+    }
+
+    @Test
+    void 随机混合条件编译前后结果一致() {
+        Random random = new Random(20190329L);
+        for (int round = 0; round < 200; round++) {
+            int size = random.nextInt(8);
+            List<ICondition<Role>> conditionList = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                if (random.nextInt(3) == 0) {
+                    conditionList.add(new FixedCondition(random.nextBoolean(), random.nextInt(200), new ArrayList<>()));
+                } else {
+                    Integer min = random.nextInt(4) == 0 ? null : random.nextInt(MAX_LEVEL);
+                    Integer max = min != null && random.nextInt(4) == 0 ? null : random.nextInt(MAX_LEVEL);
+                    conditionList.add(levelCondition(min, max));
+                }
+            }
+            assertSameAsInterpreted(conditionList);
+        }
+    }
+
+    @Test
+    void 同一属性的范围在验证全部时取交集() {
+        Conditions<Role> conditions = compiled(levelCondition(10, 50), levelCondition(30, null), levelCondition(null, 40));
+        for (int level = 0; level <= MAX_LEVEL; level++) {
+            setLevel(level);
+            Assertions.assertEquals(level >= 30 && level <= 40, conditions.verifyAnd(role), "等级" + level);
+        }
+    }
+
+    @Test
+    void 同一属性的范围在验证其一时取并集() {
+        Conditions<Role> conditions = compiled(levelCondition(10, 20), levelCondition(30, 40), levelCondition(100, null));
+        for (int level = 0; level <= MAX_LEVEL; level++) {
+            setLevel(level);
+            boolean expected = (level >= 10 && level <= 20) || (level >= 30 && level <= 40) || level >= 100;
+            Assertions.assertEquals(expected, conditions.verifyOr(role), "等级" + level);
+        }
+    }
+
+    @Test
+    void 范围没有交集时永远不通过() {
+        Conditions<Role> conditions = compiled(levelCondition(10, 20), levelCondition(30, 40));
+        for (int level = 0; level <= MAX_LEVEL; level++) {
+            setLevel(level);
+            Assertions.assertFalse(conditions.verifyAnd(role), "等级" + level);
+        }
+        setLevel(15);
+        Assertions.assertTrue(conditions.verifyOr(role));
+        setLevel(25);
+        Assertions.assertFalse(conditions.verifyOr(role));
+    }
+
+    @Test
+    void 按开销从小到大验证并尽早短路() {
+        List<String> verified = new ArrayList<>();
+        FixedCondition expensive = new FixedCondition(true, 500, verified);
+        FixedCondition cheapFail = new FixedCondition(false, 1, verified);
+        FixedCondition normal = new FixedCondition(true, ICondition.DEFAULT_COST, verified);
+        Conditions<Role> conditions = compiled(expensive, normal, cheapFail);
+
+        Assertions.assertFalse(conditions.verifyAnd(role));
+        Assertions.assertEquals(Collections.singletonList(cheapFail.name), verified);
+
+        verified.clear();
+        Assertions.assertTrue(conditions.verifyOr(role));
+        Assertions.assertEquals(Arrays.asList(cheapFail.name, normal.name), verified);
+    }
+
+    @Test
+    void 开销相同时保持配置顺序() {
+        List<String> verified = new ArrayList<>();
+        FixedCondition first = new FixedCondition(true, ICondition.DEFAULT_COST, verified);
+        FixedCondition second = new FixedCondition(true, ICondition.DEFAULT_COST, verified);
+        FixedCondition third = new FixedCondition(true, ICondition.DEFAULT_COST, verified);
+        Assertions.assertTrue(compiled(first, second, third).verifyAnd(role));
+        Assertions.assertEquals(Arrays.asList(first.name, second.name, third.name), verified);
+    }
+
+    @Test
+    void 只配置一端的等级条件不会继续检查另一端() {
+        // 原来switch没有break，只配最低等级时验证失败会继续检查最高等级
+        RoleLevelCondition minOnly = levelCondition(30, null);
+        RoleLevelCondition maxOnly = levelCondition(null, 30);
+        setLevel(20);
+        Assertions.assertFalse(minOnly.verify(role));
+        Assertions.assertTrue(maxOnly.verify(role));
+        setLevel(40);
+        Assertions.assertTrue(minOnly.verify(role));
+        Assertions.assertFalse(maxOnly.verify(role));
+        setLevel(30);
+        Assertions.assertTrue(minOnly.verify(role));
+        Assertions.assertTrue(maxOnly.verify(role));
+
+        Assertions.assertThrows(RuntimeException.class, () -> levelCondition(null, null));
+    }
+
+    private void assertSameAsInterpreted(List<ICondition<Role>> conditionList) {
+        Conditions<Role> interpreted = new Conditions<>(conditionList);
+        Conditions<Role> compiled = new Conditions<>(conditionList);
+        compiled.compile();
+        for (int level = 0; level <= MAX_LEVEL; level++) {
+            setLevel(level);
+            Assertions.assertEquals(interpreted.verifyAnd(role), compiled.verifyAnd(role),
+                    String.format("条件%s等级%s验证全部", conditionList, level));
+            Assertions.assertEquals(interpreted.verifyOr(role), compiled.verifyOr(role),
+                    String.format("条件%s等级%s验证其一", conditionList, level));
+        }
+    }
+
+    @SafeVarargs
+    private static Conditions<Role> compiled(ICondition<Role>... conditions) {
+        Conditions<Role> result = new Conditions<>(Arrays.asList(conditions));
+        result.compile();
+        return result;
+    }
+
+    private void setLevel(long level) {
+        levelTree.setRootNodeValue(level);
+    }
+
+    private static RoleLevelCondition levelCondition(Integer minLevel, Integer maxLevel) {
+        RoleLevelCondition condition = new RoleLevelCondition();
+        condition.setMinLevel(minLevel);
+        condition.setMaxLevel(maxLevel);
+        condition.check();
+        return condition;
+    }
+
+    /**
+     * 结果固定的条件，验证时记录名称
+     */
+    private static class FixedCondition extends BaseRoleCondition {
+        private static int nextId;
+
+        private final String name = "fixed" + nextId++;
+        private final boolean result;
+        private final int cost;
+        private final List<String> verified;
+
+        FixedCondition(boolean result, int cost, List<String> verified) {
+            this.result = result;
+            this.cost = cost;
+            this.verified = verified;
+        }
+
+        @Override
+        public boolean verify(Role obj) {
+            verified.add(name);
+            return result;
+        }
+
+        @Override
+        public void check() {
+        }
+
+        @Override
+        public int cost() {
+            return cost;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s(%s,%s)", name, result, cost);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.mmorpg.mbdl.business.common.condition;
+
+import com.mmorpg.mbdl.business.common.condition.impl.role.BaseRoleCondition;
+import com.mmorpg.mbdl.business.common.condition.impl.role.RoleLevelCondition;
+import com.mmorpg.mbdl.business.role.model.Role;
+import com.mmorpg.mbdl.business.role.model.prop.PropTree;
+import com.mmorpg.mbdl.business.role.model.prop.PropType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 条件集合逐个验证与编译后验证的对比测试，条件中一半是等级范围条件，一半是其他条件
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ConditionsBenchmark {
+    @Param({"4", "32", "256"})
+    private int conditionSize;
+
+    private Role role;
+    private Conditions<Role> interpreted;
+    private Conditions<Role> compiled;
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(ConditionsBenchmark.class.getName())
+                .warmupIterations(3)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        role = new Role(1L, "benchmark");
+        PropTree levelTree = new PropTree();
+        levelTree.setRootNodeValue(50);
+        role.getPropManager().setPropTreeOnPropType(levelTree, PropType.LEVEL);
+        List<ICondition<Role>> conditionList = new ArrayList<>(conditionSize);
+        for (int i = 0; i < conditionSize; i++) {
+            if (i % 2 == 0) {
+                RoleLevelCondition condition = new RoleLevelCondition();
+                condition.setMinLevel(i / 2);
+                condition.setMaxLevel(100 - i / 2);
+                conditionList.add(condition);
+            } else {
+                conditionList.add(new BaseRoleCondition() {
+                    @Override
+                    public boolean verify(Role obj) {
+                        return obj.getName() != null;
+                    }
+
+                    @Override
+                    public void check() {
+                    }
+                });
+            }
+        }
+        conditionList.forEach(ICondition::check);
+        interpreted = new Conditions<>(conditionList);
+        compiled = new Conditions<>(conditionList);
+        compiled.compile();
+    }
+
+    @Benchmark
+    public boolean interpretedAnd() {
+        return interpreted.verifyAnd(role);
+    }
+
+    @Benchmark
+    public boolean compiledAnd() {
+        return compiled.verifyAnd(role);
+    }
+
+    @Benchmark
+    public boolean interpretedOr() {
+        return interpreted.verifyOr(role);
+    }
+
+    @Benchmark
+    public boolean compiledOr() {
+        return compiled.verifyOr(role);
+    }
+}
@@ -3,6 +3,7 @@ package com.mmorpg.mbdl.business.container.model;
 import com.google.common.collect.Iterables;
 import com.mmorpg.mbdl.TestWithSpring;
 import com.mmorpg.mbdl.business.container.entity.ContainerEntity;
+import com.mmorpg.mbdl.business.container.exception.ItemNotEnoughException;
 import com.mmorpg.mbdl.framework.storage.core.IStorage;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -81,6 +82,78 @@ class ContainerTest extends TestWithSpring {
         Assertions.assertEquals(20, lastAbstractItem.getAmount());
     }
 
+    @Test
+    void 按key统计数量() {
+        Container container = new Container();
+        container.createItem(1, 49 * 3 + 1);
+        container.createItem(1, 20);
+        Assertions.assertEquals(49 * 3 + 21, container.getAmountByKey(1));
+        container.removeItem(1, 49 + 30);
+        Assertions.assertEquals(49 * 2 - 9, container.getAmountByKey(1));
+        Assertions.assertEquals(2, container.getAll().size());
+        Assertions.assertThrows(ItemNotEnoughException.class, () -> container.removeItem(1, 49 * 2));
+        Assertions.assertEquals(0, container.getAmountByKey(2));
+    }
+
+    @Test
+    void 事务校验失败时容器不变() {
+        Container container = new Container();
+        container.createItem(1, 60);
+        ContainerTransaction transaction = container.begin()
+                .removeItem(1, 40)
+                .createItem(2, 10)
+                .removeItem(1, 21);
+        Assertions.assertThrows(ItemNotEnoughException.class, transaction::commit);
+        Assertions.assertEquals(60, container.getAmountByKey(1));
+        Assertions.assertEquals(0, container.getAmountByKey(2));
+    }
+
+    @Test
+    void 事务提交后汇总变化() {
+        Container container = new Container();
+        container.createItem(1, 60);
+        AbstractItem first = Iterables.find(container.getAll(), item -> item.getAmount() == 49);
+        ContainerChange change = container.begin()
+                .removeItem(1, 20)
+                .createItem(2, 10)
+                .commit();
+        Assertions.assertEquals(40, container.getAmountByKey(1));
+        Assertions.assertEquals(10, container.getAmountByKey(2));
+        // 第二堆11个被删除，第一堆剩40个，新增一堆key为2的物品
+        Assertions.assertEquals(1, change.getRemovedObjectIds().size());
+        Assertions.assertEquals(2, change.getChangedItems().size());
+        Assertions.assertTrue(change.getChangedItems().contains(first));
+    }
+
+    @Test
+    void 按版本号增量同步() {
+        Container container = new Container();
+        container.createItem(1, 60);
+        long revision = container.getRevision();
+        container.removeItem(1, 20);
+        container.createItem(2, 10);
+        ContainerChange change = container.diffSince(revision);
+        Assertions.assertNotNull(change);
+        Assertions.assertEquals(container.getRevision(), change.getToRevision());
+        Assertions.assertEquals(1, change.getRemovedObjectIds().size());
+        Assertions.assertEquals(2, change.getChangedItems().size());
+        Assertions.assertTrue(container.diffSince(container.getRevision()).isEmpty());
+        // 版本号来自上一次加载或者超出当前版本，需要全量
+        Assertions.assertNull(container.diffSince(1));
+        Assertions.assertNull(container.diffSince(container.getRevision() + 1));
+    }
+
+    @Test
+    void 其它容器的版本号不能增量同步() {
+        Container oldContainer = new Container();
+        Container newContainer = new Container();
+        oldContainer.createItem(1, 10);
+        newContainer.createItem(1, 10);
+        // 旧容器的版本号即使落在新容器的版本范围附近，也不能作为新容器增量同步的基准
+        Assertions.assertNull(newContainer.diffSince(oldContainer.getRevision()));
+        Assertions.assertNotNull(newContainer.diffSince(newContainer.getRevision() - 1));
+    }
+
     @Test
     void 删除物品() {
         container.removeItem(1,49+41);
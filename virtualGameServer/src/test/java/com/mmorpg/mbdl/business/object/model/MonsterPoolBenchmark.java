@@ -0,0 +1,74 @@
+package com.mmorpg.mbdl.business.object.model;
+
+import com.mmorpg.mbdl.business.role.model.prop.PropType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 怪物重生时新建与从对象池复用的对比测试，使用GC profiler对比每次操作的分配量（gc.alloc.rate.norm）
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MonsterPoolBenchmark {
+    private long nextId;
+    private MonsterPool pool;
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(MonsterPoolBenchmark.class.getName())
+                .addProfiler(GCProfiler.class)
+                .warmupIterations(3)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        pool = new MonsterPool(10001, 16, this::newMonster);
+    }
+
+    private Monster newMonster() {
+        Monster monster = new Monster(++nextId, "benchmark");
+        monster.init();
+        return monster;
+    }
+
+    private static Monster resetProps(Monster monster) {
+        monster.getPropManager().setRootNodeValueOnType(PropType.MAX_MP, 100);
+        monster.getPropManager().setRootNodeValueOnType(PropType.ATTACK, 20);
+        monster.getPropManager().setRootNodeValueOnType(PropType.DEFENCE, 10);
+        return monster;
+    }
+
+    @Benchmark
+    public Monster allocate() {
+        return resetProps(newMonster());
+    }
+
+    @Benchmark
+    public Monster pooled() {
+        Monster monster = resetProps(pool.acquire());
+        pool.release(monster);
+        return monster;
+    }
+}
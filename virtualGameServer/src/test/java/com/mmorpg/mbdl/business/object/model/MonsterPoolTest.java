@@ -0,0 +1,70 @@
+package com.mmorpg.mbdl.business.object.model;
+
+import com.mmorpg.mbdl.business.world.scene.model.Scene;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class MonsterPoolTest {
+    private static final int OBJECT_KEY = 10001;
+    private long nextId;
+
+    private Monster newMonster() {
+        Monster monster = new Monster(++nextId, "monster");
+        monster.init();
+        return monster;
+    }
+
+    @Test
+    void 复用的怪物已重置() {
+        MonsterPool pool = new MonsterPool(OBJECT_KEY, 4, this::newMonster);
+        Monster monster = pool.acquire();
+        monster.setAggroTarget(newMonster());
+        monster.setObjectKey(0);
+        Assertions.assertTrue(pool.release(monster));
+        Assertions.assertNull(monster.getAggroTarget());
+
+        Monster reused = pool.acquire();
+        Assertions.assertSame(monster, reused);
+        Assertions.assertEquals(OBJECT_KEY, reused.getObjectKey());
+        Assertions.assertNull(reused.getAggroTarget());
+        Assertions.assertFalse(reused.isDead());
+        Assertions.assertEquals(0, reused.getDeathTime());
+        Assertions.assertEquals(1, pool.getCreatedCount());
+        Assertions.assertEquals(1, pool.getReusedCount());
+    }
+
+    @Test
+    void 重复归还被拒绝() {
+        MonsterPool pool = new MonsterPool(OBJECT_KEY, 4, this::newMonster);
+        Monster monster = pool.acquire();
+        Assertions.assertTrue(pool.release(monster));
+        Assertions.assertFalse(pool.release(monster));
+        Assertions.assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    void 空闲数不超过maxIdle() {
+        MonsterPool pool = new MonsterPool(OBJECT_KEY, 2, this::newMonster);
+        Monster first = pool.acquire();
+        Monster second = pool.acquire();
+        Monster third = pool.acquire();
+        Assertions.assertTrue(pool.release(first));
+        Assertions.assertTrue(pool.release(second));
+        Assertions.assertFalse(pool.release(third));
+        Assertions.assertEquals(2, pool.getIdleCount());
+    }
+
+    @Test
+    void 还在场景中的怪物不能归还() {
+        MonsterPool pool = new MonsterPool(OBJECT_KEY, 4, this::newMonster);
+        Scene scene = new Scene(16);
+        Monster monster = pool.acquire();
+        scene.appearInScene(monster);
+        Assertions.assertFalse(pool.release(monster, scene));
+        Assertions.assertEquals(0, pool.getIdleCount());
+
+        scene.disappearInScene(monster);
+        Assertions.assertTrue(pool.release(monster, scene));
+        Assertions.assertEquals(1, pool.getIdleCount());
+    }
+}
@@ -0,0 +1,50 @@
+package com.mmorpg.mbdl.business.world.scene.model;
+
+import com.mmorpg.mbdl.business.object.model.AbstractVisibleSceneObject;
+import com.mmorpg.mbdl.business.object.model.Npc;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class SceneGridTest {
+    private static Npc npcAt(long id, int x, int y) {
+        Npc npc = new Npc(id, "npc" + id);
+        npc.setPosition(x, y);
+        return npc;
+    }
+
+    @Test
+    void 只返回范围内的对象() {
+        SceneGrid grid = new SceneGrid(16);
+        Npc near = npcAt(1, 5, 5);
+        Npc negative = npcAt(2, -3, -4);
+        Npc far = npcAt(3, 100, 100);
+        grid.add(near);
+        grid.add(negative);
+        grid.add(far);
+        List<AbstractVisibleSceneObject> result = new ArrayList<>();
+        grid.query(0, 0, 10, obj -> Math.abs(obj.getX()) <= 10 && Math.abs(obj.getY()) <= 10, result);
+        Assertions.assertEquals(2, result.size());
+        Assertions.assertFalse(result.contains(far));
+    }
+
+    @Test
+    void 移动和删除后索引更新() {
+        SceneGrid grid = new SceneGrid(16);
+        Npc npc = npcAt(1, 5, 5);
+        grid.add(npc);
+        grid.move(npc, 200, 200);
+        Assertions.assertEquals(200, npc.getX());
+        List<AbstractVisibleSceneObject> result = new ArrayList<>();
+        grid.query(0, 0, 10, obj -> true, result);
+        Assertions.assertTrue(result.isEmpty());
+        grid.query(200, 200, 1, obj -> true, result);
+        Assertions.assertEquals(1, result.size());
+        grid.remove(npc);
+        result.clear();
+        grid.query(200, 200, 1, obj -> true, result);
+        Assertions.assertTrue(result.isEmpty());
+    }
+}
@@ -1,13 +1,38 @@
 package com.mmorpg.mbdl.framework.common.generator;
 
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
 import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
 import org.openjdk.jmh.runner.options.Options;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * main方法运行JMH性能测试，@Test方法为单元测试
+ */
 public class IdGeneratorTest {
     private static IdGenerator generator = new IdGenerator(1L, 1L, 1L, System.currentTimeMillis());
 
+    /** id的位结构：时间截 | generatorId(4位) | datacenterId(5位) | serverId(6位) | 序列号(9位) */
+    private static final int SEQUENCE_BITS = 9;
+    private static final int SERVER_ID_SHIFT = 9;
+    private static final int DATACENTER_ID_SHIFT = 15;
+    private static final int GENERATOR_ID_SHIFT = 20;
+    private static final int TIMESTAMP_SHIFT = 24;
+
     public static void main(String[] args) throws RunnerException {
         Options opt = new OptionsBuilder()
                 .include(IdGenerator.class.getName())
@@ -23,4 +48,141 @@ public class IdGeneratorTest {
     public void idGenerate() {
         generator.generate();
     }
-}
\ No newline at end of file
+
+    @Benchmark
+    @Threads(8)
+    public void idGenerateConcurrent() {
+        generator.generate();
+    }
+
+    @Benchmark
+    public long[] idGenerateBatch() {
+        return generator.generate(100);
+    }
+
+    /**
+     * 时钟可以手动设置的生成器
+     */
+    private static class ManualClockIdGenerator extends IdGenerator {
+        private volatile long now;
+
+        ManualClockIdGenerator(long generatorId, long datacenterId, long serverId, long beginOn) {
+            super(generatorId, datacenterId, serverId, beginOn);
+            this.now = beginOn;
+        }
+
+        @Override
+        protected long timeGen() {
+            return now;
+        }
+    }
+
+    private static long timestampOf(long id) {
+        return id >>> TIMESTAMP_SHIFT;
+    }
+
+    @Test
+    void 并发生成的id不重复() throws Exception {
+        IdGenerator idGenerator = new IdGenerator(2L, 1L, 1L, System.currentTimeMillis() - 1000);
+        int threads = 8;
+        int rounds = 20_000;
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                boolean batch = t % 2 == 0;
+                futures.add(executor.submit(() -> {
+                    startLatch.await();
+                    int count = 0;
+                    for (int i = 0; i < rounds; i++) {
+                        if (batch && i % 10 == 0) {
+                            for (long id : idGenerator.generate(7)) {
+                                Assertions.assertTrue(ids.add(id));
+                                count++;
+                            }
+                        } else {
+                            Assertions.assertTrue(ids.add(idGenerator.generate()));
+                            count++;
+                        }
+                    }
+                    return count;
+                }));
+            }
+            startLatch.countDown();
+            int total = 0;
+            for (Future<Integer> future : futures) {
+                total += future.get(30, TimeUnit.SECONDS);
+            }
+            Assertions.assertEquals(total, ids.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void 批量生成超过一毫秒的序列号时借用下一毫秒() {
+        ManualClockIdGenerator idGenerator = new ManualClockIdGenerator(1L, 1L, 1L, 0L);
+        idGenerator.now = 100;
+        long[] ids = idGenerator.generate(600);
+        Set<Long> unique = new HashSet<>();
+        for (int i = 0; i < ids.length; i++) {
+            Assertions.assertTrue(unique.add(ids[i]));
+            // 每毫秒512个序列号
+            Assertions.assertEquals(i < 512 ? 100 : 101, timestampOf(ids[i]));
+        }
+        // 系统时钟追上之前继续使用借用的毫秒
+        Assertions.assertEquals(101, timestampOf(idGenerator.generate()));
+        idGenerator.now = 105;
+        Assertions.assertEquals(105, timestampOf(idGenerator.generate()));
+    }
+
+    @Test
+    void 时钟小幅回拨时沿用上次的时间截() {
+        ManualClockIdGenerator idGenerator = new ManualClockIdGenerator(1L, 1L, 1L, 0L);
+        idGenerator.now = 10_000;
+        long first = idGenerator.generate();
+        idGenerator.now = 9_500;
+        long second = idGenerator.generate();
+        Assertions.assertNotEquals(first, second);
+        Assertions.assertEquals(10_000, timestampOf(second));
+        long[] batch = idGenerator.generate(3);
+        for (long id : batch) {
+            Assertions.assertEquals(10_000, timestampOf(id));
+        }
+    }
+
+    @Test
+    void 时钟回拨超过一秒时生成失败() {
+        ManualClockIdGenerator idGenerator = new ManualClockIdGenerator(1L, 1L, 1L, 0L);
+        idGenerator.now = 10_000;
+        idGenerator.generate();
+        idGenerator.now = 8_000;
+        Assertions.assertThrows(RuntimeException.class, idGenerator::generate);
+        Assertions.assertThrows(RuntimeException.class, () -> idGenerator.generate(2));
+        // 时钟恢复后继续生成
+        idGenerator.now = 10_001;
+        Assertions.assertEquals(10_001, timestampOf(idGenerator.generate()));
+    }
+
+    @Test
+    void id的位结构不变() {
+        long beginOn = 1_540_828_800_000L;
+        ManualClockIdGenerator idGenerator = new ManualClockIdGenerator(5L, 3L, 7L, beginOn);
+        idGenerator.now = beginOn + 123_456;
+        long id = idGenerator.generate();
+        long batchId = idGenerator.generate(1)[0];
+        for (long value : new long[]{id, batchId}) {
+            Assertions.assertTrue(value > 0);
+            Assertions.assertEquals(123_456, value >>> TIMESTAMP_SHIFT);
+            Assertions.assertEquals(5, (value >>> GENERATOR_ID_SHIFT) & 0xF);
+            Assertions.assertEquals(3, (value >>> DATACENTER_ID_SHIFT) & 0x1F);
+            Assertions.assertEquals(7, (value >>> SERVER_ID_SHIFT) & 0x3F);
+        }
+        // 序列号连续
+        Assertions.assertEquals(1, id & ((1 << SEQUENCE_BITS) - 1));
+        Assertions.assertEquals(2, batchId & ((1 << SEQUENCE_BITS) - 1));
+        Assertions.assertEquals(IdGenerator.getSequenceBits(), SEQUENCE_BITS);
+    }
+}
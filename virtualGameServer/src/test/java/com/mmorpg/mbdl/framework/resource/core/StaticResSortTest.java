@@ -0,0 +1,73 @@
+package com.mmorpg.mbdl.framework.resource.core;
+
+import com.google.common.collect.ImmutableSet;
+import com.mmorpg.mbdl.business.common.resource.ErrorTipsRes;
+import com.mmorpg.mbdl.business.common.resource.GlobalSettingRes;
+import com.mmorpg.mbdl.business.world.resource.BornRes;
+import com.mmorpg.mbdl.business.world.resource.SceneObjectAttrRes;
+import com.mmorpg.mbdl.business.world.resource.SceneRes;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link StaticResHandler#sortByDependency}，只用到资源类上的@ResDef，依赖关系在测试中手动设置
+ */
+class StaticResSortTest {
+    private final StaticResDefinition scene = new StaticResDefinition(SceneRes.class);
+    private final StaticResDefinition sceneObjectAttr = new StaticResDefinition(SceneObjectAttrRes.class);
+    private final StaticResDefinition born = new StaticResDefinition(BornRes.class);
+    private final StaticResDefinition globalSetting = new StaticResDefinition(GlobalSettingRes.class);
+    private final StaticResDefinition errorTips = new StaticResDefinition(ErrorTipsRes.class);
+
+    @Test
+    void 按依赖分层() {
+        born.setDependencies(ImmutableSet.of(scene, sceneObjectAttr));
+        sceneObjectAttr.setDependencies(ImmutableSet.of(globalSetting));
+        List<List<StaticResDefinition>> levels = StaticResHandler.sortByDependency(
+                Arrays.asList(born, sceneObjectAttr, scene, globalSetting, errorTips));
+        Assertions.assertEquals(3, levels.size());
+        Assertions.assertEquals(Arrays.asList(scene, globalSetting, errorTips), levels.get(0));
+        Assertions.assertEquals(Collections.singletonList(sceneObjectAttr), levels.get(1));
+        Assertions.assertEquals(Collections.singletonList(born), levels.get(2));
+    }
+
+    @Test
+    void 没有依赖时只有一层() {
+        List<List<StaticResDefinition>> levels = StaticResHandler.sortByDependency(Arrays.asList(scene, errorTips));
+        Assertions.assertEquals(1, levels.size());
+        Assertions.assertEquals(Arrays.asList(scene, errorTips), levels.get(0));
+        Assertions.assertTrue(StaticResHandler.sortByDependency(Collections.emptyList()).isEmpty());
+    }
+
+    @Test
+    void 不在集合中的依赖视为已加载() {
+        // 热更时只对部分资源排序，依赖的资源不在其中
+        born.setDependencies(ImmutableSet.of(scene, sceneObjectAttr));
+        List<List<StaticResDefinition>> levels = StaticResHandler.sortByDependency(Arrays.asList(born, scene));
+        Assertions.assertEquals(2, levels.size());
+        Assertions.assertEquals(Collections.singletonList(scene), levels.get(0));
+        Assertions.assertEquals(Collections.singletonList(born), levels.get(1));
+    }
+
+    @Test
+    void 循环依赖抛出异常() {
+        scene.setDependencies(ImmutableSet.of(born));
+        born.setDependencies(ImmutableSet.of(sceneObjectAttr));
+        sceneObjectAttr.setDependencies(ImmutableSet.of(scene));
+        RuntimeException exception = Assertions.assertThrows(RuntimeException.class,
+                () -> StaticResHandler.sortByDependency(Arrays.asList(errorTips, scene, born, sceneObjectAttr)));
+        Assertions.assertTrue(exception.getMessage().contains("循环依赖"));
+        // 不在环上的资源不出现在异常信息中
+        Assertions.assertFalse(exception.getMessage().contains(ErrorTipsRes.class.getSimpleName()));
+    }
+
+    @Test
+    void 依赖自身视为循环依赖() {
+        scene.setDependencies(ImmutableSet.of(scene));
+        Assertions.assertThrows(RuntimeException.class, () -> StaticResHandler.sortByDependency(Collections.singletonList(scene)));
+    }
+}
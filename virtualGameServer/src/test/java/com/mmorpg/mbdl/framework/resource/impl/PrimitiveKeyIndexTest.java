@@ -0,0 +1,33 @@
+package com.mmorpg.mbdl.framework.resource.impl;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class PrimitiveKeyIndexTest {
+    @Test
+    void 连续主键() {
+        PrimitiveKeyIndex<String> index = PrimitiveKeyIndex.of(ImmutableMap.of(1001, "a", 1002, "b", 1005, "c"));
+        Assertions.assertEquals("a", index.get(1001));
+        Assertions.assertEquals("c", index.get(1005));
+        Assertions.assertNull(index.get(1003));
+        Assertions.assertNull(index.get(1000));
+        Assertions.assertNull(index.get(Long.MIN_VALUE));
+        Assertions.assertNull(index.get(Long.MAX_VALUE));
+    }
+
+    @Test
+    void 稀疏主键() {
+        PrimitiveKeyIndex<String> index = PrimitiveKeyIndex.of(ImmutableMap.of(Long.MIN_VALUE, "a", 0L, "b", Long.MAX_VALUE, "c"));
+        Assertions.assertEquals("a", index.get(Long.MIN_VALUE));
+        Assertions.assertEquals("b", index.get(0));
+        Assertions.assertEquals("c", index.get(Long.MAX_VALUE));
+        Assertions.assertNull(index.get(1));
+    }
+
+    @Test
+    void 空资源() {
+        PrimitiveKeyIndex<String> index = PrimitiveKeyIndex.of(ImmutableMap.of());
+        Assertions.assertNull(index.get(0));
+    }
+}
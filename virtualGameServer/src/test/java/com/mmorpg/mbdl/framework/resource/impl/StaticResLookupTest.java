@@ -0,0 +1,105 @@
+package com.mmorpg.mbdl.framework.resource.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+class StaticResLookupTest {
+    private StaticRes<Integer, TestRes> staticRes;
+    private List<Field> uniqueFields;
+    private List<Field> indexFields;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        staticRes = new StaticRes<>();
+        staticRes.setFullFileName("TestRes.xlsx");
+        uniqueFields = Arrays.asList(field("name"), field("code"), field("shortCode"));
+        indexFields = Arrays.asList(field("type"), field("shortType"));
+        staticRes.swap(ImmutableMap.of(
+                1, new TestRes("a", 101, (short) 11, 1, (short) 1),
+                2, new TestRes("b", 102, (short) 12, 2, (short) 1),
+                3, new TestRes("c", 103, (short) 13, 1, (short) 2)), uniqueFields, indexFields);
+    }
+
+    private static Field field(String name) throws NoSuchFieldException {
+        Field field = TestRes.class.getDeclaredField(name);
+        field.setAccessible(true);
+        return field;
+    }
+
+    @Test
+    void 按唯一值字段查找() {
+        Assertions.assertEquals(101, staticRes.getByUnique("name", "a").code);
+        Assertions.assertEquals("b", staticRes.getByUnique("code", 102).name);
+        Assertions.assertEquals("c", staticRes.getByUnique("shortCode", (short) 13).name);
+        Assertions.assertNull(staticRes.getByUnique("name", "d"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> staticRes.getByUnique("type", 1));
+    }
+
+    @Test
+    void 按索引字段查找() {
+        ImmutableList<TestRes> type1 = staticRes.getByIndex("type", 1);
+        Assertions.assertEquals(2, type1.size());
+        // 按资源文件中的顺序
+        Assertions.assertEquals("a", type1.get(0).name);
+        Assertions.assertEquals("c", type1.get(1).name);
+        Assertions.assertEquals(2, staticRes.getByIndex("shortType", (short) 1).size());
+        Assertions.assertTrue(staticRes.getByIndex("type", 9).isEmpty());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> staticRes.getByIndex("code", 101));
+    }
+
+    @Test
+    void int类型字段不装箱查找() {
+        Assertions.assertEquals("a", staticRes.getByUniqueInt("code", 101).name);
+        Assertions.assertNull(staticRes.getByUniqueInt("code", 104));
+        Assertions.assertEquals(2, staticRes.getByIndexInt("type", 1).size());
+        Assertions.assertTrue(staticRes.getByIndexInt("type", 9).isEmpty());
+        // 其它类型的字段需要使用Object参数的方法
+        Assertions.assertThrows(IllegalArgumentException.class, () -> staticRes.getByUniqueInt("shortCode", 11));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> staticRes.getByIndexInt("shortType", 1));
+    }
+
+    @Test
+    void 唯一值字段重复时替换失败且不影响当前资源() {
+        ImmutableMap<Integer, TestRes> duplicated = ImmutableMap.of(
+                1, new TestRes("x", 201, (short) 21, 1, (short) 1),
+                2, new TestRes("y", 201, (short) 22, 1, (short) 1));
+        Assertions.assertThrows(RuntimeException.class, () -> staticRes.swap(duplicated, uniqueFields, indexFields));
+        Assertions.assertEquals("a", staticRes.get(1).name);
+        Assertions.assertEquals("a", staticRes.getByUniqueInt("code", 101).name);
+        Assertions.assertNull(staticRes.getByUniqueInt("code", 201));
+    }
+
+    @Test
+    void 替换后返回旧资源并使用新的查找表() {
+        ImmutableMap<Integer, TestRes> old = staticRes.swap(ImmutableMap.of(
+                4, new TestRes("d", 104, (short) 14, 3, (short) 3)), uniqueFields, Collections.emptyList());
+        Assertions.assertEquals(3, old.size());
+        Assertions.assertNull(staticRes.getByUnique("name", "a"));
+        Assertions.assertEquals("d", staticRes.getByUniqueInt("code", 104).name);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> staticRes.getByIndex("type", 3));
+    }
+
+    static class TestRes {
+        private final String name;
+        private final int code;
+        private final short shortCode;
+        private final Integer type;
+        private final short shortType;
+
+        TestRes(String name, int code, short shortCode, Integer type, short shortType) {
+            this.name = name;
+            this.code = code;
+            this.shortCode = shortCode;
+            this.type = type;
+            this.shortType = shortType;
+        }
+    }
+}
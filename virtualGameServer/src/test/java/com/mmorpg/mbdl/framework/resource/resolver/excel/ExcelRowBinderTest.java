@@ -0,0 +1,197 @@
+package com.mmorpg.mbdl.framework.resource.resolver.excel;
+
+import com.alibaba.excel.ExcelReader;
+import com.alibaba.excel.context.AnalysisContext;
+import com.alibaba.excel.event.AnalysisEventListener;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.mmorpg.mbdl.business.common.resource.ErrorTipsRes;
+import com.mmorpg.mbdl.business.common.resource.GlobalSettingRes;
+import com.mmorpg.mbdl.business.container.res.ItemRes;
+import com.mmorpg.mbdl.business.role.resource.RoleLevelRes;
+import com.mmorpg.mbdl.business.shop.res.ConditionTestRes;
+import com.mmorpg.mbdl.business.skill.res.SkillRes;
+import com.mmorpg.mbdl.business.world.resource.SceneObjectAttrRes;
+import com.mmorpg.mbdl.business.world.resource.SceneRes;
+import com.mmorpg.mbdl.framework.common.utils.JsonUtil;
+import com.mmorpg.mbdl.framework.resource.annotation.Key;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * {@link ExcelRowBinder}与原来拼接json再反序列化的方式对比，读取src/main/resources下的资源文件，两种方式得到的资源对象序列化后应该相同
+ */
+class ExcelRowBinderTest {
+    private static final List<Class<?>> RES_CLASSES = Arrays.asList(ErrorTipsRes.class, GlobalSettingRes.class,
+            ItemRes.class, RoleLevelRes.class, ConditionTestRes.class, SkillRes.class,
+            SceneObjectAttrRes.class, SceneRes.class);
+
+    private final ExcelFormat excelFormat = new ExcelFormat();
+
+    @Test
+    void 资源文件按行绑定与json反序列化结果一致() throws IOException {
+        Map<String, Class<?>> name2Class = RES_CLASSES.stream()
+                .collect(Collectors.toMap(Class::getSimpleName, Function.identity()));
+        Resource[] resources = new PathMatchingResourcePatternResolver()
+                .getResources(ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX + "excel/**/*.xlsx");
+        int compared = 0;
+        for (Resource resource : resources) {
+            String fileName = resource.getFilename();
+            Class<?> vClass = name2Class.get(fileName.substring(0, fileName.length() - ".xlsx".length()));
+            if (vClass == null) {
+                continue;
+            }
+            compared += compare(resource, vClass);
+        }
+        Assertions.assertTrue(compared > 0, "没有读取到资源文件");
+    }
+
+    @Test
+    void 单元格内容按字段类型转换() {
+        Map<Integer, Field> index2Field = new TreeMap<>();
+        Map<Integer, String> index2ColumnName = new HashMap<>();
+        List<String> columnNames = Arrays.asList("skillId", "skillName", "basicDamage", "cd", "mpCost", "attackPercent");
+        for (int i = 0; i < columnNames.size(); i++) {
+            index2Field.put(i + 1, field(SkillRes.class, columnNames.get(i)));
+            index2ColumnName.put(i + 1, columnNames.get(i));
+        }
+        ExcelRowBinder binder = new ExcelRowBinder("SkillRes.xlsx", SkillRes.class, index2Field, index2ColumnName);
+        // 数值写成小数、空单元格、行末缺少的单元格
+        List<List<String>> rows = Arrays.asList(
+                Arrays.asList(null, "1", "普通攻击", "100", "1000", "0", "10"),
+                Arrays.asList(null, "2", "火球", "2.0", "", "5"),
+                Arrays.asList(null, "3", "冰箭"));
+        for (int rowNum = 0; rowNum < rows.size(); rowNum++) {
+            List<String> row = rows.get(rowNum);
+            Assertions.assertEquals(JsonUtil.object2String(legacyBind(row, SkillRes.class, index2Field, index2ColumnName)),
+                    JsonUtil.object2String(binder.bind(row, rowNum)));
+        }
+        SkillRes skillRes = (SkillRes) binder.bind(rows.get(1), 1);
+        Assertions.assertEquals(2, skillRes.getBasicDamage());
+        Assertions.assertEquals(0, skillRes.getCd());
+        Assertions.assertEquals((short) 0, skillRes.getAttackPercent());
+
+        RuntimeException exception = Assertions.assertThrows(RuntimeException.class,
+                () -> binder.bind(Arrays.asList(null, "4", "雷击", "abc"), 3));
+        Assertions.assertTrue(exception.getMessage().contains("basicDamage"));
+    }
+
+    /**
+     * 读取一个资源文件，逐行对比两种方式的结果
+     * @return 对比的行数
+     */
+    private int compare(Resource resource, Class<?> vClass) throws IOException {
+        List<ArrayList<String>> rows = readRows(resource);
+        Map<Integer, String> index2ColumnName = new HashMap<>(16);
+        int firstDataRow = -1;
+        for (int i = 0; i < rows.size(); i++) {
+            ArrayList<String> row = rows.get(i);
+            if (excelFormat.isFieldNamesRow(row)) {
+                for (int j = excelFormat.ignoreFirstNColumn(); j < row.size(); j++) {
+                    if (row.get(j) != null) {
+                        index2ColumnName.put(j, row.get(j));
+                    }
+                }
+            }
+            if (excelFormat.isTableHeadLastLine(row)) {
+                firstDataRow = i + 1;
+                break;
+            }
+        }
+        Assertions.assertTrue(firstDataRow > 0, String.format("资源文件[%s]没有表头", resource.getFilename()));
+        Map<String, Field> jsonName2Field = Arrays.stream(vClass.getDeclaredFields())
+                .filter(field -> !Modifier.isTransient(field.getModifiers()) && !Modifier.isStatic(field.getModifiers()))
+                .collect(Collectors.toMap(ExcelRowBinderTest::jsonName, Function.identity()));
+        Map<Integer, Field> index2Field = new TreeMap<>();
+        index2ColumnName.forEach((index, columnName) -> index2Field.put(index, jsonName2Field.get(columnName)));
+        Integer idIndex = index2Field.entrySet().stream()
+                .filter(entry -> entry.getValue().isAnnotationPresent(Key.class))
+                .map(Map.Entry::getKey)
+                .findFirst()
+                .orElseThrow(() -> new RuntimeException(String.format("资源文件[%s]没有主键列", resource.getFilename())));
+
+        ExcelRowBinder binder = new ExcelRowBinder(resource.getFilename(), vClass, index2Field, index2ColumnName);
+        int compared = 0;
+        for (int rowNum = firstDataRow; rowNum < rows.size(); rowNum++) {
+            ArrayList<String> row = rows.get(rowNum);
+            if (row.size() <= idIndex || row.get(idIndex) == null) {
+                continue;
+            }
+            String expected = JsonUtil.object2String(legacyBind(row, vClass, index2Field, index2ColumnName));
+            String actual = JsonUtil.object2String(binder.bind(row, rowNum));
+            Assertions.assertEquals(expected, actual,
+                    String.format("资源文件[%s]第[%s]行绑定结果不一致", resource.getFilename(), rowNum + 1));
+            compared++;
+        }
+        return compared;
+    }
+
+    /**
+     * 原来ExcelListener的做法：枚举和字符串加上引号，拼接成json对象后反序列化
+     */
+    private static Object legacyBind(List<String> row, Class<?> vClass, Map<Integer, Field> index2Field, Map<Integer, String> index2ColumnName) {
+        List<String> jsonFields = new ArrayList<>(16);
+        int max = row.size() - 1;
+        for (Integer index : new TreeMap<>(index2Field).keySet()) {
+            if (index > max) {
+                break;
+            }
+            String content = row.get(index);
+            if (StringUtils.isEmpty(content)) {
+                continue;
+            }
+            Class<?> fieldType = index2Field.get(index).getType();
+            if (fieldType.isEnum() || fieldType == String.class) {
+                content = "\"" + content + "\"";
+            }
+            jsonFields.add("\"" + index2ColumnName.get(index) + "\":" + content);
+        }
+        return JsonUtil.string2Object("{" + String.join(",", jsonFields) + "}", vClass);
+    }
+
+    private static List<ArrayList<String>> readRows(Resource resource) throws IOException {
+        List<ArrayList<String>> rows = new ArrayList<>();
+        try (InputStream inputStream = resource.getInputStream()) {
+            new ExcelReader(inputStream, new ArrayList<>(2), new AnalysisEventListener<ArrayList<String>>() {
+                @Override
+                public void invoke(ArrayList<String> row, AnalysisContext context) {
+                    rows.add(new ArrayList<>(row));
+                }
+
+                @Override
+                public void doAfterAllAnalysed(AnalysisContext context) {
+                }
+            }).read();
+        }
+        return rows;
+    }
+
+    private static String jsonName(Field field) {
+        return Optional.ofNullable(field.getAnnotation(JsonProperty.class)).map(JsonProperty::value).orElseGet(field::getName);
+    }
+
+    private static Field field(Class<?> clazz, String name) {
+        try {
+            return clazz.getDeclaredField(name);
+        } catch (NoSuchFieldException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.mmorpg.mbdl.framework.storage.config.JetCache;
+
+import com.alicp.jetcache.Cache;
+import com.alicp.jetcache.embedded.CaffeineCacheBuilder;
+import com.mmorpg.mbdl.framework.storage.core.AbstractEntity;
+import com.mmorpg.mbdl.framework.storage.core.StorageExecutor;
+import com.mmorpg.mbdl.framework.storage.core.StorageStats;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.repository.support.JpaEntityInformation;
+
+import javax.persistence.EntityManager;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 不依赖数据库：数据库操作由子类覆盖，缓存使用jetcache的本地缓存
+ */
+class StorageJetCacheLoadingTest {
+    private TestStorage storage;
+    private StorageStats stats;
+
+    @BeforeAll
+    static void initStorageExecutor() throws Exception {
+        if (StorageExecutor.getInstance() != null) {
+            return;
+        }
+        StorageExecutor storageExecutor = new StorageExecutor();
+        Field poolSize = StorageExecutor.class.getDeclaredField("poolSize");
+        poolSize.setAccessible(true);
+        poolSize.setInt(storageExecutor, 2);
+        Method init = StorageExecutor.class.getDeclaredMethod("init");
+        init.setAccessible(true);
+        init.invoke(storageExecutor);
+    }
+
+    @BeforeEach
+    void setUp() {
+        storage = new TestStorage();
+        Cache<Long, TestEntity> cache = CaffeineCacheBuilder.createCaffeineCacheBuilder().limit(100).buildCache();
+        storage.setCache(cache);
+        stats = storage.getStats();
+    }
+
+    @Test
+    void 并发未命中只查询一次数据库() throws Exception {
+        storage.db.put(1L, new TestEntity(1L, "a"));
+        storage.findLatch = new CountDownLatch(1);
+        long missBefore = stats.getMissCount();
+        long sharedBefore = stats.getSharedLoadCount();
+        long loadBefore = stats.getLoadCount();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<TestEntity>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> storage.get(1L)));
+            }
+            while (storage.findCount.get() == 0) {
+                Thread.sleep(1);
+            }
+            // 让其它线程进入等待
+            Thread.sleep(100);
+            storage.findLatch.countDown();
+            for (Future<TestEntity> future : futures) {
+                Assertions.assertEquals("a", future.get(5, TimeUnit.SECONDS).value);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assertions.assertEquals(1, storage.findCount.get());
+        Assertions.assertEquals(1, stats.getLoadCount() - loadBefore);
+        long misses = stats.getMissCount() - missBefore;
+        Assertions.assertEquals(misses - 1, stats.getSharedLoadCount() - sharedBefore);
+    }
+
+    @Test
+    void 命中和未命中计入统计() {
+        storage.db.put(2L, new TestEntity(2L, "b"));
+        long hitBefore = stats.getHitCount();
+        long missBefore = stats.getMissCount();
+        storage.get(2L);
+        storage.get(2L);
+        // 不存在的主键也缓存
+        Assertions.assertNull(storage.get(3L));
+        Assertions.assertNull(storage.get(3L));
+        Assertions.assertEquals(2, stats.getHitCount() - hitBefore);
+        Assertions.assertEquals(2, stats.getMissCount() - missBefore);
+        Assertions.assertEquals(2, storage.findCount.get());
+    }
+
+    @Test
+    void 超过提前刷新时间后访问会重新写入缓存() throws Exception {
+        storage.setRefreshAhead(50, 1000);
+        storage.db.put(4L, new TestEntity(4L, "d"));
+        long refreshBefore = stats.getRefreshCount();
+        storage.get(4L);
+        storage.get(4L);
+        Thread.sleep(20);
+        Assertions.assertEquals(refreshBefore, stats.getRefreshCount());
+
+        Thread.sleep(60);
+        Assertions.assertEquals("d", storage.get(4L).value);
+        long deadline = System.currentTimeMillis() + 2000;
+        while (stats.getRefreshCount() == refreshBefore && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Assertions.assertEquals(refreshBefore + 1, stats.getRefreshCount());
+        // 提前刷新不查库
+        Assertions.assertEquals(1, storage.findCount.get());
+    }
+
+    @Test
+    void 批量加载不覆盖查询期间写入缓存的实体() {
+        // 模拟批量查询期间其它线程创建了实体，查询结果是创建之前的
+        storage.findAllHook = () -> storage.create(new TestEntity(5L, "created"));
+        Map<Long, TestEntity> result = storage.getAll(Arrays.asList(5L, 6L));
+        Assertions.assertEquals("created", result.get(5L).value);
+        Assertions.assertFalse(result.containsKey(6L));
+        Assertions.assertEquals("created", storage.get(5L).value);
+        // 不存在的主键缓存为null，不再查库
+        int findCount = storage.findCount.get();
+        Assertions.assertNull(storage.get(6L));
+        Assertions.assertEquals(findCount, storage.findCount.get());
+    }
+
+    static class TestEntity extends AbstractEntity<Long> {
+        private final Long id;
+        private final String value;
+
+        TestEntity(Long id, String value) {
+            this.id = id;
+            this.value = value;
+        }
+
+        @Override
+        public Long getId() {
+            return id;
+        }
+    }
+
+    static class TestStorage extends StorageJetCache<Long, TestEntity> {
+        final Map<Long, TestEntity> db = new ConcurrentHashMap<>();
+        final AtomicInteger findCount = new AtomicInteger();
+        volatile CountDownLatch findLatch;
+        volatile Runnable findAllHook;
+
+        @SuppressWarnings("unchecked")
+        TestStorage() {
+            super((JpaEntityInformation<TestEntity, ?>) fake(JpaEntityInformation.class, "getJavaType", TestEntity.class),
+                    fake(EntityManager.class, "getDelegate", new Object()));
+        }
+
+        @Override
+        public TestEntity findOne(Long id) {
+            findCount.incrementAndGet();
+            CountDownLatch latch = findLatch;
+            if (latch != null) {
+                try {
+                    latch.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return db.get(id);
+        }
+
+        @Override
+        public List<TestEntity> findAll(Iterable<Long> ids) {
+            List<TestEntity> result = new ArrayList<>();
+            for (Long id : ids) {
+                TestEntity entity = db.get(id);
+                if (entity != null) {
+                    result.add(entity);
+                }
+            }
+            Runnable hook = findAllHook;
+            if (hook != null) {
+                findAllHook = null;
+                hook.run();
+            }
+            return result;
+        }
+
+        @Override
+        public <S extends TestEntity> S saveAndFlush(S entity) {
+            db.put(entity.getId(), entity);
+            return entity;
+        }
+
+        @Override
+        public void delete(TestEntity entity) {
+            db.remove(entity.getId());
+        }
+    }
+
+    /**
+     * 只实现一个方法的接口代理，其它方法返回null
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T fake(Class<T> type, String methodName, Object result) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "fake " + type.getSimpleName();
+                default:
+                    return methodName.equals(method.getName()) ? result : null;
+            }
+        });
+    }
+}
@@ -0,0 +1,104 @@
+package com.mmorpg.mbdl.framework.storage.config.JetCache;
+
+import com.alicp.jetcache.CacheValueHolder;
+import com.alicp.jetcache.support.FastjsonKeyConvertor;
+import com.alicp.jetcache.support.KryoValueDecoder;
+import com.alicp.jetcache.support.KryoValueEncoder;
+import com.mmorpg.mbdl.business.container.entity.ContainerEntity;
+import com.mmorpg.mbdl.business.container.model.AbstractItem;
+import com.mmorpg.mbdl.business.container.model.Container;
+import com.mmorpg.mbdl.business.container.model.ContainerType;
+import com.mmorpg.mbdl.business.container.model.NormalItem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JetCache远程缓存值编解码以及key转换的对比测试，使用装有100个物品的背包实体
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ValueCodecBenchmark {
+    private static final Logger logger = LoggerFactory.getLogger(ValueCodecBenchmark.class);
+    private static final int ITEM_COUNT = 100;
+
+    private CacheValueHolder<ContainerEntity> holder;
+    private byte[] kryoBytes;
+    private byte[] protostuffBytes;
+    private Long key = 6_467_371_462_656_000_001L;
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(ValueCodecBenchmark.class.getName())
+                .warmupIterations(3)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Map<Long, AbstractItem> id2ItemMap = new HashMap<>(ITEM_COUNT * 2);
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            long objectId = key + i;
+            id2ItemMap.put(objectId, new NormalItem(1000 + i % 20, i % 99 + 1).setObjectId(objectId));
+        }
+        ContainerEntity containerEntity = new ContainerEntity().setRoleId(key);
+        containerEntity.getType2ContainerMap().put(ContainerType.PACK, new Container().setId2ItemMap(id2ItemMap));
+        holder = new CacheValueHolder<>(containerEntity, TimeUnit.MINUTES.toMillis(30));
+        kryoBytes = KryoValueEncoder.INSTANCE.apply(holder);
+        protostuffBytes = ProtostuffValueEncoder.INSTANCE.apply(holder);
+        logger.info("编码后大小 kryo[{}] protostuff[{}]", kryoBytes.length, protostuffBytes.length);
+    }
+
+    @Benchmark
+    public byte[] kryoEncode() {
+        return KryoValueEncoder.INSTANCE.apply(holder);
+    }
+
+    @Benchmark
+    public byte[] protostuffEncode() {
+        return ProtostuffValueEncoder.INSTANCE.apply(holder);
+    }
+
+    @Benchmark
+    public Object kryoDecode() {
+        return KryoValueDecoder.INSTANCE.apply(kryoBytes);
+    }
+
+    @Benchmark
+    public Object protostuffDecode() {
+        return ProtostuffValueDecoder.INSTANCE.apply(protostuffBytes);
+    }
+
+    @Benchmark
+    public Object fastjsonKeyConvert() {
+        return FastjsonKeyConvertor.INSTANCE.apply(key);
+    }
+
+    @Benchmark
+    public Object binaryKeyConvert() {
+        return BinaryKeyConvertor.INSTANCE.apply(key);
+    }
+}
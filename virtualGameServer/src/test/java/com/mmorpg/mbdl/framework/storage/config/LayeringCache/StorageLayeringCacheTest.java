@@ -0,0 +1,223 @@
+package com.mmorpg.mbdl.framework.storage.config.LayeringCache;
+
+import com.github.xiaolyuh.cache.Cache;
+import com.github.xiaolyuh.manager.CacheManager;
+import com.mmorpg.mbdl.framework.storage.annotation.LayeringCacheConfig;
+import com.mmorpg.mbdl.framework.storage.core.AbstractEntity;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.repository.support.JpaEntityInformation;
+
+import javax.persistence.EntityManager;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 不依赖数据库和redis：数据库操作由子类覆盖，layering-cache的Cache用内存中的map代替（允许null值，与开启负缓存时一致）
+ */
+class StorageLayeringCacheTest {
+    private static final Object NULL_VALUE = new Object();
+
+    private TestStorage storage;
+    /** 代替layering-cache的缓存数据 */
+    private Map<Object, Object> cacheData;
+
+    @BeforeEach
+    void setUp() {
+        cacheData = new ConcurrentHashMap<>();
+        storage = new TestStorage();
+        storage.seteClazz(TestEntity.class);
+        storage.setCacheManager(fakeCacheManager(fakeCache(cacheData)));
+        storage.setProxy(storage);
+    }
+
+    @Test
+    void 并发未命中只查询一次数据库() throws Exception {
+        storage.db.put(1L, new TestEntity(1L, "a"));
+        storage.findLatch = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<TestEntity>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> storage.get(1L)));
+            }
+            while (storage.findCount.get() == 0) {
+                Thread.sleep(1);
+            }
+            // 让其它线程进入等待
+            Thread.sleep(100);
+            storage.findLatch.countDown();
+            for (Future<TestEntity> future : futures) {
+                Assertions.assertEquals("a", future.get(5, TimeUnit.SECONDS).value);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assertions.assertEquals(1, storage.findCount.get());
+        Assertions.assertEquals("a", storage.get(1L).value);
+        Assertions.assertEquals(1, storage.findCount.get());
+    }
+
+    @Test
+    void 不存在的主键缓存null值() {
+        Assertions.assertNull(storage.get(2L));
+        Assertions.assertNull(storage.get(2L));
+        Assertions.assertEquals(1, storage.findCount.get());
+        Assertions.assertSame(NULL_VALUE, cacheData.get(2L));
+
+        // 创建后覆盖负缓存
+        storage.create(new TestEntity(2L, "b"));
+        Assertions.assertEquals("b", storage.get(2L).value);
+        Assertions.assertEquals(1, storage.findCount.get());
+    }
+
+    @Test
+    void 失效后重新从数据库加载() {
+        storage.db.put(3L, new TestEntity(3L, "old"));
+        Assertions.assertEquals("old", storage.get(3L).value);
+        storage.db.put(3L, new TestEntity(3L, "new"));
+        Assertions.assertEquals("old", storage.get(3L).value);
+
+        storage.invalidate(3L);
+        Assertions.assertEquals("new", storage.get(3L).value);
+        Assertions.assertEquals(2, storage.findCount.get());
+    }
+
+    @Test
+    void 删除后获取为null() {
+        storage.create(new TestEntity(4L, "d"));
+        Assertions.assertEquals("d", storage.remove(4L).value);
+        Assertions.assertNull(storage.get(4L));
+        Assertions.assertFalse(storage.db.containsKey(4L));
+    }
+
+    @Test
+    void 没有延迟时合并更新直接入库并更新缓存() {
+        storage.create(new TestEntity(5L, "before"));
+        TestEntity changed = new TestEntity(5L, "after");
+        storage.mergeUpdate(changed);
+        Assertions.assertEquals("after", storage.db.get(5L).value);
+        Assertions.assertEquals("after", storage.get(5L).value);
+        Assertions.assertEquals(0, (int) storage.flushMergeUpdates(16).join());
+    }
+
+    @LayeringCacheConfig(delay = 0)
+    static class TestEntity extends AbstractEntity<Long> {
+        private final Long id;
+        private final String value;
+
+        TestEntity(Long id, String value) {
+            this.id = id;
+            this.value = value;
+        }
+
+        @Override
+        public Long getId() {
+            return id;
+        }
+    }
+
+    static class TestStorage extends StorageLayeringCache<Long, TestEntity> {
+        private final Map<Long, TestEntity> db = new ConcurrentHashMap<>();
+        private final AtomicInteger findCount = new AtomicInteger();
+        private volatile CountDownLatch findLatch;
+
+        @SuppressWarnings("unchecked")
+        TestStorage() {
+            super((JpaEntityInformation<TestEntity, ?>) fake(JpaEntityInformation.class, (method, args) ->
+                    "getJavaType".equals(method) ? TestEntity.class : null),
+                    fake(EntityManager.class, (method, args) -> "getDelegate".equals(method) ? new Object() : null));
+        }
+
+        @Override
+        public TestEntity findOne(Long id) {
+            findCount.incrementAndGet();
+            CountDownLatch latch = findLatch;
+            if (latch != null) {
+                try {
+                    latch.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return db.get(id);
+        }
+
+        @Override
+        public <S extends TestEntity> S saveAndFlush(S entity) {
+            db.put(entity.getId(), entity);
+            return entity;
+        }
+
+        @Override
+        public void delete(TestEntity entity) {
+            db.remove(entity.getId());
+        }
+    }
+
+    private interface FakeMethod {
+        Object invoke(String method, Object[] args) throws Exception;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T fake(Class<T> type, FakeMethod fakeMethod) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "fake " + type.getSimpleName();
+                default:
+                    break;
+            }
+            Object result = fakeMethod.invoke(method.getName(), args == null ? new Object[0] : args);
+            if (result == null && method.getReturnType() == boolean.class) {
+                return false;
+            }
+            if (result == null && method.getReturnType().isPrimitive() && method.getReturnType() != void.class) {
+                return 0;
+            }
+            return result;
+        });
+    }
+
+    private static CacheManager fakeCacheManager(Cache cache) {
+        return fake(CacheManager.class, (method, args) -> "getCache".equals(method) && args.length == 2 ? cache : null);
+    }
+
+    private static Cache fakeCache(Map<Object, Object> data) {
+        return fake(Cache.class, (method, args) -> {
+            switch (method) {
+                case "get": {
+                    Object value = data.get(args[0]);
+                    if (value == null && args.length == 3) {
+                        value = ((Callable<?>) args[2]).call();
+                        data.put(args[0], value == null ? NULL_VALUE : value);
+                    }
+                    return value == NULL_VALUE ? null : value;
+                }
+                case "put":
+                    data.put(args[0], args[1] == null ? NULL_VALUE : args[1]);
+                    return null;
+                case "evict":
+                    data.remove(args[0]);
+                    return null;
+                default:
+                    return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,108 @@
+package com.mmorpg.mbdl.framework.thread;
+
+import com.mmorpg.mbdl.framework.thread.interfaces.Dispatchable;
+import com.mmorpg.mbdl.framework.thread.task.AbstractTask;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 业务线程池在倾斜负载下的对比测试：少数热点队列承担大部分任务，且少量任务耗时很长
+ *
+ * @author Sando Geek
+ * @since v1.0
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TaskSchedulerBenchmark {
+    private static final int POOL_SIZE = 8;
+    private static final int QUEUE_COUNT = 1000;
+    private static final int HOT_QUEUE_COUNT = 10;
+    private static final int TASK_COUNT = 20000;
+
+    @Param({"eventExecutor", "workStealing"})
+    private String executorType;
+
+    private ScheduledExecutorService executorService;
+    private PoolExecutor<Long, ScheduledExecutorService> poolExecutor;
+    private long[] dispatchIds = new long[TASK_COUNT];
+    private long[] tokens = new long[TASK_COUNT];
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(TaskSchedulerBenchmark.class.getName())
+                .warmupIterations(3)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        if ("workStealing".equals(executorType)) {
+            executorService = new WorkStealingExecutor(POOL_SIZE, Executors.defaultThreadFactory());
+        } else {
+            executorService = new DefaultEventExecutorGroup(POOL_SIZE);
+        }
+        poolExecutor = new PoolExecutor<>(executorService, 1, TimeUnit.MINUTES);
+        Random random = new Random(17);
+        for (int i = 0; i < TASK_COUNT; i++) {
+            // 80%的任务落在热点队列上
+            dispatchIds[i] = random.nextInt(10) < 8 ? random.nextInt(HOT_QUEUE_COUNT) : random.nextInt(QUEUE_COUNT);
+            // 1%的任务耗时是普通任务的100倍
+            tokens[i] = random.nextInt(100) == 0 ? 50_000 : 500;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        executorService.shutdown();
+        executorService.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public void skewedLoad() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(TASK_COUNT);
+        for (int i = 0; i < TASK_COUNT; i++) {
+            long dispatchId = dispatchIds[i];
+            long token = tokens[i];
+            AbstractTask<Dispatchable<Long>, Long> task = new AbstractTask<Dispatchable<Long>, Long>(() -> dispatchId, false) {
+                @Override
+                public String taskName() {
+                    return "倾斜负载测试任务";
+                }
+
+                @Override
+                public void execute() {
+                    Blackhole.consumeCPU(token);
+                    latch.countDown();
+                }
+            };
+            task.setLogOrNot(false);
+            poolExecutor.getOrCreateTaskQueue(dispatchId).submit(task);
+        }
+        latch.await();
+    }
+}
@@ -0,0 +1,51 @@
+package com.mmorpg.mbdl.framework.thread;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class TimingWheelTest {
+    @Test
+    void 到期后才回调() {
+        TimingWheel<String> wheel = new TimingWheel<>(50, 8, 0);
+        wheel.schedule("a", 120);
+        List<String> fired = new ArrayList<>();
+        wheel.advance(100, fired::add);
+        Assertions.assertTrue(fired.isEmpty());
+        wheel.advance(150, fired::add);
+        Assertions.assertEquals(1, fired.size());
+        Assertions.assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void 超过一圈的定时器多停留几圈() {
+        TimingWheel<String> wheel = new TimingWheel<>(50, 8, 0);
+        // 8个槽一圈400毫秒
+        wheel.schedule("long", 1000);
+        wheel.schedule("short", 200);
+        List<String> fired = new ArrayList<>();
+        wheel.advance(400, fired::add);
+        Assertions.assertEquals(1, fired.size());
+        Assertions.assertEquals("short", fired.get(0));
+        wheel.advance(950, fired::add);
+        Assertions.assertEquals(1, fired.size());
+        wheel.advance(1000, fired::add);
+        Assertions.assertEquals(2, fired.size());
+    }
+
+    @Test
+    void 回调中可以重新添加() {
+        TimingWheel<Integer> wheel = new TimingWheel<>(50, 8, 0);
+        wheel.schedule(0, 50);
+        List<Integer> fired = new ArrayList<>();
+        wheel.advance(500, times -> {
+            fired.add(times);
+            wheel.schedule(times + 1, 100);
+        });
+        // 50、150、250、350、450各触发一次
+        Assertions.assertEquals(5, fired.size());
+        Assertions.assertEquals(1, wheel.size());
+    }
+}
@@ -0,0 +1,195 @@
+package com.mmorpg.mbdl.framework.thread;
+
+import com.mmorpg.mbdl.framework.thread.interfaces.Dispatchable;
+import com.mmorpg.mbdl.framework.thread.task.AbstractTask;
+import com.mmorpg.mbdl.framework.thread.task.TaskQueue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link WorkStealingExecutor}与{@link TaskQueue}配合时的顺序和亲和性，用阻塞工作线程的方式让窃取必然发生或必然不发生
+ */
+class WorkStealingExecutorTest {
+    private static final int POOL_SIZE = 4;
+    private static final long DISPATCH_ID = 1L;
+
+    private WorkStealingExecutor executor;
+    private PoolExecutor<Long, ScheduledExecutorService> poolExecutor;
+    private final CountDownLatch releaseBlockers = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        executor = new WorkStealingExecutor(POOL_SIZE, Executors.defaultThreadFactory());
+        poolExecutor = new PoolExecutor<>(executor, 1, TimeUnit.MINUTES);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        releaseBlockers.countDown();
+        executor.shutdown();
+        Assertions.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void 任务被其它线程窃取时队列内仍然有序() throws Exception {
+        TaskQueue<Long> taskQueue = poolExecutor.getOrCreateTaskQueue(DISPATCH_ID);
+        int affinity = runOnce(taskQueue);
+        // 占住亲和的工作线程，队列的下一个任务只能被其它线程窃取
+        blockWorkers(Collections.singletonList(affinity));
+        long stealBefore = executor.getStealCount();
+
+        int taskCount = 1000;
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>(taskCount));
+        List<Integer> workerIndexes = Collections.synchronizedList(new ArrayList<>(taskCount));
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(taskCount);
+        for (int i = 0; i < taskCount; i++) {
+            int seq = i;
+            taskQueue.submit(task(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                order.add(seq);
+                workerIndexes.add(WorkStealingExecutor.currentWorkerIndex());
+                running.decrementAndGet();
+                done.countDown();
+            }));
+        }
+        Assertions.assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        for (int i = 0; i < taskCount; i++) {
+            Assertions.assertEquals(i, (int) order.get(i));
+        }
+        Assertions.assertEquals(1, maxRunning.get());
+        Assertions.assertFalse(workerIndexes.contains(affinity));
+        Assertions.assertTrue(executor.getStealCount() > stealBefore);
+        // 窃取后亲和性转移到最后执行任务的线程
+        waitAffinity(taskQueue, workerIndexes.get(taskCount - 1));
+        Assertions.assertEquals(-1, WorkStealingExecutor.currentWorkerIndex());
+    }
+
+    @Test
+    void 重新提交的任务投递到上次执行的线程() throws Exception {
+        TaskQueue<Long> taskQueue = poolExecutor.getOrCreateTaskQueue(DISPATCH_ID);
+        int affinity = runOnce(taskQueue);
+        // 占住其它工作线程，它们无法窃取，任务只能在亲和的线程上执行
+        List<Integer> others = new ArrayList<>();
+        for (int i = 0; i < POOL_SIZE; i++) {
+            if (i != affinity) {
+                others.add(i);
+            }
+        }
+        blockWorkers(others);
+        long stealBefore = executor.getStealCount();
+
+        for (int round = 0; round < 20; round++) {
+            // 每轮等队列空了再提交，亲和性需要跨越多次提交保持
+            int batch = round % 5 + 1;
+            List<Integer> workerIndexes = Collections.synchronizedList(new ArrayList<>(batch));
+            CountDownLatch done = new CountDownLatch(batch);
+            for (int i = 0; i < batch; i++) {
+                taskQueue.submit(task(() -> {
+                    workerIndexes.add(WorkStealingExecutor.currentWorkerIndex());
+                    done.countDown();
+                }));
+            }
+            Assertions.assertTrue(done.await(5, TimeUnit.SECONDS));
+            for (int workerIndex : workerIndexes) {
+                Assertions.assertEquals(affinity, workerIndex);
+            }
+            Assertions.assertEquals(affinity, taskQueue.getAffinity());
+        }
+        Assertions.assertEquals(stealBefore, executor.getStealCount());
+    }
+
+    /**
+     * 执行队列的一个任务，等待队列记录下亲和的工作线程
+     * @return 执行任务的工作线程下标
+     */
+    private int runOnce(TaskQueue<Long> taskQueue) throws InterruptedException {
+        AtomicInteger workerIndex = new AtomicInteger(-1);
+        CountDownLatch done = new CountDownLatch(1);
+        taskQueue.submit(task(() -> {
+            workerIndex.set(WorkStealingExecutor.currentWorkerIndex());
+            done.countDown();
+        }));
+        Assertions.assertTrue(done.await(5, TimeUnit.SECONDS));
+        return waitAffinity(taskQueue, workerIndex.get());
+    }
+
+    /**
+     * 任务执行完后才记录亲和性，等待记录完成
+     */
+    private int waitAffinity(TaskQueue<Long> taskQueue, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (taskQueue.getAffinity() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        Assertions.assertEquals(expected, taskQueue.getAffinity());
+        return expected;
+    }
+
+    /**
+     * 让指定的工作线程一直执行阻塞任务，直到测试结束
+     */
+    private void blockWorkers(List<Integer> workerIndexes) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(workerIndexes.size());
+        for (int workerIndex : workerIndexes) {
+            executor.execute(new Blocker(workerIndex, started), workerIndex);
+        }
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 阻塞任务，被其它空闲线程窃取时重新投递到指定的线程
+     */
+    private class Blocker implements Runnable {
+        private final int workerIndex;
+        private final CountDownLatch started;
+
+        private Blocker(int workerIndex, CountDownLatch started) {
+            this.workerIndex = workerIndex;
+            this.started = started;
+        }
+
+        @Override
+        public void run() {
+            if (WorkStealingExecutor.currentWorkerIndex() != workerIndex) {
+                executor.execute(this, workerIndex);
+                return;
+            }
+            started.countDown();
+            try {
+                releaseBlockers.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static AbstractTask<Dispatchable<Long>, Long> task(Runnable runnable) {
+        AbstractTask<Dispatchable<Long>, Long> task = new AbstractTask<Dispatchable<Long>, Long>(() -> DISPATCH_ID, false) {
+            @Override
+            public String taskName() {
+                return "工作窃取测试任务";
+            }
+
+            @Override
+            public void execute() {
+                runnable.run();
+            }
+        };
+        task.setLogOrNot(false);
+        return task;
+    }
+}